@@ -0,0 +1,96 @@
+package it.polimi.ingsw.game;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the legal cell queries of actions and graphs, for the first worker of the player to move
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ActionBenchmark
+{
+    @Param({"0", "1", "2", "3", "4", "5", "6", "8", "9", "10"})
+    public int card;
+
+    @Param({"MID", "LATE"})
+    public Positions.Phase phase;
+
+    private Map map;
+    private GameConstraints gc;
+    private Worker worker;
+    private Action move;
+    private GraphCursor cursor;
+    private CompiledGraph compiled;
+    private int[] masks;
+
+    @Setup
+    public void setUp()
+    {
+        Game game = Positions.create(card, phase);
+        map = game.getCurrentMap();
+        gc = game.getGlobalConstraints();
+        worker = game.getCurrentPlayer().getWorkers().get(0);
+
+        BehaviourGraph graph = game.getCurrentPlayer().getGod().getGraph();
+        cursor = graph.newCursor();
+        compiled = graph.getCompiled();
+        masks = new int[compiled.getMaxChildren()];
+
+        // first move of the card (Prometheus can also build before moving)
+        for (BehaviourNode node : cursor.getCurrentNode().getChildNodes())
+        {
+            if(node.getAction() instanceof MoveAction)
+            {
+                move = node.getAction();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Legal cells of the first move as a list of positions
+     * @return legal cells
+     */
+    @Benchmark
+    public List<Vector2> movePossibleCells()
+    {
+        return move.possibleCells(worker, map, gc);
+    }
+
+    /**
+     * Legal cells of the first move as a bitmask
+     * @return legal cell mask
+     */
+    @Benchmark
+    public int movePossibleCellsMask()
+    {
+        return move.possibleCellsMask(worker, map, gc.toInt());
+    }
+
+    /**
+     * Next actions of the graph root with their legal cells (same data sent to clients)
+     * @return next actions
+     */
+    @Benchmark
+    public List<NextAction> graphNextActions()
+    {
+        return cursor.getNextActions(worker, map, gc);
+    }
+
+    /**
+     * Next actions of the compiled graph root as bitmasks
+     * @return number of actions
+     */
+    @Benchmark
+    public int compiledNextActionMasks()
+    {
+        return compiled.nextActionMasks(CompiledGraph.ROOT, worker, map, gc.toInt(), masks);
+    }
+}
@@ -0,0 +1,81 @@
+package it.polimi.ingsw.game;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the game level queries used by the controller and by search code
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark
+{
+    @Param({"0", "1", "2", "3", "4", "5", "6", "8", "9", "10"})
+    public int card;
+
+    @Param({"MID", "LATE"})
+    public Positions.Phase phase;
+
+    private Game game;
+    private TurnGenerator generator;
+    private UndoRecord record;
+    private int worker;
+    private int action;
+    private Vector2 target;
+
+    @Setup
+    public void setUp()
+    {
+        game = Positions.create(card, phase);
+        generator = new TurnGenerator();
+        record = new UndoRecord();
+
+        if(generator.generate(game) == 0)
+            throw new IllegalStateException("No legal turn");
+
+        long turn = generator.get(0);
+        worker = TurnGenerator.getWorker(turn);
+        action = TurnGenerator.getAction(turn, 0);
+        target = Vector2.of(TurnGenerator.getCell(turn, 0));
+    }
+
+    /**
+     * Next actions of a position that didn't change since the last call (served by the cache)
+     * @return next actions
+     */
+    @Benchmark
+    public List<NextAction> getNextActionsCached()
+    {
+        return game.getNextActions();
+    }
+
+    /**
+     * Next actions after the game state changed: a step is made and reverted before every call
+     * so the actions are computed again (make and unmake are part of the measure)
+     * @return next actions
+     * @throws Exception if the step can't be played
+     */
+    @Benchmark
+    public List<NextAction> getNextActionsAfterChange() throws Exception
+    {
+        game.makeAction(worker, action, target, record);
+        game.unmakeAction(record);
+        return game.getNextActions();
+    }
+
+    /**
+     * Every complete turn of the player to move
+     * @return number of turns
+     */
+    @Benchmark
+    public int generateTurns()
+    {
+        return generator.generate(game);
+    }
+}
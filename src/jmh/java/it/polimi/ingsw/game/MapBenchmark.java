@@ -0,0 +1,83 @@
+package it.polimi.ingsw.game;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the map queries and updates used by every action
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapBenchmark
+{
+    @Param({"MID", "LATE"})
+    public Positions.Phase phase;
+
+    private Map map;
+    private Map snapshot;
+    private int cell;
+
+    @Setup
+    public void setUp()
+    {
+        map = Positions.create(1, phase).getCurrentMap();
+        snapshot = new Map(map);
+        cell = 0;
+    }
+
+    /**
+     * Build on every cell in turn, the map is restored before every build so domes don't stop it
+     * (the restore is a copy of a few ints and is part of the measure)
+     * @return build result
+     */
+    @Benchmark
+    public boolean build()
+    {
+        map.importMap(snapshot);
+        cell = cell == Map.CELLS - 1 ? 0 : cell + 1;
+        return map.build(Vector2.of(cell));
+    }
+
+    /**
+     * Look up the worker of every cell by position
+     * @param bh blackhole
+     */
+    @Benchmark
+    @OperationsPerInvocation(Map.CELLS)
+    public void getWorker(Blackhole bh)
+    {
+        for (int x = 0; x < Map.HEIGHT; x++)
+            for (int y = 0; y < Map.LENGTH; y++)
+                bh.consume(map.getWorker(Vector2.of(x, y)));
+    }
+
+    /**
+     * Look up the worker of every cell by cell index
+     * @param bh blackhole
+     */
+    @Benchmark
+    @OperationsPerInvocation(Map.CELLS)
+    public void getWorkerByCell(Blackhole bh)
+    {
+        for (int i = 0; i < Map.CELLS; i++)
+            bh.consume(map.getWorker(i));
+    }
+
+    /**
+     * Read the level of every cell
+     * @param bh blackhole
+     */
+    @Benchmark
+    @OperationsPerInvocation(Map.CELLS)
+    public void getLevel(Blackhole bh)
+    {
+        for (int i = 0; i < Map.CELLS; i++)
+            bh.consume(map.getLevel(i));
+    }
+}
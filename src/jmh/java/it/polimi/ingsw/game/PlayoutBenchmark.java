@@ -0,0 +1,88 @@
+package it.polimi.ingsw.game;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of random playouts from the same position, played by the batched engine and by the object engine
+ * Both variants pick every turn uniformly among the complete turns (like RandomBot) and play until a player
+ * wins, gets stuck or the turn limit is reached. Scores are playouts per millisecond
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlayoutBenchmark
+{
+    private static final int PLAYOUTS = 1024;
+    private static final int MAX_TURNS = 200;
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "8", "9", "10"})
+    public int card;
+
+    @Param({"MID", "LATE"})
+    public Positions.Phase phase;
+
+    private Game game;
+    private BatchEngine engine;
+    private TurnGenerator generator;
+    private UndoRecord[] records;
+    private SplittableRandom random;
+
+    @Setup
+    public void setUp()
+    {
+        game = Positions.create(card, phase);
+        engine = new BatchEngine(PLAYOUTS, 1);
+        generator = new TurnGenerator();
+        records = new UndoRecord[TurnGenerator.MAX_STEPS];
+        for (int i = 0; i < records.length; i++)
+            records[i] = new UndoRecord();
+        random = new SplittableRandom(1);
+    }
+
+    /**
+     * Playouts on the boards of a batched engine, loading the boards is part of the measure
+     * @return boards won by the first player
+     */
+    @Benchmark
+    @OperationsPerInvocation(PLAYOUTS)
+    public int batchPlayouts()
+    {
+        engine.clear();
+        for (int i = 0; i < PLAYOUTS; i++)
+            engine.add(game);
+        engine.run(MAX_TURNS);
+        return engine.wins(0);
+    }
+
+    /**
+     * Playouts on copies of the game, turns are played with TurnGenerator.play
+     * @return games won by the first player
+     */
+    @Benchmark
+    @OperationsPerInvocation(PLAYOUTS)
+    public int objectPlayouts()
+    {
+        int wins = 0;
+        for (int i = 0; i < PLAYOUTS; i++)
+        {
+            Game playout = game.copy();
+            for (int turns = 0; !playout.isEnded() && turns < MAX_TURNS; turns++)
+            {
+                int count = generator.generate(playout);
+                if(count == 0)
+                    break;
+
+                TurnGenerator.play(playout, generator.get(random.nextInt(count)), records);
+            }
+            if(playout.isEnded() && playout.getPlayers().indexOf(playout.getWinner()) == 0)
+                wins++;
+        }
+        return wins;
+    }
+}
@@ -0,0 +1,89 @@
+package it.polimi.ingsw.game;
+
+/**
+ * Positions used by the engine benchmarks
+ * Every position is a two players game with the standard worker placement of Perft
+ * ((1,1) (3,3) for the first player, (1,3) (3,1) for the second one) and a fixed set of buildings.
+ * The first player uses the benchmarked card and is the player to move
+ */
+public final class Positions
+{
+    /**
+     * Phase of the game represented by a position
+     */
+    public enum Phase
+    {
+        /**
+         * Empty map
+         */
+        OPENING,
+        /**
+         * Some low buildings and a single level 3 tower
+         */
+        MID,
+        /**
+         * Crowded map with domes and workers that can win
+         */
+        LATE
+    }
+
+    // levels of every cell (row x, col y), 4 = dome
+    private static final int[][] MID_LEVELS = {
+            {0, 3, 0, 0, 0},
+            {0, 1, 1, 0, 0},
+            {0, 0, 2, 2, 0},
+            {1, 0, 1, 0, 0},
+            {0, 0, 0, 0, 4},
+    };
+
+    private static final int[][] LATE_LEVELS = {
+            {3, 4, 2, 1, 4},
+            {2, 2, 3, 1, 4},
+            {1, 4, 3, 2, 3},
+            {4, 1, 2, 2, 1},
+            {2, 3, 4, 1, 2},
+    };
+
+    private Positions() { }
+
+    /**
+     * Return the card used by the opponent of a benchmarked card
+     * @param card benchmarked card, 0 for no god
+     * @return opponent card
+     */
+    public static int opponentOf(int card)
+    {
+        if(card == 0)
+            return 0;
+        return card == 9 ? 1 : 9;
+    }
+
+    /**
+     * Create a running game in a position
+     * @param card card of the player to move, 0 for no god
+     * @param phase phase of the position
+     * @return game ready for the first turn of the player that uses card
+     */
+    public static Game create(int card, Phase phase)
+    {
+        Game game = Perft.newGame(card, opponentOf(card));
+        if(phase == Phase.MID)
+            build(game.getCurrentMap(), MID_LEVELS);
+        else if(phase == Phase.LATE)
+            build(game.getCurrentMap(), LATE_LEVELS);
+        return game;
+    }
+
+    /**
+     * Build every cell of a map until it reaches a level
+     * @param m map to build on
+     * @param levels level of every cell
+     */
+    private static void build(Map m, int[][] levels)
+    {
+        for (int x = 0; x < Map.HEIGHT; x++)
+            for (int y = 0; y < Map.LENGTH; y++)
+                for (int l = 0; l < levels[x][y]; l++)
+                    m.build(Vector2.of(x, y));
+    }
+}
@@ -0,0 +1,136 @@
+package it.polimi.ingsw.game;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of a complete turn played with Turn.runAction
+ * The played turn is one of the legal turns of the position (picked with TurnGenerator).
+ * Every invocation creates a new turn like Game does, plays all its steps and restores the position,
+ * the restore is the same for every variant so differences come from the undo journal
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TurnBenchmark
+{
+    @Param({"0", "1", "2", "3", "4", "5", "6", "8", "9", "10"})
+    public int card;
+
+    @Param({"MID", "LATE"})
+    public Positions.Phase phase;
+
+    private Player player;
+    private Map map;
+    private GameConstraints gc;
+    private long turn;
+
+    // position to restore after every turn
+    private Map mapSnapshot;
+    private GameConstraints gcSnapshot;
+    private List<Worker> workers;
+    private Vector2[] positions;
+
+    @Setup
+    public void setUp()
+    {
+        Game game = Positions.create(card, phase);
+        player = game.getCurrentPlayer();
+        map = game.getCurrentMap();
+        gc = game.getGlobalConstraints();
+
+        TurnGenerator generator = new TurnGenerator();
+        int count = generator.generate(game);
+        if(count == 0)
+            throw new IllegalStateException("No legal turn");
+
+        // prefer the longest turn to run every action of the card
+        turn = generator.get(0);
+        for (int i = 1; i < count; i++)
+            if(TurnGenerator.getLength(generator.get(i)) > TurnGenerator.getLength(turn))
+                turn = generator.get(i);
+
+        mapSnapshot = new Map(map);
+        gcSnapshot = new GameConstraints(gc);
+        workers = map.getWorkers();
+        positions = new Vector2[workers.size()];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = workers.get(i).getPosition();
+    }
+
+    /**
+     * Play the turn with undo disabled
+     * @return result of the last action
+     * @throws Exception if the turn can't be played
+     */
+    @Benchmark
+    public int runActionUndoOff() throws Exception
+    {
+        int result = play(new Turn(player, false));
+        restore();
+        return result;
+    }
+
+    /**
+     * Play the turn with undo enabled, every action is recorded in the journal
+     * @return result of the last action
+     * @throws Exception if the turn can't be played
+     */
+    @Benchmark
+    public int runActionUndoOn() throws Exception
+    {
+        int result = play(new Turn(player, true));
+        restore();
+        return result;
+    }
+
+    /**
+     * Play the turn with undo enabled and revert it with the journal instead of restoring the position
+     * @return reverted actions
+     * @throws Exception if the turn can't be played
+     */
+    @Benchmark
+    public int runActionAndRollback() throws Exception
+    {
+        Turn t = new Turn(player, true);
+        play(t);
+        return t.rollbackTurn(map, gc);
+    }
+
+    /**
+     * Play every step of the benchmarked turn
+     * @param t new turn of the player
+     * @return result of the last action
+     * @throws Exception if a step can't be played
+     */
+    private int play(Turn t) throws Exception
+    {
+        t.selectWorker(TurnGenerator.getWorker(turn));
+        int result = 0;
+        for (int step = 0; step < TurnGenerator.getLength(turn); step++)
+            result = t.runAction(TurnGenerator.getAction(turn, step), Vector2.of(TurnGenerator.getCell(turn, step)), map, gc);
+        return result;
+    }
+
+    /**
+     * Restore the position before the turn
+     */
+    private void restore()
+    {
+        map.importMap(mapSnapshot);
+        for (int i = 0; i < positions.length; i++)
+        {
+            Worker w = workers.get(i);
+            w.setPosition(positions[i]);
+            w.setLastLocation(null);
+            w.setLastBuildLocation(null);
+        }
+        gc.clear();
+        gc.add(gcSnapshot);
+    }
+}
@@ -29,6 +29,21 @@ public abstract class Action
      */
     public abstract int run(Worker w, Vector2 target, Map m, GameConstraints globalConstrains) throws NotAllowedMoveException;
 
+    /**
+     * Execute the action on a target that is already known to be valid (eg. checked against possibleCellsMask by Game)
+     * Built in actions skip the generation of valid cells, the default implementation calls run
+     * @param w target worker used in this action
+     * @param target valid target position where the action should take place
+     * @param m map where the action is executed
+     * @param globalConstrains global game constrains that should be applied before action execution
+     * @return 1 = I won, 0 = continue, -1 = I lost
+     * @throws NotAllowedMoveException if action is not possible with the current parameters
+     */
+    int runValidated(Worker w, Vector2 target, Map m, GameConstraints globalConstrains) throws NotAllowedMoveException
+    {
+        return run(w, target, m, globalConstrains);
+    }
+
     /**
      * Return the display name for an action
      * This name should include applied constrains
@@ -37,25 +52,75 @@ public abstract class Action
      */
     public String displayName() { return displayName; }
 
+    /**
+     * Return the opcode used to identify this action in a compiled graph (see CompiledGraph)
+     * Built in actions return their own opcode only when their class is not extended: compiled graphs
+     * compute the cells of built in opcodes with ActionKernels, subclasses could change the rules and are OP_CUSTOM
+     * @return one of the CompiledGraph.OP_ constants
+     */
+    int opcode()
+    {
+        return CompiledGraph.OP_CUSTOM;
+    }
+
+    /**
+     * Return the constraints added by this action to the global ones
+     * @return local constraint mask
+     */
+    int localConstraintMask()
+    {
+        return 0;
+    }
+
+    /**
+     * Generate the set of cells where the action can run as a bitmask (one bit for every cell index, see Map.cellIndex)
+     * This is the allocation free version of possibleCells and should be preferred by the game engine
+     * @param w worker doing the job
+     * @param m current map
+     * @param gc list of constraints
+     * @return mask of all the possible cells i can run the action from the w.getpos() cell
+     */
+    public abstract int possibleCellsMask(Worker w, Map m, GameConstraints gc);
+
+    /**
+     * Generate the set of cells where the action can run using a plain constraint mask
+     * Built in actions override this function and run without allocations,
+     * the default implementation wraps the mask and calls possibleCellsMask(Worker, Map, GameConstraints)
+     * Built in actions implement the GameConstraints overload with this one, so their subclasses override this one
+     * @param w worker doing the job
+     * @param m current map
+     * @param constraints global constraint mask (see GameConstraints.toInt)
+     * @return mask of all the possible cells i can run the action from the w.getpos() cell
+     */
+    public int possibleCellsMask(Worker w, Map m, int constraints)
+    {
+        GameConstraints gc = new GameConstraints();
+        gc.set(constraints);
+        return possibleCellsMask(w, m, gc);
+    }
+
     /**
      * Generate a list of possible next actions that a player can run
+     * Thin adapter of possibleCellsMask that converts the mask into positions for the view layer
      * @param w worker doing the job
      * @param m current map
      * @param gc list of constraints
      * @return an ArrayList of Vector2 objects, representing all the possible cells i can run the action from the w.getpos() cell
      */
-    public abstract ArrayList<Vector2> possibleCells(Worker w, Map m, GameConstraints gc);
+    public ArrayList<Vector2> possibleCells(Worker w, Map m, GameConstraints gc)
+    {
+        return Map.cellsOf(possibleCellsMask(w, m, gc));
+    }
 
     /**
-     * Merge constrains and return a copy leaving the original ones untouched
-     * @param localConstraints local constraints
-     * @param globalConstraints global constraints
-     * @return merged constraints
+     * Check if a position is part of a cell mask
+     * @param mask cell mask
+     * @param pos position to check
+     * @return true if pos is inside the map and its bit is set in mask
      */
-    protected GameConstraints mergeConstraints(final GameConstraints localConstraints, final GameConstraints globalConstraints)
+    protected static boolean isCellInMask(int mask, Vector2 pos)
     {
-        GameConstraints gc = new GameConstraints(localConstraints);
-        gc.add(globalConstraints);
-        return gc;
+        int cell = Map.cellIndex(pos);
+        return cell >= 0 && (mask & (1 << cell)) != 0;
     }
 }
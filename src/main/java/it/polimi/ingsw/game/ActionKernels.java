@@ -0,0 +1,191 @@
+package it.polimi.ingsw.game;
+
+/**
+ * Static kernels of the legal cells of the built in actions
+ * The rules of MoveAction, BuildAction and BuildAgainAction are written once over plain bitboards
+ * (level masks, dome mask, worker masks and constraint masks): the action classes, CompiledGraph and the
+ * search code that doesn't use Map objects call the same kernels, so the rules can't drift apart.
+ * Every kernel returns a cell mask (one bit for every cell index, see Map.cellIndex) and allocates nothing
+ */
+public final class ActionKernels
+{
+    private static final int BLOCK_MOVE_UP = GameConstraints.Constraint.BLOCK_MOVE_UP.toInt();
+    private static final int SET_BLOCK_MOVE_UP = GameConstraints.Constraint.SET_BLOCK_MOVE_UP.toInt();
+    private static final int CAN_SWAP = GameConstraints.Constraint.CAN_SWAP_CONSTRAINT.toInt();
+    private static final int CAN_PUSH = GameConstraints.Constraint.CAN_PUSH_CONSTRAINT.toInt();
+    private static final int BLOCK_SAME_CELL_MOVE = GameConstraints.Constraint.BLOCK_SAME_CELL_MOVE.toInt();
+    private static final int BLOCK_SAME_CELL_BUILD = GameConstraints.Constraint.BLOCK_SAME_CELL_BUILD.toInt();
+    private static final int BLOCK_DIFF_CELL_BUILD = GameConstraints.Constraint.BLOCK_DIFF_CELL_BUILD.toInt();
+    private static final int BLOCK_DOME_BUILD = GameConstraints.Constraint.BLOCK_DOME_BUILD.toInt();
+    private static final int WIN_BY_GOING_DOWN = GameConstraints.Constraint.WIN_BY_GOING_DOWN.toInt();
+
+    private ActionKernels() { }
+
+    /**
+     * Return the cells where a worker can move (MoveAction rules)
+     * A worker can't climb more than one level (none if BLOCK_MOVE_UP is active and the action doesn't set it),
+     * can't enter domes or cells of its own workers and enters opponent cells only with a push to a free cell
+     * or a swap
+     * @param from cell of the worker
+     * @param levels level masks, levels[l] are the cells with exactly level l (see Map.getLevelMask)
+     * @param domes cells with a dome
+     * @param own cells of the workers of the moving player
+     * @param opponents cells of the workers of the other players
+     * @param global global constraint mask
+     * @param local constraint mask of the move action
+     * @param lastCell cell left by the worker with its last move, Adjacency.NO_CELL if none
+     * @return cell mask
+     */
+    public static int moveMask(int from, int[] levels, int domes, int own, int opponents, int global, int local, int lastCell)
+    {
+        int merged = global | local;
+        boolean canMoveUp = (merged & BLOCK_MOVE_UP) == 0 || (local & SET_BLOCK_MOVE_UP) != 0;
+
+        int reachable = 0;
+        int highest = Math.min(levelOf(levels, from) + (canMoveUp ? 1 : 0), Map.MAX_BUILD_HEIGHT);
+        for (int l = 0; l <= highest; l++)
+            reachable |= levels[l];
+
+        int targets = Adjacency.neighbourMask(from) & reachable & ~domes & ~own;
+        if((merged & BLOCK_SAME_CELL_MOVE) != 0 && lastCell != Adjacency.NO_CELL)
+            targets &= ~(1 << lastCell);
+
+        int occupied = targets & opponents;
+        if((merged & CAN_PUSH) != 0)
+            targets &= ~occupied | pushable(from, occupied, ~(own | opponents | domes));
+        else if((merged & CAN_SWAP) == 0)
+            targets &= ~occupied;
+        return targets;
+    }
+
+    /**
+     * Return the cells where a worker can build (BuildAction and BuildDomeAction rules)
+     * @param from cell of the worker
+     * @param domes cells with a dome
+     * @param workers cells of all the workers
+     * @return cell mask
+     */
+    public static int buildMask(int from, int domes, int workers)
+    {
+        return Adjacency.neighbourMask(from) & ~domes & ~workers;
+    }
+
+    /**
+     * Return the cells where a worker can build again (BuildAgainAction rules)
+     * @param from cell of the worker
+     * @param levels level masks, levels[l] are the cells with exactly level l (see Map.getLevelMask)
+     * @param domes cells with a dome
+     * @param workers cells of all the workers
+     * @param constraints global and local constraint mask
+     * @param lastBuild cell of the last build of the worker, Adjacency.NO_CELL if none
+     * @return cell mask
+     */
+    public static int buildAgainMask(int from, int[] levels, int domes, int workers, int constraints, int lastBuild)
+    {
+        int targets = buildMask(from, domes, workers);
+        if((constraints & BLOCK_DOME_BUILD) != 0)
+            targets &= ~(levels[3] | levels[Map.MAX_BUILD_HEIGHT]);
+        if((constraints & BLOCK_DIFF_CELL_BUILD) != 0)
+            targets &= lastBuild == Adjacency.NO_CELL ? 0 : 1 << lastBuild;
+        if((constraints & BLOCK_SAME_CELL_BUILD) != 0 && lastBuild != Adjacency.NO_CELL)
+            targets &= ~(1 << lastBuild);
+        return targets;
+    }
+
+    /**
+     * Check if a move wins: a worker wins climbing on level 3, or going down two levels with WIN_BY_GOING_DOWN
+     * @param fromLevel level of the cell left by the worker
+     * @param toLevel level of the cell reached by the worker
+     * @param constraints global and local constraint mask
+     * @return true if the move wins
+     */
+    public static boolean isWin(int fromLevel, int toLevel, int constraints)
+    {
+        int difference = toLevel - fromLevel;
+        return (toLevel == 3 && difference >= 1) || (difference < -1 && (constraints & WIN_BY_GOING_DOWN) != 0);
+    }
+
+    /**
+     * Return the opponent cells a worker can enter pushing the opponent to a free cell
+     * @param from cell of the pushing worker
+     * @param targets adjacent opponent cells
+     * @param free cells without workers and domes
+     * @return pushable cells
+     */
+    public static int pushable(int from, int targets, int free)
+    {
+        int result = 0;
+        while (targets != 0)
+        {
+            int target = Integer.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+
+            int destination = Adjacency.pushDestination(from, Adjacency.direction(from, target));
+            if(destination != Adjacency.NO_CELL && (free & (1 << destination)) != 0)
+                result |= 1 << target;
+        }
+        return result;
+    }
+
+    /**
+     * Return the level of a cell
+     * @param levels level masks, levels[l] are the cells with exactly level l
+     * @param cell cell index
+     * @return cell level
+     */
+    public static int levelOf(int[] levels, int cell)
+    {
+        int bit = 1 << cell;
+        for (int l = 0; l < Map.MAX_BUILD_HEIGHT; l++)
+            if((levels[l] & bit) != 0)
+                return l;
+        return Map.MAX_BUILD_HEIGHT;
+    }
+
+    /**
+     * Return the cells where a worker of a map can move
+     * @param w worker to move
+     * @param m current map
+     * @param global global constraint mask
+     * @param local constraint mask of the move action
+     * @return cell mask, 0 if the worker is not placed
+     */
+    static int moveMask(Worker w, Map m, int global, int local)
+    {
+        int from = Map.cellIndex(w.getPosition());
+        if(from < 0)
+            return 0;
+
+        int own = m.getWorkerMask(w.getOwner());
+        return moveMask(from, m.getLevelMasks(), m.getDomeMask(), own, m.getWorkerMask() & ~own, global, local,
+                Map.cellIndex(w.getLastLocation()));
+    }
+
+    /**
+     * Return the cells where a worker of a map can build
+     * @param w worker doing the build
+     * @param m current map
+     * @return cell mask, 0 if the worker is not placed
+     */
+    static int buildMask(Worker w, Map m)
+    {
+        int from = Map.cellIndex(w.getPosition());
+        return from < 0 ? 0 : buildMask(from, m.getDomeMask(), m.getWorkerMask());
+    }
+
+    /**
+     * Return the cells where a worker of a map can build again
+     * @param w worker doing the build
+     * @param m current map
+     * @param constraints global and local constraint mask
+     * @return cell mask, 0 if the worker is not placed
+     */
+    static int buildAgainMask(Worker w, Map m, int constraints)
+    {
+        int from = Map.cellIndex(w.getPosition());
+        if(from < 0)
+            return 0;
+        return buildAgainMask(from, m.getLevelMasks(), m.getDomeMask(), m.getWorkerMask(), constraints,
+                Map.cellIndex(w.getLastBuildLocation()));
+    }
+}
@@ -0,0 +1,147 @@
+package it.polimi.ingsw.game;
+
+/**
+ * Precomputed neighbourhood tables of the map cells
+ * Cells are identified by their bitboard index (see Map.cellIndex) so actions can check neighbours
+ * without allocating positions or computing distances
+ */
+public final class Adjacency
+{
+    /**
+     * Number of directions around a cell
+     */
+    public static final int DIRECTIONS = 8;
+
+    /**
+     * Value returned by the tables when the requested cell is outside the map
+     */
+    public static final int NO_CELL = -1;
+
+    private static final int[] DX = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private static final int[] DY = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+    // [cell * DIRECTIONS + dir] -> cell index or NO_CELL
+    private static final int[] NEIGHBOUR = new int[Map.CELLS * DIRECTIONS];
+    // [cell * DIRECTIONS + dir] -> cell reached by a worker pushed from the neighbour in direction dir
+    private static final int[] PUSH_DESTINATION = new int[Map.CELLS * DIRECTIONS];
+    // [from * CELLS + to] -> direction from "from" to "to", NO_CELL if not adjacent
+    private static final int[] DIRECTION = new int[Map.CELLS * Map.CELLS];
+    // [cell] -> in map neighbours
+    private static final int[][] NEIGHBOURS = new int[Map.CELLS][];
+    // [cell] -> in map neighbours as bitmask
+    private static final int[] NEIGHBOUR_MASK = new int[Map.CELLS];
+
+    static
+    {
+        java.util.Arrays.fill(DIRECTION, NO_CELL);
+
+        for (int cell = 0; cell < Map.CELLS; cell++)
+        {
+            int x = cell / Map.LENGTH;
+            int y = cell % Map.LENGTH;
+            int count = 0;
+
+            for (int dir = 0; dir < DIRECTIONS; dir++)
+            {
+                NEIGHBOUR[cell * DIRECTIONS + dir] = toCell(x + DX[dir], y + DY[dir]);
+                PUSH_DESTINATION[cell * DIRECTIONS + dir] = toCell(x + 2 * DX[dir], y + 2 * DY[dir]);
+
+                int n = NEIGHBOUR[cell * DIRECTIONS + dir];
+                if(n != NO_CELL)
+                {
+                    DIRECTION[cell * Map.CELLS + n] = dir;
+                    NEIGHBOUR_MASK[cell] |= 1 << n;
+                    count++;
+                }
+            }
+
+            NEIGHBOURS[cell] = new int[count];
+            count = 0;
+            for (int dir = 0; dir < DIRECTIONS; dir++)
+            {
+                int n = NEIGHBOUR[cell * DIRECTIONS + dir];
+                if(n != NO_CELL)
+                    NEIGHBOURS[cell][count++] = n;
+            }
+        }
+    }
+
+    private Adjacency() { }
+
+    /**
+     * Return the neighbour of a cell in a direction
+     * @param cell starting cell
+     * @param dir direction (0 - 7)
+     * @return neighbour cell or NO_CELL if outside the map
+     */
+    public static int neighbour(int cell, int dir)
+    {
+        return NEIGHBOUR[cell * DIRECTIONS + dir];
+    }
+
+    /**
+     * Return the cell where a worker placed near cell in direction dir ends after a push
+     * @param cell cell of the pushing worker
+     * @param dir direction of the pushed worker
+     * @return push destination or NO_CELL if outside the map
+     */
+    public static int pushDestination(int cell, int dir)
+    {
+        return PUSH_DESTINATION[cell * DIRECTIONS + dir];
+    }
+
+    /**
+     * Return the direction that links two adjacent cells
+     * @param from starting cell
+     * @param to destination cell
+     * @return direction or NO_CELL if cells are not adjacent
+     */
+    public static int direction(int from, int to)
+    {
+        return DIRECTION[from * Map.CELLS + to];
+    }
+
+    /**
+     * Return the neighbours of a cell that are inside the map
+     * The returned array is shared and must not be modified
+     * @param cell cell to check
+     * @return neighbour cells
+     */
+    public static int[] neighbours(int cell)
+    {
+        return NEIGHBOURS[cell];
+    }
+
+    /**
+     * Return the neighbours of a cell as a bitmask
+     * @param cell cell to check
+     * @return neighbour mask
+     */
+    public static int neighbourMask(int cell)
+    {
+        return NEIGHBOUR_MASK[cell];
+    }
+
+    /**
+     * Return the position of a cell index
+     * @param cell cell index
+     * @return shared position in the map
+     */
+    public static Vector2 position(int cell)
+    {
+        return Vector2.of(cell);
+    }
+
+    /**
+     * Convert coordinates to a cell index checking map bounds
+     * @param x row index
+     * @param y col index
+     * @return cell index or NO_CELL if outside map
+     */
+    private static int toCell(int x, int y)
+    {
+        if(x < 0 || x >= Map.HEIGHT || y < 0 || y >= Map.LENGTH)
+            return NO_CELL;
+        return Map.cellIndex(x, y);
+    }
+}
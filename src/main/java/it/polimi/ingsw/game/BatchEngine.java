@@ -0,0 +1,607 @@
+package it.polimi.ingsw.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Batched engine that plays random turns on many independent two player boards at the same time
+ * Boards are stored as a struct of arrays: every field of the state (level masks, dome mask, worker cells,
+ * global constraint mask, current player, winner...) is a primitive array indexed by board, so a pass over
+ * all the boards reads contiguous memory and no Game, Map, Worker or Turn object is touched.
+ * Cards are shared compiled graphs (see CompiledGraph) and turns are walked with the node id as cursor.
+ * Legal cells and wins come from the ActionKernels used by the actions, CompiledGraph and ThreatDetector,
+ * so the engine can't drift from the rules of the object engine.
+ * Every call to step plays one complete random turn on every running board, turns are chosen with the same
+ * uniform distribution over complete turns used by RandomBot, so the engine is meant for random playouts
+ * (Monte Carlo rollouts, evaluation tuning data) where the object engine spends most of its time in overhead.
+ * Boards rest at the start of a turn between passes, a board is finished when a player wins or the player
+ * to move has no complete turn (and loses, like in Game).
+ * An engine is not thread safe, every thread should use its own engine
+ */
+public final class BatchEngine
+{
+    /**
+     * Winner of a board that is still running
+     */
+    public static final int RUNNING = -1;
+
+    private static final int PLAYERS = 2;
+    private static final int WORKERS = PLAYERS * Game.WORKERS_PER_PLAYER;
+    private static final int LEVELS = Map.MAX_BUILD_HEIGHT + 1;
+
+    private static final int BLOCK_MOVE_UP = GameConstraints.Constraint.BLOCK_MOVE_UP.toInt();
+    private static final int SET_BLOCK_MOVE_UP = GameConstraints.Constraint.SET_BLOCK_MOVE_UP.toInt();
+    private static final int CAN_PUSH = GameConstraints.Constraint.CAN_PUSH_CONSTRAINT.toInt();
+
+    private final SplittableRandom random;
+
+    // compiled graphs of the cards, boards store an index of this list
+    private final ArrayList<CompiledGraph> graphs = new ArrayList<>();
+
+    /*
+     *  Board arrays, element b is the state of board b
+     *
+     *  levels[l]       cells with exactly level l (same layout of Map)
+     *  domes           cells with a dome
+     *  cells[s]        cell of worker slot s = player * WORKERS_PER_PLAYER + worker (worker order of Player.getWorkers)
+     *  constraints     global constraint mask (see GameConstraints.toInt)
+     *  cards[p]        index in graphs of the card of player p
+     *  players         player to move (index of Game.getPlayer)
+     *  winners         winner player or RUNNING
+     *  turns           turns played by the engine
+     *  lastTurns       last turn played, encoded like TurnGenerator
+     */
+    private int size;
+    private final int[][] levels = new int[LEVELS][];
+    private int[] domes;
+    private final int[][] cells = new int[WORKERS][];
+    private int[] constraints;
+    private final int[][] cards = new int[PLAYERS][];
+    private int[] players;
+    private int[] winners;
+    private int[] turns;
+    private long[] lastTurns;
+
+    // state of the board whose turn is being searched
+    private final int[] level = new int[LEVELS];
+    private int dome;
+    private final int[] cell = new int[WORKERS];
+    private int gc;
+    private int lastMove;
+    private int lastBuild;
+    private int mover;
+    private CompiledGraph graph;
+
+    // turn selected by reservoir sampling and its final state
+    private boolean sample;
+    private int leaves;
+    private long chosenTurn;
+    private boolean chosenWin;
+    private final int[] chosenLevel = new int[LEVELS];
+    private int chosenDome;
+    private final int[] chosenCell = new int[WORKERS];
+    private int chosenGc;
+
+    /**
+     * Create an empty engine
+     * @param capacity expected number of boards, arrays grow if more boards are added
+     * @param seed seed of the random turns
+     */
+    public BatchEngine(int capacity, long seed)
+    {
+        if(capacity < 1)
+            throw new IllegalArgumentException("Engine needs room for at least one board");
+
+        random = new SplittableRandom(seed);
+        allocate(capacity);
+    }
+
+    /**
+     * Copy the position of a running game into a new board
+     * @param game two player game in GAME state at the start of a turn (no worker selected)
+     * @return board index
+     * @throws IllegalArgumentException if the game can't be simulated by the engine
+     */
+    public int add(Game game)
+    {
+        Turn turn = game.getCurrentTurn();
+        if(game.getCurrentState() != Game.GameState.GAME || game.playerCount() != PLAYERS || turn == null
+                || turn.getWorker() != null || !turn.getCursor().isAtRoot())
+            throw new IllegalArgumentException("Only two player games at the start of a turn can be simulated");
+
+        int[] boardCards = new int[PLAYERS];
+        int[] boardCells = new int[WORKERS];
+        for (int p = 0; p < PLAYERS; p++)
+        {
+            Player player = game.getPlayer(p);
+            if(player.getWorkers().size() != Game.WORKERS_PER_PLAYER)
+                throw new IllegalArgumentException("Player " + p + " is not ready");
+
+            // players without a god get the default card when their first turn starts
+            Card card = player.getGod() == null ? CardCollection.noGodCard() : player.getGod();
+            boardCards[p] = graphIndex(card.getGraph().getCompiled());
+            for (int w = 0; w < Game.WORKERS_PER_PLAYER; w++)
+                boardCells[p * Game.WORKERS_PER_PLAYER + w] = Map.cellIndex(player.getWorkers().get(w).getPosition());
+        }
+
+        if(size == players.length)
+            allocate(size * 2);
+
+        int b = size++;
+        Map m = game.getCurrentMap();
+        for (int l = 0; l < LEVELS; l++)
+            levels[l][b] = m.getLevelMask(l);
+        domes[b] = m.getDomeMask();
+        for (int s = 0; s < WORKERS; s++)
+            cells[s][b] = boardCells[s];
+        constraints[b] = game.getGlobalConstraintMask();
+        for (int p = 0; p < PLAYERS; p++)
+            cards[p][b] = boardCards[p];
+        players[b] = game.getPlayers().indexOf(game.getCurrentPlayer());
+        winners[b] = RUNNING;
+        turns[b] = 0;
+        lastTurns[b] = 0;
+        return b;
+    }
+
+    /**
+     * Remove every board, compiled graphs and allocated arrays are kept
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Return the number of boards
+     * @return boards
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Play one random complete turn on every running board
+     * @return number of boards still running after the pass
+     */
+    public int step()
+    {
+        int running = 0;
+        for (int b = 0; b < size; b++)
+        {
+            if(winners[b] != RUNNING)
+                continue;
+
+            playTurn(b);
+            if(winners[b] == RUNNING)
+                running++;
+        }
+        return running;
+    }
+
+    /**
+     * Play passes until every board is finished or a max number of passes
+     * @param maxPasses max number of passes (turns played by every board)
+     * @return number of boards still running, they can be counted as draws
+     */
+    public int run(int maxPasses)
+    {
+        int running = running();
+        for (int pass = 0; pass < maxPasses && running > 0; pass++)
+            running = step();
+        return running;
+    }
+
+    /**
+     * Return the number of running boards
+     * @return boards without a winner
+     */
+    public int running()
+    {
+        int running = 0;
+        for (int b = 0; b < size; b++)
+            running += winners[b] == RUNNING ? 1 : 0;
+        return running;
+    }
+
+    /**
+     * Return the number of finished boards won by a player
+     * @param player player index (see Game.getPlayer)
+     * @return won boards
+     */
+    public int wins(int player)
+    {
+        int wins = 0;
+        for (int b = 0; b < size; b++)
+            wins += winners[b] == player ? 1 : 0;
+        return wins;
+    }
+
+    /**
+     * Return the level of a cell of a board
+     * @param board board index
+     * @param cell cell index
+     * @return cell level (0 - 4)
+     */
+    public int getLevel(int board, int cell)
+    {
+        int bit = 1 << cell;
+        for (int l = 0; l < Map.MAX_BUILD_HEIGHT; l++)
+            if((levels[l][board] & bit) != 0)
+                return l;
+        return Map.MAX_BUILD_HEIGHT;
+    }
+
+    /**
+     * Return the cells of a board that have exactly a level
+     * @param board board index
+     * @param level level (0 - 4)
+     * @return level mask
+     */
+    public int getLevelMask(int board, int level)
+    {
+        return levels[level][board];
+    }
+
+    /**
+     * Return the cells of a board with a dome
+     * @param board board index
+     * @return dome mask
+     */
+    public int getDomeMask(int board)
+    {
+        return domes[board];
+    }
+
+    /**
+     * Return the cell of a worker of a board
+     * @param board board index
+     * @param player player index (see Game.getPlayer)
+     * @param worker worker index (see Player.getWorkers)
+     * @return cell index
+     */
+    public int getWorkerCell(int board, int player, int worker)
+    {
+        return cells[player * Game.WORKERS_PER_PLAYER + worker][board];
+    }
+
+    /**
+     * Return the global constraints of a board
+     * @param board board index
+     * @return constraint mask (see GameConstraints.toInt)
+     */
+    public int getConstraintMask(int board)
+    {
+        return constraints[board];
+    }
+
+    /**
+     * Return the player to move of a board
+     * @param board board index
+     * @return player index (see Game.getPlayer)
+     */
+    public int getCurrentPlayer(int board)
+    {
+        return players[board];
+    }
+
+    /**
+     * Return the winner of a board
+     * @param board board index
+     * @return player index or RUNNING
+     */
+    public int getWinner(int board)
+    {
+        return winners[board];
+    }
+
+    /**
+     * Return the number of turns played on a board
+     * @param board board index
+     * @return turns
+     */
+    public int getTurns(int board)
+    {
+        return turns[board];
+    }
+
+    /**
+     * Return the last turn played on a board
+     * @param board board index
+     * @return encoded turn (see TurnGenerator), 0 if no turn was played
+     */
+    public long getLastTurn(int board)
+    {
+        return lastTurns[board];
+    }
+
+    /**
+     * Count the complete turns of the player to move of a board, the board is not changed
+     * @param board board index
+     * @return number of turns, same as TurnGenerator.generate on the same position
+     */
+    int countTurns(int board)
+    {
+        load(board);
+        sample = false;
+        leaves = 0;
+        for (int w = 0; w < Game.WORKERS_PER_PLAYER; w++)
+            selectWorker(w);
+        return leaves;
+    }
+
+    /**
+     * Play a random complete turn on a running board
+     * @param b board index
+     */
+    private void playTurn(int b)
+    {
+        load(b);
+        sample = true;
+        leaves = 0;
+        for (int w = 0; w < Game.WORKERS_PER_PLAYER; w++)
+            selectWorker(w);
+
+        if(leaves == 0)
+        {
+            winners[b] = 1 - mover; // stuck players lose
+            return;
+        }
+
+        for (int l = 0; l < LEVELS; l++)
+            levels[l][b] = chosenLevel[l];
+        domes[b] = chosenDome;
+        for (int s = 0; s < WORKERS; s++)
+            cells[s][b] = chosenCell[s];
+        constraints[b] = chosenGc;
+        lastTurns[b] = chosenTurn;
+        turns[b]++;
+
+        if(chosenWin)
+            winners[b] = mover;
+        else
+            players[b] = 1 - mover;
+    }
+
+    /**
+     * Copy a board into the search state
+     * @param b board index
+     */
+    private void load(int b)
+    {
+        for (int l = 0; l < LEVELS; l++)
+            level[l] = levels[l][b];
+        dome = domes[b];
+        for (int s = 0; s < WORKERS; s++)
+            cell[s] = cells[s][b];
+        gc = constraints[b];
+        mover = players[b];
+        graph = graphs.get(cards[mover][b]);
+    }
+
+    /**
+     * Start the turn with a worker, like Turn.selectWorker the last locations are reset
+     * @param worker worker index of the player to move
+     */
+    private void selectWorker(int worker)
+    {
+        lastMove = Adjacency.NO_CELL;
+        lastBuild = Adjacency.NO_CELL;
+        expand(CompiledGraph.ROOT, mover * Game.WORKERS_PER_PLAYER + worker, 0, worker);
+    }
+
+    /**
+     * Depth first expansion of the children of a node, same order and rules of TurnGenerator
+     * Every complete turn is counted and, when sampling, kept with probability 1 / turns counted until now
+     * @param node current node id
+     * @param slot worker slot doing the turn
+     * @param depth current step
+     * @param prefix encoded steps executed until now
+     */
+    private void expand(int node, int slot, int depth, long prefix)
+    {
+        if(depth >= TurnGenerator.MAX_STEPS)
+            throw new IllegalStateException("Turn is too long to be encoded");
+
+        int count = graph.getChildCount(node);
+        for (int action = 0; action < count; action++)
+        {
+            int child = graph.getChild(node, action);
+            switch (graph.getOpcode(child))
+            {
+                case CompiledGraph.OP_MOVE:
+                    expandMove(child, action, slot, depth, prefix);
+                    break;
+                case CompiledGraph.OP_BUILD:
+                case CompiledGraph.OP_BUILD_AGAIN:
+                case CompiledGraph.OP_BUILD_DOME:
+                    expandBuild(child, action, slot, depth, prefix);
+                    break;
+                case CompiledGraph.OP_END_TURN:
+                    next(child, slot, depth, TurnGenerator.appendStep(prefix, action, Map.cellIndex(0, 0)), false);
+                    break;
+                default:
+                    throw new IllegalStateException("Action can't be simulated");
+            }
+        }
+    }
+
+    /**
+     * Expand every legal target of a move node (MoveAction rules, see ActionKernels.moveMask)
+     * @param child move node id
+     * @param action child index of the node
+     * @param slot worker slot doing the turn
+     * @param depth current step
+     * @param prefix encoded steps executed until now
+     */
+    private void expandMove(int child, int action, int slot, int depth, long prefix)
+    {
+        int local = graph.getLocalConstraints(child);
+        int merged = local | gc;
+        int from = cell[slot];
+        int height = ActionKernels.levelOf(level, from);
+
+        int first = mover * Game.WORKERS_PER_PLAYER;
+        int other = (1 - mover) * Game.WORKERS_PER_PLAYER;
+        int own = (1 << cell[first]) | (1 << cell[first + 1]);
+        int opponents = (1 << cell[other]) | (1 << cell[other + 1]);
+        int targets = ActionKernels.moveMask(from, level, dome, own, opponents, gc, local, lastMove);
+
+        boolean setBlock = (local & SET_BLOCK_MOVE_UP) != 0;
+        int savedGc = gc;
+        int savedLastMove = lastMove;
+        while (targets != 0)
+        {
+            int target = Integer.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+
+            // opponent worker on the target, if any
+            int moved = cell[other] == target ? other : cell[other + 1] == target ? other + 1 : -1;
+            if(moved >= 0)
+                cell[moved] = (merged & CAN_PUSH) != 0 ? Adjacency.pushDestination(from, Adjacency.direction(from, target)) : from;
+            cell[slot] = target;
+            lastMove = from;
+
+            int targetLevel = ActionKernels.levelOf(level, target);
+            if(setBlock)
+                gc = targetLevel > height ? savedGc | BLOCK_MOVE_UP : savedGc & ~BLOCK_MOVE_UP;
+
+            boolean win = ActionKernels.isWin(height, targetLevel, merged);
+            next(child, slot, depth, TurnGenerator.appendStep(prefix, action, target), win);
+
+            if(moved >= 0)
+                cell[moved] = target;
+            cell[slot] = from;
+            lastMove = savedLastMove;
+            gc = savedGc;
+        }
+    }
+
+    /**
+     * Expand every legal target of a build node (BuildAction, BuildAgainAction and BuildDomeAction rules,
+     * see ActionKernels.buildMask and ActionKernels.buildAgainMask)
+     * @param child build node id
+     * @param action child index of the node
+     * @param slot worker slot doing the turn
+     * @param depth current step
+     * @param prefix encoded steps executed until now
+     */
+    private void expandBuild(int child, int action, int slot, int depth, long prefix)
+    {
+        int opcode = graph.getOpcode(child);
+        int workers = 0;
+        for (int s = 0; s < WORKERS; s++)
+            workers |= 1 << cell[s];
+
+        int targets = opcode == CompiledGraph.OP_BUILD_AGAIN
+                ? ActionKernels.buildAgainMask(cell[slot], level, dome, workers, graph.getLocalConstraints(child) | gc, lastBuild)
+                : ActionKernels.buildMask(cell[slot], dome, workers);
+
+        int savedLastMove = lastMove;
+        int savedLastBuild = lastBuild;
+        while (targets != 0)
+        {
+            int target = Integer.numberOfTrailingZeros(targets);
+            int bit = 1 << target;
+            targets &= targets - 1;
+
+            long encoded = TurnGenerator.appendStep(prefix, action, target);
+            if(opcode == CompiledGraph.OP_BUILD_DOME)
+            {
+                dome |= bit;
+                lastMove = target; // like BuildDomeAction
+                next(child, slot, depth, encoded, false);
+                dome &= ~bit;
+                lastMove = savedLastMove;
+            }
+            else
+            {
+                int l = ActionKernels.levelOf(level, target);
+                level[l] &= ~bit;
+                level[l + 1] |= bit;
+                if(l + 1 == Map.MAX_BUILD_HEIGHT)
+                    dome |= bit;
+                lastBuild = target;
+
+                next(child, slot, depth, encoded, false);
+
+                level[l + 1] &= ~bit;
+                level[l] |= bit;
+                dome &= l + 1 == Map.MAX_BUILD_HEIGHT ? ~bit : ~0;
+                lastBuild = savedLastBuild;
+            }
+        }
+    }
+
+    /**
+     * Continue the turn after a step, or count it if the step won or ended the turn
+     * @param child node reached by the step
+     * @param slot worker slot doing the turn
+     * @param depth step index
+     * @param encoded encoded turn including the step
+     * @param win true if the step won the game
+     */
+    private void next(int child, int slot, int depth, long encoded, boolean win)
+    {
+        if(!win && !graph.isTerminal(child))
+        {
+            expand(child, slot, depth + 1, encoded);
+            return;
+        }
+
+        leaves++;
+        if(sample && random.nextInt(leaves) == 0)
+        {
+            chosenTurn = encoded;
+            chosenWin = win;
+            System.arraycopy(level, 0, chosenLevel, 0, LEVELS);
+            chosenDome = dome;
+            System.arraycopy(cell, 0, chosenCell, 0, WORKERS);
+            chosenGc = gc;
+        }
+    }
+
+    /**
+     * Return the index of a compiled graph, adding it to the card list if needed
+     * @param compiled compiled graph of a card
+     * @return graph index
+     * @throws IllegalArgumentException if the graph can't be simulated
+     */
+    private int graphIndex(CompiledGraph compiled)
+    {
+        for (int i = 0; i < graphs.size(); i++)
+            if(graphs.get(i) == compiled)
+                return i;
+
+        if(compiled.getMaxChildren() > TurnGenerator.MAX_ACTION + 1)
+            throw new IllegalArgumentException("Graph can't be encoded");
+        for (int node = 0; node < compiled.size(); node++)
+            if(compiled.getOpcode(node) == CompiledGraph.OP_CUSTOM)
+                throw new IllegalArgumentException("Card has actions that can't be simulated");
+
+        graphs.add(compiled);
+        return graphs.size() - 1;
+    }
+
+    /**
+     * Grow the board arrays, current boards are kept
+     * @param capacity new number of boards
+     */
+    private void allocate(int capacity)
+    {
+        for (int l = 0; l < LEVELS; l++)
+            levels[l] = levels[l] == null ? new int[capacity] : Arrays.copyOf(levels[l], capacity);
+        for (int s = 0; s < WORKERS; s++)
+            cells[s] = cells[s] == null ? new int[capacity] : Arrays.copyOf(cells[s], capacity);
+        for (int p = 0; p < PLAYERS; p++)
+            cards[p] = cards[p] == null ? new int[capacity] : Arrays.copyOf(cards[p], capacity);
+        domes = domes == null ? new int[capacity] : Arrays.copyOf(domes, capacity);
+        constraints = constraints == null ? new int[capacity] : Arrays.copyOf(constraints, capacity);
+        players = players == null ? new int[capacity] : Arrays.copyOf(players, capacity);
+        winners = winners == null ? new int[capacity] : Arrays.copyOf(winners, capacity);
+        turns = turns == null ? new int[capacity] : Arrays.copyOf(turns, capacity);
+        lastTurns = lastTurns == null ? new long[capacity] : Arrays.copyOf(lastTurns, capacity);
+    }
+}
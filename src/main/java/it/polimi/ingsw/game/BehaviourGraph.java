@@ -1,19 +1,15 @@
 package it.polimi.ingsw.game;
 
-import java.util.ArrayList;
-import java.util.Stack;
-
 /**
  * Set of actions that describes a god action in the game.
- * You should not reuse a graph for multiple cards because this class stores the current execution progress of the actions.
- * No isolation for reuse is provided, share a graph at your own risk.
+ * A graph holds only the rule tree and no execution progress, use newCursor to walk it during a turn.
+ * Once sealed the graph can't be changed and can be shared between games and threads (see CardCollection)
  */
 public class BehaviourGraph
 {
     final private BehaviourNode rootNode;
-    private BehaviourNode currentNode;
-    private boolean alreadyRun;
-    final private Stack<BehaviourNode> executionStack;
+    private boolean sealed;
+    private CompiledGraph compiled;
 
     /**
      * Create a empty graph
@@ -21,100 +17,33 @@ public class BehaviourGraph
     public BehaviourGraph()
     {
         rootNode = BehaviourNode.makeRootNode(null);
-        executionStack = new Stack<>();
-        resetExecutionStatus();
-    }
-
-    /**
-     * Reset the current use status of this ActionSequence to the root element
-     * Should be called every turn start
-     */
-    public void resetExecutionStatus() {
-        currentNode = rootNode;
-        alreadyRun = true; // root node has no action
-        executionStack.clear();
+        sealed = false;
     }
 
     /**
-     * Return the current node
-     * @return return the current node
+     * Return the root node of the graph, root node has no action
+     * @return root node
      */
-    public BehaviourNode getCurrentNode() {
-        return currentNode;
-    }
-
-
-    /**
-     * Select one of the actions returned by getNextActions using array index
-     * @param pos action index used to select the next operation (index obtained from action list)
-     * @throws OutOfGraphException if there is no node with the specified index
-     */
-    public void selectAction(int pos) throws OutOfGraphException
+    public BehaviourNode getRootNode()
     {
-        executionStack.push(currentNode);
-        currentNode = currentNode.getNextNode(pos);
-        alreadyRun = false;
+        return rootNode;
     }
 
     /**
-     * Run the action selected with SelectAction, calling two times the same selected action has no effect
-     * @param w target worker used in this action
-     * @param target target position where the action should take place
-     * @param m map where the action is executed
-     * @param globalConstrains global game constrains that should be applied before action execution
-     * @return int value : 0 if player can continue, greater 0 if player met a win condition, lower 0 if player met a lose condition
-     * @throws NotAllowedMoveException if and illegal move is detected
+     * Create a new execution cursor placed on the root of this graph
+     * @return new cursor
      */
-    public int runSelectedAction(Worker w, Vector2 target, Map m, GameConstraints globalConstrains) throws NotAllowedMoveException
+    public GraphCursor newCursor()
     {
-        try
-        {
-            if (!alreadyRun && currentNode.getAction() != null)
-            {
-                int res = currentNode.getAction().run(w, target, m, globalConstrains);
-                alreadyRun = true;
-                return res;
-            }
-            return -1; //break the game if errors happens here
-
-        }catch (NotAllowedMoveException e)
-        {
-            // move back in case of a wrong move
-            if(executionStack.isEmpty())
-                currentNode = rootNode;
-            else
-                currentNode = executionStack.pop();
-
-            throw e; // notify caller of the error
-        }
-    }
-
-    /**
-     * Returns if the current execution of the graph is ended
-     * @return true if execution is ended
-     */
-    public boolean isExecutionEnded() {
-        return currentNode.getNextActionCount() <= 0;
+        return new GraphCursor(this);
     }
 
     /**
-     * Returns next actions(name and available cells)
-     * @param w target worker to use to calculate next valid action
-     * @param m current game map
-     * @param constraints constraints to apply
-     * @return ArrayList of NextAction from the current node
-     */
-    public ArrayList<NextAction> getNextActions(Worker w, Map m, GameConstraints constraints) {
-        return currentNode.getNextActions(w,m,constraints);
-    }
-
-    /**
-     * Returns next actions names in an array
-     * This array index is used in SelectAction to select next move
+     * Returns the names of the actions that can start a turn
      * @return and array of action names
      */
     public String[] getNextActionNames() {
-        return currentNode.getNextActionNames();
+        return rootNode.getNextActionNames();
     }
 
 
@@ -123,8 +52,12 @@ public class BehaviourGraph
      * This function is used to create multiple choice at the beginning of a turn
      * @param node node to add to the graph
      * @return current graph
+     * @throws UnsupportedOperationException if the graph is sealed
      */
     public BehaviourGraph appendSubGraph(BehaviourNode node) {
+        if(sealed)
+            throw new UnsupportedOperationException("Graph is sealed");
+
         if(node != null){
             rootNode.addBranch(node);
         }
@@ -133,25 +66,57 @@ public class BehaviourGraph
     }
 
     /**
-     * Move back to previous executed node
-     * Yo can go back to the root node by call this function more times
+     * Prevent any further change to the graph and its nodes so it can be shared
+     * Nodes keep the keys generated when they were created
+     * @return current graph
+     */
+    BehaviourGraph seal()
+    {
+        if(!sealed)
+        {
+            sealed = true;
+            rootNode.seal();
+            compiled = CompiledGraph.compile(this);
+        }
+        return this;
+    }
+
+    /**
+     * Prevent any further change to the graph and its nodes so it can be shared
+     * Nodes get keys derived from the card id and from their id in the compiled graph (see Zobrist.nodeKey),
+     * so hashes don't depend on the order graphs are created and are the same in every JVM
+     * @param card id of the card of the graph
+     * @return current graph
+     */
+    BehaviourGraph seal(int card)
+    {
+        if(!sealed)
+        {
+            CompiledGraph numbering = CompiledGraph.compile(this);
+            for (int node = 0; node < numbering.size(); node++)
+                numbering.getNode(node).setKey(Zobrist.nodeKey(card, node));
+            seal();
+        }
+        return this;
+    }
+
+    /**
+     * Return the table version of this graph
+     * Sealed graphs are compiled once and share the same tables, other graphs are compiled on every call
+     * @return compiled graph
      */
-    public void rollback()
+    public CompiledGraph getCompiled()
     {
-        if(executionStack.isEmpty())
-            currentNode = rootNode;
-        else
-            currentNode = executionStack.pop();
-        alreadyRun = false;
+        return sealed ? compiled : CompiledGraph.compile(this);
     }
 
     /**
-     * Return true if current node is the root of the graph
-     * @return true if current node is root of the graph
+     * Check if this graph is sealed and can be shared
+     * @return true if sealed
      */
-    public boolean isAtRoot()
+    public boolean isSealed()
     {
-        return currentNode == rootNode;
+        return sealed;
     }
 
     /**
@@ -2,6 +2,7 @@ package it.polimi.ingsw.game;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -9,6 +10,7 @@ import java.util.List;
  * Node of the behaviour graph.
  * The node action should not be changed after creation
  * It's also recommend to no use use graph build helpers to change the graph after it's creation
+ * Nodes of a sealed graph can't be changed anymore (see BehaviourGraph.seal)
  */
 public class BehaviourNode
 {
@@ -18,6 +20,9 @@ public class BehaviourNode
 
     private List<BehaviourNode> childNodes;
 
+    private long key;
+
+    private boolean sealed;
 
     private BehaviourNode(Action action)
     {
@@ -29,14 +34,15 @@ public class BehaviourNode
         this.action = action;
         childNodes = new ArrayList<>();
         this.parent = parent;
+        this.key = Zobrist.nextNodeKey();
     }
 
     /**
      * Return current node children
-     * @return children list
+     * @return read only children list
      */
     public List<BehaviourNode> getChildNodes() {
-        return childNodes;
+        return Collections.unmodifiableList(childNodes);
     }
 
     /**
@@ -51,12 +57,34 @@ public class BehaviourNode
     /**
      * Set the parent of this node
      * @param parent new parent node
+     * @throws UnsupportedOperationException if the node is sealed
      */
     public void setParent(BehaviourNode parent)
     {
+        checkNotSealed();
         this.parent = parent;
     }
 
+    /**
+     * Return the Zobrist key of this node, used to hash the progress of a turn
+     * @return node key
+     */
+    public long getKey()
+    {
+        return key;
+    }
+
+    /**
+     * Set the Zobrist key of this node, see BehaviourGraph.seal
+     * @param key node key
+     * @throws UnsupportedOperationException if the node is sealed
+     */
+    void setKey(long key)
+    {
+        checkNotSealed();
+        this.key = key;
+    }
+
     /**
      * Return node action
      * @return node action
@@ -74,11 +102,11 @@ public class BehaviourNode
 
         for(BehaviourNode n : childNodes)
         {
-            NextAction nextAction = new NextAction(w,m,constraints,n);
+            int mask = n.getAction().possibleCellsMask(w, m, constraints);
 
             //add only valid nodes with at least one possible position
-            if(nextAction.getAvailablePositions().size() > 0)
-                nodes.add(nextAction);
+            if(mask != 0)
+                nodes.add(new NextAction(w, n.getAction().displayName(), mask));
         }
 
         return nodes;
@@ -137,9 +165,11 @@ public class BehaviourNode
      * Create a new branch from the current node with an already existing node (== or)
      * @param node first node of the new branch
      * @return branch root node
+     * @throws UnsupportedOperationException if the node is sealed
      */
     public BehaviourNode addBranch(BehaviourNode node)
     {
+        checkNotSealed();
         childNodes.add(node);
         node.setParent(this);
         return this;
@@ -150,6 +180,7 @@ public class BehaviourNode
      * This functions create a new node for the action used
      * @param act action to use
      * @return branch root node
+     * @throws UnsupportedOperationException if the node is sealed
      */
     public BehaviourNode addBranch(Action act){
         return  addBranch(new BehaviourNode(act));
@@ -160,8 +191,10 @@ public class BehaviourNode
      * This function can be used to concatenate single branch items
      * @param node branch destination node
      * @return branch destination node
+     * @throws UnsupportedOperationException if the node is sealed
      */
     public BehaviourNode mergeBranches(BehaviourNode node){
+        checkNotSealed();
         if(childNodes.size() > 0 )
         {
             for (int i = 0; i < childNodes.size(); i++)
@@ -181,6 +214,7 @@ public class BehaviourNode
      * Merge all branches that starts in the current node into a new node with the specified action
      * @param act action to assign to destination node
      * @return branch destination node
+     * @throws UnsupportedOperationException if the node is sealed
      */
     public BehaviourNode mergeBranches(Action act){
         return  mergeBranches(new BehaviourNode(act));
@@ -190,9 +224,11 @@ public class BehaviourNode
      * Set "forced" next node. This function deletes all current next nodes and sets only the parameter as next node
      * @param node next node to set
      * @return next node
+     * @throws UnsupportedOperationException if the node is sealed
      */
     public BehaviourNode setNext(BehaviourNode node)
     {
+        checkNotSealed();
         node.setParent(this);
         childNodes.clear();
         childNodes.add(node);
@@ -203,6 +239,7 @@ public class BehaviourNode
      * Set "forced" next node. This function deletes all current next nodes and sets only the parameter as next node (generated with action)
      * @param act action to use in the new node
      * @return generated node
+     * @throws UnsupportedOperationException if the node is sealed
      */
     public BehaviourNode setNext(Action act){
         return setNext(new BehaviourNode(act));
@@ -220,4 +257,36 @@ public class BehaviourNode
         return itr;
     }
 
+    /**
+     * Prevent any further change to this node and to all the nodes reachable from it
+     */
+    void seal()
+    {
+        if(sealed)
+            return;
+
+        sealed = true;
+        for(BehaviourNode n : childNodes)
+            n.seal();
+    }
+
+    /**
+     * Check if this node is sealed
+     * @return true if sealed
+     */
+    public boolean isSealed()
+    {
+        return sealed;
+    }
+
+    /**
+     * Throw if the node can't be changed anymore
+     * @throws UnsupportedOperationException if the node is sealed
+     */
+    private void checkNotSealed()
+    {
+        if(sealed)
+            throw new UnsupportedOperationException("Graph is sealed");
+    }
+
 }
@@ -1,7 +1,5 @@
 package it.polimi.ingsw.game;
 
-import java.util.ArrayList;
-
 /**
  * This action allows players to build structures around the map
  */
@@ -19,6 +17,18 @@ public class BuildAction extends Action
     }
 
 
+    @Override
+    int opcode()
+    {
+        return getClass() == BuildAction.class ? CompiledGraph.OP_BUILD : CompiledGraph.OP_CUSTOM;
+    }
+
+    @Override
+    int localConstraintMask()
+    {
+        return localConstrains.toInt();
+    }
+
     /**
      * Build into a cell
      * @param w worker that performs the build
@@ -44,59 +54,52 @@ public class BuildAction extends Action
     @Override
     public int run(Worker w, Vector2 target, Map m, GameConstraints gc) throws NotAllowedMoveException {
 
-        GameConstraints gcm = mergeConstraints(localConstrains, gc);
-
-        ArrayList<Vector2> allowedCells = possibleCells(w, m, gcm);
-        if (allowedCells.size() == 0)
+        int allowedCells = possibleCellsMask(w, m, GameConstraints.toInt(gc));
+        if (allowedCells == 0)
             return -1;
 
-        if (allowedCells.contains(target))
-            build(w, target, m, gc);
-        else
+        if (!isCellInMask(allowedCells, target))
             throw new NotAllowedMoveException();
-        return 0;
+
+        return runValidated(w, target, m, gc);
     }
 
     /**
-     * Check a move (valid place position) is allowed or not
-     * @param w current worker
-     * @param target target build position
-     * @param m current map
-     * @param gc constraints to apply (could be used in overloads)
-     * @return true if a build can performed in target cell
+     * Apply build action to a valid cell without generating valid cells again
+     * @param w target worker used in this action
+     * @param target valid target position
+     * @param m map where the action is executed
+     * @param gc collection of Constraints
+     * @return 0 = continue
      */
-    protected boolean isValidMove(Worker w, Vector2 target, Map m, GameConstraints gc)
+    @Override
+    int runValidated(Worker w, Vector2 target, Map m, GameConstraints gc)
     {
-        return m.isInsideMap(target) && !w.getPosition().equals(target) && !m.isCellDome(target) && m.isCellEmpty(target);
+        build(w, target, m, gc);
+        return 0;
     }
 
     /**
-     * Return all valid cells where a build can be performed
+     * Return a mask of all valid cells where a build can be performed (see ActionKernels.buildMask)
      * @param w worker doing the job
      * @param m current map
      * @param gc list of constraints
-     * @return an ArrayList of Vector2 objects, representing all the possible cells i can run the action
+     * @return mask of all the possible cells i can run the action
      */
     @Override
-    public ArrayList<Vector2> possibleCells(Worker w, Map m, GameConstraints gc) {
-
-        GameConstraints gmc = mergeConstraints(localConstrains, gc);
-
-        ArrayList<Vector2> cells = new ArrayList<>();
-
-        int x = w.getPosition().getX();
-        int y = w.getPosition().getY();
-
-        for (int i = (x - 1); i <= (x + 1); i++)
-        {
-            for (int j = (y - 1); j <= (y + 1); j++)
-            {
-                Vector2 temp = new Vector2(i, j);
-                if(isValidMove(w, temp, m, gmc))
-                    cells.add(temp);
-            }
+    public int possibleCellsMask(Worker w, Map m, GameConstraints gc) {
+        return possibleCellsMask(w, m, GameConstraints.toInt(gc));
+    }
 
-        }
-        return cells;
+    /**
+     * Return a mask of all valid cells where a build can be performed using a plain constraint mask
+     * @param w worker doing the job
+     * @param m current map
+     * @param constraints global constraint mask
+     * @return mask of all the possible cells i can run the action
+     */
+    @Override
+    public int possibleCellsMask(Worker w, Map m, int constraints) {
+        return ActionKernels.buildMask(w, m);
     }
 }
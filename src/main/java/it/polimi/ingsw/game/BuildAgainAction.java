@@ -43,19 +43,21 @@ public class BuildAgainAction extends BuildAction {
     }
 
     @Override
-    protected boolean isValidMove(Worker w, Vector2 target, Map m, GameConstraints gc)
+    int opcode()
     {
-        boolean base =  super.isValidMove(w, target, m, gc);
-        if(!base) return false;
-
-        if(gc.check(GameConstraints.Constraint.BLOCK_DOME_BUILD) && m.getLevel(target) >= 3)
-            return false;
-        else if(gc.check(GameConstraints.Constraint.BLOCK_DIFF_CELL_BUILD) && !target.equals(w.getLastBuildLocation()))
-            return false;
-        else if(gc.check(GameConstraints.Constraint.BLOCK_SAME_CELL_BUILD) &&  target.equals(w.getLastBuildLocation()))
-            return false;
+        return getClass() == BuildAgainAction.class ? CompiledGraph.OP_BUILD_AGAIN : CompiledGraph.OP_CUSTOM;
+    }
 
-        return true;
+    /**
+     * Return a mask of all valid cells where a second build can be performed (see ActionKernels.buildAgainMask)
+     * @param w worker doing the job
+     * @param m current map
+     * @param constraints global constraint mask
+     * @return mask of all the possible cells i can run the action
+     */
+    @Override
+    public int possibleCellsMask(Worker w, Map m, int constraints) {
+        return ActionKernels.buildAgainMask(w, m, localConstrains.toInt() | constraints);
     }
 
 
@@ -15,6 +15,12 @@ public class BuildDomeAction extends BuildAction {
     }
 
 
+    @Override
+    int opcode()
+    {
+        return getClass() == BuildDomeAction.class ? CompiledGraph.OP_BUILD_DOME : CompiledGraph.OP_CUSTOM;
+    }
+
     @Override
     protected void build(Worker w, Vector2 target, Map m, GameConstraints gc)
     {
@@ -4,7 +4,7 @@ package it.polimi.ingsw.game;
  * This class represent a card an holds a name, a id and a graph.
  * The id of the card is used to identify it in the network messages therefore should be unique for every card
  * The behaviour graph represents the card actions on the game
- * it's guarantee that every card has its onw isolated graph (good for multi threading)
+ * Card graphs from CardCollection are sealed and shared, every turn walks them with its own cursor (good for multi threading)
  */
 public class Card {
     final private int id;
@@ -1,24 +1,41 @@
 package it.polimi.ingsw.game;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * This class holds the collection of currently available gods
- * This class should be instantiated for every new game to ensure isolation between cards
+ * Card graphs are built once per JVM and sealed, every game shares the same cards
+ * and walks their graphs with its own cursors (see GraphCursor)
  */
 public class CardCollection {
+    private static final List<Card> CARDS = Collections.unmodifiableList(loadCards());
+    private static final int NO_GOD_ID = 177013;
+    private static final Card NO_GOD_CARD = new Card(NO_GOD_ID, "No God",
+            BehaviourGraph.makeEmptyGraph().appendSubGraph(
+                    BehaviourNode.makeRootNode(new MoveAction()).setNext(new BuildAction()).getRoot()
+            ).seal(NO_GOD_ID));
+
     final private List<Card> cardCollection;
 
 
     /**
-     * Initialize and load all available gods
-     * The constructor is private to force access from singleton pattern
-     * There is no need to generate a new instance of this class every time
+     * Create a view on the shared collection of available gods
+     * Cards are already loaded so creating a collection is cheap
      */
     public CardCollection(){
+        cardCollection = CARDS;
+    }
+
+    /**
+     * Build the graphs of all available gods
+     * @return list of cards with sealed graphs
+     */
+    private static List<Card> loadCards()
+    {
         // create new cards here
-        cardCollection = new ArrayList<>();
+        List<Card> cardCollection = new ArrayList<>();
 
         // Apollo
         cardCollection.add(new Card(1, "Apollo", BehaviourGraph.makeEmptyGraph().appendSubGraph(
@@ -107,6 +124,10 @@ public class CardCollection {
                         .getRoot()
         )));
 
+        for (Card c : cardCollection)
+            c.getGraph().seal(c.getId());
+
+        return cardCollection;
     }
 
     /**
@@ -135,7 +156,7 @@ public class CardCollection {
 
     /**
      * Return a card from its id, throw an exception if no card is found
-     * It's returned a copy because this guarantee the isolation of a single card execution
+     * Cards are shared between games, their graphs are sealed and executed with a per turn cursor
      * @param id card id to search
      * @return card with corresponding id
      * @throws CardNotExistsException if no card is found
@@ -170,10 +191,16 @@ public class CardCollection {
      */
     public Card getNoGodCard()
     {
-        return new Card(177013, "No God",
-                BehaviourGraph.makeEmptyGraph().appendSubGraph(
-                        BehaviourNode.makeRootNode(new MoveAction()).setNext(new BuildAction()).getRoot()
-                ));
+        return NO_GOD_CARD;
+    }
+
+    /**
+     * Return the card used by players without a god without creating a collection
+     * @return the default god game turn behaviour without any god
+     */
+    static Card noGodCard()
+    {
+        return NO_GOD_CARD;
     }
 
 }
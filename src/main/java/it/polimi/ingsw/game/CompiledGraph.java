@@ -0,0 +1,327 @@
+package it.polimi.ingsw.game;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Flat table version of a behaviour graph, used by search and simulation code
+ * Every node has an integer id (root is always ROOT) and the graph is stored in primitive arrays:
+ * for every node id an opcode, a local constraint mask and a range of child ids.
+ * Walking the table needs no iterators and no NextAction objects: a cursor is only the id of the current node.
+ * Cells of built in opcodes are computed by the static ActionKernels, only OP_CUSTOM nodes call their Action.
+ * Tables are immutable and can be shared between threads
+ */
+public final class CompiledGraph
+{
+    /**
+     * Id of the root node
+     */
+    public static final int ROOT = 0;
+    /**
+     * Id returned when a requested node doesn't exist
+     */
+    public static final int NO_NODE = -1;
+
+    /**
+     * Root node, it has no action
+     */
+    public static final int OP_ROOT = 0;
+    /**
+     * Move a worker (MoveAction and MoveAgainAction)
+     */
+    public static final int OP_MOVE = 1;
+    /**
+     * Build a level (BuildAction)
+     */
+    public static final int OP_BUILD = 2;
+    /**
+     * Build a level after another build (BuildAgainAction)
+     */
+    public static final int OP_BUILD_AGAIN = 3;
+    /**
+     * Build a dome at any level (BuildDomeAction)
+     */
+    public static final int OP_BUILD_DOME = 4;
+    /**
+     * End the turn (EndTurnAction)
+     */
+    public static final int OP_END_TURN = 5;
+    /**
+     * Any other action, executed through its Action object
+     */
+    public static final int OP_CUSTOM = 6;
+
+    private final int[] opcodes;
+    private final int[] localConstraints;
+    // children of node n are children[childStart[n]] ... children[childStart[n + 1] - 1]
+    private final int[] childStart;
+    private final int[] children;
+    private final long[] keys;
+    private final Action[] actions;
+    private final BehaviourNode[] nodes;
+    private final IdentityHashMap<BehaviourNode, Integer> ids;
+    private final int maxChildren;
+    private final int usedConstraints;
+
+    /**
+     * Build the tables from a list of nodes numbered by their position
+     * @param nodeList graph nodes, root first
+     * @param ids node ids
+     */
+    private CompiledGraph(List<BehaviourNode> nodeList, IdentityHashMap<BehaviourNode, Integer> ids)
+    {
+        int size = nodeList.size();
+        opcodes = new int[size];
+        localConstraints = new int[size];
+        childStart = new int[size + 1];
+        keys = new long[size];
+        actions = new Action[size];
+        nodes = nodeList.toArray(new BehaviourNode[0]);
+        this.ids = ids;
+
+        int edges = 0;
+        int max = 0;
+        for (BehaviourNode n : nodeList)
+        {
+            edges += n.getNextActionCount();
+            max = Math.max(max, n.getNextActionCount());
+        }
+        children = new int[edges];
+        maxChildren = max;
+
+        int edge = 0;
+        int used = 0;
+        for (int id = 0; id < size; id++)
+        {
+            BehaviourNode n = nodes[id];
+            Action a = n.getAction();
+
+            actions[id] = a;
+            opcodes[id] = a == null ? OP_ROOT : a.opcode();
+            localConstraints[id] = a == null ? 0 : a.localConstraintMask();
+            used |= localConstraints[id];
+            keys[id] = n.getKey();
+
+            childStart[id] = edge;
+            for (BehaviourNode child : n.getChildNodes())
+                children[edge++] = ids.get(child);
+        }
+        childStart[size] = edge;
+        usedConstraints = used;
+    }
+
+    /**
+     * Compile a graph into its table version
+     * Nodes reachable from more than one parent (see BehaviourNode.mergeBranches) are compiled once
+     * @param graph graph to compile
+     * @return compiled graph
+     */
+    public static CompiledGraph compile(BehaviourGraph graph)
+    {
+        List<BehaviourNode> nodeList = new ArrayList<>();
+        IdentityHashMap<BehaviourNode, Integer> ids = new IdentityHashMap<>();
+
+        // breadth first numbering, root gets id 0
+        ids.put(graph.getRootNode(), ROOT);
+        nodeList.add(graph.getRootNode());
+        for (int i = 0; i < nodeList.size(); i++)
+        {
+            for (BehaviourNode child : nodeList.get(i).getChildNodes())
+            {
+                if(!ids.containsKey(child))
+                {
+                    ids.put(child, nodeList.size());
+                    nodeList.add(child);
+                }
+            }
+        }
+
+        return new CompiledGraph(nodeList, ids);
+    }
+
+    /**
+     * Return the number of nodes in the graph
+     * @return node count
+     */
+    public int size()
+    {
+        return opcodes.length;
+    }
+
+    /**
+     * Return the max number of children of a node, useful to size buffers passed to nextActionMasks
+     * @return max child count
+     */
+    public int getMaxChildren()
+    {
+        return maxChildren;
+    }
+
+    /**
+     * Return the constraints added by any action of the graph, useful to read the abilities of a card
+     * @return constraint mask (see GameConstraints.Constraint.toInt)
+     */
+    public int getUsedConstraints()
+    {
+        return usedConstraints;
+    }
+
+    /**
+     * Return the opcode of a node
+     * @param node node id
+     * @return one of the OP_ constants
+     */
+    public int getOpcode(int node)
+    {
+        return opcodes[node];
+    }
+
+    /**
+     * Return the constraints added by the action of a node
+     * @param node node id
+     * @return constraint mask (see GameConstraints.Constraint.toInt)
+     */
+    public int getLocalConstraints(int node)
+    {
+        return localConstraints[node];
+    }
+
+    /**
+     * Return the number of children of a node
+     * @param node node id
+     * @return child count
+     */
+    public int getChildCount(int node)
+    {
+        return childStart[node + 1] - childStart[node];
+    }
+
+    /**
+     * Return a child of a node, child indexes are the same used by BehaviourGraph action selection
+     * @param node node id
+     * @param index child index
+     * @return child id or NO_NODE if index is not valid
+     */
+    public int getChild(int node, int index)
+    {
+        if(index < 0 || index >= getChildCount(node))
+            return NO_NODE;
+        return children[childStart[node] + index];
+    }
+
+    /**
+     * Check if a node ends the turn (it has no children)
+     * @param node node id
+     * @return true if the turn is ended when this node is reached
+     */
+    public boolean isTerminal(int node)
+    {
+        return childStart[node + 1] == childStart[node];
+    }
+
+    /**
+     * Return the Zobrist key of a node (same as BehaviourNode.getKey)
+     * @param node node id
+     * @return node key
+     */
+    public long getKey(int node)
+    {
+        return keys[node];
+    }
+
+    /**
+     * Return the action of a node
+     * @param node node id
+     * @return action, null for the root
+     */
+    public Action getAction(int node)
+    {
+        return actions[node];
+    }
+
+    /**
+     * Return the graph node of an id
+     * @param node node id
+     * @return graph node
+     */
+    public BehaviourNode getNode(int node)
+    {
+        return nodes[node];
+    }
+
+    /**
+     * Return the id of a graph node
+     * @param node graph node
+     * @return node id or NO_NODE if the node is not part of this graph
+     */
+    public int getId(BehaviourNode node)
+    {
+        Integer id = ids.get(node);
+        return id == null ? NO_NODE : id;
+    }
+
+    /**
+     * Return the cells where the action of a node can run
+     * @param node node id
+     * @param w worker doing the action
+     * @param m current map
+     * @param constraints global constraint mask (see GameConstraints.toInt)
+     * @return cell mask, 0 for the root
+     */
+    public int possibleCellsMask(int node, Worker w, Map m, int constraints)
+    {
+        switch (opcodes[node])
+        {
+            case OP_ROOT:
+                return 0;
+            case OP_MOVE:
+                return ActionKernels.moveMask(w, m, constraints, localConstraints[node]);
+            case OP_BUILD:
+            case OP_BUILD_DOME:
+                return ActionKernels.buildMask(w, m);
+            case OP_BUILD_AGAIN:
+                return ActionKernels.buildAgainMask(w, m, constraints | localConstraints[node]);
+            case OP_END_TURN:
+                return 1 << Map.cellIndex(0, 0);
+            default:
+                return actions[node].possibleCellsMask(w, m, constraints);
+        }
+    }
+
+    /**
+     * Enumerate the next actions of a node without allocating objects
+     * masks[i] is set to the cell mask of the child with index i, a child with mask 0 can't be selected
+     * @param node current node id
+     * @param w worker doing the actions
+     * @param m current map
+     * @param constraints global constraint mask (see GameConstraints.toInt)
+     * @param masks output buffer with at least getMaxChildren() elements
+     * @return number of children written in masks
+     */
+    public int nextActionMasks(int node, Worker w, Map m, int constraints, int[] masks)
+    {
+        int start = childStart[node];
+        int count = childStart[node + 1] - start;
+        for (int i = 0; i < count; i++)
+            masks[i] = possibleCellsMask(children[start + i], w, m, constraints);
+        return count;
+    }
+
+    /**
+     * Run the action of a node
+     * @param node node id to run (usually a child of the current node)
+     * @param w worker doing the action
+     * @param cell target cell index
+     * @param m current map
+     * @param gc global constraints
+     * @return 1 = won, 0 = continue, -1 = lost (same as Action.run)
+     * @throws NotAllowedMoveException if the action can't run in the target cell
+     */
+    public int run(int node, Worker w, int cell, Map m, GameConstraints gc) throws NotAllowedMoveException
+    {
+        if(opcodes[node] == OP_ROOT || cell < 0 || cell >= Map.CELLS)
+            throw new NotAllowedMoveException();
+        return actions[node].run(w, Vector2.of(cell), m, gc);
+    }
+}
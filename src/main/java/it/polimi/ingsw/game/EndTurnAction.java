@@ -1,7 +1,5 @@
 package it.polimi.ingsw.game;
 
-import java.util.ArrayList;
-
 
 /**
  * This class represent a "exit" from a behaviour graph and should be used when optional parts
@@ -23,6 +21,12 @@ public class EndTurnAction extends Action {
 
 
 
+    @Override
+    int opcode()
+    {
+        return getClass() == EndTurnAction.class ? CompiledGraph.OP_END_TURN : CompiledGraph.OP_CUSTOM;
+    }
+
     @Override
     public int run(Worker w, Vector2 target, Map m, GameConstraints gc){
         return 0;   // end turn does nothing!
@@ -30,11 +34,13 @@ public class EndTurnAction extends Action {
 
 
     @Override
-    public ArrayList<Vector2> possibleCells(Worker w, Map m ,GameConstraints gc){
+    public int possibleCellsMask(Worker w, Map m ,GameConstraints gc){
+        return 1 << Map.cellIndex(0,0); // random valid data to make this element "selectable"
+    }
 
-        var arr = new ArrayList<Vector2>();
-        arr.add(new Vector2(0,0));
-        return arr; // random valid data to make this element "selectable"
+    @Override
+    public int possibleCellsMask(Worker w, Map m, int constraints){
+        return 1 << Map.cellIndex(0,0);
     }
 
     @Override
@@ -64,6 +64,15 @@ public final class Game
     private CardCollection cardCollection;
     private Player winner;
     private boolean allowUndo;
+    private final MoveCheckCache moveCheckCache;
+
+    // cache of the legal actions of the current turn, valid while state version and hash don't change
+    private long stateVersion;
+    private long cachedVersion, cachedHash;
+    private Turn cachedTurn;
+    private ArrayList<NextAction> cachedActions;
+    private final int[][] legalMasks;
+    private final int[] legalCounts;
 
 
     /**
@@ -83,6 +92,60 @@ public final class Game
         cardCollection = new CardCollection();
         winner = null;
         allowUndo = false;
+        moveCheckCache = new MoveCheckCache();
+        stateVersion = 0;
+        cachedActions = null;
+        legalMasks = new int[WORKERS_PER_PLAYER][0];
+        legalCounts = new int[WORKERS_PER_PLAYER];
+    }
+
+
+    /**
+     * Create an independent copy of a running game at the start of a turn
+     * Players, workers, map and constraints are copied, cards are shared because they are immutable.
+     * Copies have the same hash of the original and are meant for search threads that need their own game
+     * @return copy of the game
+     * @throws IllegalStateException if the game is not running or the current turn is already started
+     */
+    public Game copy()
+    {
+        if(gameState != GameState.GAME && gameState != GameState.END)
+            throw new IllegalStateException("Only running games can be copied");
+        if(gameState == GameState.GAME && (currentTurn.getWorker() != null || !currentTurn.getCursor().isAtRoot()))
+            throw new IllegalStateException("Games can be copied only at the start of a turn");
+
+        Game copy = new Game();
+        java.util.Map<Player, Player> playerCopies = new IdentityHashMap<>();
+        java.util.Map<Worker, Worker> workerCopies = new IdentityHashMap<>();
+
+        for (Player p : players)
+        {
+            Player c = new Player(p.getId(), p.getUsername());
+            c.setGod(p.getGod());
+            for (Worker w : p.getWorkers())
+            {
+                Worker cw = new Worker(w.getId(), c, w.getPosition());
+                cw.setLastLocation(w.getLastLocation());
+                cw.setLastBuildLocation(w.getLastBuildLocation());
+                c.addWorker(cw);
+                workerCopies.put(w, cw);
+            }
+            copy.players.add(c);
+            playerCopies.put(p, c);
+        }
+
+        copy.gameMap = new Map(gameMap, playerCopies, workerCopies);
+        copy.globalConstraints = new GameConstraints(globalConstraints);
+        copy.currentPlayer = currentPlayer;
+        copy.firstPlayer = firstPlayer;
+        copy.stateProgress = stateProgress;
+        copy.gameState = gameState;
+        copy.winner = winner == null ? null : playerCopies.get(winner);
+        copy.allowUndo = allowUndo;
+        if(currentTurn != null)
+            copy.currentTurn = new Turn(copy.players.get(currentPlayer), allowUndo, copy.moveCheckCache);
+
+        return copy;
     }
 
 
@@ -126,6 +189,15 @@ public final class Game
     }
 
 
+    /**
+     * Return the turn of the current player
+     * @return current turn, null if the game is not started
+     */
+    Turn getCurrentTurn()
+    {
+        return currentTurn;
+    }
+
     /**
      * Return the current player that needs to perform an action
      * @return current player that needs to perform an action of any kind
@@ -147,6 +219,17 @@ public final class Game
     }
 
 
+    /**
+     * Return a player of the match without copying the player list
+     * @param index player index (0 - playerCount()-1)
+     * @return player
+     */
+    public Player getPlayer(int index)
+    {
+        return players.get(index);
+    }
+
+
     /**
      * Return the player count
      * @return number of players in this game
@@ -164,6 +247,24 @@ public final class Game
     }
 
 
+    /**
+     * Return the global constraints of the match
+     * @return global constraints
+     */
+    GameConstraints getGlobalConstraints()
+    {
+        return globalConstraints;
+    }
+
+    /**
+     * Return the global constraints of the match as a mask (see GameConstraints.toInt)
+     * @return global constraints mask
+     */
+    public int getGlobalConstraintMask()
+    {
+        return globalConstraints.toInt();
+    }
+
     /**
      * Return a list of available card ids for this match
      * @return list of available god cards by id
@@ -190,6 +291,46 @@ public final class Game
         return getCardIds(allowedCards);
     }
 
+    /**
+     * Return the Zobrist hash of the current position
+     * The hash covers map levels and domes, worker positions, global constraints, current player and turn progress
+     * Every component keeps its hash updated incrementally so this call costs a few xors
+     * @return position hash
+     */
+    public long getHash()
+    {
+        long hash = gameMap.getHash() ^ globalConstraints.getHash() ^ Zobrist.player(currentPlayer);
+        if(currentTurn != null)
+            hash ^= currentTurn.getHash();
+        return hash;
+    }
+
+    /**
+     * Return the hash of the cards of the players, getHash has no card term
+     * Players without a god count with the default card they get when their first turn starts
+     * @return xor of the card keys of the players (see Zobrist.card)
+     */
+    public long getCardHash()
+    {
+        long hash = 0;
+        for (int i = 0; i < players.size(); i++)
+        {
+            Card god = players.get(i).getGod();
+            hash ^= Zobrist.card(i, god == null ? cardCollection.getNoGodCard().getId() : god.getId());
+        }
+        return hash;
+    }
+
+    /**
+     * Return the version of the game state, the version changes every time the game runs an operation
+     * that can change the map, the workers or the current turn
+     * @return state version
+     */
+    public long getStateVersion()
+    {
+        return stateVersion;
+    }
+
     /**
      * Enable undo for this match, once enabled it cant be disabled
      */
@@ -395,6 +536,22 @@ public final class Game
         if(!shouldResetWorker && currentTurn.getWorker().getId() != worker)
             return -1;
 
+        // validate the target against the cached legal actions, undo is checked by the turn
+        // actions without valid cells are run anyway because they make the player lose
+        boolean validated = false;
+        if(!currentTurn.isUndoAction(actionId))
+        {
+            int legalCells = getLegalCells(worker, actionId);
+            if(legalCells != 0)
+            {
+                int cell = Map.cellIndex(target);
+                if(cell < 0 || (legalCells & (1 << cell)) == 0)
+                    return -1;
+                validated = true;
+            }
+        }
+
+        stateChanged();
 
         try
         {
@@ -404,7 +561,7 @@ public final class Game
                 currentTurn.selectWorker(worker);
             }
 
-            int actionRes = currentTurn.runAction(actionId, target, gameMap, globalConstraints);
+            int actionRes = currentTurn.runAction(actionId, target, gameMap, globalConstraints, validated);
 
             if (actionRes > 0) // player won
             {
@@ -439,26 +596,106 @@ public final class Game
     }
 
     /**
-     * Get the list of next possible actions for all worker
-     * if a worker is selected for current turn, get possible action to continue turn with that worker
-     * @return list of actions (workerID,actionName,possibleVector2), null if none is available
+     * Execute an action of the current player in place and return a record that can be used to revert it
+     * This is the search version of executeAction: no sender check, no logging and no player removal.
+     * When the turn ends the next player turn is started without checking if that player is stuck,
+     * callers should use getNextActions or Turn.canStillMove to detect stuck players
+     * @param worker worker id to select
+     * @param actionId id of the selected action to run
+     * @param target target position where the action should run
+     * @param record record to fill (can be reused)
+     * @return filled record, record.getResult() is greater than 0 if the current player won
+     * @throws NotAllowedMoveException if the game is not running or the action can't be run
+     * @throws OutOfGraphException if no action exists for actionId
      */
-    public List<NextAction> getNextActions() {
+    public UndoRecord makeAction(int worker, int actionId, Vector2 target, UndoRecord record) throws NotAllowedMoveException, OutOfGraphException
+    {
+        if(gameState != GameState.GAME)
+            throw new NotAllowedMoveException();
+
+        Turn turn = currentTurn;
+        int player = currentPlayer;
+        int progress = stateProgress;
 
-        ArrayList<NextAction> nextActions = new ArrayList<>();
+        turn.makeAction(worker, actionId, target, gameMap, globalConstraints, record);
+        stateChanged();
 
-        if (currentTurn.getWorker() == null)
+        record.turn = turn;
+        record.currentPlayer = player;
+        record.stateProgress = progress;
+        record.gameState = gameState;
+        record.winner = winner;
+
+        if(record.result > 0)
         {
-            for (Worker worker : getCurrentPlayer().getWorkers())
-            {
-                nextActions.addAll(currentTurn.getNextAction(worker, gameMap, globalConstraints));
-            }
+            endGame(players.get(currentPlayer));
         }
-        else
+        else if(turn.isEnded())
         {
-            nextActions = currentTurn.getNextAction(gameMap, globalConstraints);
+            nextPlayer();
+            startTurn(players.get(currentPlayer));
         }
 
+        return record;
+    }
+
+    /**
+     * Execute an action of the current player in place (see makeAction(int, int, Vector2, UndoRecord))
+     * @param worker worker id to select
+     * @param actionId id of the selected action to run
+     * @param target target position where the action should run
+     * @return new record that can be used to revert the action
+     * @throws NotAllowedMoveException if the game is not running or the action can't be run
+     * @throws OutOfGraphException if no action exists for actionId
+     */
+    public UndoRecord makeAction(int worker, int actionId, Vector2 target) throws NotAllowedMoveException, OutOfGraphException
+    {
+        return makeAction(worker, actionId, target, new UndoRecord());
+    }
+
+    /**
+     * Revert an action executed with makeAction, restoring map, workers, constraints, turn and current player
+     * Records must be reverted in the opposite order of execution
+     * @param record record returned by makeAction
+     */
+    public void unmakeAction(UndoRecord record)
+    {
+        currentTurn = record.turn;
+        currentPlayer = record.currentPlayer;
+        stateProgress = record.stateProgress;
+        gameState = record.gameState;
+        winner = record.winner;
+
+        currentTurn.unmakeAction(record, gameMap, globalConstraints);
+        stateChanged();
+    }
+
+    /**
+     * Remove the current player if it can't move, like executeAction does at the start of every turn
+     * makeAction starts turns without this check, search tools call it on game copies
+     * (the removal can't be undone)
+     * @return true if the current player was removed
+     */
+    public boolean removeStuckPlayer()
+    {
+        if(gameState != GameState.GAME || currentTurn.canStillMove(gameMap, globalConstraints))
+            return false;
+
+        playerLost(players.get(currentPlayer));
+        return true;
+    }
+
+    /**
+     * Get the list of next possible actions for all worker
+     * if a worker is selected for current turn, get possible action to continue turn with that worker
+     * Actions are cached until the state of the game changes, only the undo action is checked every time
+     * @return list of actions (workerID,actionName,possibleVector2), null if none is available
+     */
+    public List<NextAction> getNextActions() {
+
+        ArrayList<NextAction> nextActions = new ArrayList<>(getLegalActions());
+        currentTurn.appendUndoAction(nextActions);
+
         if(nextActions.size() > 0)
         {
             return nextActions;
@@ -474,6 +711,75 @@ public final class Game
 
     }
 
+    /**
+     * Return the legal actions of the current turn from the cache, updating it if the game state changed
+     * Legal cell masks of every worker and action are saved too, to validate actions in executeAction
+     * @return cached list of legal actions (undo excluded), must not be modified
+     */
+    private List<NextAction> getLegalActions()
+    {
+        long hash = getHash();
+        if(cachedActions != null && cachedVersion == stateVersion && cachedHash == hash && cachedTurn == currentTurn)
+            return cachedActions;
+
+        CompiledGraph compiled = currentTurn.getPlayer().getGod().getGraph().getCompiled();
+        int node = compiled.getId(currentTurn.getCursor().getCurrentNode());
+        List<Worker> workers = currentTurn.getPlayer().getWorkers();
+        ArrayList<NextAction> actions = new ArrayList<>();
+
+        for (int id = 0; id < WORKERS_PER_PLAYER; id++)
+        {
+            legalCounts[id] = 0;
+            if(id >= workers.size())
+                continue;
+
+            // if a worker is selected only its actions are legal
+            Worker w = workers.get(id);
+            if(currentTurn.getWorker() != null && currentTurn.getWorker() != w)
+                continue;
+
+            if(legalMasks[id].length < compiled.getMaxChildren())
+                legalMasks[id] = new int[compiled.getMaxChildren()];
+
+            legalCounts[id] = compiled.nextActionMasks(node, w, gameMap, globalConstraints.toInt(), legalMasks[id]);
+            for (int i = 0; i < legalCounts[id]; i++)
+            {
+                int mask = legalMasks[id][i];
+                if(mask != 0)
+                    actions.add(new NextAction(w, compiled.getAction(compiled.getChild(node, i)).displayName(), mask));
+            }
+        }
+
+        cachedActions = actions;
+        cachedVersion = stateVersion;
+        cachedHash = hash;
+        cachedTurn = currentTurn;
+        return actions;
+    }
+
+    /**
+     * Return the cells where an action of the current turn can run using the cached legal actions
+     * @param worker worker id
+     * @param actionId action index
+     * @return legal cell mask, 0 if the action doesn't exist or has no legal cells
+     */
+    private int getLegalCells(int worker, int actionId)
+    {
+        getLegalActions();
+
+        if(actionId < 0 || actionId >= legalCounts[worker])
+            return 0;
+        return legalMasks[worker][actionId];
+    }
+
+    /**
+     * Invalidate the data computed from the current game state
+     */
+    private void stateChanged()
+    {
+        stateVersion++;
+    }
+
     /**
      * Left the game
      * @param sender player who issues this command
@@ -629,10 +935,7 @@ public final class Game
 
         System.out.println("[GAME] Created new turn for " + p);
 
-        if(p.getGod() == null)
-            p.setGod(cardCollection.getNoGodCard());
-
-        currentTurn = new Turn(p, allowUndo);
+        startTurn(p);
 
         if(!currentTurn.canStillMove(gameMap, globalConstraints))
         {
@@ -642,6 +945,19 @@ public final class Game
         }
     }
 
+    /**
+     * Create the turn for a player, players without a god get the default one
+     * @param p player that owns the new turn
+     */
+    private void startTurn(Player p)
+    {
+        if(p.getGod() == null)
+            p.setGod(cardCollection.getNoGodCard());
+
+        currentTurn = new Turn(p, allowUndo, moveCheckCache);
+        stateChanged();
+    }
+
     /**
      * End the current match and inform the winner
      * @param winner player that won the game
@@ -662,6 +978,7 @@ public final class Game
         if(gameState != GameState.GAME)
             return;
 
+        stateChanged();
         players.remove(loser);
 
         // clear constraint added by god when the player is removed
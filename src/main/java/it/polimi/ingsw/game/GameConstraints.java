@@ -3,6 +3,8 @@ package it.polimi.ingsw.game;
 /**
  * Constrains describe blocked behaviours of Actions
  * This implementation supports up to 32 different constraints that can be active at the same time
+ * Every constraint is a single bit of an int mask, the game engine passes plain masks to actions (see toInt)
+ * and this class is the API wrapper used to store and change the global constraints of a game
  */
 public class GameConstraints
 {
@@ -52,10 +54,24 @@ public class GameConstraints
          */
         WIN_BY_GOING_DOWN(1<<17, "Win by fall"),    //if active, the player wins by going down 2 lvls
 
-        TEST(1<<32, "TEST");
+        TEST(1<<31, "TEST");
 
-        private int val;
-        private String displayName;
+        static
+        {
+            // every constraint must have its own bit
+            int used = 0;
+            for (Constraint c : values())
+            {
+                if(c != NONE && Integer.bitCount(c.val) != 1)
+                    throw new IllegalStateException("Constraint " + c.name() + " must use exactly one bit");
+                if((used & c.val) != 0)
+                    throw new IllegalStateException("Constraint " + c.name() + " overlaps another constraint");
+                used |= c.val;
+            }
+        }
+
+        private final int val;
+        private final String displayName;
 
         private Constraint(int val, String displayName) {
             this.val = val;
@@ -79,6 +95,7 @@ public class GameConstraints
 
 
     private int constraints;
+    private long hash;
 
     /**
      * Create an empty constraints container
@@ -86,6 +103,7 @@ public class GameConstraints
     public GameConstraints()
     {
         constraints = 0;
+        hash = 0;
     }
 
     /**
@@ -95,6 +113,7 @@ public class GameConstraints
     public GameConstraints(GameConstraints other)
     {
         constraints = other.constraints;
+        hash = other.hash;
     }
 
 
@@ -104,7 +123,7 @@ public class GameConstraints
      * @param c constraint to add
      */
     public void add(Constraint c) {
-        constraints |=  c.toInt();
+        set(constraints | c.toInt());
     }
 
     /**
@@ -113,7 +132,7 @@ public class GameConstraints
      */
     public void add (GameConstraints c) {
         if(c == null) return;
-        constraints |= c.constraints;
+        set(constraints | c.constraints);
     }
 
     /**
@@ -121,7 +140,7 @@ public class GameConstraints
      * @param c constraint to remove
      */
     public void remove(Constraint c) {
-        constraints &= ~c.toInt();
+        set(constraints & ~c.toInt());
     }
 
     /**
@@ -138,7 +157,63 @@ public class GameConstraints
      * Delete all current constrains
      */
     public void clear(){
-        constraints = 0;
+        set(0);
+    }
+
+    /**
+     * Return the Zobrist hash of the active constraints
+     * The hash is updated every time a constraint is added or removed
+     * @return constraints hash
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+
+    /**
+     * Convert the active constraints into a integer
+     * @return integer representation of the active constraints
+     */
+    public int toInt()
+    {
+        return constraints;
+    }
+
+    /**
+     * Return the constraint mask of a container, null containers have no active constraints
+     * @param gc constraints container
+     * @return constraint mask
+     */
+    public static int toInt(GameConstraints gc)
+    {
+        return gc == null ? 0 : gc.constraints;
+    }
+
+    /**
+     * Checks if a constrain is active in a constraint mask
+     * Same as check but works on plain masks used by the game engine
+     * @param constraints constraint mask
+     * @param c constraint to check
+     * @return true if the constrain is enabled
+     */
+    public static boolean check(int constraints, Constraint c)
+    {
+        return (c == Constraint.NONE) ? constraints == 0 : (constraints & c.val) != 0;
+    }
+
+    /**
+     * Change the active constraints and update the hash with the changed bits
+     * @param value new constraints
+     */
+    void set(int value)
+    {
+        int changed = constraints ^ value;
+        while (changed != 0)
+        {
+            hash ^= Zobrist.constraint(Integer.numberOfTrailingZeros(changed));
+            changed &= changed - 1;
+        }
+        constraints = value;
     }
 
     /**
@@ -0,0 +1,209 @@
+package it.polimi.ingsw.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Execution progress of a behaviour graph
+ * Graphs are immutable templates shared between games and threads, every turn walks its card graph with its own cursor.
+ * A cursor holds only the current node and the stack of already executed nodes so it's cheap to create
+ */
+public class GraphCursor
+{
+    private static final int INITIAL_DEPTH = 8;
+
+    final private BehaviourNode rootNode;
+    private BehaviourNode currentNode;
+    private boolean alreadyRun;
+    private BehaviourNode[] executionStack;
+    private int executionDepth;
+
+    /**
+     * Create a cursor placed on the root of a graph
+     * @param graph graph to walk
+     */
+    public GraphCursor(BehaviourGraph graph)
+    {
+        rootNode = graph.getRootNode();
+        executionStack = new BehaviourNode[INITIAL_DEPTH];
+        resetExecutionStatus();
+    }
+
+    /**
+     * Reset the current use status of this cursor to the root element
+     */
+    public void resetExecutionStatus() {
+        currentNode = rootNode;
+        alreadyRun = true; // root node has no action
+        Arrays.fill(executionStack, 0, executionDepth, null);
+        executionDepth = 0;
+    }
+
+    /**
+     * Return the current node
+     * @return return the current node
+     */
+    public BehaviourNode getCurrentNode() {
+        return currentNode;
+    }
+
+    /**
+     * Select one of the actions returned by getNextActions using array index
+     * @param pos action index used to select the next operation (index obtained from action list)
+     * @throws OutOfGraphException if there is no node with the specified index
+     */
+    public void selectAction(int pos) throws OutOfGraphException
+    {
+        BehaviourNode next = currentNode.getNextNode(pos);
+        push(currentNode);
+        currentNode = next;
+        alreadyRun = false;
+    }
+
+    /**
+     * Run the action selected with SelectAction, calling two times the same selected action has no effect
+     * @param w target worker used in this action
+     * @param target target position where the action should take place
+     * @param m map where the action is executed
+     * @param globalConstrains global game constrains that should be applied before action execution
+     * @return int value : 0 if player can continue, greater 0 if player met a win condition, lower 0 if player met a lose condition
+     * @throws NotAllowedMoveException if and illegal move is detected
+     */
+    public int runSelectedAction(Worker w, Vector2 target, Map m, GameConstraints globalConstrains) throws NotAllowedMoveException
+    {
+        return runSelectedAction(w, target, m, globalConstrains, false);
+    }
+
+    /**
+     * Run the action selected with SelectAction, skipping the generation of valid cells if the target is already validated
+     * @param w target worker used in this action
+     * @param target target position where the action should take place
+     * @param m map where the action is executed
+     * @param globalConstrains global game constrains that should be applied before action execution
+     * @param validated true if target is known to be a valid cell for the selected action
+     * @return int value : 0 if player can continue, greater 0 if player met a win condition, lower 0 if player met a lose condition
+     * @throws NotAllowedMoveException if and illegal move is detected
+     */
+    int runSelectedAction(Worker w, Vector2 target, Map m, GameConstraints globalConstrains, boolean validated) throws NotAllowedMoveException
+    {
+        try
+        {
+            if (!alreadyRun && currentNode.getAction() != null)
+            {
+                Action action = currentNode.getAction();
+                int res = validated ? action.runValidated(w, target, m, globalConstrains) : action.run(w, target, m, globalConstrains);
+                alreadyRun = true;
+                return res;
+            }
+            return -1; //break the game if errors happens here
+
+        }catch (NotAllowedMoveException e)
+        {
+            // move back in case of a wrong move
+            currentNode = executionDepth == 0 ? rootNode : pop();
+
+            throw e; // notify caller of the error
+        }
+    }
+
+    /**
+     * Returns if the current execution of the graph is ended
+     * @return true if execution is ended
+     */
+    public boolean isExecutionEnded() {
+        return currentNode.getNextActionCount() <= 0;
+    }
+
+    /**
+     * Returns next actions(name and available cells)
+     * @param w target worker to use to calculate next valid action
+     * @param m current game map
+     * @param constraints constraints to apply
+     * @return ArrayList of NextAction from the current node
+     */
+    public ArrayList<NextAction> getNextActions(Worker w, Map m, GameConstraints constraints) {
+        return currentNode.getNextActions(w,m,constraints);
+    }
+
+    /**
+     * Returns next actions names in an array
+     * This array index is used in SelectAction to select next move
+     * @return and array of action names
+     */
+    public String[] getNextActionNames() {
+        return currentNode.getNextActionNames();
+    }
+
+    /**
+     * Move back to previous executed node
+     * Yo can go back to the root node by call this function more times
+     */
+    public void rollback()
+    {
+        currentNode = executionDepth == 0 ? rootNode : pop();
+        alreadyRun = false;
+    }
+
+    /**
+     * Return the number of nodes saved in the execution stack
+     * @return execution stack depth
+     */
+    int getExecutionDepth()
+    {
+        return executionDepth;
+    }
+
+    /**
+     * Check if the action of the current node was already run
+     * @return true if already run
+     */
+    boolean isAlreadyRun()
+    {
+        return alreadyRun;
+    }
+
+    /**
+     * Restore a previously saved execution status
+     * @param node node to set as current
+     * @param alreadyRun true if the node action was already run
+     * @param depth execution stack depth to restore, nodes over this depth are discarded
+     */
+    void restoreExecutionStatus(BehaviourNode node, boolean alreadyRun, int depth)
+    {
+        while (executionDepth > depth)
+            pop();
+        currentNode = node;
+        this.alreadyRun = alreadyRun;
+    }
+
+    /**
+     * Return true if current node is the root of the graph
+     * @return true if current node is root of the graph
+     */
+    public boolean isAtRoot()
+    {
+        return currentNode == rootNode;
+    }
+
+    /**
+     * Push a node on the execution stack
+     * @param node executed node
+     */
+    private void push(BehaviourNode node)
+    {
+        if(executionDepth == executionStack.length)
+            executionStack = Arrays.copyOf(executionStack, executionDepth * 2);
+        executionStack[executionDepth++] = node;
+    }
+
+    /**
+     * Pop the last executed node from the execution stack
+     * @return last executed node
+     */
+    private BehaviourNode pop()
+    {
+        BehaviourNode node = executionStack[--executionDepth];
+        executionStack[executionDepth] = null;
+        return node;
+    }
+}
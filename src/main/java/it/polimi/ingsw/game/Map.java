@@ -3,6 +3,8 @@ import java.util.ArrayList;
 
 /**
  * Game map representation
+ * Cells are stored as bitboards: every cell is a bit (index = x * LENGTH + y) and the map keeps one mask per level,
+ * one for domes, one for all the workers and one for every player workers
  */
 public class Map
 {
@@ -14,6 +16,10 @@ public class Map
      * Map width
      */
     public static final int LENGTH = 5;
+    /**
+     * Number of cells in the map
+     */
+    public static final int CELLS = HEIGHT * LENGTH;
     /**
      * Dome representation value, useful for client's
      */
@@ -23,11 +29,16 @@ public class Map
      */
     public static final int MAX_BUILD_HEIGHT = 4;
 
-    private int[][] map = new int[HEIGHT][LENGTH];
-
-    private ArrayList<Worker> workers;
-
     /*
+     *  Bitboard layout (one bit for every cell)
+     *
+     *  levelMasks[l]   cells that have exactly level l (0 - 4), every cell is in one and only one level mask
+     *  domeMask        cells with a dome, any level is valid
+     *  workerMask      cells occupied by a worker
+     *  ownerMasks[i]   cells occupied by a worker of owners[i]
+     *
+     *  getMap() rebuilds the old serialization format used by clients:
+     *
      *          00000001 = 1 liv.0
      *          00000010 = 2 liv.1
      *          00000100 = 4 liv.2
@@ -41,42 +52,100 @@ public class Map
      *          10010000 = 128 + 16 liv.4(dome) completed cell
      */
 
+    private final int[] levelMasks = new int[MAX_BUILD_HEIGHT + 1];
+    private int domeMask;
+
+    private int workerMask;
+    private final Worker[] cellWorkers = new Worker[CELLS];
+    private final ArrayList<Player> owners;
+    private int[] ownerMasks;
+
+    private ArrayList<Worker> workers;
+
+    private long boardHash;
+    private long workerHash;
+
     /**
      * Initialize the map to level zero
      */
     public Map(){
         workers = new ArrayList<>();
-        for (int i = 0; i<LENGTH ; i++)
-            for (int j = 0; j<HEIGHT; j++)
-                map[i][j] = 1;
+        owners = new ArrayList<>();
+        ownerMasks = new int[0];
+        levelMasks[0] = (1 << CELLS) - 1;
     }
 
     /**
      * Copy constructor
+     * Workers are shared with the copied map but their future moves are tracked only by the original map
      * @param other copied map
      */
     public Map(Map other){
         workers = new ArrayList<>();
         workers.addAll(other.workers);
-        for (int i = 0; i<LENGTH ; i++)
-            for (int j = 0; j<HEIGHT; j++)
-                map[i][j] = other.map[i][j];
+        owners = new ArrayList<>(other.owners);
+        ownerMasks = other.ownerMasks.clone();
+        importMap(other);
+        workerMask = other.workerMask;
+        workerHash = other.workerHash;
+        System.arraycopy(other.cellWorkers, 0, cellWorkers, 0, CELLS);
     }
 
     /**
-     * Import map data from another map
+     * Create an independent copy of a map whose workers are copies of the original workers
+     * Owner slots are kept in the same order, so the copy has the same hash of the original
+     * @param other map to copy
+     * @param players copy of every owner of the original map (by identity), owners without a copy are kept
+     * @param copies copy of every worker of the original map (by identity)
+     */
+    Map(Map other, java.util.Map<Player, Player> players, java.util.Map<Worker, Worker> copies)
+    {
+        workers = new ArrayList<>();
+        owners = new ArrayList<>();
+        for (Player owner : other.owners)
+            owners.add(players.getOrDefault(owner, owner));
+        ownerMasks = other.ownerMasks.clone();
+        importMap(other);
+        workerMask = other.workerMask;
+        workerHash = other.workerHash;
+
+        for (Worker worker : other.workers)
+        {
+            Worker copy = copies.get(worker);
+            workers.add(copy);
+            copy.setMap(this);
+        }
+        for (int i = 0; i < CELLS; i++)
+            cellWorkers[i] = other.cellWorkers[i] == null ? null : copies.get(other.cellWorkers[i]);
+    }
+
+    /**
+     * Import map data (levels and domes) from another map
      * @param m map to import
      */
     public void importMap(Map m)
     {
-        map = m.getMap();
+        System.arraycopy(m.levelMasks, 0, levelMasks, 0, levelMasks.length);
+        domeMask = m.domeMask;
+        boardHash = m.boardHash;
     }
 
     /**
      * Get map as a double array of cell for serialization purposes
+     * The array is generated from the bitboards on every call so it can be freely modified by the caller
      * @return map ad bidimensional array
      */
-    public int[][] getMap() { return map; }
+    public int[][] getMap() {
+        int[][] map = new int[HEIGHT][LENGTH];
+        for (int i = 0; i<HEIGHT ; i++)
+            for (int j = 0; j<LENGTH; j++)
+            {
+                int bit = 1 << cellIndex(i, j);
+                map[i][j] = (1 << levelOf(bit)) + ((domeMask & bit) != 0 ? DOME_VALUE : 0);
+            }
+
+        return map;
+    }
 
     /**
      * Increases level of selected cell, if level = 4 becomes a dome
@@ -88,10 +157,19 @@ public class Map
 
         if(isInsideMap(pos) && !isCellDome(pos))
         {
-            map[pos.getX()][pos.getY()] = map[pos.getX()][pos.getY()] << 1;
+            int cell = cellIndex(pos.getX(), pos.getY());
+            int bit = 1 << cell;
+            int level = levelOf(bit);
+
+            levelMasks[level] &= ~bit;
+            levelMasks[level + 1] |= bit;
+            boardHash ^= Zobrist.level(cell, level) ^ Zobrist.level(cell, level + 1);
 
-            if (getLevel(pos) == MAX_BUILD_HEIGHT)
-                map[pos.getX()][pos.getY()] = map[pos.getX()][pos.getY()] + DOME_VALUE;
+            if (level + 1 == MAX_BUILD_HEIGHT)
+            {
+                domeMask |= bit;
+                boardHash ^= Zobrist.dome(cell);
+            }
 
             return true;
         }
@@ -108,8 +186,9 @@ public class Map
     {
         if(isInsideMap(pos) && !isCellDome(pos))
         {
-            //map[pos.getX()][pos.getY()] = map[pos.getX()][pos.getY()] << 1;
-            map[pos.getX()][pos.getY()] = map[pos.getX()][pos.getY()] + DOME_VALUE;
+            int cell = cellIndex(pos.getX(), pos.getY());
+            domeMask |= 1 << cell;
+            boardHash ^= Zobrist.dome(cell);
             return true;
         }
 
@@ -123,7 +202,7 @@ public class Map
      */
     public int getLevel(Vector2 pos) {
         if(isInsideMap(pos))
-            return Integer.numberOfTrailingZeros(map[pos.getX()][pos.getY()]);
+            return levelOf(cellBit(pos));
         return -1;
     }
 
@@ -133,7 +212,7 @@ public class Map
      * @return true if dome, false if is not in map or is not dome
      */
     public boolean isCellDome (Vector2 pos){
-        if(isInsideMap(pos)) return map[pos.getX()][pos.getY()] > DOME_VALUE;
+        if(isInsideMap(pos)) return (domeMask & cellBit(pos)) != 0;
         return false;
     }
 
@@ -148,14 +227,21 @@ public class Map
 
     /**
      * Add in map's workers list all the element of the player's workers list
+     * From now on the map tracks every position change of the added workers
      * @param player selected player
      */
     public void setWorkers(Player player){
-        workers.addAll(player.getWorkers());
+        for (Worker worker : player.getWorkers())
+        {
+            workers.add(worker);
+            worker.setMap(this);
+            occupy(worker, worker.getPosition());
+        }
     }
 
     /**
      * Get al the workers placed in the map
+     * The list should only be read, use setWorkers and removeWorkers to change it
      * @return placed workers list
      */
     public ArrayList<Worker> getWorkers(){
@@ -170,10 +256,8 @@ public class Map
      */
     public Worker getWorker(Vector2 position)
     {
-        for (Worker worker : workers) {
-            if (worker.getPosition().equals(position))
-                return worker;
-        }
+        if(isInsideMap(position))
+            return cellWorkers[cellIndex(position.getX(), position.getY())];
         return null;
     }
 
@@ -183,7 +267,14 @@ public class Map
      * @param player selected player
      */
     public void removeWorkers (Player player){
-        workers.removeAll(player.getWorkers());
+        for (Worker worker : player.getWorkers())
+        {
+            if(workers.remove(worker))
+            {
+                vacate(worker, worker.getPosition());
+                worker.setMap(null);
+            }
+        }
         player.getWorkers().removeAll(player.getWorkers());
     }
     /**
@@ -192,12 +283,8 @@ public class Map
      * @return true if a worker is in the selected cell, false if pos is not in map
      */
     public boolean isCellEmpty (Vector2 pos){
-        if(isInsideMap(pos)) {
-            for (Worker worker : workers) {
-                if (worker.getPosition().getX() == pos.getX() && worker.getPosition().getY() == pos.getY()) return false;
-            }
-            return true;
-        }
+        if(isInsideMap(pos))
+            return (workerMask & cellBit(pos)) == 0;
         return true;
     }
 
@@ -207,20 +294,300 @@ public class Map
      */
     public ArrayList<Vector2> cellWithoutWorkers(){
         ArrayList<Vector2> free =  new ArrayList<>();
-        Vector2 pos;
-        for (int i = 0; i<LENGTH ; i++)
-            for (int j = 0; j<HEIGHT; j++){
-                pos = new Vector2(i,j);
-                if(isCellEmpty(pos)) free.add(pos);
+        for (int i = 0; i<HEIGHT ; i++)
+            for (int j = 0; j<LENGTH; j++){
+                if((workerMask & (1 << cellIndex(i, j))) == 0) free.add(Vector2.of(i,j));
             }
 
         return free;
     }
 
-}
+    // **********************************************************************************************
+    // Bitboards
+
+    /**
+     * Return the Zobrist hash of the map (levels, domes and worker positions)
+     * The hash is updated on every build and worker move
+     * @return map hash
+     */
+    public long getHash()
+    {
+        return boardHash ^ workerHash;
+    }
 
+    /**
+     * Convert a map coordinate into its bit index
+     * @param x row index
+     * @param y col index
+     * @return cell index used in the bitboards
+     */
+    public static int cellIndex(int x, int y)
+    {
+        return x * LENGTH + y;
+    }
 
+    /**
+     * Convert a position into its bit index
+     * @param pos position to convert
+     * @return cell index, -1 if pos is null or outside the map
+     */
+    public static int cellIndex(Vector2 pos)
+    {
+        if(pos == null || pos.getX() < 0 || pos.getX() >= HEIGHT || pos.getY() < 0 || pos.getY() >= LENGTH)
+            return -1;
+        return cellIndex(pos.getX(), pos.getY());
+    }
 
+    /**
+     * Return the height of a cell
+     * @param cell cell index (must be inside the map)
+     * @return cell height
+     */
+    public int getLevel(int cell)
+    {
+        return levelOf(1 << cell);
+    }
 
+    /**
+     * Check if a cell has a dome
+     * @param cell cell index (must be inside the map)
+     * @return true if dome
+     */
+    public boolean isCellDome(int cell)
+    {
+        return (domeMask & (1 << cell)) != 0;
+    }
 
+    /**
+     * Check if no worker is placed in a cell
+     * @param cell cell index (must be inside the map)
+     * @return true if empty
+     */
+    public boolean isCellEmpty(int cell)
+    {
+        return (workerMask & (1 << cell)) == 0;
+    }
+
+    /**
+     * Return the worker placed in a cell
+     * @param cell cell index (must be inside the map)
+     * @return worker or null if the cell is empty
+     */
+    public Worker getWorker(int cell)
+    {
+        return cellWorkers[cell];
+    }
+
+    /**
+     * Convert a cell mask into the list of its positions
+     * @param mask cell mask
+     * @return positions of the cells set in mask
+     */
+    public static ArrayList<Vector2> cellsOf(int mask)
+    {
+        ArrayList<Vector2> cells = new ArrayList<>(Integer.bitCount(mask));
+        while (mask != 0)
+        {
+            cells.add(Adjacency.position(Integer.numberOfTrailingZeros(mask)));
+            mask &= mask - 1;
+        }
+        return cells;
+    }
+
+    /**
+     * Return the mask of the cells that have exactly the requested level
+     * @param level level to get (0 - 4)
+     * @return level mask
+     */
+    public int getLevelMask(int level)
+    {
+        return levelMasks[level];
+    }
 
+    /**
+     * Return all the level masks, levelMasks[l] are the cells with exactly level l
+     * The returned array is the internal state of the map and must not be modified
+     * @return level masks
+     */
+    int[] getLevelMasks()
+    {
+        return levelMasks;
+    }
+
+    /**
+     * Return the mask of the cells with a dome
+     * @return dome mask
+     */
+    public int getDomeMask()
+    {
+        return domeMask;
+    }
+
+    /**
+     * Return the mask of the cells occupied by a worker
+     * @return worker mask
+     */
+    public int getWorkerMask()
+    {
+        return workerMask;
+    }
+
+    /**
+     * Return the mask of the cells occupied by the workers of a player
+     * @param player owner of the workers
+     * @return player workers mask, 0 if the player has no worker in this map
+     */
+    public int getWorkerMask(Player player)
+    {
+        int slot = owners.indexOf(player);
+        return slot >= 0 ? ownerMasks[slot] : 0;
+    }
+
+    /**
+     * Return the number of owner slots (owners that placed a worker in this map)
+     * @return owner slots
+     */
+    int getOwnerCount()
+    {
+        return ownerMasks.length;
+    }
+
+    /**
+     * Return the mask of the cells occupied by the workers of an owner slot
+     * @param slot owner slot, in the order owners placed their first worker (see Zobrist.worker)
+     * @return owner workers mask
+     */
+    int getOwnerMask(int slot)
+    {
+        return ownerMasks[slot];
+    }
+
+    /**
+     * Force level and dome of a cell, used to restore a cell after an action is undone
+     * @param cell cell index
+     * @param level level to set
+     * @param dome true if the cell should have a dome
+     */
+    void setCell(int cell, int level, boolean dome)
+    {
+        int bit = 1 << cell;
+        int old = levelOf(bit);
+
+        levelMasks[old] &= ~bit;
+        levelMasks[level] |= bit;
+        boardHash ^= Zobrist.level(cell, old) ^ Zobrist.level(cell, level);
+
+        if(isCellDome(cell) != dome)
+        {
+            domeMask ^= bit;
+            boardHash ^= Zobrist.dome(cell);
+        }
+    }
+
+    /**
+     * Update the worker masks after a worker changed its position
+     * Called by workers placed in this map
+     * @param worker worker that moved
+     * @param from old position
+     * @param to new position
+     */
+    void moveWorker(Worker worker, Vector2 from, Vector2 to)
+    {
+        vacate(worker, from);
+        occupy(worker, to);
+    }
+
+    /**
+     * Return the level of a cell using its bit
+     * @param bit cell bit
+     * @return level of the cell
+     */
+    private int levelOf(int bit)
+    {
+        for (int l = 0; l < MAX_BUILD_HEIGHT; l++)
+            if((levelMasks[l] & bit) != 0) return l;
+        return MAX_BUILD_HEIGHT;
+    }
+
+    /**
+     * Return the bit of a position (position must be inside the map)
+     * @param pos cell position
+     * @return cell bit
+     */
+    private int cellBit(Vector2 pos)
+    {
+        return 1 << cellIndex(pos.getX(), pos.getY());
+    }
+
+    /**
+     * Mark a cell as occupied by a worker
+     * @param worker worker to place
+     * @param pos cell occupied by the worker
+     */
+    private void occupy(Worker worker, Vector2 pos)
+    {
+        if(pos == null || !isInsideMap(pos)) return;
+
+        int idx = cellIndex(pos.getX(), pos.getY());
+        cellWorkers[idx] = worker;
+        workerMask |= 1 << idx;
+        clearOwners(idx);
+
+        int slot = owners.indexOf(worker.getOwner());
+        if(slot < 0)
+        {
+            owners.add(worker.getOwner());
+            slot = owners.size() - 1;
+            int[] masks = new int[owners.size()];
+            System.arraycopy(ownerMasks, 0, masks, 0, ownerMasks.length);
+            ownerMasks = masks;
+        }
+        ownerMasks[slot] |= 1 << idx;
+        workerHash ^= Zobrist.worker(slot, idx);
+    }
+
+    /**
+     * Free a cell from a worker
+     * If another worker is still on the same cell (eg: during a swap) the cell remains occupied by it
+     * @param worker worker that leaves the cell
+     * @param pos cell left by the worker
+     */
+    private void vacate(Worker worker, Vector2 pos)
+    {
+        if(pos == null || !isInsideMap(pos)) return;
+
+        int idx = cellIndex(pos.getX(), pos.getY());
+        if(cellWorkers[idx] != worker) return;
+
+        cellWorkers[idx] = null;
+        workerMask &= ~(1 << idx);
+        clearOwners(idx);
+
+        // restore a worker that shares the same cell
+        for (Worker other : workers)
+        {
+            if(other != worker && pos.equals(other.getPosition()))
+            {
+                occupy(other, pos);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove a cell from the owner masks (and its worker from the hash)
+     * @param idx cell index
+     */
+    private void clearOwners(int idx)
+    {
+        for (int i = 0; i < ownerMasks.length; i++)
+        {
+            if((ownerMasks[i] & (1 << idx)) != 0)
+            {
+                ownerMasks[i] &= ~(1 << idx);
+                workerHash ^= Zobrist.worker(i, idx);
+            }
+        }
+    }
+
+}
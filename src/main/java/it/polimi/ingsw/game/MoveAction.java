@@ -1,7 +1,5 @@
 package it.polimi.ingsw.game;
 
-import java.util.ArrayList;
-
 /**
  * This action allow players to move workers around the map
  * Also checks if I won before ending the run method
@@ -33,51 +31,38 @@ public class MoveAction extends Action {
     }
 
 
-    /**
-     * Check if this worker can swap with another worker
-     * @param gc global constraints
-     * @return return true if can swap position with another worker
-     */
-    protected boolean canSwap(GameConstraints gc)
+    @Override
+    int opcode()
     {
-        return gc.check(GameConstraints.Constraint.CAN_SWAP_CONSTRAINT);
+        return getClass() == MoveAction.class ? CompiledGraph.OP_MOVE : CompiledGraph.OP_CUSTOM;
     }
 
-    /**
-     * Check if this worker can push another worker
-     * @param gc global constraints
-     * @return return true if can push position with another worker
-     */
-    protected boolean canPush(GameConstraints gc)
+    @Override
+    int localConstraintMask()
     {
-        return gc.check(GameConstraints.Constraint.CAN_PUSH_CONSTRAINT);
+        return localConstrains.toInt();
     }
 
     /**
-     * Check if this worker can move up or not
-     * @param gc global constraints
-     * @return true if can move up
+     * Check if this worker can swap with another worker
+     * @param constraints merged constraint mask
+     * @return return true if can swap position with another worker
      */
-    protected boolean canMoveUp(GameConstraints gc)
+    protected boolean canSwap(int constraints)
     {
-        // check if BLOCk_MOVE_UP is enabled, but also ignore it if SET_BLOCK_MOVE_UP is enabled because
-        // this here removes the moveup block
-        return !gc.check(GameConstraints.Constraint.BLOCK_MOVE_UP) || localConstrains.check(GameConstraints.Constraint.SET_BLOCK_MOVE_UP);
+        return GameConstraints.check(constraints, GameConstraints.Constraint.CAN_SWAP_CONSTRAINT);
     }
 
     /**
-     * Check if a worker in a position is mine or not
-     * @param me owner to check
-     * @param target position of the worker to check
-     * @param m current map
-     * @return true is the worker is mine
+     * Check if this worker can push another worker
+     * @param constraints merged constraint mask
+     * @return return true if can push position with another worker
      */
-    protected boolean isWorkerMine(Player me, Vector2 target, Map m)
+    protected boolean canPush(int constraints)
     {
-        return m.getWorker(target).getOwner().equals(me);
+        return GameConstraints.check(constraints, GameConstraints.Constraint.CAN_PUSH_CONSTRAINT);
     }
 
-
     /**
      * Calculate the new position of the target worker if a push action is done
      * @param w my worker that pushes the other
@@ -86,76 +71,28 @@ public class MoveAction extends Action {
      */
     protected Vector2 calculatePushPos(Worker w, Vector2 target)
     {
-        int x = target.getX() + (target.getX() - w.getPosition().getX());
-        int y = target.getY() + (target.getY() - w.getPosition().getY());
-        return new Vector2(x, y);
+        return Adjacency.position(calculatePushPos(Map.cellIndex(w.getPosition()), Map.cellIndex(target)));
     }
 
     /**
-     * Check if a move is valid or not
-     * @param w worker to use for the check
-     * @param target target position to check
-     * @param m current map
-     * @param gc constrains to apply
-     * @return true if the move is valid, false if not
+     * Calculate the cell where the target worker ends if a push action is done
+     * @param from cell of my worker that pushes the other
+     * @param target adjacent cell of the worker to push
+     * @return push destination cell, Adjacency.NO_CELL if outside map
      */
-    protected boolean isValidMove(Worker w, Vector2 target, Map m, GameConstraints gc)
+    protected int calculatePushPos(int from, int target)
     {
-        // target outside map
-        if(!m.isInsideMap(target))
-            return false;
-
-        // same cell or distance grater than 1
-        if(target.distance(w.getPosition()) != 1)
-            return false;
-
-        int hDiff = m.getLevel(target) - m.getLevel(w.getPosition());
-
-        // can t move to a cell that has a high difference grater than 1 (or 0 if athena skill is enabled)
-        // or its a dome
-        int maxDiff = (canMoveUp(gc) ? 1 : 0);
-        if(hDiff > maxDiff  || m.isCellDome(target))
-            return  false;
-
-        // block move to the same cell
-        if(gc.check(GameConstraints.Constraint.BLOCK_SAME_CELL_MOVE) && target.equals(w.getLastLocation()))
-        {
-            return false;
-        }
-
-        if(m.isCellEmpty(target))
-        {
-            return true;
-        }
-        else
-        {
-            if(isWorkerMine(w.getOwner(), target, m))
-            {
-                return false; // no action can operate on my workers
-            }
-            else
-            {
-                //push must check if the "push dest" is inside map
-                if(canPush(gc))
-                {
-                    Vector2 p = calculatePushPos(w, target);
-                    return m.isInsideMap(p) && m.isCellEmpty(p) && !m.isCellDome(p);
-                }
-                return canSwap(gc);
-            }
-        }
-
+        return Adjacency.pushDestination(from, Adjacency.direction(from, target));
     }
 
-
     /**
      * Execute a move action
      * @param w worker to move
      * @param target target position
      * @param m current map
-     * @param gc constraints to apply
+     * @param constraints merged constraint mask
      */
-    protected void move(Worker w, Vector2 target, Map m, GameConstraints gc)
+    protected void move(Worker w, Vector2 target, Map m, int constraints)
     {
         if ((m.isCellEmpty(target)))
         {
@@ -164,14 +101,14 @@ public class MoveAction extends Action {
         else
         {
             Worker other = m.getWorker(target);
-            if(canSwap(gc))
+            if(canSwap(constraints))
             {
-                Vector2 swp = w.getPosition().copy();
+                Vector2 swp = w.getPosition();
                 w.setPosition(other.getPosition());
                 other.setPosition(swp);
 
             }
-            if (canPush(gc))
+            if (canPush(constraints))
             {
                 other.setPosition(calculatePushPos(w, target));
                 w.setPosition(target);
@@ -198,31 +135,46 @@ public class MoveAction extends Action {
             globalConstrains.remove(GameConstraints.Constraint.BLOCK_MOVE_UP);
         }
 
-        //merge local and global constrains to avoid multiple checks
-        GameConstraints gc = mergeConstraints(localConstrains, globalConstrains);
-
-        ArrayList<Vector2> allowed_cells = possibleCells(w, m, gc);
+        int allowedCells = possibleCellsMask(w, m, GameConstraints.toInt(globalConstrains));
 
-        if (allowed_cells.size() == 0)
+        if (allowedCells == 0)
             return  -1;  // if i have nowhere to go -> i lost
 
-        if (allowed_cells.contains(target))
-        {
-            w.setLastLocation(w.getPosition().copy()); // update last position for next possible moves
-            move(w, target, m, gc);
-        }
-        else
-        {
+        if (!isCellInMask(allowedCells, target))
             throw new NotAllowedMoveException();
+
+        return runValidated(w, target, m, globalConstrains);
+    }
+
+    /**
+     * Execute the move action on a valid target without generating valid cells again
+     * @param w target worker used in this action
+     * @param target valid target position
+     * @param m map where the action is executed
+     * @param globalConstrains global game constrains that should be applied before action execution
+     * @return 1 if won, 0 = to continue
+     */
+    @Override
+    int runValidated(Worker w, Vector2 target, Map m, GameConstraints globalConstrains)
+    {
+        if(localConstrains.check(GameConstraints.Constraint.SET_BLOCK_MOVE_UP))
+        {
+            globalConstrains.remove(GameConstraints.Constraint.BLOCK_MOVE_UP);
         }
 
+        //merge local and global constrains to avoid multiple checks
+        int constraints = localConstrains.toInt() | GameConstraints.toInt(globalConstrains);
+
+        w.setLastLocation(w.getPosition()); // update last position for next possible moves
+        move(w, target, m, constraints);
+
         // and reset it later if moves up
         if(localConstrains.check(GameConstraints.Constraint.SET_BLOCK_MOVE_UP) && m.getLevel(w.getPosition()) > m.getLevel(w.getLastLocation()))
         {
             globalConstrains.add(GameConstraints.Constraint.BLOCK_MOVE_UP);
         }
 
-        return winCheck(w, m, gc, w.getLastLocation());
+        return winCheck(w, m, constraints, w.getLastLocation());
     }
 
 
@@ -230,49 +182,37 @@ public class MoveAction extends Action {
      * Check if a win condition is met
      * @param w worker i just moved
      * @param m map where action is taking place
-     * @param gc collection of constraints
+     * @param constraints merged constraint mask
      * @param prev_pos the pos i started the turn in, used to check for "WIN_BY_GOING_DOWN" constraint
      * @return 1 if i won, 0 else
      */
-    protected int winCheck(Worker w, Map m, GameConstraints gc, Vector2 prev_pos)
+    protected int winCheck(Worker w, Map m, int constraints, Vector2 prev_pos)
     {
-            int difference = m.getLevel(w.getPosition()) - m.getLevel(prev_pos);
-            if(m.getLevel(w.getPosition()) == 3 && difference >= 1)
-                return 1;
-            if((difference < -1) && (gc.check(GameConstraints.Constraint.WIN_BY_GOING_DOWN)))
-                return 1;
-        return 0;
+        return ActionKernels.isWin(m.getLevel(prev_pos), m.getLevel(w.getPosition()), constraints) ? 1 : 0;
     }
 
     /**
-     * Return a list of all valid cells for a move
+     * Return a mask of all valid cells for a move (see ActionKernels.moveMask)
      * @param w target worker
      * @param m map where action is taking place
      * @param gc Collection of various constraints
-     * @return an arrayList of vector2 objects representing all the possible cells i can move to
+     * @return mask of all the possible cells i can move to
      */
-
     @Override
-    public ArrayList<Vector2> possibleCells(Worker w, Map m, GameConstraints gc) {
-
-        GameConstraints gmc = mergeConstraints(localConstrains, gc);
-
-        ArrayList<Vector2> cells = new ArrayList<>();
-
-        int x = w.getPosition().getX();
-        int y = w.getPosition().getY();
-
-        for (int i = (x - 1); i <= (x + 1); i++) {
-            for (int j = (y - 1); j <= (y + 1); j++) {
-                Vector2 temp = new Vector2(i, j);
+    public int possibleCellsMask(Worker w, Map m, GameConstraints gc) {
+        return possibleCellsMask(w, m, GameConstraints.toInt(gc));
+    }
 
-                if(isValidMove(w, temp, m, gmc))
-                {
-                    cells.add(temp);
-                }
-            }
-        }
-        return cells;
+    /**
+     * Return a mask of all valid cells for a move using a plain constraint mask (see ActionKernels.moveMask)
+     * @param w target worker
+     * @param m map where action is taking place
+     * @param constraints global constraint mask
+     * @return mask of all the possible cells i can move to
+     */
+    @Override
+    public int possibleCellsMask(Worker w, Map m, int constraints) {
+        return ActionKernels.moveMask(w, m, constraints, localConstrains.toInt());
     }
 
 
@@ -35,6 +35,12 @@ public class MoveAgainAction extends MoveAction {
         this(GameConstraints.Constraint.NONE);
     }
 
+    @Override
+    int opcode()
+    {
+        return getClass() == MoveAgainAction.class ? CompiledGraph.OP_MOVE : CompiledGraph.OP_CUSTOM;
+    }
+
 }
 
 
@@ -0,0 +1,77 @@
+package it.polimi.ingsw.game;
+
+/**
+ * Small direct mapped cache of "can the player still move" results indexed by position key
+ * A new result replaces the old one stored in the same slot, so the cache never grows
+ */
+class MoveCheckCache
+{
+    /**
+     * Default number of slots
+     */
+    static final int DEFAULT_SIZE = 1024;
+
+    private final long[] keys;
+    private final boolean[] results;
+    private final boolean[] used;
+    private final int mask;
+
+    /**
+     * Create a cache with the default number of slots
+     */
+    MoveCheckCache()
+    {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Create a cache
+     * @param size number of slots, must be a power of two
+     */
+    MoveCheckCache(int size)
+    {
+        if(Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("Cache size must be a power of two");
+
+        keys = new long[size];
+        results = new boolean[size];
+        used = new boolean[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Return a cached result
+     * @param key position key
+     * @return 1 if the player can move, 0 if stuck, -1 if the key is not cached
+     */
+    int get(long key)
+    {
+        int slot = slot(key);
+        if(!used[slot] || keys[slot] != key)
+            return -1;
+        return results[slot] ? 1 : 0;
+    }
+
+    /**
+     * Save a result
+     * @param key position key
+     * @param canMove result to save
+     */
+    void put(long key, boolean canMove)
+    {
+        int slot = slot(key);
+        keys[slot] = key;
+        results[slot] = canMove;
+        used[slot] = true;
+    }
+
+    /**
+     * Return the slot of a key
+     * @param key position key
+     * @return slot index
+     */
+    private int slot(long key)
+    {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
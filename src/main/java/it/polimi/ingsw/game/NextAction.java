@@ -10,6 +10,7 @@ public class NextAction {
     private int worker;
     private String actionName;
     private ArrayList<Vector2> availablePositions;
+    private int availableMask;
     private boolean isUndoAction;
 
 
@@ -25,6 +26,8 @@ public class NextAction {
         this.worker = w.getId();
         availablePositions = new ArrayList<>();
         availablePositions.add(position);
+        int cell = Map.cellIndex(position);
+        availableMask = cell >= 0 ? 1 << cell : 0;
         actionName = name;
         isUndoAction = isUndo;
     }
@@ -37,10 +40,20 @@ public class NextAction {
      * @param node bahaviour graph used to generate valid moves for this action
      */
     public NextAction(Worker w, Map m, GameConstraints constraints,BehaviourNode node) {
+        this(w, node.getAction().displayName(), node.getAction().possibleCellsMask(w,m,constraints));
+    }
+
+    /**
+     * Generate a new next action from an already calculated mask of valid cells
+     * @param w worker allowed to run this action
+     * @param name action name displayed to the player
+     * @param mask valid cells where this action can be applied
+     */
+    NextAction(Worker w, String name, int mask) {
         this.worker = w.getId();
-        this.actionName = node.getAction().displayName();
-        this.availablePositions = new ArrayList<>();
-        this.availablePositions.addAll(node.getAction().possibleCells(w,m,constraints));
+        this.actionName = name;
+        this.availableMask = mask;
+        this.availablePositions = Map.cellsOf(mask);
         isUndoAction = false;
     }
 
@@ -58,6 +71,12 @@ public class NextAction {
      */
     public List<Vector2> getAvailablePositions(){ return this.availablePositions; }
 
+    /**
+     * Return the valid cells where this move can be applied as a mask (see Map.cellIndex)
+     * @return valid cell mask
+     */
+    public int getAvailableMask(){ return this.availableMask; }
+
     /**
      * Return the worker id that must be used to run this move
      * @return worker id
@@ -0,0 +1,360 @@
+package it.polimi.ingsw.game;
+
+import java.util.LinkedHashMap;
+import java.util.SplittableRandom;
+
+/**
+ * Perft style move counter used to verify and benchmark the rules engine
+ * From a position it plays every complete turn sequence up to a depth (number of turns) and counts the leaves:
+ * sequences that reach the depth and sequences that end earlier because the game is over.
+ * As in Game, a player that can't complete any turn loses, so a position where the player to move is stuck
+ * is a leaf too (counts are meant for two players games where that player loss ends the game).
+ * Counts of a position are fixed by the rules, so any faster version of actions, graphs or generators
+ * must produce the same numbers of the reference implementation.
+ * A counter reuses its generators and records between runs, so it is not thread safe
+ */
+public final class Perft
+{
+    /**
+     * Max depth that can be counted
+     */
+    public static final int MAX_DEPTH = 16;
+
+    /**
+     * Positions of the workers of the first player in a standard test position
+     */
+    public static final Vector2[] FIRST_WORKERS = {Vector2.of(1, 1), Vector2.of(3, 3)};
+    /**
+     * Positions of the workers of the second player in a standard test position
+     */
+    public static final Vector2[] SECOND_WORKERS = {Vector2.of(1, 3), Vector2.of(3, 1)};
+    /**
+     * Mask of every cell of the map, to draw random cells anywhere (see randomCells)
+     */
+    public static final int ALL_CELLS = (1 << Map.CELLS) - 1;
+
+    private static final int DEFAULT_DEPTH = 3;
+
+    private final TurnGenerator[] generators;
+    private final UndoRecord[][] records;
+
+    private long nodes;
+    private long nanos;
+
+    /**
+     * Create a new counter
+     */
+    public Perft()
+    {
+        generators = new TurnGenerator[MAX_DEPTH];
+        records = new UndoRecord[MAX_DEPTH][TurnGenerator.MAX_STEPS];
+        for (int i = 0; i < MAX_DEPTH; i++)
+        {
+            generators[i] = new TurnGenerator();
+            for (int j = 0; j < TurnGenerator.MAX_STEPS; j++)
+                records[i][j] = new UndoRecord();
+        }
+    }
+
+    /**
+     * Count the turn sequences of a running game
+     * The game is left in the same state it had before the call
+     * @param game running game
+     * @param depth number of turns to play (0 - MAX_DEPTH)
+     * @return number of leaves
+     */
+    public long count(Game game, int depth)
+    {
+        checkDepth(depth);
+
+        nodes = 0;
+        long start = System.nanoTime();
+        long leaves = count(game, depth, 0);
+        nanos = System.nanoTime() - start;
+        return leaves;
+    }
+
+    /**
+     * Count the turn sequences of a running game splitting the result by the first turn
+     * Useful to find the first turn that differs between two engines
+     * @param game running game
+     * @param depth number of turns to play (1 - MAX_DEPTH)
+     * @return leaves of every first turn (see TurnGenerator.toString to read the key), in generation order
+     */
+    public java.util.Map<Long, Long> divide(Game game, int depth)
+    {
+        checkDepth(depth);
+        if(depth == 0)
+            throw new IllegalArgumentException("Depth must be greater than 0");
+
+        nodes = 0;
+        long start = System.nanoTime();
+
+        java.util.Map<Long, Long> result = new LinkedHashMap<>();
+        TurnGenerator generator = generators[0];
+        int count = generator.generate(game);
+        for (int i = 0; i < count; i++)
+        {
+            long turn = generator.get(i);
+            result.put(turn, playAndCount(game, turn, depth, 0));
+        }
+
+        nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Return the number of turns played by the last count
+     * @return played turns
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * Return the duration of the last count
+     * @return duration in nanoseconds
+     */
+    public long getNanos()
+    {
+        return nanos;
+    }
+
+    /**
+     * Return the speed of the last count
+     * @return played turns per second
+     */
+    public double getNodesPerSecond()
+    {
+        return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+    }
+
+    /**
+     * Create a running game with two players in the standard test position
+     * The first player uses the first card and moves first
+     * @param firstCard card id of the first player, 0 for a game without gods
+     * @param secondCard card id of the second player, 0 for a game without gods
+     * @return game ready for the first turn
+     * @throws IllegalArgumentException if the pairing is not valid
+     */
+    public static Game newGame(int firstCard, int secondCard)
+    {
+        return newGame(firstCard, secondCard, FIRST_WORKERS, SECOND_WORKERS);
+    }
+
+    /**
+     * Create a running game with two players
+     * The first player uses the first card and moves first
+     * @param firstCard card id of the first player, 0 for a game without gods
+     * @param secondCard card id of the second player, 0 for a game without gods
+     * @param firstWorkers worker positions of the first player
+     * @param secondWorkers worker positions of the second player
+     * @return game ready for the first turn
+     * @throws IllegalArgumentException if the pairing or the positions are not valid
+     */
+    public static Game newGame(int firstCard, int secondCard, Vector2[] firstWorkers, Vector2[] secondWorkers)
+    {
+        if((firstCard == 0) != (secondCard == 0))
+            throw new IllegalArgumentException("Both players must have a god or none");
+
+        Game game = new Game();
+        Player first = new Player(0, "first");
+        Player second = new Player(1, "second");
+        game.join(first);
+        game.join(second);
+
+        try
+        {
+            if(firstCard != 0)
+            {
+                if(!game.start(first)
+                        || !game.applyGodFilter(first, new int[]{firstCard, secondCard})
+                        || !game.selectGod(second, secondCard)
+                        || !game.selectFirstPlayer(first, first))
+                    throw new IllegalArgumentException("Invalid god pairing " + firstCard + " - " + secondCard);
+            }
+
+            if(!game.placeWorkers(first, firstWorkers) || !game.placeWorkers(second, secondWorkers))
+                throw new IllegalArgumentException("Invalid worker positions");
+        }
+        catch (NotAllowedOperationException e)
+        {
+            throw new IllegalArgumentException("Game can't be created", e);
+        }
+
+        return game;
+    }
+
+    /**
+     * Create a running game with two players and workers on the given cells
+     * @param firstCard card id of the first player, 0 for a game without gods
+     * @param secondCard card id of the second player, 0 for a game without gods
+     * @param cells worker cells of the first player then of the second player (see Map.cellIndex)
+     * @return game ready for the first turn
+     * @throws IllegalArgumentException if the pairing or the cells are not valid
+     */
+    public static Game newGame(int firstCard, int secondCard, int[] cells)
+    {
+        if(cells.length != 2 * Game.WORKERS_PER_PLAYER)
+            throw new IllegalArgumentException("Invalid worker positions");
+
+        Vector2[][] workers = new Vector2[2][Game.WORKERS_PER_PLAYER];
+        for (int i = 0; i < cells.length; i++)
+            workers[i / Game.WORKERS_PER_PLAYER][i % Game.WORKERS_PER_PLAYER] = Vector2.of(cells[i]);
+        return newGame(firstCard, secondCard, workers[0], workers[1]);
+    }
+
+    /**
+     * Create a running game with two players and workers on random cells
+     * @param firstCard card id of the first player, 0 for a game without gods
+     * @param secondCard card id of the second player, 0 for a game without gods
+     * @param random source of the worker cells
+     * @return game ready for the first turn
+     * @throws IllegalArgumentException if the pairing is not valid
+     */
+    public static Game newRandomGame(int firstCard, int secondCard, SplittableRandom random)
+    {
+        return newGame(firstCard, secondCard, randomCells(2 * Game.WORKERS_PER_PLAYER, ALL_CELLS, random));
+    }
+
+    /**
+     * Draw different random cells, for example the worker cells of a random placement
+     * @param count number of cells
+     * @param allowed mask of the cells that can be drawn
+     * @param random source of the cells
+     * @return cells in drawing order
+     * @throws IllegalArgumentException if the mask has less than count cells
+     */
+    public static int[] randomCells(int count, int allowed, SplittableRandom random)
+    {
+        if(Integer.bitCount(allowed & ALL_CELLS) < count)
+            throw new IllegalArgumentException("Not enough cells to draw " + count + " of them");
+
+        int[] cells = new int[count];
+        int used = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int cell;
+            do
+                cell = random.nextInt(Map.CELLS);
+            while ((used & (1 << cell)) != 0 || (allowed & (1 << cell)) == 0);
+            used |= 1 << cell;
+            cells[i] = cell;
+        }
+        return cells;
+    }
+
+    /**
+     * Benchmark entry point: count every god pairing from the standard test position
+     * and print nodes per second of every pairing and totals for every card
+     * @param args optional depth (default 3)
+     */
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+
+        CardCollection cards = new CardCollection();
+        int[] ids = cards.getCardIDs();
+        long[] cardNodes = new long[ids.length];
+        long[] cardNanos = new long[ids.length];
+        Perft perft = new Perft();
+
+        System.out.printf("%-12s %-12s %14s %14s %10s %14s%n", "first", "second", "leaves", "nodes", "ms", "nodes/s");
+        for (int i = 0; i < ids.length; i++)
+        {
+            for (int j = 0; j < ids.length; j++)
+            {
+                if(i == j)
+                    continue;
+
+                long leaves = perft.count(newGame(ids[i], ids[j]), depth);
+                System.out.printf("%-12s %-12s %14d %14d %10d %14.0f%n", name(cards, ids[i]), name(cards, ids[j]),
+                        leaves, perft.getNodes(), perft.getNanos() / 1000000, perft.getNodesPerSecond());
+
+                // both cards of a pairing share the time of the run
+                cardNodes[i] += perft.getNodes();
+                cardNanos[i] += perft.getNanos();
+                cardNodes[j] += perft.getNodes();
+                cardNanos[j] += perft.getNanos();
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-12s %14s %14s%n", "card", "nodes", "nodes/s");
+        for (int i = 0; i < ids.length; i++)
+            System.out.printf("%-12s %14d %14.0f%n", name(cards, ids[i]), cardNodes[i], cardNodes[i] * 1e9 / Math.max(1, cardNanos[i]));
+    }
+
+    /**
+     * Recursive count of the leaves of a position
+     * @param game running game
+     * @param depth turns left to play
+     * @param ply turns already played, used to select generator and records
+     * @return leaves
+     */
+    private long count(Game game, int depth, int ply)
+    {
+        if(depth == 0)
+            return 1;
+
+        TurnGenerator generator = generators[ply];
+        int count = generator.generate(game);
+        if(count == 0)
+            return 1; // player to move is stuck and loses
+
+        long leaves = 0;
+        for (int i = 0; i < count; i++)
+            leaves += playAndCount(game, generator.get(i), depth, ply);
+
+        return leaves;
+    }
+
+    /**
+     * Play a turn, count the leaves of the reached position and revert the turn
+     * @param game running game
+     * @param turn encoded turn generated for the current player
+     * @param depth turns left to play, including this one
+     * @param ply turns already played
+     * @return leaves
+     */
+    private long playAndCount(Game game, long turn, int depth, int ply)
+    {
+        TurnGenerator.play(game, turn, records[ply]);
+        nodes++;
+
+        long leaves = game.isEnded() ? 1 : count(game, depth - 1, ply + 1);
+
+        TurnGenerator.unplay(game, turn, records[ply]);
+
+        return leaves;
+    }
+
+    /**
+     * Check that a depth can be counted
+     * @param depth depth to check
+     */
+    private static void checkDepth(int depth)
+    {
+        if(depth < 0 || depth > MAX_DEPTH)
+            throw new IllegalArgumentException("Depth must be between 0 and " + MAX_DEPTH);
+    }
+
+    /**
+     * Return the name of a card for reports
+     * @param cards collection of cards
+     * @param id card id
+     * @return card name
+     */
+    private static String name(CardCollection cards, int id)
+    {
+        try
+        {
+            return cards.getCard(id).getName().trim();
+        }
+        catch (CardNotExistsException e)
+        {
+            return String.valueOf(id);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package it.polimi.ingsw.game;
+
+import java.util.List;
+
+/**
+ * Precomputed symmetry tables of the map
+ * The 5x5 map has 8 symmetries (4 rotations, each with or without a reflection), a position and every
+ * position obtained transforming its levels, domes and workers are equivalent, so caches and opening data
+ * can store a single canonical orientation for all of them.
+ * The canonical transform of a position is the one that gives the lowest hash, turns found on the canonical
+ * position are translated back to the original orientation with the inverse transform.
+ * Constraints, current player and current turn don't depend on the orientation and are hashed as they are.
+ * Turns stored for a canonical position (opening books) use canonicalTurn and originalTurn, that also take care
+ * of interchangeable workers and of canonical positions that are symmetric
+ */
+public final class Symmetry
+{
+    /**
+     * Number of symmetries of the map
+     */
+    public static final int TRANSFORMS = 8;
+
+    /**
+     * Transform that leaves every cell in place
+     */
+    public static final int IDENTITY = 0;
+
+    private static final int ALL_CELLS = (1 << Map.CELLS) - 1;
+    private static final int STEP_SHIFT = 5;
+    private static final int STEP_BITS = 8;
+    private static final int ACTION_BITS = 3;
+    private static final long CELL_MASK = 0x1F;
+    private static final long WORKER_MASK = 0x3;
+
+    // [transform * CELLS + cell] -> transformed cell
+    private static final int[] PERMUTATION = new int[TRANSFORMS * Map.CELLS];
+    // [transform] -> transform that undoes it
+    private static final int[] INVERSE = new int[TRANSFORMS];
+
+    static
+    {
+        int last = Map.LENGTH - 1;
+        for (int t = 0; t < TRANSFORMS; t++)
+        {
+            for (int cell = 0; cell < Map.CELLS; cell++)
+            {
+                int x = cell / Map.LENGTH;
+                int y = cell % Map.LENGTH;
+
+                // reflection first, then t % 4 clockwise rotations
+                if(t >= 4)
+                    y = last - y;
+                for (int r = 0; r < t % 4; r++)
+                {
+                    int rotated = last - x;
+                    x = y;
+                    y = rotated;
+                }
+
+                PERMUTATION[t * Map.CELLS + cell] = x * Map.LENGTH + y;
+            }
+        }
+
+        for (int t = 0; t < TRANSFORMS; t++)
+            for (int u = 0; u < TRANSFORMS; u++)
+                if(composesToIdentity(t, u))
+                    INVERSE[t] = u;
+    }
+
+    private Symmetry() { }
+
+    /**
+     * Return the cell a transform moves a cell to
+     * @param transform transform id (0 - 7)
+     * @param cell cell index
+     * @return transformed cell index
+     */
+    public static int transformCell(int transform, int cell)
+    {
+        return PERMUTATION[transform * Map.CELLS + cell];
+    }
+
+    /**
+     * Return the transform that undoes a transform
+     * @param transform transform id (0 - 7)
+     * @return inverse transform id
+     */
+    public static int inverse(int transform)
+    {
+        return INVERSE[transform];
+    }
+
+    /**
+     * Transform every cell of a bitmask
+     * @param transform transform id (0 - 7)
+     * @param mask cell mask
+     * @return transformed cell mask
+     */
+    public static int transformMask(int transform, int mask)
+    {
+        int base = transform * Map.CELLS;
+        int result = 0;
+        mask &= ALL_CELLS;
+        while (mask != 0)
+        {
+            int cell = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            result |= 1 << PERMUTATION[base + cell];
+        }
+        return result;
+    }
+
+    /**
+     * Transform the cells of a turn generated for the current turn of a game
+     * Use the inverse transform to translate a turn of a transformed position back to the original position
+     * @param game game whose current turn the turn was generated from (the graph is the same in every orientation)
+     * @param transform transform id (0 - 7)
+     * @param turn encoded turn (see TurnGenerator)
+     * @return encoded turn with transformed cells
+     */
+    public static long transformTurn(Game game, int transform, long turn)
+    {
+        Turn current = game.getCurrentTurn();
+        CompiledGraph graph = current.getPlayer().getGod().getGraph().getCompiled();
+        return transformTurn(transform, turn, graph, graph.getId(current.getCursor().getCurrentNode()));
+    }
+
+    /**
+     * Transform the cells of an encoded turn, worker index and actions are not changed
+     * The graph is needed to find end turn steps, whose cell is a placeholder that is never transformed
+     * @param transform transform id (0 - 7)
+     * @param turn encoded turn (see TurnGenerator)
+     * @param graph compiled graph of the card of the player
+     * @param node graph node the turn starts from
+     * @return encoded turn with transformed cells
+     */
+    public static long transformTurn(int transform, long turn, CompiledGraph graph, int node)
+    {
+        int base = transform * Map.CELLS;
+        long result = turn;
+        for (int step = 0; step < TurnGenerator.getLength(turn); step++)
+        {
+            node = graph.getChild(node, TurnGenerator.getAction(turn, step));
+            if(graph.getOpcode(node) == CompiledGraph.OP_END_TURN)
+                continue;
+
+            int shift = STEP_SHIFT + step * STEP_BITS + ACTION_BITS;
+            int cell = TurnGenerator.getCell(turn, step);
+            result = (result & ~(CELL_MASK << shift)) | ((long) PERMUTATION[base + cell] << shift);
+        }
+        return result;
+    }
+
+    /**
+     * Compute the hash the position of a game would have after a transform
+     * hash(game, IDENTITY) is game.getHash()
+     * @param game game
+     * @param transform transform id (0 - 7)
+     * @return hash of the transformed position
+     */
+    public static long hash(Game game, int transform)
+    {
+        Map m = game.getCurrentMap();
+        // everything but the map doesn't depend on the orientation
+        return game.getHash() ^ m.getHash() ^ mapHash(m, transform);
+    }
+
+    /**
+     * Find the transform that moves a game to its canonical orientation
+     * Every equivalent position has the same canonical hash, ties are broken by the lowest transform id
+     * @param game game
+     * @return canonical transform id
+     */
+    public static int canonicalTransform(Game game)
+    {
+        Map m = game.getCurrentMap();
+        long best = mapHash(m, IDENTITY);
+        int bestTransform = IDENTITY;
+        for (int t = 1; t < TRANSFORMS; t++)
+        {
+            long hash = mapHash(m, t);
+            if(Long.compareUnsigned(hash, best) < 0)
+            {
+                best = hash;
+                bestTransform = t;
+            }
+        }
+        return bestTransform;
+    }
+
+    /**
+     * Return the hash of the canonical orientation of a game, the same for every equivalent position
+     * @param game game
+     * @return canonical hash
+     */
+    public static long canonicalHash(Game game)
+    {
+        Map m = game.getCurrentMap();
+        long best = mapHash(m, IDENTITY);
+        for (int t = 1; t < TRANSFORMS; t++)
+        {
+            long hash = mapHash(m, t);
+            if(Long.compareUnsigned(hash, best) < 0)
+                best = hash;
+        }
+        // everything but the map doesn't depend on the orientation
+        return game.getHash() ^ m.getHash() ^ best;
+    }
+
+    /**
+     * Translate a turn of the current player of a game to the canonical form shared by every equivalent position
+     * Workers of a player are interchangeable in a position, so the worker index is replaced by the rank of the
+     * worker cell in the canonical orientation. When the canonical position is symmetric, many transforms lead
+     * to it and the lowest encoded turn is chosen, so equivalent turns have the same canonical form
+     * @param game game at the start of the turn
+     * @param turn encoded turn (see TurnGenerator)
+     * @return canonical turn, translated back with originalTurn
+     */
+    public static long canonicalTurn(Game game, long turn)
+    {
+        Map m = game.getCurrentMap();
+        long[] hashes = new long[TRANSFORMS];
+        long best = -1;
+        for (int t = 0; t < TRANSFORMS; t++)
+        {
+            hashes[t] = mapHash(m, t);
+            if(Long.compareUnsigned(hashes[t], best) < 0)
+                best = hashes[t];
+        }
+
+        long result = -1;
+        for (int t = 0; t < TRANSFORMS; t++)
+        {
+            if(hashes[t] != best)
+                continue;
+
+            int rank = workerRank(game, t, TurnGenerator.getWorker(turn));
+            long canonical = (transformTurn(game, t, turn) & ~WORKER_MASK) | rank;
+            if(Long.compareUnsigned(canonical, result) < 0)
+                result = canonical;
+        }
+        return result;
+    }
+
+    /**
+     * Translate a canonical turn (see canonicalTurn) to the orientation and worker indexes of a game
+     * @param game game at the start of the turn, equivalent to the one of the canonical turn
+     * @param turn canonical turn
+     * @return encoded turn that can be played in the game
+     */
+    public static long originalTurn(Game game, long turn)
+    {
+        int transform = canonicalTransform(game);
+        int worker = 0;
+        while (worker < game.getCurrentPlayer().getWorkers().size() - 1 && workerRank(game, transform, worker) != TurnGenerator.getWorker(turn))
+            worker++;
+        return (transformTurn(game, inverse(transform), turn) & ~WORKER_MASK) | worker;
+    }
+
+    /**
+     * Return the rank of the cell of a worker of the current player among the cells of the other workers
+     * of the player, after a transform
+     * @param game game
+     * @param transform transform id
+     * @param worker worker index
+     * @return number of workers of the player on a lower transformed cell
+     */
+    private static int workerRank(Game game, int transform, int worker)
+    {
+        List<Worker> workers = game.getCurrentPlayer().getWorkers();
+        int cell = transformCell(transform, Map.cellIndex(workers.get(worker).getPosition()));
+        int rank = 0;
+        for (Worker other : workers)
+            if(transformCell(transform, Map.cellIndex(other.getPosition())) < cell)
+                rank++;
+        return rank;
+    }
+
+    /**
+     * Compute the hash of the levels, domes and workers of a transformed map
+     * @param m map
+     * @param transform transform id (0 - 7)
+     * @return transformed map hash
+     */
+    private static long mapHash(Map m, int transform)
+    {
+        int base = transform * Map.CELLS;
+        long hash = 0;
+
+        // level 0 has no key
+        for (int l = 1; l <= Map.MAX_BUILD_HEIGHT; l++)
+        {
+            int mask = m.getLevelMask(l);
+            while (mask != 0)
+            {
+                int cell = Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                hash ^= Zobrist.level(PERMUTATION[base + cell], l);
+            }
+        }
+
+        int domes = m.getDomeMask();
+        while (domes != 0)
+        {
+            int cell = Integer.numberOfTrailingZeros(domes);
+            domes &= domes - 1;
+            hash ^= Zobrist.dome(PERMUTATION[base + cell]);
+        }
+
+        for (int slot = 0; slot < m.getOwnerCount(); slot++)
+        {
+            int workers = m.getOwnerMask(slot);
+            while (workers != 0)
+            {
+                int cell = Integer.numberOfTrailingZeros(workers);
+                workers &= workers - 1;
+                hash ^= Zobrist.worker(slot, PERMUTATION[base + cell]);
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Check if a transform followed by another one leaves every cell in place
+     * @param first first transform
+     * @param second second transform
+     * @return true if second is the inverse of first
+     */
+    private static boolean composesToIdentity(int first, int second)
+    {
+        for (int cell = 0; cell < Map.CELLS; cell++)
+            if(PERMUTATION[second * Map.CELLS + PERMUTATION[first * Map.CELLS + cell]] != cell)
+                return false;
+        return true;
+    }
+}
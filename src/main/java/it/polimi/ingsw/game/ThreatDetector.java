@@ -0,0 +1,187 @@
+package it.polimi.ingsw.game;
+
+import java.util.List;
+
+/**
+ * Bitmask detector of the wins a player can reach with its next turn
+ * A worker threatens a win when its first move (or the two moves of a card with a move again action)
+ * can reach a level 3 cell from level 2, or can go down two levels with WIN_BY_GOING_DOWN.
+ * BLOCK_MOVE_UP, swaps and pushes are read from the global constraint mask and from the graph of the card,
+ * moves and wins are checked with the kernels of MoveAction (see ActionKernels),
+ * so the detector needs neither turn execution nor allocations.
+ * Blocking cells are the cells that stop every threat with a single dome (or a worker, when the threatening
+ * player can't swap or push): search bots use the detector to prune and to extend leaves,
+ * the server can use it to show threats to the players
+ */
+public final class ThreatDetector
+{
+    private static final int ALL_CELLS = (1 << Map.CELLS) - 1;
+    private static final int BLOCK_MOVE_UP = GameConstraints.Constraint.BLOCK_MOVE_UP.toInt();
+    private static final int SET_BLOCK_MOVE_UP = GameConstraints.Constraint.SET_BLOCK_MOVE_UP.toInt();
+    private static final int CAN_SWAP = GameConstraints.Constraint.CAN_SWAP_CONSTRAINT.toInt();
+    private static final int CAN_PUSH = GameConstraints.Constraint.CAN_PUSH_CONSTRAINT.toInt();
+
+    // flags of the move abilities of a card, stored above the constraint bits they don't use
+    private static final int CLIMB = 1 << 29;
+    private static final int DOUBLE_MOVE = 1 << 30;
+
+    // layout of the result of scan
+    private static final int CELLS_SHIFT = 4;
+    private static final int BLOCK_SHIFT = CELLS_SHIFT + Map.CELLS;
+
+    private ThreatDetector() { }
+
+    /**
+     * Return the workers of a player that can win with its next turn
+     * @param game running game
+     * @param player player to check
+     * @return mask of worker indexes (bit i is the i-th worker of the player)
+     */
+    public static int winningWorkers(Game game, Player player)
+    {
+        return (int) (scan(game, player) & ((1 << CELLS_SHIFT) - 1));
+    }
+
+    /**
+     * Return the cells where a player can win with its next turn
+     * @param game running game
+     * @param player player to check
+     * @return mask of the cells where a winning move ends
+     */
+    public static int winningCells(Game game, Player player)
+    {
+        return (int) ((scan(game, player) >>> CELLS_SHIFT) & ALL_CELLS);
+    }
+
+    /**
+     * Return the cells that stop every win of a player with a single dome
+     * A worker on a blocking cell stops the wins too, unless the player can swap or push
+     * @param game running game
+     * @param player player to check
+     * @return mask of blocking cells, 0 if the player has no win or one dome can't stop all of them
+     */
+    public static int blockingCells(Game game, Player player)
+    {
+        return (int) ((scan(game, player) >>> BLOCK_SHIFT) & ALL_CELLS);
+    }
+
+    /**
+     * Check if a player can win with its next turn
+     * @param game running game
+     * @param player player to check
+     * @return true if the player has at least a winning move
+     */
+    public static boolean hasWin(Game game, Player player)
+    {
+        return winningWorkers(game, player) != 0;
+    }
+
+    /**
+     * Find the threats of a player
+     * BLOCK_MOVE_UP is read from the current global constraints: it stays active until the turn of the card
+     * that set it, so it applies to every other player that moves before it
+     * @param game running game
+     * @param player player to check
+     * @return packed workers, winning cells and blocking cells
+     */
+    private static long scan(Game game, Player player)
+    {
+        if(player.getGod() == null)
+            return 0;
+
+        Map m = game.getCurrentMap();
+        int abilities = abilities(player.getGod().getGraph().getCompiled());
+        boolean climb = (abilities & CLIMB) != 0
+                && ((game.getGlobalConstraintMask() & BLOCK_MOVE_UP) == 0 || (abilities & SET_BLOCK_MOVE_UP) != 0);
+
+        // the kernels read the climb ability from the lock and the entries of occupied cells from the local mask
+        int lock = climb ? 0 : BLOCK_MOVE_UP;
+        int enterOccupied = abilities & (CAN_SWAP | CAN_PUSH);
+
+        int[] levels = m.getLevelMasks();
+        int dome = m.getDomeMask();
+        int own = m.getWorkerMask(player);
+        int opponents = m.getWorkerMask() & ~own;
+        int free = ~(dome | m.getWorkerMask()) & ALL_CELLS;
+
+        int workers = 0;
+        int cells = 0;
+        int block = ALL_CELLS;
+
+        List<Worker> list = player.getWorkers();
+        for (int k = 0; k < list.size(); k++)
+        {
+            int from = Map.cellIndex(list.get(k).getPosition());
+            int level = ActionKernels.levelOf(levels, from);
+
+            // cells the first move can enter, occupied cells need a swap or a push
+            int enter = ActionKernels.moveMask(from, levels, dome, own, opponents, lock, enterOccupied, Adjacency.NO_CELL);
+            int wins = 0;
+            for (int targets = enter; targets != 0; targets &= targets - 1)
+            {
+                int target = Integer.numberOfTrailingZeros(targets);
+                if(ActionKernels.isWin(level, ActionKernels.levelOf(levels, target), abilities))
+                    wins |= 1 << target;
+            }
+
+            if(wins != 0)
+            {
+                workers |= 1 << k;
+                cells |= wins;
+                // every single move win is stopped only by its own cell
+                block &= Integer.bitCount(wins) == 1 ? wins : 0;
+            }
+
+            // second move from an empty cell, the starting cell can't be entered again
+            if((abilities & DOUBLE_MOVE) != 0 && climb && level >= 1)
+            {
+                int steps = Adjacency.neighbourMask(from) & free & levels[2];
+                while (steps != 0)
+                {
+                    int step = Integer.numberOfTrailingZeros(steps);
+                    steps &= steps - 1;
+
+                    // the worker is still counted on its starting cell, so the second move can't go back
+                    int targets = ActionKernels.moveMask(step, levels, dome, own, opponents, lock, 0, Adjacency.NO_CELL) & levels[3];
+                    if(targets == 0)
+                        continue;
+
+                    workers |= 1 << k;
+                    cells |= targets;
+                    // a path is stopped by its middle cell or by its target
+                    block &= Integer.bitCount(targets) == 1 ? targets | (1 << step) : 1 << step;
+                }
+            }
+        }
+
+        if(workers == 0)
+            return 0;
+
+        return workers | ((long) cells << CELLS_SHIFT) | ((long) block << BLOCK_SHIFT);
+    }
+
+    /**
+     * Read the move abilities of a card from its graph
+     * @param graph compiled graph of the card
+     * @return constraints of the move nodes, with CLIMB if a move can go up and DOUBLE_MOVE if a move follows a move
+     */
+    private static int abilities(CompiledGraph graph)
+    {
+        int abilities = 0;
+        for (int node = 0; node < graph.size(); node++)
+        {
+            if(graph.getOpcode(node) != CompiledGraph.OP_MOVE)
+                continue;
+
+            int local = graph.getLocalConstraints(node);
+            abilities |= local;
+            if((local & BLOCK_MOVE_UP) == 0)
+                abilities |= CLIMB;
+
+            for (int i = 0; i < graph.getChildCount(node); i++)
+                if(graph.getOpcode(graph.getChild(node, i)) == CompiledGraph.OP_MOVE)
+                    abilities |= DOUBLE_MOVE;
+        }
+        return abilities;
+    }
+}
@@ -13,21 +13,23 @@ public class Turn
     public static final int MAX_UNDO_MILLI = 5000;
 
     private Player player;
-    private BehaviourGraph graph;
+    private GraphCursor cursor;
     private Worker worker;
-    private int possible_move;
+
+    private static final byte PATH_UNKNOWN = 0, PATH_FOUND = 1, PATH_NOT_FOUND = 2;
+    private final MoveCheckCache moveCheckCache;
+    private byte[] pathMemo;
 
     private boolean allowUndo;
-    private Vector2 lastTargetPosition;
-    private Map oldMap;
-    private List<Vector2> oldWorkerPositions;
     private java.util.Map<BehaviourNode, Instant> usedUndos;
 
-    private Vector2 lastBuildPos, lastLocation;
+    // journal of the actions run in this turn, records are reused after an undo
+    private final List<UndoRecord> journal;
+    private int journalSize;
 
 
     /**
-     * Make a turn and reset the graph status for player's graph (undo is disabled)
+     * Make a turn with a new cursor on the player's graph (undo is disabled)
      * @param p player owner of the turn
      */
     public Turn(Player p)
@@ -37,25 +39,31 @@ public class Turn
 
 
     /**
-     * Make a turn and reset the graph status for player's graph and select if undo is enabled or not
+     * Make a turn with a new cursor on the player's graph and select if undo is enabled or not
      * @param p player owner of the turn
      * @param allowUndo pass true to enable undo of moves
      */
     public Turn(Player p, boolean allowUndo)
+    {
+        this(p, allowUndo, new MoveCheckCache());
+    }
+
+    /**
+     * Make a turn that shares the canStillMove cache with other turns of the same game
+     * @param p player owner of the turn
+     * @param allowUndo pass true to enable undo of moves
+     * @param moveCheckCache cache of canStillMove results
+     */
+    Turn(Player p, boolean allowUndo, MoveCheckCache moveCheckCache)
     {
         this.player = p;
-        this.graph = p.getGod().getGraph();
+        this.moveCheckCache = moveCheckCache;
+        this.cursor = p.getGod().getGraph().newCursor();
         this.worker = null;
-        this.allowUndo = false;
-        lastTargetPosition = null;
-        oldMap = null;
         this.allowUndo = allowUndo;
-        oldWorkerPositions = new ArrayList<>();
         usedUndos = new java.util.HashMap<>();
-
-        graph.resetExecutionStatus();
-        lastBuildPos = null;
-        lastLocation = null;
+        journal = new ArrayList<>();
+        journalSize = 0;
     }
 
     /**
@@ -87,6 +95,15 @@ public class Turn
     }
 
 
+    /**
+     * Return the cursor used to walk the player's graph in this turn
+     * @return turn cursor
+     */
+    GraphCursor getCursor()
+    {
+        return cursor;
+    }
+
     /**
      * Get the player that owns the turn
      * @return player that is "running" the turn
@@ -107,61 +124,76 @@ public class Turn
      * @throws OutOfGraphException if the actions id is wrong and no action exist for that id
      */
     public int runAction(int id, Vector2 target, Map m, GameConstraints globalConstrains) throws NotAllowedMoveException, OutOfGraphException
+    {
+        return runAction(id, target, m, globalConstrains, false);
+    }
+
+    /**
+     * Execute an action and get a result, skipping the generation of valid cells if the target is already validated
+     * @param id next action index
+     * @param target position selected for Action
+     * @param m game's map
+     * @param globalConstrains global constraints in turn
+     * @param validated true if target is known to be a valid cell for the action (see Game.executeAction)
+     * @return int value : 0 if player can continue, greater 0 if player met a win condition, lower 0 if player met a lose condition
+     * @throws NotAllowedMoveException if the action cannot be run due to wrong parameters
+     * @throws OutOfGraphException if the actions id is wrong and no action exist for that id
+     */
+    int runAction(int id, Vector2 target, Map m, GameConstraints globalConstrains, boolean validated) throws NotAllowedMoveException, OutOfGraphException
     {
         int res = 0;
 
         // undo enabled, it's appended at the end so its id is the same as next actions size
-        if(allowUndo && worker != null && id == graph.getCurrentNode().getChildNodes().size())
+        if(isUndoAction(id))
         {
-            if(isUndoTimerExpired(graph.getCurrentNode()))
+            if(isUndoTimerExpired(cursor.getCurrentNode()) || journalSize == 0)
             {
                 throw new NotAllowedMoveException();
             }
 
-            m.importMap(oldMap);      // rollback map to remove builds
-            restoreWorkerPositions(m); // rollback positions
-
             //add current node to prevent an undo on older (or already undone) actions with MAX_UNDO_SECONDS + 1
-            usedUndos.put(graph.getCurrentNode(), Instant.now().minusMillis(MAX_UNDO_MILLI +1));
+            usedUndos.put(cursor.getCurrentNode(), Instant.now().minusMillis(MAX_UNDO_MILLI +1));
 
-            graph.rollback();
+            undoLastAction(m, globalConstrains); // rollback map, positions, constraints and graph
 
-            var nodeName = graph.getCurrentNode().getAction();
-            System.out.println("[TURN] Rolling back "+ id + " to node "+( nodeName != null ? nodeName.displayName() : "root")+"@"+graph.getCurrentNode().hashCode());
-
-            //rollback last location & build pos
-            worker.setLastLocation(lastLocation);
-            worker.setLastBuildLocation(lastBuildPos);
+            var nodeName = cursor.getCurrentNode().getAction();
+            System.out.println("[TURN] Rolling back "+ id + " to node "+( nodeName != null ? nodeName.displayName() : "root")+"@"+cursor.getCurrentNode().hashCode());
 
             // reset worker if we went back to root
-            if(graph.isAtRoot())
+            if(cursor.isAtRoot())
                 worker = null;
 
             //add old node to prevent an undo on older (or already undone) actions with MAX_UNDO_SECONDS + 1
-            usedUndos.put(graph.getCurrentNode(), Instant.now().minusMillis(MAX_UNDO_MILLI +1));
+            usedUndos.put(cursor.getCurrentNode(), Instant.now().minusMillis(MAX_UNDO_MILLI +1));
         }
         else
         {
+            UndoRecord record = null;
             if(allowUndo)
             {
-                oldMap = new Map(m);  // save map backup for undo
-                lastTargetPosition = target; // save pos for undo
-                saveWorkerPositions(m); // save worker positions
+                // save only what the action can change
+                record = nextJournalRecord();
+                recordAction(worker, target, m, globalConstrains, record);
             }
 
-            graph.selectAction(id);
-
-            // get positions before applying a move/build
-            var cPos = worker.getLastLocation();
-            var cBuild = worker.getLastBuildLocation();
-
-            res = graph.runSelectedAction(worker,target,m,globalConstrains);
+            try
+            {
+                cursor.selectAction(id);
+                res = cursor.runSelectedAction(worker,target,m,globalConstrains,validated);
+            }
+            catch (NotAllowedMoveException | OutOfGraphException e)
+            {
+                if(record != null)
+                    journalSize--; // nothing was changed, drop the record
+                throw e;
+            }
 
-            System.out.println("[TURN] Player "+id+" move to node: "+ graph.getCurrentNode().getAction().displayName() +"@"+ graph.getCurrentNode().hashCode());
-            if(res == 0) // action run correctly, apply pos to turn values
+            System.out.println("[TURN] Player "+id+" move to node: "+ cursor.getCurrentNode().getAction().displayName() +"@"+ cursor.getCurrentNode().hashCode());
+            if(record != null)
             {
-                lastLocation = cPos;
-                lastBuildPos = cBuild;
+                record.result = res;
+                if(res != 0) // game ended for this player, nothing to undo
+                    journalSize--;
             }
         }
 
@@ -169,6 +201,115 @@ public class Turn
     }
 
 
+    /**
+     * Check if an action id selects the undo action
+     * @param id next action index
+     * @return true if undo is enabled, a worker is selected and id is the undo index
+     */
+    boolean isUndoAction(int id)
+    {
+        return allowUndo && worker != null && id == cursor.getCurrentNode().getNextActionCount();
+    }
+
+    /**
+     * Execute an action in place and save what it changed in a record that can be passed to unmakeAction
+     * Unlike runAction this function has no undo/timer bookkeeping and prints nothing, it's meant for search code
+     * If the action can't be run the turn, map and constraints are left untouched
+     * @param workerId index of the worker to use (must be the selected worker if one is already selected)
+     * @param id next action index
+     * @param target position selected for Action
+     * @param m game's map
+     * @param globalConstrains global constraints in turn
+     * @param record record to fill (can be reused)
+     * @return filled record, result of the action is available with record.getResult()
+     * @throws NotAllowedMoveException if the action cannot be run or the player would lose with it
+     * @throws OutOfGraphException if the actions id is wrong and no action exist for that id
+     */
+    public UndoRecord makeAction(int workerId, int id, Vector2 target, Map m, GameConstraints globalConstrains, UndoRecord record) throws NotAllowedMoveException, OutOfGraphException
+    {
+        if(workerId < 0 || workerId >= player.getWorkers().size() || (worker != null && worker != player.getWorkers().get(workerId)))
+            throw new NotAllowedMoveException();
+
+        recordAction(player.getWorkers().get(workerId), target, m, globalConstrains, record);
+
+        if(worker == null)
+            selectWorker(workerId);
+
+        try
+        {
+            cursor.selectAction(id);
+            record.result = cursor.runSelectedAction(worker, target, m, globalConstrains);
+        }
+        catch (NotAllowedMoveException | OutOfGraphException e)
+        {
+            unmakeAction(record, m, globalConstrains);
+            throw e;
+        }
+
+        if(record.result < 0)
+        {
+            unmakeAction(record, m, globalConstrains);
+            throw new NotAllowedMoveException();
+        }
+
+        return record;
+    }
+
+    /**
+     * Revert an action executed with makeAction
+     * Records must be reverted in the opposite order of execution
+     * @param record record returned by makeAction
+     * @param m game's map
+     * @param globalConstrains global constraints in turn
+     */
+    public void unmakeAction(UndoRecord record, Map m, GameConstraints globalConstrains)
+    {
+        cursor.restoreExecutionStatus(record.node, record.alreadyRun, record.executionDepth);
+
+        if(record.cell >= 0)
+            m.setCell(record.cell, record.level, record.dome);
+
+        if(record.other != null)
+            record.other.setPosition(record.otherPosition);
+
+        Worker w = record.worker;
+        w.setPosition(record.position);
+        w.setLastLocation(record.lastLocation);
+        w.setLastBuildLocation(record.lastBuildLocation);
+
+        globalConstrains.set(record.constraints);
+
+        if(!record.workerSelected)
+            worker = null;
+    }
+
+    /**
+     * Revert every action run in this turn with undo enabled, going back to the root of the graph
+     * Unlike the undo action this ignores undo timers, it's meant to abort a turn (eg. when a player disconnects)
+     * @param m game's map
+     * @param globalConstrains global constraints in turn
+     * @return number of reverted actions
+     */
+    public int rollbackTurn(Map m, GameConstraints globalConstrains)
+    {
+        int count = journalSize;
+        while (journalSize > 0)
+            undoLastAction(m, globalConstrains);
+
+        if(cursor.isAtRoot())
+            worker = null;
+        return count;
+    }
+
+    /**
+     * Return the number of actions that can be reverted in this turn
+     * @return journal size, always 0 if undo is disabled
+     */
+    public int getUndoDepth()
+    {
+        return journalSize;
+    }
+
     /**
      * Get next actions from the last executed
      * get action's names and list of available cell for that action
@@ -179,18 +320,28 @@ public class Turn
      */
     public ArrayList<NextAction> getNextAction (Worker w, Map m, GameConstraints constraints)
     {
-        var nextActions = graph.getNextActions(w,m,constraints);
+        var nextActions = cursor.getNextActions(w,m,constraints);
+        appendUndoAction(nextActions);
+        return nextActions;
+    }
+
+    /**
+     * Append the undo action to a list of next actions if undo is available
+     * Undo availability depends on a timer so it's never cached
+     * @param nextActions list where undo is appended
+     */
+    void appendUndoAction(List<NextAction> nextActions)
+    {
         // append undo only if a worker is selected. Also check if already used for this action
         // of if this is the termination node of a graph
-        if(allowUndo && worker != null && !isUndoTimerExpired(graph.getCurrentNode()))
+        if(allowUndo && worker != null && !isUndoTimerExpired(cursor.getCurrentNode()))
         {
-            nextActions.add(new NextAction("Undo", worker, lastTargetPosition, true));
+            Vector2 lastTarget = journalSize > 0 ? journal.get(journalSize - 1).target : null;
+            nextActions.add(new NextAction("Undo", worker, lastTarget, true));
             // add only once
-            if(!usedUndos.containsKey(graph.getCurrentNode()))
-                usedUndos.put(graph.getCurrentNode(), Instant.now());
+            if(!usedUndos.containsKey(cursor.getCurrentNode()))
+                usedUndos.put(cursor.getCurrentNode(), Instant.now());
         }
-
-        return nextActions;
     }
 
     /**
@@ -205,69 +356,163 @@ public class Turn
     }
 
     /**
-     * Check if there are possible move option for the current turn, starting from root
-     * An option is valid if the worker can complete the turn without getting stuck
+     * Check if there are possible move option for the current turn, starting from the current node
+     * An option is valid if the worker has an action with at least one valid cell for every node of a path
+     * that ends the turn. The check stops at the first path found and results are cached by position
      * @param map game's map
      * @param gc game constraint
      * @return true if there are possible movement option, else false
      */
     public boolean canStillMove(Map map,GameConstraints gc) {
-        possible_move = 0;
+        long key = moveCheckKey(map, gc);
+        int cached = moveCheckCache.get(key);
+        if(cached >= 0)
+            return cached == 1;
+
+        CompiledGraph compiled = player.getGod().getGraph().getCompiled();
+        int node = compiled.getId(cursor.getCurrentNode());
+        if(pathMemo == null || pathMemo.length < compiled.size())
+            pathMemo = new byte[compiled.size()];
+
+        boolean canMove = false;
         for (Worker w : player.getWorkers()){
-            canStillMoveNextAction(graph.getCurrentNode(),w,map,gc);
+            java.util.Arrays.fill(pathMemo, PATH_UNKNOWN);
+            if(hasCompletePath(compiled, node, w, map, gc.toInt()))
+            {
+                canMove = true;
+                break;
+            }
         }
-        return possible_move>0;
+
+        moveCheckCache.put(key, canMove);
+        return canMove;
     }
 
     /**
-     * Check from a node if it is a possible route (it has only possible movement for its actions until end of route)
+     * Check from a node if there is a route until the end of the turn (every action of the route has at least one valid cell)
+     * The result of every visited node is saved in pathMemo so nodes shared by more branches are checked once
+     * @param compiled compiled player's graph
      * @param node node to check
      * @param w selected worker for turn
      * @param map seleted map of game
-     * @param gc selected game constraints
+     * @param constraints global constraint mask
+     * @return true if a route exists
      */
-    private void canStillMoveNextAction(BehaviourNode node, Worker w, Map map,GameConstraints gc) {
+    private boolean hasCompletePath(CompiledGraph compiled, int node, Worker w, Map map, int constraints) {
 
-        if(node.getChildNodes().isEmpty()) possible_move++;
+        if(compiled.isTerminal(node)) return true;
+
+        for(int i = 0; i < compiled.getChildCount(node); i++){
+            int next = compiled.getChild(node, i);
+            if(pathMemo[next] == PATH_UNKNOWN)
+            {
+                boolean found = compiled.possibleCellsMask(next, w, map, constraints) != 0
+                        && hasCompletePath(compiled, next, w, map, constraints);
+                pathMemo[next] = found ? PATH_FOUND : PATH_NOT_FOUND;
+            }
+            if(pathMemo[next] == PATH_FOUND) return true;
+        }
+        return false;
+    }
 
-        for(BehaviourNode next : node.getChildNodes()){
-            if(next.getAction().possibleCells(w,map,gc).size() > 0) canStillMoveNextAction(next,w,map,gc);
+    /**
+     * Compute the key used to cache canStillMove results
+     * It covers the position hash, the turn progress, the owner of the turn and the last locations of its workers
+     * @param map game's map
+     * @param gc game constraint
+     * @return cache key
+     */
+    private long moveCheckKey(Map map, GameConstraints gc)
+    {
+        long key = map.getHash() ^ gc.getHash() ^ cursor.getCurrentNode().getKey();
+        key = key * 31 + player.getId();
+        for (Worker w : player.getWorkers())
+        {
+            key = key * 31 + Map.cellIndex(w.getLastLocation());
+            key = key * 31 + Map.cellIndex(w.getLastBuildLocation());
         }
+        return key;
+    }
+
+    /**
+     * Return the Zobrist hash of the turn progress: current graph node and selected worker
+     * @return turn hash
+     */
+    public long getHash()
+    {
+        long hash = cursor.getCurrentNode().getKey();
+        if(worker != null)
+            hash ^= Zobrist.selectedWorker(worker.getId());
+        return hash;
     }
 
     /**
      * Check if a turn is ended
      * @return true if ended
      */
-    public boolean isEnded() { return graph.isExecutionEnded(); }
+    public boolean isEnded() { return cursor.isExecutionEnded(); }
 
 
     /**
-     * Save worker positions in a list
-     * @param m map used to make a backup of workers
+     * Save in a record the state that can be changed by an action: graph cursor, constraints,
+     * worker positions and target cell
+     * @param w worker that will run the action
+     * @param target target position of the action
+     * @param m game's map
+     * @param globalConstrains global constraints in turn
+     * @param record record to fill
      */
-    private void saveWorkerPositions(Map m)
+    private void recordAction(Worker w, Vector2 target, Map m, GameConstraints globalConstrains, UndoRecord record)
     {
-        oldWorkerPositions.clear();
-        for (Worker w: m.getWorkers())
+        record.clear();
+        record.workerSelected = worker != null;
+        record.node = cursor.getCurrentNode();
+        record.alreadyRun = cursor.isAlreadyRun();
+        record.executionDepth = cursor.getExecutionDepth();
+        record.constraints = globalConstrains.toInt();
+
+        record.worker = w;
+        record.position = w.getPosition();
+        record.lastLocation = w.getLastLocation();
+        record.lastBuildLocation = w.getLastBuildLocation();
+
+        record.target = target;
+        int cell = Map.cellIndex(target);
+        if(cell >= 0)
         {
-            oldWorkerPositions.add(w.getPosition().copy());
+            record.cell = cell;
+            record.level = m.getLevel(cell);
+            record.dome = m.isCellDome(cell);
+
+            Worker other = m.getWorker(cell);
+            if(other != null && other != w)
+            {
+                record.other = other;
+                record.otherPosition = other.getPosition();
+            }
         }
     }
 
     /**
-     * Restore worker positions
-     * @param m map where worker backup should be applied
+     * Return a free record on top of the journal, allocating it only the first time the journal reaches this depth
+     * @return record to fill
      */
-    private void restoreWorkerPositions(Map m)
+    private UndoRecord nextJournalRecord()
     {
-        for(int i=0; i < m.getWorkers().size(); i++)
-        {
-            m.getWorkers().get(i).setPosition(oldWorkerPositions.get(i));
-        }
-        oldWorkerPositions.clear();
+        if(journalSize == journal.size())
+            journal.add(new UndoRecord());
+        return journal.get(journalSize++);
     }
 
+    /**
+     * Revert the last action saved in the journal
+     * @param m game's map
+     * @param globalConstrains global constraints in turn
+     */
+    private void undoLastAction(Map m, GameConstraints globalConstrains)
+    {
+        unmakeAction(journal.get(--journalSize), m, globalConstrains);
+    }
 
     /**
      * Return true if timer for undo is expired and undo should be rejected
@@ -277,9 +522,9 @@ public class Turn
     private boolean isUndoTimerExpired(BehaviourNode node)
     {
         // check if timer is expired
-        if(usedUndos.containsKey(graph.getCurrentNode()))
+        if(usedUndos.containsKey(cursor.getCurrentNode()))
         {
-            var interval = Instant.now().minusMillis(usedUndos.get(graph.getCurrentNode()).toEpochMilli()).toEpochMilli();
+            var interval = Instant.now().minusMillis(usedUndos.get(cursor.getCurrentNode()).toEpochMilli()).toEpochMilli();
             System.out.println("[UNDO] Time delta: "+ interval);
             if(interval > MAX_UNDO_MILLI)
                 return true;
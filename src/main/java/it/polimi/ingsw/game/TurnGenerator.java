@@ -0,0 +1,300 @@
+package it.polimi.ingsw.game;
+
+import java.util.Arrays;
+
+/**
+ * Generator of all the complete legal turns of the current player
+ * Every turn is packed into a long: worker id, number of steps and for every step the action index
+ * (same index used by Game.executeAction) and the target cell.
+ * Generated turns are written into a buffer owned by the generator that is reused by every call,
+ * so a generator should be reused and is not thread safe
+ *
+ * Layout of an encoded turn (from the lowest bit):
+ * 2 bits worker id, 3 bits step count, then 8 bits for every step (3 bits action index, 5 bits target cell)
+ */
+public final class TurnGenerator
+{
+    /**
+     * Max number of steps in an encoded turn
+     */
+    public static final int MAX_STEPS = 7;
+    /**
+     * Max action index that can be encoded in a step
+     */
+    public static final int MAX_ACTION = 7;
+
+    private static final int WORKER_BITS = 2;
+    private static final int LENGTH_BITS = 3;
+    private static final int STEP_SHIFT = WORKER_BITS + LENGTH_BITS;
+    private static final int ACTION_BITS = 3;
+    private static final int CELL_BITS = 5;
+    private static final int STEP_BITS = ACTION_BITS + CELL_BITS;
+
+    private long[] turns;
+    private int size;
+
+    // search state reused between calls, one element for every step
+    private final UndoRecord[] records;
+    private final int[][] masks;
+
+    /**
+     * Create a new generator with an empty buffer
+     */
+    public TurnGenerator()
+    {
+        turns = new long[64];
+        size = 0;
+        records = new UndoRecord[MAX_STEPS];
+        masks = new int[MAX_STEPS][];
+        for (int i = 0; i < MAX_STEPS; i++)
+        {
+            records[i] = new UndoRecord();
+            masks[i] = new int[MAX_ACTION + 1];
+        }
+    }
+
+    /**
+     * Generate every complete turn of the current player of a game
+     * If a worker is already selected only the steps to complete its turn are generated
+     * The game is left in the same state it had before the call
+     * @param game running game
+     * @return number of generated turns, turns can be read with get
+     */
+    public int generate(Game game)
+    {
+        size = 0;
+        if(game.getCurrentState() != Game.GameState.GAME || game.getCurrentTurn() == null)
+            return 0;
+
+        return generate(game.getCurrentTurn(), game.getCurrentMap(), game.getGlobalConstraints());
+    }
+
+    /**
+     * Generate every complete turn that can be played from the current progress of a turn
+     * The turn, map and constraints are left in the same state they had before the call
+     * @param turn turn to complete
+     * @param m game's map
+     * @param gc global constraints
+     * @return number of generated turns
+     */
+    public int generate(Turn turn, Map m, GameConstraints gc)
+    {
+        size = 0;
+
+        CompiledGraph graph = turn.getPlayer().getGod().getGraph().getCompiled();
+        int node = graph.getId(turn.getCursor().getCurrentNode());
+        if(node == CompiledGraph.NO_NODE || graph.getMaxChildren() > MAX_ACTION + 1)
+            throw new IllegalStateException("Graph can't be encoded");
+
+        if(turn.getWorker() != null)
+        {
+            int id = turn.getPlayer().getWorkers().indexOf(turn.getWorker());
+            expand(turn, graph, node, id, m, gc, 0, encodeWorker(id));
+        }
+        else
+        {
+            for (int id = 0; id < turn.getPlayer().getWorkers().size(); id++)
+                expand(turn, graph, node, id, m, gc, 0, encodeWorker(id));
+        }
+
+        return size;
+    }
+
+    /**
+     * Return the number of turns generated by the last call
+     * @return generated turns
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Return a generated turn
+     * @param i turn index (0 - size()-1)
+     * @return encoded turn
+     */
+    public long get(int i)
+    {
+        if(i < 0 || i >= size)
+            throw new IndexOutOfBoundsException();
+        return turns[i];
+    }
+
+    /**
+     * Return the worker used in an encoded turn
+     * @param turn encoded turn
+     * @return worker id
+     */
+    public static int getWorker(long turn)
+    {
+        return (int) (turn & ((1 << WORKER_BITS) - 1));
+    }
+
+    /**
+     * Return the number of steps of an encoded turn
+     * @param turn encoded turn
+     * @return step count
+     */
+    public static int getLength(long turn)
+    {
+        return (int) ((turn >>> WORKER_BITS) & ((1 << LENGTH_BITS) - 1));
+    }
+
+    /**
+     * Return the action index of a step
+     * @param turn encoded turn
+     * @param step step index (0 - getLength()-1)
+     * @return action index to pass to executeAction
+     */
+    public static int getAction(long turn, int step)
+    {
+        return (int) ((turn >>> (STEP_SHIFT + step * STEP_BITS)) & ((1 << ACTION_BITS) - 1));
+    }
+
+    /**
+     * Return the target cell of a step
+     * @param turn encoded turn
+     * @param step step index (0 - getLength()-1)
+     * @return target cell index (see Map.cellIndex)
+     */
+    public static int getCell(long turn, int step)
+    {
+        return (int) ((turn >>> (STEP_SHIFT + step * STEP_BITS + ACTION_BITS)) & ((1 << CELL_BITS) - 1));
+    }
+
+    /**
+     * Return a readable version of an encoded turn
+     * @param turn encoded turn
+     * @return turn description
+     */
+    public static String toString(long turn)
+    {
+        StringBuilder sb = new StringBuilder("W").append(getWorker(turn));
+        for (int i = 0; i < getLength(turn); i++)
+        {
+            Vector2 pos = Vector2.of(getCell(turn, i));
+            sb.append(' ').append(getAction(turn, i)).append('@').append(pos.getX()).append(',').append(pos.getY());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Play an encoded turn step by step with Game.makeAction
+     * @param game running game at the start of the turn
+     * @param turn encoded turn generated for the current player
+     * @param records undo records of every step, at least getLength(turn) elements
+     * @throws IllegalStateException if a step can't be played (the turn was not generated for this position)
+     */
+    public static void play(Game game, long turn, UndoRecord[] records)
+    {
+        int worker = getWorker(turn);
+        for (int step = 0; step < getLength(turn); step++)
+        {
+            try
+            {
+                game.makeAction(worker, getAction(turn, step), Vector2.of(getCell(turn, step)), records[step]);
+            }
+            catch (NotAllowedMoveException | OutOfGraphException e)
+            {
+                throw new IllegalStateException("Generated turn can't be played: " + toString(turn), e);
+            }
+        }
+    }
+
+    /**
+     * Revert a turn played with play
+     * @param game game where the turn was played
+     * @param turn encoded turn
+     * @param records undo records filled by play
+     */
+    public static void unplay(Game game, long turn, UndoRecord[] records)
+    {
+        for (int step = getLength(turn) - 1; step >= 0; step--)
+            game.unmakeAction(records[step]);
+    }
+
+    /**
+     * Add a step to an encoded turn
+     * @param turn encoded turn
+     * @param action action index
+     * @param cell target cell
+     * @return new encoded turn
+     */
+    static long appendStep(long turn, int action, int cell)
+    {
+        int step = getLength(turn);
+        turn += 1L << WORKER_BITS; // increase length
+        return turn | ((long) (action | (cell << ACTION_BITS)) << (STEP_SHIFT + step * STEP_BITS));
+    }
+
+    /**
+     * Encode the worker of a turn with no steps
+     * @param worker worker id
+     * @return encoded turn
+     */
+    private static long encodeWorker(int worker)
+    {
+        return worker;
+    }
+
+    /**
+     * Depth first expansion of the children of a node
+     * @param turn turn used to run actions
+     * @param graph compiled graph of the turn
+     * @param node current node id
+     * @param worker worker id
+     * @param m game's map
+     * @param gc global constraints
+     * @param depth current step
+     * @param prefix encoded steps executed until now
+     */
+    private void expand(Turn turn, CompiledGraph graph, int node, int worker, Map m, GameConstraints gc, int depth, long prefix)
+    {
+        if(depth >= MAX_STEPS)
+            throw new IllegalStateException("Turn is too long to be encoded");
+
+        Worker w = turn.getPlayer().getWorkers().get(worker);
+        int[] childMasks = masks[depth];
+        int count = graph.nextActionMasks(node, w, m, gc.toInt(), childMasks);
+
+        for (int action = 0; action < count; action++)
+        {
+            int cells = childMasks[action];
+            while (cells != 0)
+            {
+                int cell = Integer.numberOfTrailingZeros(cells);
+                cells &= cells - 1;
+
+                UndoRecord record = records[depth];
+                try
+                {
+                    turn.makeAction(worker, action, Vector2.of(cell), m, gc, record);
+                }
+                catch (NotAllowedMoveException | OutOfGraphException e)
+                {
+                    continue; // losing or illegal step
+                }
+
+                long encoded = appendStep(prefix, action, cell);
+                if(record.getResult() > 0 || turn.isEnded())
+                    add(encoded);
+                else
+                    expand(turn, graph, graph.getChild(node, action), worker, m, gc, depth + 1, encoded);
+
+                turn.unmakeAction(record, m, gc);
+            }
+        }
+    }
+
+    /**
+     * Append a turn to the buffer
+     * @param turn encoded turn
+     */
+    private void add(long turn)
+    {
+        if(size == turns.length)
+            turns = Arrays.copyOf(turns, size * 2);
+        turns[size++] = turn;
+    }
+}
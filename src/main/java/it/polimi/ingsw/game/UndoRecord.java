@@ -0,0 +1,80 @@
+package it.polimi.ingsw.game;
+
+/**
+ * Compact record of what an action changed, created by makeAction and consumed by unmakeAction
+ * (see Turn.makeAction and Game.makeAction)
+ * A record stores only primitive values and references to already existing objects,
+ * so search code can allocate one record for every depth and reuse it
+ */
+public final class UndoRecord
+{
+    // action result
+    int result;
+
+    // action target and map cell that can be changed by a build
+    Vector2 target;
+    int cell;
+    int level;
+    boolean dome;
+
+    // workers that can be moved
+    Worker worker;
+    Vector2 position;
+    Vector2 lastLocation;
+    Vector2 lastBuildLocation;
+    Worker other;
+    Vector2 otherPosition;
+
+    // turn state
+    int constraints;
+    BehaviourNode node;
+    boolean alreadyRun;
+    int executionDepth;
+    boolean workerSelected;
+
+    // game state (set only by Game.makeAction)
+    Turn turn;
+    int currentPlayer;
+    int stateProgress;
+    Game.GameState gameState;
+    Player winner;
+
+    /**
+     * Create an empty record
+     */
+    public UndoRecord()
+    {
+        cell = -1;
+    }
+
+    /**
+     * Return the result of the recorded action
+     * @return 1 = won, 0 = continue (same as Action.run)
+     */
+    public int getResult()
+    {
+        return result;
+    }
+
+    /**
+     * Reset the record to be filled by a new action
+     */
+    void clear()
+    {
+        result = 0;
+        target = null;
+        cell = -1;
+        level = 0;
+        dome = false;
+        worker = null;
+        position = null;
+        lastLocation = null;
+        lastBuildLocation = null;
+        other = null;
+        otherPosition = null;
+        node = null;
+        turn = null;
+        winner = null;
+        gameState = null;
+    }
+}
@@ -2,17 +2,65 @@ package it.polimi.ingsw.game;
 
 /**
  * This class represents a position in the map
+ * Vectors are immutable: use Vector2.of to get the shared instance of a map cell without allocating a new object
  */
-public class Vector2 {
-    private int x, y;
+public final class Vector2 {
+
+    private static final Vector2[] CELLS = new Vector2[Map.CELLS];
+
+    static
+    {
+        for (int x = 0; x < Map.HEIGHT; x++)
+            for (int y = 0; y < Map.LENGTH; y++)
+                CELLS[Map.cellIndex(x, y)] = new Vector2(x, y);
+    }
+
+    private final int x, y;
 
     /**
      * Create a new vector2 pointing to a map position
+     * Prefer Vector2.of that returns the shared instance for cells inside the map
      * @param x row index in the map
      * @param y col index in the map
      */
     public Vector2(int x, int y) {
-        set(x, y);
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Return the canonical instance of a position
+     * Positions inside the map are interned and can be compared by identity, other positions are allocated every time
+     * @param x row index in the map
+     * @param y col index in the map
+     * @return vector pointing to (x, y)
+     */
+    public static Vector2 of(int x, int y)
+    {
+        if(x < 0 || x >= Map.HEIGHT || y < 0 || y >= Map.LENGTH)
+            return new Vector2(x, y);
+        return CELLS[Map.cellIndex(x, y)];
+    }
+
+    /**
+     * Return the canonical instance of a map cell
+     * @param cell cell index (see Map.cellIndex)
+     * @return vector pointing to the cell
+     */
+    public static Vector2 of(int cell)
+    {
+        return CELLS[cell];
+    }
+
+    /**
+     * Return the canonical instance of a position (useful for vectors received from the network)
+     * @param pos position to intern
+     * @return interned position, null if pos is null
+     */
+    public static Vector2 of(Vector2 pos)
+    {
+        if(pos == null) return null;
+        return of(pos.x, pos.y);
     }
 
     /**
@@ -31,16 +79,6 @@ public class Vector2 {
         return y;
     }
 
-    /**
-     * Set vector value
-     * @param x new x value
-     * @param y new y value
-     */
-    public void set(int x, int y) {
-        this.x = x;
-        this.y = y;
-    }
-
     @Override
     public boolean equals(Object obj) {
         if (obj == this) {
@@ -53,7 +91,13 @@ public class Vector2 {
         return x == test_pos.x && y == test_pos.y;
     }
 
+    @Override
+    public int hashCode() {
+        return 31 * x + y;
+    }
+
     /**
+     * Vectors are immutable, so copies are never needed to protect a position
      * @return a copy of the current vector
      */
     public Vector2 copy(){
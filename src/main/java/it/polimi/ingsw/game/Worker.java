@@ -12,12 +12,14 @@ public class Worker
     private transient Vector2 lastLocation;
     private transient Vector2 lastBuildLocation;
 
+    private transient Map map;
+
     /**
      * Create a new worker in position (0,0) and with id -1
      * @param owner player that owns this worker
      */
     public Worker(Player owner){
-        this(-1, owner, new Vector2(0,0));
+        this(-1, owner, Vector2.of(0,0));
     }
 
     /**
@@ -29,7 +31,7 @@ public class Worker
     public Worker(int id, Player owner, Vector2 position){
         this.id = id;
         this.owner = owner;
-        this.position = position;
+        this.position = Vector2.of(position);
         this.lastBuildLocation = null;
         this.lastLocation = null;
     }
@@ -53,10 +55,23 @@ public class Worker
 
     /**
      * Set the worker position
+     * The position is stored as its shared instance (see Vector2.of)
      * @param pos move a worker into a new position
      */
     public void setPosition(Vector2 pos){
-        this.position = pos;
+        Vector2 old = this.position;
+        this.position = Vector2.of(pos);
+        if(map != null)
+            map.moveWorker(this, old, pos);
+    }
+
+    /**
+     * Set the map where this worker is placed, the map is notified on every position change
+     * @param map map that tracks this worker, null to detach the worker
+     */
+    void setMap(Map map)
+    {
+        this.map = map;
     }
 
     /**
@@ -88,7 +103,7 @@ public class Worker
      */
     public void setLastLocation(Vector2 lastLocation)
     {
-        this.lastLocation = lastLocation;
+        this.lastLocation = Vector2.of(lastLocation);
     }
 
     /**
@@ -106,7 +121,7 @@ public class Worker
      */
     public void setLastBuildLocation(Vector2 lastBuildLocation)
     {
-        this.lastBuildLocation = lastBuildLocation;
+        this.lastBuildLocation = Vector2.of(lastBuildLocation);
     }
 
     /**
@@ -0,0 +1,207 @@
+package it.polimi.ingsw.game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Zobrist keys used to hash a game position
+ * Every element of the game state (cell level, dome, worker, constraint, current player, graph node)
+ * has a random 64 bit key and the hash of a position is the xor of the keys of its elements.
+ * Components update their hash incrementally by xoring the keys of what changed.
+ * Keys are generated from a fixed seed so hashes are the same in every JVM,
+ * keys of the nodes of the card graphs are derived from card id and node id (see BehaviourGraph.seal)
+ */
+public final class Zobrist
+{
+    /**
+     * Number of worker owners with a dedicated set of keys, owners over this value share keys
+     */
+    public static final int OWNERS = Game.MAX_PLAYERS;
+
+    private static final long SEED = 0x5A4E70121E2020L;
+    private static final long CARD_SEED = 0xC4AD5EED0B1E2020L;
+    private static final long NODE_SEED = 0x90DE5EED0B1E2020L;
+
+    private static final long[] LEVEL = new long[Map.CELLS * (Map.MAX_BUILD_HEIGHT + 1)];
+    private static final long[] DOME = new long[Map.CELLS];
+    private static final long[] WORKER = new long[OWNERS * Map.CELLS];
+    private static final long[] CONSTRAINT = new long[Integer.SIZE];
+    private static final long[] PLAYER = new long[Game.MAX_PLAYERS];
+    private static final long[] SELECTED_WORKER = new long[Game.WORKERS_PER_PLAYER];
+
+    private static final AtomicLong nodeCounter = new AtomicLong();
+
+    static
+    {
+        SplittableRandom random = new SplittableRandom(SEED);
+
+        // level 0 has no key, so an empty map has hash 0
+        for (int cell = 0; cell < Map.CELLS; cell++)
+            for (int l = 1; l <= Map.MAX_BUILD_HEIGHT; l++)
+                LEVEL[cell * (Map.MAX_BUILD_HEIGHT + 1) + l] = random.nextLong();
+
+        fill(DOME, random);
+        fill(WORKER, random);
+        fill(CONSTRAINT, random);
+        fill(PLAYER, random);
+        fill(SELECTED_WORKER, random);
+    }
+
+    private Zobrist() { }
+
+    /**
+     * Key of a cell at a level
+     * @param cell cell index
+     * @param level cell level (0 - 4)
+     * @return key, level 0 is always 0
+     */
+    public static long level(int cell, int level)
+    {
+        return LEVEL[cell * (Map.MAX_BUILD_HEIGHT + 1) + level];
+    }
+
+    /**
+     * Key of a dome in a cell
+     * @param cell cell index
+     * @return key
+     */
+    public static long dome(int cell)
+    {
+        return DOME[cell];
+    }
+
+    /**
+     * Key of a worker in a cell
+     * Workers of the same owner share the same keys because they are interchangeable in a position
+     * @param owner owner slot of the worker (order in which owners were added to the map)
+     * @param cell cell index
+     * @return key
+     */
+    public static long worker(int owner, int cell)
+    {
+        return WORKER[(owner % OWNERS) * Map.CELLS + cell];
+    }
+
+    /**
+     * Key of a constraint bit
+     * @param bit bit index of the constraint (0 - 31)
+     * @return key
+     */
+    public static long constraint(int bit)
+    {
+        return CONSTRAINT[bit];
+    }
+
+    /**
+     * Key of the current player
+     * @param player index of the current player in the game
+     * @return key
+     */
+    public static long player(int player)
+    {
+        return PLAYER[player % PLAYER.length];
+    }
+
+    /**
+     * Key of the worker selected in the current turn
+     * @param worker worker id
+     * @return key
+     */
+    public static long selectedWorker(int worker)
+    {
+        return SELECTED_WORKER[Math.floorMod(worker, SELECTED_WORKER.length)];
+    }
+
+    /**
+     * Key of the card of a player
+     * Positions have no card term, search code that keeps results of different pairings adds it (see Game.getCardHash)
+     * @param player index of the player in the game
+     * @param card card id
+     * @return key
+     */
+    public static long card(int player, int card)
+    {
+        return mix(CARD_SEED + ((long) (player % Game.MAX_PLAYERS) << 32) + card);
+    }
+
+    /**
+     * Key of a node of a card graph
+     * @param card card id
+     * @param node node id in the compiled graph of the card (see CompiledGraph)
+     * @return key
+     */
+    static long nodeKey(int card, int node)
+    {
+        return mix(NODE_SEED + ((long) card << 32) + node);
+    }
+
+    /**
+     * Generate a new key for a behaviour node of a graph that is not sealed with a card id
+     * Keys are generated from a sequence so they are the same if graphs are created in the same order
+     * @return new node key
+     */
+    static long nextNodeKey()
+    {
+        return mix(SEED + nodeCounter.incrementAndGet());
+    }
+
+    /**
+     * Return a checksum of every key used by the hashes of the available cards
+     * Files that store position hashes (like opening books) keep the checksum to detect hashes made with other keys
+     * @return checksum of the keys
+     */
+    public static long checksum()
+    {
+        long sum = 0;
+        for (long[] table : new long[][]{LEVEL, DOME, WORKER, CONSTRAINT, PLAYER, SELECTED_WORKER})
+            for (long key : table)
+                sum = mix(sum ^ key);
+
+        CardCollection collection = new CardCollection();
+        Card[] cards;
+        try
+        {
+            cards = collection.getCards(collection.getCardIDs());
+        }
+        catch (CardNotExistsException e)
+        {
+            throw new IllegalStateException("Card collection lists a missing card", e);
+        }
+
+        cards = Arrays.copyOf(cards, cards.length + 1);
+        cards[cards.length - 1] = collection.getNoGodCard();
+        for (Card c : cards)
+        {
+            for (int player = 0; player < Game.MAX_PLAYERS; player++)
+                sum = mix(sum ^ card(player, c.getId()));
+            CompiledGraph graph = c.getGraph().getCompiled();
+            for (int node = 0; node < graph.size(); node++)
+                sum = mix(sum ^ graph.getKey(node));
+        }
+        return sum;
+    }
+
+    /**
+     * Fill an array with random keys
+     * @param keys array to fill
+     * @param random key generator
+     */
+    private static void fill(long[] keys, SplittableRandom random)
+    {
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = random.nextLong();
+    }
+
+    /**
+     * SplitMix64 finalizer
+     * @param z value to mix
+     * @return mixed value
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,519 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+
+/**
+ * Computer player based on an iterative deepening alpha-beta search over complete turns
+ * Turns are generated with TurnGenerator and played in place with Game.makeAction/unmakeAction,
+ * so the searched game is left unchanged. With more than two players the search is paranoid:
+ * every opponent plays against the bot.
+ * Turns are ordered by transposition table move, history of cutoffs and height of the moves.
+ * The search stops when the time budget is over and the best turn of the last completed depth is returned,
+ * the first depth is always completed so the returned turn is never unsearched.
+ * An optional solver uses a fixed share of the same budget before the search.
+ * A bot reuses its buffers between searches, so it must be used by a single thread
+ */
+public class AlphaBetaBot implements Bot
+{
+    /**
+     * Score of a won game, wins found earlier have a greater score
+     */
+    public static final int WIN_SCORE = 1000000;
+
+    /**
+     * Max search depth in turns
+     */
+    public static final int MAX_DEPTH = 16;
+
+    private static final int INFINITY = WIN_SCORE + 1;
+    private static final int WIN_THRESHOLD = WIN_SCORE - 1000;
+    private static final int TT_MOVE_ORDER = Integer.MAX_VALUE;
+    private static final int HEIGHT_ORDER = 64;
+    private static final int HISTORY_BITS = 12;
+    private static final long ROOT_SALT = 0x6A09E667F3BCC909L;
+    // the solver can use 1 / SOLVER_SHARE of the time left for the turn
+    private static final int SOLVER_SHARE = 4;
+
+    private final long budgetNanos;
+    private final int maxDepth;
+    private final Evaluator evaluator;
+    private final TranspositionTable table;
+
+    // search buffers, one element for every ply
+    private final TurnGenerator[] generators;
+    private final UndoRecord[][] records;
+    private final long[][] turns;
+    private final int[][] orders;
+    private final int[][] indexes;
+    private final int[] history;
+    private ProofNumberSolver solver;
+    private OpeningBook book;
+
+    // current search state
+    private Game game;
+    private Player root;
+    private long rootSalt;
+    private long deadline;
+    private boolean stopped;
+    private long nodes;
+
+    // result of the last search
+    private int lastDepth;
+    private int lastScore;
+    private long lastNodes;
+
+    /**
+     * Create a bot with the default evaluator and a table of 2^20 entries
+     * @param budgetMillis max time for every turn in milliseconds
+     */
+    public AlphaBetaBot(long budgetMillis)
+    {
+        this(budgetMillis, MAX_DEPTH, new HeightEvaluator(), new TranspositionTable(20));
+    }
+
+    /**
+     * Create a bot
+     * @param budgetMillis max time for every turn in milliseconds
+     * @param maxDepth max search depth in turns (1 - MAX_DEPTH)
+     * @param evaluator evaluator used at the leaves of the search
+     * @param table table used to save search results
+     */
+    public AlphaBetaBot(long budgetMillis, int maxDepth, Evaluator evaluator, TranspositionTable table)
+    {
+        if(budgetMillis <= 0 || maxDepth < 1 || maxDepth > MAX_DEPTH || evaluator == null || table == null)
+            throw new IllegalArgumentException("Invalid bot configuration");
+
+        this.budgetNanos = budgetMillis * 1000000;
+        this.maxDepth = maxDepth;
+        this.evaluator = evaluator;
+        this.table = table;
+
+        generators = new TurnGenerator[maxDepth];
+        records = new UndoRecord[maxDepth][TurnGenerator.MAX_STEPS];
+        turns = new long[maxDepth][];
+        orders = new int[maxDepth][];
+        indexes = new int[maxDepth][];
+        for (int i = 0; i < maxDepth; i++)
+        {
+            generators[i] = new TurnGenerator();
+            turns[i] = new long[64];
+            orders[i] = new int[64];
+            indexes[i] = new int[64];
+            for (int j = 0; j < TurnGenerator.MAX_STEPS; j++)
+                records[i][j] = new UndoRecord();
+        }
+        history = new int[1 << HISTORY_BITS];
+    }
+
+    /**
+     * Search the best turn of the current player within the time budget
+     * The game is left in the same state it had before the call
+     * @param game running game
+     * @return encoded turn (see TurnGenerator) or NO_TURN if the player can't complete any turn
+     */
+    @Override
+    public long findBestTurn(Game game)
+    {
+        long start = System.nanoTime();
+        lastDepth = 0;
+        lastScore = 0;
+        lastNodes = 0;
+
+        if(game.getCurrentState() != Game.GameState.GAME)
+            return NO_TURN;
+
+        int count = generators[0].generate(game);
+        if(count == 0)
+            return NO_TURN;
+
+        if(book != null)
+        {
+            // hash collisions can return a turn of another position
+            long turn = book.bestTurn(game);
+            for (int i = 0; i < count && turn != NO_TURN; i++)
+                if(generators[0].get(i) == turn)
+                    return turn;
+        }
+
+        long end = start + budgetNanos;
+        if(solver != null && count > 1 && solver.solve(game, System.nanoTime() + (end - System.nanoTime()) / SOLVER_SHARE) == ProofNumberSolver.WIN)
+        {
+            lastScore = WIN_SCORE;
+            return solver.getWinningTurn();
+        }
+
+        this.game = game;
+        root = game.getCurrentPlayer();
+        rootSalt = salt(game, root);
+        deadline = end;
+        stopped = false;
+        nodes = 0;
+        table.newSearch();
+
+        long[] rootTurns = new long[count];
+        for (int i = 0; i < count; i++)
+            rootTurns[i] = generators[0].get(i);
+
+        long best = rootTurns[0];
+        for (int depth = 1; depth <= maxDepth && count > 1; depth++)
+        {
+            int score = searchRoot(rootTurns, depth);
+            if(stopped)
+                break;
+
+            best = rootTurns[0]; // searchRoot moves the best turn first
+            lastDepth = depth;
+            lastScore = score;
+
+            if(Math.abs(score) > WIN_THRESHOLD)
+                break; // forced result, deeper searches can't change it
+        }
+
+        lastNodes = nodes;
+        this.game = null;
+        return best;
+    }
+
+    /**
+     * Try to prove a forced win with a solver before every search
+     * The solver stops at its own budget or after a quarter of the time of the turn, whichever comes first
+     * @param solver solver to use, null to disable it
+     */
+    public void setSolver(ProofNumberSolver solver)
+    {
+        this.solver = solver;
+    }
+
+    /**
+     * Play the main line of an opening book without searching when the position is in the book
+     * @param book book to use, null to disable it
+     */
+    public void setBook(OpeningBook book)
+    {
+        this.book = book;
+    }
+
+    /**
+     * Return the depth completed by the last search
+     * @return depth in turns, 0 if no depth was completed
+     */
+    public int getLastDepth()
+    {
+        return lastDepth;
+    }
+
+    /**
+     * Return the score of the best turn of the last completed depth
+     * @return score for the searching player
+     */
+    public int getLastScore()
+    {
+        return lastScore;
+    }
+
+    /**
+     * Return the number of positions visited by the last search
+     * @return visited positions
+     */
+    public long getLastNodes()
+    {
+        return lastNodes;
+    }
+
+    /**
+     * Search every root turn, the best turn is moved to the first position
+     * so it is searched first by the next iteration
+     * @param rootTurns turns of the root player
+     * @param depth depth to search
+     * @return score of the best turn
+     */
+    private int searchRoot(long[] rootTurns, int depth)
+    {
+        int alpha = -INFINITY;
+        int bestIndex = 0;
+
+        for (int i = 0; i < rootTurns.length; i++)
+        {
+            TurnGenerator.play(game, rootTurns[i], records[0]);
+            int score = search(depth - 1, 1, alpha, INFINITY);
+            TurnGenerator.unplay(game, rootTurns[i], records[0]);
+
+            if(stopped)
+                return 0;
+
+            if(score > alpha)
+            {
+                alpha = score;
+                bestIndex = i;
+            }
+        }
+
+        long best = rootTurns[bestIndex];
+        System.arraycopy(rootTurns, 0, rootTurns, 1, bestIndex);
+        rootTurns[0] = best;
+        return alpha;
+    }
+
+    /**
+     * Alpha-beta search of the current position, the root player maximizes and every opponent minimizes
+     * @param depth turns left to search
+     * @param ply turns already played from the root
+     * @param alpha lower bound
+     * @param beta upper bound
+     * @return score for the root player
+     */
+    private int search(int depth, int ply, int alpha, int beta)
+    {
+        // the clock is read at every node: a node costs much more than nanoTime and the budget is strict,
+        // but the first depth (one turn search) always completes
+        nodes++;
+        if(lastDepth > 0 && System.nanoTime() > deadline)
+            stopped = true;
+        if(stopped)
+            return 0;
+
+        if(game.isEnded())
+            return game.getWinner() == root ? WIN_SCORE - ply : -WIN_SCORE + ply;
+        if(depth == 0 || ply >= maxDepth)
+        {
+            // a player to move with a win in one wins at the next ply
+            if(ThreatDetector.hasWin(game, game.getCurrentPlayer()))
+                return game.getCurrentPlayer() == root ? WIN_SCORE - ply - 1 : -WIN_SCORE + ply + 1;
+            return evaluator.evaluate(game, root);
+        }
+
+        long key = game.getHash() ^ rootSalt;
+        long data = table.probe(key);
+        int tableMove = TranspositionTable.NO_MOVE;
+        if(data != TranspositionTable.MISS)
+        {
+            tableMove = TranspositionTable.getMove(data);
+            if(TranspositionTable.getDepth(data) >= depth)
+            {
+                int score = fromTable(TranspositionTable.getScore(data), ply);
+                int bound = TranspositionTable.getBound(data);
+                if(bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha))
+                    return score;
+            }
+        }
+
+        boolean maximizing = game.getCurrentPlayer() == root;
+        int count = generators[ply].generate(game);
+        if(count == 0)
+            return searchStuck(depth, ply, alpha, beta, maximizing);
+
+        long[] plyTurns = copyTurns(ply, count);
+        int[] order = orderTurns(ply, plyTurns, count, tableMove);
+
+        int alphaStart = alpha;
+        int betaStart = beta;
+        int best = maximizing ? -INFINITY : INFINITY;
+        int bestIndex = TranspositionTable.NO_MOVE;
+
+        for (int k = 0; k < count; k++)
+        {
+            int i = nextTurn(order, indexes[ply], k, count);
+            long turn = plyTurns[i];
+
+            TurnGenerator.play(game, turn, records[ply]);
+            int score = search(depth - 1, ply + 1, alpha, beta);
+            TurnGenerator.unplay(game, turn, records[ply]);
+
+            if(stopped)
+                return 0;
+
+            if(maximizing ? score > best : score < best)
+            {
+                best = score;
+                bestIndex = i;
+            }
+            if(maximizing)
+                alpha = Math.max(alpha, score);
+            else
+                beta = Math.min(beta, score);
+
+            if(alpha >= beta)
+            {
+                history[historySlot(turn)] += depth * depth;
+                break;
+            }
+        }
+
+        int bound = best <= alphaStart ? TranspositionTable.UPPER : best >= betaStart ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(key, depth, bound, toTable(best, ply), bestIndex);
+        return best;
+    }
+
+    /**
+     * Score a position whose player to move can't complete any turn
+     * With two players the stuck player loses. With more players the game removes the stuck player and goes on,
+     * so the search continues on a copy without that player (the removal can't be undone)
+     * @param depth turns left to search
+     * @param ply turns already played from the root
+     * @param alpha lower bound
+     * @param beta upper bound
+     * @param maximizing true if the stuck player is the root player
+     * @return score for the root player
+     */
+    private int searchStuck(int depth, int ply, int alpha, int beta, boolean maximizing)
+    {
+        if(maximizing || game.playerCount() == 2)
+            return maximizing ? -WIN_SCORE + ply : WIN_SCORE - ply;
+
+        Game current = game;
+        Player currentRoot = root;
+        long currentSalt = rootSalt;
+        Game removed = game.copy();
+        if(!removed.removeStuckPlayer())
+            return evaluator.evaluate(game, root); // can't reproduce the removal, don't claim a result
+
+        game = removed;
+        root = null;
+        for (Player p : removed.getPlayers())
+            if(p.getId() == currentRoot.getId())
+                root = p;
+        rootSalt = salt(removed, root); // player indexes of the cards changed
+
+        // the removal is not a turn: same depth, and this ply's buffers are not in use
+        int score = search(depth, ply, alpha, beta);
+        game = current;
+        root = currentRoot;
+        rootSalt = currentSalt;
+        return score;
+    }
+
+    /**
+     * Copy the turns generated for a ply into the ply buffer, the generator buffer is reused by deeper plies
+     * @param ply ply of the generator
+     * @param count number of generated turns
+     * @return ply buffer
+     */
+    private long[] copyTurns(int ply, int count)
+    {
+        if(turns[ply].length < count)
+        {
+            turns[ply] = new long[count * 2];
+            orders[ply] = new int[count * 2];
+            indexes[ply] = new int[count * 2];
+        }
+
+        long[] plyTurns = turns[ply];
+        for (int i = 0; i < count; i++)
+            plyTurns[i] = generators[ply].get(i);
+        return plyTurns;
+    }
+
+    /**
+     * Compute the order score of every turn of a ply and reset the ply order to the generation order
+     * @param ply current ply
+     * @param plyTurns turns to score
+     * @param count number of turns
+     * @param tableMove generation index of the table move or NO_MOVE
+     * @return ply order buffer
+     */
+    private int[] orderTurns(int ply, long[] plyTurns, int count, int tableMove)
+    {
+        int[] order = orders[ply];
+        int[] index = indexes[ply];
+        Map m = game.getCurrentMap();
+        CompiledGraph graph = game.getCurrentPlayer().getGod().getGraph().getCompiled();
+
+        for (int i = 0; i < count; i++)
+        {
+            long turn = plyTurns[i];
+            int score;
+            if(i == tableMove)
+            {
+                score = TT_MOVE_ORDER;
+            }
+            else
+            {
+                score = history[historySlot(turn)];
+                int node = CompiledGraph.ROOT;
+                for (int step = 0; step < TurnGenerator.getLength(turn); step++)
+                {
+                    node = graph.getChild(node, TurnGenerator.getAction(turn, step));
+                    if(node != CompiledGraph.NO_NODE && graph.getOpcode(node) == CompiledGraph.OP_MOVE)
+                        score += m.getLevel(TurnGenerator.getCell(turn, step)) * HEIGHT_ORDER;
+                }
+            }
+            order[i] = score;
+            index[i] = i;
+        }
+
+        return order;
+    }
+
+    /**
+     * Move the remaining turn with the best order score to position k (selection sort step)
+     * so turns are sorted only until a cutoff happens
+     * @param order order scores by generation index
+     * @param index generation indexes in search order
+     * @param k position to fill
+     * @param count number of turns
+     * @return generation index of the selected turn
+     */
+    private static int nextTurn(int[] order, int[] index, int k, int count)
+    {
+        int best = k;
+        for (int i = k + 1; i < count; i++)
+            if(order[index[i]] > order[index[best]])
+                best = i;
+
+        int selected = index[best];
+        index[best] = index[k];
+        index[k] = selected;
+        return selected;
+    }
+
+    /**
+     * Return the salt of the table keys of a search
+     * Scores depend on the root player and on the cards of the players, that are not part of the position hash,
+     * so a table shared by searches of different pairings never returns a score of another pairing
+     * @param game searched game
+     * @param root root player
+     * @return key salt
+     */
+    private static long salt(Game game, Player root)
+    {
+        return (ROOT_SALT * (root.getId() + 1)) ^ game.getCardHash();
+    }
+
+    /**
+     * Return the history slot of a turn
+     * @param turn encoded turn
+     * @return history index
+     */
+    private static int historySlot(long turn)
+    {
+        return (int) ((turn * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - HISTORY_BITS));
+    }
+
+    /**
+     * Convert a score to be saved in the table: win scores are saved relative to the position
+     * @param score search score
+     * @param ply ply of the position
+     * @return table score
+     */
+    private static int toTable(int score, int ply)
+    {
+        if(score > WIN_THRESHOLD) return score + ply;
+        if(score < -WIN_THRESHOLD) return score - ply;
+        return score;
+    }
+
+    /**
+     * Convert a score read from the table to a search score
+     * @param score table score
+     * @param ply ply of the position
+     * @return search score
+     */
+    private static int fromTable(int score, int ply)
+    {
+        if(score > WIN_THRESHOLD) return score - ply;
+        if(score < -WIN_THRESHOLD) return score + ply;
+        return score;
+    }
+}
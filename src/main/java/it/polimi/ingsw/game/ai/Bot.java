@@ -0,0 +1,49 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+
+/**
+ * Computer player that chooses complete turns (encoded with TurnGenerator) and plays them like a human
+ */
+public interface Bot
+{
+    /**
+     * Value returned by findBestTurn when there is no turn to play
+     */
+    long NO_TURN = -1;
+
+    /**
+     * Choose the turn of the current player
+     * The game must be left in the same state it had before the call
+     * @param game running game
+     * @return encoded turn (see TurnGenerator) or NO_TURN if the player can't complete any turn
+     */
+    long findBestTurn(Game game);
+
+    /**
+     * Play the best turn found for a player using executeAction, like a human player
+     * @param game running game
+     * @param bot player controlled by this bot
+     * @return true if a complete turn was played
+     * @throws NotAllowedOperationException if bot is not in the game
+     */
+    default boolean play(Game game, Player bot) throws NotAllowedOperationException
+    {
+        if(game.getCurrentState() != Game.GameState.GAME || !bot.equals(game.getCurrentPlayer()))
+            return false;
+
+        long turn = findBestTurn(game);
+        if(turn == NO_TURN)
+            return false;
+
+        int worker = TurnGenerator.getWorker(turn);
+        for (int step = 0; step < TurnGenerator.getLength(turn); step++)
+        {
+            Vector2 target = Vector2.of(TurnGenerator.getCell(turn, step));
+            if(game.executeAction(bot, worker, TurnGenerator.getAction(turn, step), target) <= 0)
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,20 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.Game;
+import it.polimi.ingsw.game.Player;
+
+/**
+ * Static evaluation of a running game used by search bots
+ * Evaluators must not change the game and should not allocate, they are called for every leaf of a search
+ */
+public interface Evaluator
+{
+    /**
+     * Score of a position for a player
+     * Scores must stay far from the win score used by the search (see AlphaBetaBot.WIN_SCORE)
+     * @param game running game
+     * @param player player that receives the score
+     * @return score, greater is better for player
+     */
+    int evaluate(Game game, Player player);
+}
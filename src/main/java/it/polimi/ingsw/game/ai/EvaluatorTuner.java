@@ -0,0 +1,287 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Offline tuner of the weights of WeightedEvaluator
+ * The corpus is a list of positions with the features of the player to move and the final result of its game
+ * (1 win, 0.5 draw, 0 loss). Weights are fitted minimizing the mean squared error between the result and
+ * sigmoid(SCALE * score) with Adam gradient descent, every gradient is computed with a parallel stream.
+ * Features are stored in a single int array (FEATURES ints per position), so the corpus has no objects per position.
+ * The corpus can be loaded with addSample or generated by self-play games (see playGame and main)
+ */
+public class EvaluatorTuner
+{
+    /**
+     * Conversion from evaluator score to logit of the win probability
+     */
+    public static final double SCALE = 1.0 / 200;
+
+    private static final int FEATURES = WeightedEvaluator.FEATURES;
+    private static final int MAX_GAME_TURNS = 200;
+    private static final double RANDOM_TURNS = 0.1;
+    private static final int[] CARDS = {0, 1, 2, 3, 4, 5, 6, 8, 9, 10};
+
+    private int[] features = new int[1024 * FEATURES];
+    private float[] results = new float[1024];
+    private int size;
+
+    /**
+     * Return the number of positions of the corpus
+     * @return positions
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Add a position to the corpus
+     * @param sample features of the position (see WeightedEvaluator.features)
+     * @param result final result for the player of the features (0 - 1)
+     */
+    public void addSample(int[] sample, double result)
+    {
+        if(sample.length < FEATURES || result < 0 || result > 1)
+            throw new IllegalArgumentException("Invalid sample");
+
+        if(size == results.length)
+        {
+            results = Arrays.copyOf(results, size * 2);
+            features = Arrays.copyOf(features, size * 2 * FEATURES);
+        }
+
+        System.arraycopy(sample, 0, features, size * FEATURES, FEATURES);
+        results[size++] = (float) result;
+    }
+
+    /**
+     * Add every position of another corpus
+     * @param other corpus to add
+     */
+    public void addAll(EvaluatorTuner other)
+    {
+        int[] sample = new int[FEATURES];
+        for (int i = 0; i < other.size; i++)
+        {
+            System.arraycopy(other.features, i * FEATURES, sample, 0, FEATURES);
+            addSample(sample, other.results[i]);
+        }
+    }
+
+    /**
+     * Play a self-play game and add its positions to the corpus
+     * Players choose the best turn for the default evaluator after one turn, a random turn with probability 0.1
+     * and a winning turn whenever they have one
+     * @param seed seed of the game (cards and turns)
+     * @return number of added positions
+     */
+    public int playGame(long seed)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        int first = CARDS[random.nextInt(CARDS.length)];
+        int second = first == 0 ? 0 : CARDS[1 + random.nextInt(CARDS.length - 1)];
+        if(first != 0 && second == first)
+            second = first == 1 ? 2 : 1;
+
+        Game game = Perft.newGame(first, second);
+        WeightedEvaluator evaluator = new WeightedEvaluator();
+        TurnGenerator generator = new TurnGenerator();
+        UndoRecord[] records = new UndoRecord[TurnGenerator.MAX_STEPS];
+        for (int i = 0; i < records.length; i++)
+            records[i] = new UndoRecord();
+
+        int start = size;
+        int[] movers = new int[MAX_GAME_TURNS];
+        int[] sample = new int[FEATURES];
+        Player loser = null;
+
+        int turns = 0;
+        while (!game.isEnded() && turns < MAX_GAME_TURNS)
+        {
+            Player mover = game.getCurrentPlayer();
+            int count = generator.generate(game);
+            if(count == 0)
+            {
+                loser = mover;
+                break;
+            }
+
+            WeightedEvaluator.features(game, mover, sample);
+            addSample(sample, 0.5);
+            movers[turns++] = mover.getId();
+
+            long turn = random.nextDouble() < RANDOM_TURNS ? generator.get(random.nextInt(count)) : greedyTurn(game, generator, count, evaluator, records, random);
+            TurnGenerator.play(game, turn, records);
+        }
+
+        // set the result of every position
+        for (int i = start; i < size; i++)
+        {
+            int mover = movers[i - start];
+            if(game.isEnded())
+                results[i] = game.getWinner().getId() == mover ? 1 : 0;
+            else if(loser != null)
+                results[i] = loser.getId() == mover ? 0 : 1;
+        }
+
+        return size - start;
+    }
+
+    /**
+     * Return the mean squared error of the corpus
+     * @param weights evaluator weights
+     * @return error
+     */
+    public double error(double[] weights)
+    {
+        return gradient(weights)[FEATURES];
+    }
+
+    /**
+     * Fit the weights on the corpus
+     * @param start starting weights
+     * @param iterations gradient descent steps
+     * @param learningRate max change of a weight for every step
+     * @return fitted weights rounded to integers
+     */
+    public int[] tune(int[] start, int iterations, double learningRate)
+    {
+        if(start.length != FEATURES || iterations < 0 || learningRate <= 0)
+            throw new IllegalArgumentException("Invalid tuning parameters");
+        if(size == 0)
+            throw new IllegalStateException("Empty corpus");
+
+        final double beta1 = 0.9;
+        final double beta2 = 0.999;
+        final double epsilon = 1e-12;
+
+        double[] w = new double[FEATURES];
+        double[] m = new double[FEATURES];
+        double[] v = new double[FEATURES];
+        for (int j = 0; j < FEATURES; j++)
+            w[j] = start[j];
+
+        for (int t = 1; t <= iterations; t++)
+        {
+            double[] g = gradient(w);
+            for (int j = 0; j < FEATURES; j++)
+            {
+                m[j] = beta1 * m[j] + (1 - beta1) * g[j];
+                v[j] = beta2 * v[j] + (1 - beta2) * g[j] * g[j];
+                double mHat = m[j] / (1 - Math.pow(beta1, t));
+                double vHat = v[j] / (1 - Math.pow(beta2, t));
+                w[j] -= learningRate * mHat / (Math.sqrt(vHat) + epsilon);
+            }
+        }
+
+        int[] result = new int[FEATURES];
+        for (int j = 0; j < FEATURES; j++)
+            result[j] = (int) Math.round(w[j]);
+        return result;
+    }
+
+    /**
+     * Compute the gradient of the error with a parallel stream over the corpus
+     * @param w weights
+     * @return gradient of every weight followed by the error
+     */
+    private double[] gradient(double[] w)
+    {
+        double[] sum = IntStream.range(0, size).parallel().collect(() -> new double[FEATURES + 1], (g, i) -> {
+            int offset = i * FEATURES;
+            double score = 0;
+            for (int j = 0; j < FEATURES; j++)
+                score += w[j] * features[offset + j];
+
+            double s = 1 / (1 + Math.exp(-SCALE * score));
+            double diff = s - results[i];
+            double d = 2 * diff * s * (1 - s) * SCALE;
+            for (int j = 0; j < FEATURES; j++)
+                g[j] += d * features[offset + j];
+            g[FEATURES] += diff * diff;
+        }, (a, b) -> {
+            for (int j = 0; j <= FEATURES; j++)
+                a[j] += b[j];
+        });
+
+        for (int j = 0; j <= FEATURES; j++)
+            sum[j] /= size;
+        return sum;
+    }
+
+    /**
+     * Choose the turn with the best score after it is played, a winning turn is always chosen
+     * @param game running game
+     * @param generator generator with the turns of the current player
+     * @param count number of turns
+     * @param evaluator evaluator
+     * @param records undo records of a turn
+     * @param random random source for ties
+     * @return chosen turn
+     */
+    private static long greedyTurn(Game game, TurnGenerator generator, int count, Evaluator evaluator, UndoRecord[] records, SplittableRandom random)
+    {
+        Player mover = game.getCurrentPlayer();
+        long best = generator.get(0);
+        int bestScore = Integer.MIN_VALUE;
+        int ties = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            long turn = generator.get(i);
+            TurnGenerator.play(game, turn, records);
+            int score = game.isEnded() ? Integer.MAX_VALUE : evaluator.evaluate(game, mover);
+            TurnGenerator.unplay(game, turn, records);
+
+            if(score > bestScore)
+            {
+                bestScore = score;
+                best = turn;
+                ties = 1;
+            }
+            else if(score == bestScore && random.nextInt(++ties) == 0)
+            {
+                best = turn;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Generate a corpus with self-play games in parallel and print the fitted weights
+     * @param args number of games, gradient descent steps and seed
+     */
+    public static void main(String[] args)
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        long start = System.nanoTime();
+        EvaluatorTuner tuner = IntStream.range(0, games).parallel()
+                .collect(EvaluatorTuner::new, (t, i) -> t.playGame(seed + i), EvaluatorTuner::addAll);
+        long generated = System.nanoTime();
+
+        double[] initial = new double[FEATURES];
+        int[] defaults = WeightedEvaluator.getDefaultWeights();
+        for (int j = 0; j < FEATURES; j++)
+            initial[j] = defaults[j];
+
+        int[] weights = tuner.tune(defaults, iterations, 1.0);
+        double[] tuned = new double[FEATURES];
+        for (int j = 0; j < FEATURES; j++)
+            tuned[j] = weights[j];
+        long end = System.nanoTime();
+
+        System.out.printf("games: %d, positions: %d, generation: %d ms, tuning: %d ms%n",
+                games, tuner.size(), (generated - start) / 1000000, (end - generated) / 1000000);
+        System.out.printf("error: %.6f -> %.6f%n", tuner.error(initial), tuner.error(tuned));
+        System.out.println("weights: " + Arrays.toString(weights));
+    }
+}
@@ -0,0 +1,61 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.Adjacency;
+import it.polimi.ingsw.game.Game;
+import it.polimi.ingsw.game.Map;
+import it.polimi.ingsw.game.Player;
+import it.polimi.ingsw.game.Worker;
+
+/**
+ * Simple evaluator based on worker heights and mobility
+ * Every worker scores its level, the free cells it can move to and a bonus if it stands on level 2
+ * near a free level 3 cell. The score of a player is its score minus the score of every opponent
+ */
+public class HeightEvaluator implements Evaluator
+{
+    private static final int HEIGHT = 100;
+    private static final int MOBILITY = 8;
+    private static final int THREAT = 300;
+
+    @Override
+    public int evaluate(Game game, Player player)
+    {
+        Map m = game.getCurrentMap();
+        int score = 0;
+        for (int i = 0; i < game.playerCount(); i++)
+        {
+            Player p = game.getPlayer(i);
+            score += p == player ? playerScore(m, p) : -playerScore(m, p);
+        }
+        return score;
+    }
+
+    /**
+     * Score of the workers of a player
+     * @param m game map
+     * @param p player to score
+     * @return player score
+     */
+    private static int playerScore(Map m, Player p)
+    {
+        int free = ~(m.getDomeMask() | m.getWorkerMask());
+        int score = 0;
+
+        for (Worker w : p.getWorkers())
+        {
+            int cell = Map.cellIndex(w.getPosition());
+            int level = m.getLevel(cell);
+
+            int reachable = 0;
+            for (int l = 0; l <= Math.min(level + 1, Map.MAX_BUILD_HEIGHT - 1); l++)
+                reachable |= m.getLevelMask(l);
+
+            int moves = Adjacency.neighbourMask(cell) & free & reachable;
+            score += level * HEIGHT + Integer.bitCount(moves) * MOBILITY;
+            if(level == 2 && (moves & m.getLevelMask(3)) != 0)
+                score += THREAT;
+        }
+
+        return score;
+    }
+}
@@ -0,0 +1,574 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Computer player based on Monte Carlo tree search with UCT selection
+ * The search is root parallel: every thread of a ForkJoinPool grows its own tree on its own copy of the game
+ * (see Game.copy) and the visits of the root turns are summed at the end, so threads never share mutable data
+ * and the search scales with the number of cores.
+ * Trees are stored in primitive arrays and turns are played in place with makeAction/unmakeAction,
+ * so simulations don't create games or controllers.
+ * Playouts play random turns but always take a turn that wins immediately.
+ * Every player maximizes its own reward (1 for a win, 0 for a loss), so three players games are supported:
+ * a stuck player loses, with three players the playout goes on without it like the game does.
+ * Bots with more than one thread own a pool, close the bot when it is no longer needed to stop its threads
+ */
+public class MonteCarloBot implements Bot, AutoCloseable
+{
+    /**
+     * Exploration constant of UCT
+     */
+    public static final double EXPLORATION = 1.41;
+
+    /**
+     * Max number of turns of a playout, longer playouts are a draw
+     */
+    public static final int MAX_PLAYOUT_TURNS = 200;
+
+    private static final int MAX_TREE_DEPTH = 64;
+    private static final int MAX_TREE_NODES = 1 << 18;
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    private final long budgetNanos;
+    private final long maxPlayouts;
+    private final ForkJoinPool pool;
+    private final Searcher[] searchers;
+    private long seed;
+    private boolean closed;
+
+    // result of the last search
+    private long lastPlayouts;
+    private long lastNanos;
+
+    /**
+     * Create a bot that uses every core and searches until the time budget is over
+     * @param budgetMillis max time for every turn in milliseconds
+     */
+    public MonteCarloBot(long budgetMillis)
+    {
+        this(budgetMillis, 0, Runtime.getRuntime().availableProcessors(), System.nanoTime());
+    }
+
+    /**
+     * Create a bot
+     * @param budgetMillis max time for every turn in milliseconds
+     * @param maxPlayouts max playouts of every turn (shared by all threads), 0 to use only the time budget
+     * @param threads number of search threads
+     * @param seed seed of the random playouts
+     */
+    public MonteCarloBot(long budgetMillis, long maxPlayouts, int threads, long seed)
+    {
+        if(budgetMillis <= 0 || maxPlayouts < 0 || threads < 1)
+            throw new IllegalArgumentException("Invalid bot configuration");
+
+        this.budgetNanos = budgetMillis * 1000000;
+        this.maxPlayouts = maxPlayouts;
+        this.seed = seed;
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        searchers = new Searcher[threads];
+        for (int i = 0; i < threads; i++)
+            searchers[i] = new Searcher();
+    }
+
+    /**
+     * Search the best turn of the current player within the time budget
+     * The game is never changed: every thread searches a copy
+     * @param game running game at the start of a turn
+     * @return encoded turn (see TurnGenerator) or NO_TURN if the player can't complete any turn
+     * @throws IllegalStateException if the bot is closed
+     */
+    @Override
+    public long findBestTurn(Game game)
+    {
+        if(closed)
+            throw new IllegalStateException("Bot is closed");
+
+        long start = System.nanoTime();
+        lastPlayouts = 0;
+        lastNanos = 0;
+
+        if(game.getCurrentState() != Game.GameState.GAME)
+            return NO_TURN;
+
+        TurnGenerator generator = new TurnGenerator();
+        int count = generator.generate(game);
+        if(count == 0)
+            return NO_TURN;
+        if(count == 1)
+            return generator.get(0);
+
+        long deadline = start + budgetNanos;
+        long limit = maxPlayouts == 0 ? Long.MAX_VALUE : (maxPlayouts + searchers.length - 1) / searchers.length;
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Searcher searcher : searchers)
+        {
+            searcher.prepare(game.copy(), seed, deadline, limit);
+            seed += SEED_STEP;
+            tasks.add(searcher);
+        }
+        run(tasks);
+
+        // root turns are generated in the same order by every thread
+        long[] visits = new long[count];
+        for (Searcher searcher : searchers)
+        {
+            if(searcher.childCount[0] != count)
+                throw new IllegalStateException("Search threads generated different root turns");
+
+            lastPlayouts += searcher.playouts;
+            for (int i = 0; i < count; i++)
+                visits[i] += searcher.visits[searcher.firstChild[0] + i];
+        }
+
+        int best = 0;
+        for (int i = 1; i < count; i++)
+            if(visits[i] > visits[best])
+                best = i;
+
+        lastNanos = System.nanoTime() - start;
+        return generator.get(best);
+    }
+
+    /**
+     * Return the number of playouts of the last search
+     * @return playouts of all the threads
+     */
+    public long getLastPlayouts()
+    {
+        return lastPlayouts;
+    }
+
+    /**
+     * Return the speed of the last search
+     * @return playouts per second of all the threads
+     */
+    public double getLastPlayoutsPerSecond()
+    {
+        return lastNanos == 0 ? 0 : lastPlayouts * 1e9 / lastNanos;
+    }
+
+    /**
+     * Stop the threads of the search pool, the bot can't search anymore
+     * Closing a bot more than once or a single thread bot has no effect
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        if(pool != null)
+            pool.shutdown();
+    }
+
+    /**
+     * Return the number of search threads
+     * @return threads
+     */
+    public int getThreads()
+    {
+        return searchers.length;
+    }
+
+    /**
+     * Run the search of every thread and wait for the results
+     * @param tasks searchers to run
+     */
+    private void run(List<Callable<Void>> tasks)
+    {
+        try
+        {
+            if(pool == null)
+            {
+                tasks.get(0).call();
+                return;
+            }
+
+            for (Future<Void> future : pool.invokeAll(tasks))
+                future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("Search failed", e.getCause());
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException("Search failed", e);
+        }
+    }
+
+    /**
+     * Tree search of a single thread on its own game copy
+     * Nodes are stored in parallel arrays: node 0 is the root, the children of a node are contiguous
+     */
+    private static final class Searcher implements Callable<Void>
+    {
+        private final TurnGenerator generator = new TurnGenerator();
+        private final UndoRecord[][] records = new UndoRecord[MAX_TREE_DEPTH + MAX_PLAYOUT_TURNS + 1][TurnGenerator.MAX_STEPS];
+        private final long[] path = new long[MAX_TREE_DEPTH + MAX_PLAYOUT_TURNS + 1];
+        private final double[] reward = new double[Game.MAX_PLAYERS];
+
+        // tree
+        private int size;
+        private int[] parent = new int[1024];
+        private int[] firstChild = new int[1024];
+        private int[] childCount = new int[1024];
+        private int[] player = new int[1024];
+        private boolean[] expanded = new boolean[1024];
+        private long[] turns = new long[1024];
+        private long[] visits = new long[1024];
+        private double[] rewards = new double[1024];
+
+        // search state
+        private Game game;
+        private SplittableRandom random;
+        private long deadline;
+        private long limit;
+        private long playouts;
+
+        Searcher()
+        {
+            for (UndoRecord[] depth : records)
+                for (int i = 0; i < depth.length; i++)
+                    depth[i] = new UndoRecord();
+        }
+
+        /**
+         * Prepare a new search
+         * @param game game copy owned by this searcher
+         * @param seed random seed
+         * @param deadline end of the search (System.nanoTime)
+         * @param limit max playouts
+         */
+        void prepare(Game game, long seed, long deadline, long limit)
+        {
+            this.game = game;
+            this.random = new SplittableRandom(seed);
+            this.deadline = deadline;
+            this.limit = limit;
+        }
+
+        @Override
+        public Void call()
+        {
+            size = 0;
+            playouts = 0;
+            addNode(-1, -1, Bot.NO_TURN);
+            expand(0);
+
+            while (playouts < limit && System.nanoTime() < deadline)
+            {
+                iterate();
+                playouts++;
+            }
+
+            game = null;
+            return null;
+        }
+
+        /**
+         * Run a selection, expansion, playout and backpropagation step
+         */
+        private void iterate()
+        {
+            int node = 0;
+            int depth = 0;
+
+            // selection
+            while (expanded[node] && childCount[node] > 0 && depth < MAX_TREE_DEPTH)
+            {
+                node = select(node);
+                play(turns[node], depth++);
+            }
+
+            // expansion of leaves visited at least once
+            if(!expanded[node] && visits[node] > 0 && depth < MAX_TREE_DEPTH && expand(node) && childCount[node] > 0)
+            {
+                node = firstChild[node] + random.nextInt(childCount[node]);
+                play(turns[node], depth++);
+            }
+
+            int length = playout(depth, 0);
+            for (int d = length - 1; d >= 0; d--)
+                unplay(d);
+
+            // backpropagation, every node receives the reward of the player that played its turn
+            while (node >= 0)
+            {
+                visits[node]++;
+                if(player[node] >= 0)
+                    rewards[node] += reward[player[node]];
+                node = parent[node];
+            }
+        }
+
+        /**
+         * Select the child with the best UCT value, unvisited children are selected first
+         * @param node expanded node
+         * @return selected child
+         */
+        private int select(int node)
+        {
+            int first = firstChild[node];
+            int count = childCount[node];
+            int offset = random.nextInt(count);
+            double logVisits = Math.log(visits[node]);
+
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < count; k++)
+            {
+                int child = first + (offset + k) % count;
+                if(visits[child] == 0)
+                    return child;
+
+                double value = rewards[child] / visits[child] + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+                if(value > bestValue)
+                {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Add the turns of the player to move as children of a node
+         * @param node node of the current position
+         * @return true if the node was expanded, false if the tree is full
+         */
+        private boolean expand(int node)
+        {
+            int count = game.isEnded() ? 0 : generator.generate(game);
+            if(!ensureCapacity(size + count))
+                return false;
+
+            int mover = currentPlayerIndex();
+            firstChild[node] = size;
+            childCount[node] = count;
+            expanded[node] = true;
+            for (int i = 0; i < count; i++)
+                addNode(node, mover, generator.get(i));
+            return true;
+        }
+
+        /**
+         * Play random turns until the game ends and fill the reward of every player
+         * @param depth turns already played from the root
+         * @param turn playout turns already played
+         * @return turns played from the root on the game of the searcher
+         */
+        private int playout(int depth, int turn)
+        {
+            for (; ; turn++)
+            {
+                if(game.isEnded())
+                {
+                    setReward(playerIndex(game.getWinner()), -1);
+                    return depth;
+                }
+                if(turn >= MAX_PLAYOUT_TURNS)
+                {
+                    setReward(-1, -1);
+                    return depth;
+                }
+
+                int count = generator.generate(game);
+                if(count == 0)
+                {
+                    if(game.playerCount() > 2)
+                        continueWithoutStuckPlayer(depth, turn);
+                    else
+                        setReward(-1, currentPlayerIndex());
+                    return depth;
+                }
+
+                play(playoutTurn(count), depth++);
+            }
+        }
+
+        /**
+         * Finish a playout whose player to move is stuck in a game with more than two players
+         * The game removes the stuck player and goes on, the removal can't be undone so the playout
+         * continues on a copy. The stuck player gets no reward
+         * @param depth turns already played from the root
+         * @param turn playout turns already played
+         */
+        private void continueWithoutStuckPlayer(int depth, int turn)
+        {
+            Game stuck = game;
+            int removed = currentPlayerIndex();
+            game = stuck.copy();
+            try
+            {
+                if(!game.removeStuckPlayer())
+                {
+                    setReward(-1, removed);
+                    return;
+                }
+
+                // turns of the copy are never reverted
+                playout(depth, turn);
+            }
+            finally
+            {
+                game = stuck;
+            }
+
+            // player indexes of the copy skip the removed player
+            for (int i = game.playerCount() - 1; i > removed; i--)
+                reward[i] = reward[i - 1];
+            reward[removed] = 0;
+        }
+
+        /**
+         * Choose the turn of a playout: a winning turn if there is one, a random turn otherwise
+         * @param count number of generated turns
+         * @return encoded turn
+         */
+        private long playoutTurn(int count)
+        {
+            if(!ThreatDetector.hasWin(game, game.getCurrentPlayer()))
+                return generator.get(random.nextInt(count));
+
+            CompiledGraph graph = game.getCurrentPlayer().getGod().getGraph().getCompiled();
+            for (int i = 0; i < count; i++)
+                if(isWin(graph, generator.get(i)))
+                    return generator.get(i);
+            return generator.get(random.nextInt(count));
+        }
+
+        /**
+         * Check if a generated turn wins: turns end after a move only when the move wins,
+         * every other turn ends with a build or an end turn action
+         * @param graph graph of the player
+         * @param turn encoded turn
+         * @return true if the turn wins
+         */
+        private static boolean isWin(CompiledGraph graph, long turn)
+        {
+            int node = CompiledGraph.ROOT;
+            for (int step = 0; step < TurnGenerator.getLength(turn); step++)
+                node = graph.getChild(node, TurnGenerator.getAction(turn, step));
+            return node != CompiledGraph.NO_NODE && graph.getOpcode(node) == CompiledGraph.OP_MOVE;
+        }
+
+        /**
+         * Fill the reward of every player
+         * @param winner index of the winner, -1 if none
+         * @param loser index of a stuck player, -1 if none
+         */
+        private void setReward(int winner, int loser)
+        {
+            int players = game.playerCount();
+            for (int i = 0; i < players; i++)
+            {
+                if(winner >= 0)
+                    reward[i] = i == winner ? 1 : 0;
+                else if(loser >= 0)
+                    reward[i] = i == loser ? 0 : 1.0 / (players - 1);
+                else
+                    reward[i] = 1.0 / players;
+            }
+        }
+
+        /**
+         * Play an encoded turn
+         * @param turn encoded turn
+         * @param depth depth of the records to use
+         */
+        private void play(long turn, int depth)
+        {
+            path[depth] = turn;
+            TurnGenerator.play(game, turn, records[depth]);
+        }
+
+        /**
+         * Revert the turn played at a depth
+         * @param depth depth of the turn
+         */
+        private void unplay(int depth)
+        {
+            TurnGenerator.unplay(game, path[depth], records[depth]);
+        }
+
+        /**
+         * Return the index of the player to move
+         * @return player index
+         */
+        private int currentPlayerIndex()
+        {
+            return playerIndex(game.getCurrentPlayer());
+        }
+
+        /**
+         * Return the index of a player in the game
+         * @param p player
+         * @return player index, -1 if not found
+         */
+        private int playerIndex(Player p)
+        {
+            for (int i = 0; i < game.playerCount(); i++)
+                if(game.getPlayer(i) == p)
+                    return i;
+            return -1;
+        }
+
+        /**
+         * Add a node to the tree
+         * @param parentNode parent node, -1 for the root
+         * @param mover index of the player that plays the turn of the node
+         * @param turn turn that leads to the node
+         */
+        private void addNode(int parentNode, int mover, long turn)
+        {
+            int node = size++;
+            parent[node] = parentNode;
+            player[node] = mover;
+            turns[node] = turn;
+            firstChild[node] = 0;
+            childCount[node] = 0;
+            expanded[node] = false;
+            visits[node] = 0;
+            rewards[node] = 0;
+        }
+
+        /**
+         * Grow the tree arrays
+         * @param nodes number of nodes to store
+         * @return false if the tree would be larger than MAX_TREE_NODES
+         */
+        private boolean ensureCapacity(int nodes)
+        {
+            if(nodes > MAX_TREE_NODES)
+                return false;
+            if(nodes <= parent.length)
+                return true;
+
+            int capacity = Math.min(MAX_TREE_NODES, Math.max(nodes, parent.length * 2));
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+            player = Arrays.copyOf(player, capacity);
+            expanded = Arrays.copyOf(expanded, capacity);
+            turns = Arrays.copyOf(turns, capacity);
+            visits = Arrays.copyOf(visits, capacity);
+            rewards = Arrays.copyOf(rewards, capacity);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read only opening book memory-mapped from a file written by OpeningBookBuilder
+ * The file is a header followed by fixed size entries sorted by book key (see key), every entry is a turn played in the position (in canonical form, see Symmetry.canonicalTurn) with the number of games
+ * that played it and the number of games won by the player that played it.
+ * Entries of the same position are sorted by plays, so the first one is the main line of the book.
+ * The file is never copied on the heap: lookups are binary searches on the mapped buffer and the operating system
+ * loads only the pages they touch, so the size of the book doesn't change heap usage or startup time.
+ * Book keys are made of Zobrist keys, the header keeps their checksum (see Zobrist.checksum) and files written
+ * with other keys are rejected. A book can be shared by many threads
+ *
+ * Layout of the file (big endian): 4 bytes magic, 4 bytes version, 8 bytes entry count, 8 bytes key checksum,
+ * then for every entry 8 bytes key, 8 bytes turn, 4 bytes plays and 4 bytes wins
+ */
+public final class OpeningBook
+{
+    /**
+     * Value returned by find when the position is not in the book
+     */
+    public static final int NOT_FOUND = -1;
+
+    static final int MAGIC = 0x53424F4B; // "SBOK"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 24;
+    static final int ENTRY_BYTES = 24;
+
+    private static final int TURN_OFFSET = 8;
+    private static final int PLAYS_OFFSET = 16;
+    private static final int WINS_OFFSET = 20;
+
+    private final ByteBuffer buffer;
+    private final int size;
+
+    /**
+     * Create a book on a buffer with a valid header
+     * @param buffer book data
+     * @param size number of entries
+     */
+    private OpeningBook(ByteBuffer buffer, int size)
+    {
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    /**
+     * Map a book file in memory
+     * The file can be closed or deleted after the call, the mapping is released when the book is garbage collected
+     * @param file book file
+     * @return opened book
+     * @throws IOException if the file can't be read or is not a valid book
+     */
+    public static OpeningBook open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long length = channel.size();
+            if(length < HEADER_BYTES || length > Integer.MAX_VALUE)
+                throw new IOException("Invalid opening book size");
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            long count = buffer.getLong(8);
+            if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+                throw new IOException("Not an opening book");
+            if(count < 0 || HEADER_BYTES + count * ENTRY_BYTES != length)
+                throw new IOException("Truncated opening book");
+            if(buffer.getLong(16) != Zobrist.checksum())
+                throw new IOException("Opening book was built with other hash keys");
+
+            return new OpeningBook(buffer, (int) count);
+        }
+    }
+
+    /**
+     * Return the book key of the current position of a game
+     * The key is the canonical position hash (see Symmetry.canonicalHash) with the cards of the players
+     * (see Game.getCardHash), so pairings with the same placement have different entries
+     * @param game running game
+     * @return book key
+     */
+    public static long key(Game game)
+    {
+        return Symmetry.canonicalHash(game) ^ game.getCardHash();
+    }
+
+    /**
+     * Return the number of entries of the book
+     * @return entries
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Find the first entry of a position
+     * @param key book key of the position
+     * @return index of the first entry or NOT_FOUND
+     */
+    public int find(long key)
+    {
+        // lower bound, hashes are compared as unsigned values like in the builder
+        int low = 0;
+        int high = size;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(Long.compareUnsigned(getKey(middle), key) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low < size && getKey(low) == key ? low : NOT_FOUND;
+    }
+
+    /**
+     * Return the number of entries of a position
+     * @param key book key of the position
+     * @return number of book turns of the position
+     */
+    public int count(long key)
+    {
+        int first = find(key);
+        if(first == NOT_FOUND)
+            return 0;
+
+        int last = first;
+        while (last < size && getKey(last) == key)
+            last++;
+        return last - first;
+    }
+
+    /**
+     * Return the main line turn of the current position of a game
+     * The turn is translated from the canonical orientation to the orientation of the game,
+     * callers should check it against the generated turns because different positions can share a hash
+     * @param game running game at the start of a turn
+     * @return encoded turn (see TurnGenerator) or Bot.NO_TURN if the position is not in the book
+     */
+    public long bestTurn(Game game)
+    {
+        if(game.getCurrentState() != Game.GameState.GAME)
+            return Bot.NO_TURN;
+
+        int entry = find(key(game));
+        if(entry == NOT_FOUND)
+            return Bot.NO_TURN;
+
+        return Symmetry.originalTurn(game, getTurn(entry));
+    }
+
+    /**
+     * Return the book key of the position of an entry
+     * @param entry entry index
+     * @return key
+     */
+    public long getKey(int entry)
+    {
+        return buffer.getLong(offset(entry));
+    }
+
+    /**
+     * Return the turn of an entry in canonical form, see Symmetry.originalTurn
+     * @param entry entry index
+     * @return encoded turn
+     */
+    public long getTurn(int entry)
+    {
+        return buffer.getLong(offset(entry) + TURN_OFFSET);
+    }
+
+    /**
+     * Return the number of games that played the turn of an entry
+     * @param entry entry index
+     * @return plays
+     */
+    public int getPlays(int entry)
+    {
+        return buffer.getInt(offset(entry) + PLAYS_OFFSET);
+    }
+
+    /**
+     * Return the number of games won by the player that played the turn of an entry
+     * @param entry entry index
+     * @return wins
+     */
+    public int getWins(int entry)
+    {
+        return buffer.getInt(offset(entry) + WINS_OFFSET);
+    }
+
+    /**
+     * Return the position of an entry in the file
+     * @param entry entry index
+     * @return byte offset
+     */
+    private static int offset(int entry)
+    {
+        return HEADER_BYTES + entry * ENTRY_BYTES;
+    }
+}
@@ -0,0 +1,384 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Offline builder of the opening book read by OpeningBook
+ * The builder counts, for every canonical position and pairing (see OpeningBook.key) of the first turns of a game,
+ * how many games played every turn and how many of them were won by the player that played it.
+ * Turns are stored in canonical form (see Symmetry.canonicalTurn) so the 8 orientations of a position share their statistics.
+ * Games can be added turn by turn with addTurn (for example from finished matches) or played by self-play
+ * with playGame, then write sorts the entries and writes the book file.
+ * Self-play games start from a fixed set of starting positions: every card pairing (no gods or two different gods)
+ * with every one of the first placements of a fixed list. The list starts with the placement of Perft.newGame,
+ * the other placements put the 4 workers on the inner 3x3 square, where players usually place them, and are
+ * different up to symmetry. Many games are played from every starting position and only the turn choices change
+ * between them, so the first positions of the games are reached many times and their entries can reach minPlays
+ */
+public class OpeningBookBuilder
+{
+    private static final int MAX_GAME_TURNS = 200;
+    private static final double RANDOM_TURNS = 0.15;
+    private static final int SEARCH_DEPTH = 2;
+    private static final long SEARCH_BUDGET = 60000;
+    private static final int[] CARDS = {1, 2, 3, 4, 5, 6, 8, 9, 10};
+    private static final long PLACEMENT_SEED = 1;
+
+    /**
+     * Placements used when no number is given
+     */
+    public static final int DEFAULT_PLACEMENTS = 4;
+    /**
+     * Max number of placements of every pairing
+     */
+    public static final int MAX_PLACEMENTS = 16;
+
+    // {first card, second card}, no gods first
+    private static final int[][] PAIRINGS = pairings();
+    // worker cells of the first player then of the second player
+    private static final int[][] PLACEMENTS = placements();
+
+    private final int plies;
+    private final int placements;
+    // book key -> canonical turn -> {plays, wins}
+    private final HashMap<Long, HashMap<Long, int[]>> positions = new HashMap<>();
+    private int entries;
+
+    /**
+     * Create an empty builder with DEFAULT_PLACEMENTS placements of every pairing
+     * @param plies number of turns recorded from the start of every self-play game
+     */
+    public OpeningBookBuilder(int plies)
+    {
+        this(plies, DEFAULT_PLACEMENTS);
+    }
+
+    /**
+     * Create an empty builder
+     * @param plies number of turns recorded from the start of every self-play game
+     * @param placements number of placements of every pairing used by self-play games (1 to MAX_PLACEMENTS)
+     */
+    public OpeningBookBuilder(int plies, int placements)
+    {
+        if(plies < 1)
+            throw new IllegalArgumentException("Book needs at least one turn for every game");
+        if(placements < 1 || placements > MAX_PLACEMENTS)
+            throw new IllegalArgumentException("Placements must be between 1 and " + MAX_PLACEMENTS);
+
+        this.plies = plies;
+        this.placements = placements;
+    }
+
+    /**
+     * Return the number of starting positions of self-play games (pairings times placements)
+     * @return starting positions
+     */
+    public int startingPositions()
+    {
+        return PAIRINGS.length * placements;
+    }
+
+    /**
+     * Return the number of different positions in the builder
+     * @return positions
+     */
+    public int positions()
+    {
+        return positions.size();
+    }
+
+    /**
+     * Return the number of different (position, turn) entries in the builder
+     * @return entries
+     */
+    public int size()
+    {
+        return entries;
+    }
+
+    /**
+     * Count a turn played in the current position of a game
+     * @param game running game at the start of a turn, before the turn is played
+     * @param turn encoded turn (see TurnGenerator)
+     * @param won true if the player that played the turn won the game
+     */
+    public void addTurn(Game game, long turn, boolean won)
+    {
+        add(OpeningBook.key(game), Symmetry.canonicalTurn(game, turn), 1, won ? 1 : 0);
+    }
+
+    /**
+     * Add every entry of another builder
+     * @param other builder to add
+     */
+    public void addAll(OpeningBookBuilder other)
+    {
+        other.positions.forEach((key, turns) -> turns.forEach((turn, stats) -> add(key, turn, stats[0], stats[1])));
+    }
+
+    /**
+     * Play a self-play game and count its first turns
+     * In the counted turns players choose a shallow search turn (a random turn with probability 0.15),
+     * then the game is completed with one turn searches
+     * @param start starting position, from 0 to startingPositions() - 1 (pairing is start % pairings,
+     *              placement is start / pairings)
+     * @param seed seed of the random turns
+     * @return number of counted turns
+     */
+    public int playGame(int start, long seed)
+    {
+        if(start < 0 || start >= startingPositions())
+            throw new IllegalArgumentException("Starting position not valid: " + start);
+
+        int[] pairing = PAIRINGS[start % PAIRINGS.length];
+        SplittableRandom random = new SplittableRandom(seed);
+        Game game = Perft.newGame(pairing[0], pairing[1], PLACEMENTS[start / PAIRINGS.length]);
+        WeightedEvaluator evaluator = new WeightedEvaluator();
+        AlphaBetaBot bot = new AlphaBetaBot(SEARCH_BUDGET, SEARCH_DEPTH, evaluator, new TranspositionTable(12));
+        AlphaBetaBot fast = new AlphaBetaBot(SEARCH_BUDGET, 1, evaluator, new TranspositionTable(4));
+        TurnGenerator generator = new TurnGenerator();
+        UndoRecord[] records = new UndoRecord[TurnGenerator.MAX_STEPS];
+        for (int i = 0; i < records.length; i++)
+            records[i] = new UndoRecord();
+
+        long[] keys = new long[plies];
+        long[] bookTurns = new long[plies];
+        int[] movers = new int[plies];
+        int recorded = 0;
+        Player loser = null;
+
+        for (int turns = 0; !game.isEnded() && turns < MAX_GAME_TURNS; turns++)
+        {
+            Player mover = game.getCurrentPlayer();
+            int count = generator.generate(game);
+            if(count == 0)
+            {
+                loser = mover;
+                break;
+            }
+
+            long turn;
+            if(recorded < plies)
+            {
+                turn = random.nextDouble() < RANDOM_TURNS ? generator.get(random.nextInt(count)) : bot.findBestTurn(game);
+                keys[recorded] = OpeningBook.key(game);
+                bookTurns[recorded] = Symmetry.canonicalTurn(game, turn);
+                movers[recorded++] = mover.getId();
+            }
+            else
+            {
+                // the rest of the game only gives the result
+                turn = fast.findBestTurn(game);
+            }
+
+            TurnGenerator.play(game, turn, records);
+        }
+
+        for (int i = 0; i < recorded; i++)
+        {
+            boolean won = game.isEnded() ? game.getWinner().getId() == movers[i] : loser != null && loser.getId() != movers[i];
+            add(keys[i], bookTurns[i], 1, won ? 1 : 0);
+        }
+        return recorded;
+    }
+
+    /**
+     * Write the book file
+     * Entries are sorted by book key (as unsigned values), then by plays and wins in decreasing order
+     * @param file output file, replaced if it exists
+     * @param minPlays entries played less than this number of times are not written
+     * @return number of written entries
+     * @throws IOException if the file can't be written
+     */
+    public int write(Path file, int minPlays) throws IOException
+    {
+        long[] keys = new long[entries];
+        long[] turns = new long[entries];
+        int[] plays = new int[entries];
+        int[] wins = new int[entries];
+        int count = 0;
+
+        for (java.util.Map.Entry<Long, HashMap<Long, int[]>> position : positions.entrySet())
+        {
+            for (java.util.Map.Entry<Long, int[]> entry : position.getValue().entrySet())
+            {
+                if(entry.getValue()[0] < minPlays)
+                    continue;
+
+                keys[count] = position.getKey();
+                turns[count] = entry.getKey();
+                plays[count] = entry.getValue()[0];
+                wins[count] = entry.getValue()[1];
+                count++;
+            }
+        }
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> {
+            int result = Long.compareUnsigned(keys[a], keys[b]);
+            if(result == 0)
+                result = Integer.compare(plays[b], plays[a]);
+            if(result == 0)
+                result = Integer.compare(wins[b], wins[a]);
+            if(result == 0)
+                result = Long.compare(turns[a], turns[b]);
+            return result;
+        });
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file))))
+        {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeLong(count);
+            out.writeLong(Zobrist.checksum());
+            for (int i : order)
+            {
+                out.writeLong(keys[i]);
+                out.writeLong(turns[i]);
+                out.writeInt(plays[i]);
+                out.writeInt(wins[i]);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Count an entry
+     * @param key book key of the position
+     * @param turn canonical turn
+     * @param plays games that played the turn
+     * @param wins games won by the player that played the turn
+     */
+    private void add(long key, long turn, int plays, int wins)
+    {
+        int[] stats = positions.computeIfAbsent(key, k -> new HashMap<>()).get(turn);
+        if(stats == null)
+        {
+            stats = new int[2];
+            positions.get(key).put(turn, stats);
+            entries++;
+        }
+        stats[0] += plays;
+        stats[1] += wins;
+    }
+
+    /**
+     * Create the card pairings of self-play games
+     * @return no gods pairing and every ordered pairing of two different gods
+     */
+    private static int[][] pairings()
+    {
+        int[][] result = new int[1 + CARDS.length * (CARDS.length - 1)][];
+        int count = 0;
+        result[count++] = new int[]{0, 0};
+        for (int first : CARDS)
+            for (int second : CARDS)
+                if(first != second)
+                    result[count++] = new int[]{first, second};
+        return result;
+    }
+
+    /**
+     * Create the placements of self-play games
+     * The first one is the placement of Perft.newGame, the others are drawn on the inner 3x3 square with a fixed seed
+     * and skipped when a symmetry transforms them into a placement already in the list
+     * @return MAX_PLACEMENTS placements
+     */
+    private static int[][] placements()
+    {
+        int inner = 0;
+        for (int x = 1; x < Map.HEIGHT - 1; x++)
+            for (int y = 1; y < Map.LENGTH - 1; y++)
+                inner |= 1 << Map.cellIndex(x, y);
+
+        int[][] result = new int[MAX_PLACEMENTS][];
+        long[] keys = new long[MAX_PLACEMENTS];
+        int count = 0;
+        int[] first = new int[2 * Game.WORKERS_PER_PLAYER];
+        for (int i = 0; i < Game.WORKERS_PER_PLAYER; i++)
+        {
+            first[i] = Map.cellIndex(Perft.FIRST_WORKERS[i]);
+            first[Game.WORKERS_PER_PLAYER + i] = Map.cellIndex(Perft.SECOND_WORKERS[i]);
+        }
+        keys[count] = placementKey(first);
+        result[count++] = first;
+
+        SplittableRandom random = new SplittableRandom(PLACEMENT_SEED);
+        while (count < MAX_PLACEMENTS)
+        {
+            int[] placement = Perft.randomCells(2 * Game.WORKERS_PER_PLAYER, inner, random);
+
+            long key = placementKey(placement);
+            boolean found = false;
+            for (int i = 0; i < count; i++)
+                found |= keys[i] == key;
+            if(!found)
+            {
+                keys[count] = key;
+                result[count++] = placement;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return a key shared by the placements that are equivalent up to symmetry
+     * @param placement worker cells of the first player then of the second player
+     * @return smallest pair of transformed worker masks
+     */
+    private static long placementKey(int[] placement)
+    {
+        int first = 0;
+        int second = 0;
+        for (int i = 0; i < Game.WORKERS_PER_PLAYER; i++)
+        {
+            first |= 1 << placement[i];
+            second |= 1 << placement[Game.WORKERS_PER_PLAYER + i];
+        }
+
+        long key = Long.MAX_VALUE;
+        for (int t = 0; t < Symmetry.TRANSFORMS; t++)
+            key = Math.min(key, (long) Symmetry.transformMask(t, first) << Map.CELLS | Symmetry.transformMask(t, second));
+        return key;
+    }
+
+    /**
+     * Build a book with self-play games in parallel
+     * Games go through the starting positions in order, so every starting position is played games / startingPositions times
+     * @param args output file, number of games, recorded turns for every game, min plays of an entry, placements of
+     *             every pairing and seed
+     * @throws IOException if the book can't be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Path file = Path.of(args.length > 0 ? args[0] : "opening.book");
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int minPlays = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        int placements = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_PLACEMENTS;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+
+        long start = System.nanoTime();
+        OpeningBookBuilder builder = IntStream.range(0, games).parallel()
+                .collect(() -> new OpeningBookBuilder(plies, placements), (b, i) -> b.playGame(i % b.startingPositions(), seed + i), OpeningBookBuilder::addAll);
+        long played = System.nanoTime();
+        int written = builder.write(file, minPlays);
+        long end = System.nanoTime();
+
+        System.out.printf("games: %d, positions: %d, entries: %d, written: %d, self-play: %d ms, write: %d ms%n",
+                games, builder.positions(), builder.size(), written, (played - start) / 1000000, (end - played) / 1000000);
+    }
+}
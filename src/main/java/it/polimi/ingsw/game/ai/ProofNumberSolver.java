@@ -0,0 +1,435 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+
+import java.util.Arrays;
+
+/**
+ * Depth-first proof-number search (df-pn) that proves or disproves a forced win of the current player
+ * The player to move at the root is the attacker: its turns are OR nodes and the turns of every opponent are
+ * AND nodes, so opponents are assumed to cooperate against it (a win of any other player is a failure).
+ * Proof and disproof numbers are kept in a fixed hash table keyed by position hash, attacker and cards of the players,
+ * proven and disproven entries are never replaced by unknown ones, so a table can be reused by later searches.
+ * New nodes are solved at once when the player to move has a win in one (see ThreatDetector).
+ * Stuck players lose: in games with more than two players they are removed on a copy of the game
+ * and the search continues on the copy, like executeAction does
+ */
+public class ProofNumberSolver
+{
+    /**
+     * Result of a search that ran out of budget
+     */
+    public static final int UNKNOWN = 0;
+    /**
+     * Result of a search that proved a forced win
+     */
+    public static final int WIN = 1;
+    /**
+     * Result of a search that proved the opponents can always prevent the win
+     */
+    public static final int NO_WIN = 2;
+
+    private static final int INFINITY = 1 << 30;
+    private static final int MAX_PLY = 128;
+    private static final long ROOT_SALT = 0x632BE59BD9B4E019L;
+    private static final long MISSING = 0; // proof and disproof are never both 0
+
+    private final long maxNodes;
+    private final long budgetNanos;
+
+    // proof table: key, proof number and disproof number of every slot
+    private final long[] keys;
+    private final int[] proofs;
+    private final int[] disproofs;
+    private final int mask;
+
+    // search state
+    private final TurnGenerator[] generators = new TurnGenerator[MAX_PLY];
+    private final UndoRecord[][] records = new UndoRecord[MAX_PLY][];
+    private final long[][] childKeys = new long[MAX_PLY][];
+    private final long[][] childTurns = new long[MAX_PLY][];
+    private final long[][] childValues = new long[MAX_PLY][];
+    private int rootCount;
+    private Game game;
+    private int rootId;
+    private long rootSalt;
+    private long deadline;
+    private long nodes;
+    private boolean stopped;
+
+    // result of the last search
+    private long winningTurn = Bot.NO_TURN;
+    private long lastNodes;
+
+    /**
+     * Create a solver
+     * @param maxNodes max nodes of every search
+     * @param budgetMillis max time of every search in milliseconds
+     * @param tableBits log2 of the number of table entries (every entry uses 16 bytes)
+     */
+    public ProofNumberSolver(long maxNodes, long budgetMillis, int tableBits)
+    {
+        if(maxNodes <= 0 || budgetMillis <= 0 || tableBits < 1 || tableBits > 28)
+            throw new IllegalArgumentException("Invalid solver configuration");
+
+        this.maxNodes = maxNodes;
+        this.budgetNanos = budgetMillis * 1000000;
+        keys = new long[1 << tableBits];
+        proofs = new int[1 << tableBits];
+        disproofs = new int[1 << tableBits];
+        mask = (1 << tableBits) - 1;
+    }
+
+    /**
+     * Try to prove that the current player can force a win
+     * The game is never changed, the search runs on a copy
+     * @param game running game at the start of a turn
+     * @return WIN, NO_WIN or UNKNOWN if the budget ended first
+     */
+    public int solve(Game game)
+    {
+        return solve(game, Long.MAX_VALUE);
+    }
+
+    /**
+     * Try to prove that the current player can force a win, stopping at a deadline of the caller
+     * The search ends at the deadline or when the budget of the solver is over, whichever comes first
+     * @param game running game at the start of a turn
+     * @param deadline System.nanoTime value when the search must stop
+     * @return WIN, NO_WIN or UNKNOWN if the budget ended first
+     */
+    public int solve(Game game, long deadline)
+    {
+        winningTurn = Bot.NO_TURN;
+        lastNodes = 0;
+        if(game.getCurrentState() != Game.GameState.GAME)
+            return UNKNOWN;
+
+        this.game = game.copy();
+        rootId = this.game.getCurrentPlayer().getId();
+        rootSalt = salt(this.game);
+        long now = System.nanoTime();
+        this.deadline = deadline - now < budgetNanos ? deadline : now + budgetNanos;
+        nodes = 0;
+        stopped = false;
+
+        rootCount = 0;
+        long data = search(key(), INFINITY, INFINITY, 0);
+
+        int result = UNKNOWN;
+        if(proof(data) == 0)
+        {
+            result = WIN;
+            winningTurn = findWinningTurn();
+        }
+        else if(disproof(data) == 0)
+        {
+            result = NO_WIN;
+        }
+
+        lastNodes = nodes;
+        this.game = null;
+        return result;
+    }
+
+    /**
+     * Return the first turn of the forced win found by the last search
+     * @return encoded turn (see TurnGenerator) or Bot.NO_TURN if the last search didn't find a win
+     */
+    public long getWinningTurn()
+    {
+        return winningTurn;
+    }
+
+    /**
+     * Return the number of nodes expanded by the last search
+     * @return nodes
+     */
+    public long getLastNodes()
+    {
+        return lastNodes;
+    }
+
+    /**
+     * Remove every entry of the table
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        Arrays.fill(proofs, 0);
+        Arrays.fill(disproofs, 0);
+    }
+
+    /**
+     * Expand a node until its proof number reaches thProof or its disproof number reaches thDisproof
+     * The numbers of the children are kept in per ply buffers while the node is expanded,
+     * so children replaced in the table by other positions don't lose their progress
+     * @param key key of the current position
+     * @param thProof proof number threshold
+     * @param thDisproof disproof number threshold
+     * @param ply turns played from the root
+     * @return packed proof numbers of the node
+     */
+    private long search(long key, int thProof, int thDisproof, int ply)
+    {
+        nodes++;
+        if(nodes >= maxNodes || System.nanoTime() > deadline)
+            stopped = true;
+        if(stopped)
+        {
+            long data = lookup(key);
+            return data == MISSING ? pack(1, 1) : data;
+        }
+
+        boolean attacker = game.getCurrentPlayer().getId() == rootId;
+        if(game.isEnded() || ply >= MAX_PLY - 1) // every turn builds, games end long before MAX_PLY
+            return store(key, terminal());
+
+        TurnGenerator generator = generator(ply);
+        int count = generator.generate(game);
+        if(count == 0)
+            return searchStuck(key, attacker, thProof, thDisproof, ply);
+
+        long[] turns = buffer(childTurns, ply, count);
+        long[] children = buffer(childKeys, ply, count);
+        long[] values = buffer(childValues, ply, count);
+        for (int i = 0; i < count; i++)
+            turns[i] = generator.get(i);
+
+        // evaluate every child once, children with a known result are solved at once
+        for (int i = 0; i < count; i++)
+        {
+            TurnGenerator.play(game, turns[i], records[ply]);
+            children[i] = key();
+            values[i] = lookup(children[i]);
+            if(values[i] == MISSING)
+                values[i] = store(children[i], initial());
+            TurnGenerator.unplay(game, turns[i], records[ply]);
+        }
+        if(ply == 0)
+            rootCount = count;
+
+        while (true)
+        {
+            // OR node: proof is the min of the children and disproof the sum, AND node is the opposite
+            int best = -1;
+            int bestMin = INFINITY + 1;
+            int secondMin = INFINITY;
+            int sum = 0;
+            int bestOther = 0;
+            for (int i = 0; i < count; i++)
+            {
+                int min = attacker ? proof(values[i]) : disproof(values[i]);
+                int other = attacker ? disproof(values[i]) : proof(values[i]);
+                sum = add(sum, other);
+
+                if(min < bestMin)
+                {
+                    secondMin = bestMin;
+                    bestMin = min;
+                    best = i;
+                    bestOther = other;
+                }
+                else if(min < secondMin)
+                {
+                    secondMin = min;
+                }
+            }
+
+            int proof = attacker ? bestMin : sum;
+            int disproof = attacker ? sum : bestMin;
+            if(proof >= thProof || disproof >= thDisproof || stopped)
+                return store(key, pack(proof, disproof));
+
+            int thMin = Math.min(attacker ? thProof : thDisproof, add(Math.min(secondMin, INFINITY), 1));
+            int thOther = add(sub(attacker ? thDisproof : thProof, sum), bestOther);
+
+            TurnGenerator.play(game, turns[best], records[ply]);
+            values[best] = search(children[best], attacker ? thMin : thOther, attacker ? thOther : thMin, ply + 1);
+            TurnGenerator.unplay(game, turns[best], records[ply]);
+        }
+    }
+
+    /**
+     * Solve a node where the player to move can't play a turn
+     * @param key key of the current position
+     * @param attacker true if the stuck player is the root player
+     * @param thProof proof number threshold
+     * @param thDisproof disproof number threshold
+     * @param ply turns played from the root
+     * @return packed proof numbers of the node
+     */
+    private long searchStuck(long key, boolean attacker, int thProof, int thDisproof, int ply)
+    {
+        if(attacker)
+            return store(key, pack(INFINITY, 0));
+        if(game.playerCount() == 2)
+            return store(key, pack(0, INFINITY));
+
+        // remove the player on a copy and search the position of the next player
+        Game current = game;
+        Game removed = game.copy();
+        if(!removed.removeStuckPlayer())
+            return store(key, pack(INFINITY, 0)); // can't reproduce the loss, don't claim the win
+
+        long currentSalt = rootSalt;
+        game = removed;
+        rootSalt = salt(removed); // player indexes of the cards changed
+        long data = search(key(), thProof, thDisproof, ply + 1);
+        game = current;
+        rootSalt = currentSalt;
+        return store(key, data);
+    }
+
+    /**
+     * Find the root turn whose child is proven
+     * @return winning turn
+     */
+    private long findWinningTurn()
+    {
+        for (int i = 0; i < rootCount; i++)
+            if(proof(childValues[0][i]) == 0)
+                return childTurns[0][i];
+        return Bot.NO_TURN;
+    }
+
+    /**
+     * Proof numbers of an ended game
+     * @return packed proof numbers
+     */
+    private long terminal()
+    {
+        if(game.isEnded() && game.getWinner().getId() == rootId)
+            return pack(0, INFINITY);
+        return pack(INFINITY, 0);
+    }
+
+    /**
+     * Proof numbers of a new node
+     * @return packed proof numbers
+     */
+    private long initial()
+    {
+        if(game.isEnded())
+            return terminal();
+
+        Player current = game.getCurrentPlayer();
+        if(ThreatDetector.hasWin(game, current))
+            return current.getId() == rootId ? pack(0, INFINITY) : pack(INFINITY, 0);
+        return pack(1, 1);
+    }
+
+    /**
+     * Return the salt of the table keys of a game: position hashes have no attacker and no card term,
+     * and the same table is used for every attacker and pairing
+     * @param game searched game
+     * @return salt
+     */
+    private long salt(Game game)
+    {
+        return (ROOT_SALT * (rootId + 1)) ^ game.getCardHash();
+    }
+
+    /**
+     * Return the table key of the current position
+     * @return key
+     */
+    private long key()
+    {
+        return game.getHash() ^ rootSalt;
+    }
+
+    /**
+     * Read the proof numbers of a position
+     * @param key position key
+     * @return packed proof numbers, MISSING if the position is not in the table
+     */
+    private long lookup(long key)
+    {
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        if(keys[slot] != key || (proofs[slot] == 0 && disproofs[slot] == 0))
+            return MISSING;
+        return pack(proofs[slot], disproofs[slot]);
+    }
+
+    /**
+     * Save the proof numbers of a position, solved positions are replaced only by solved positions
+     * @param key position key
+     * @param data packed proof numbers
+     * @return data
+     */
+    private long store(long key, long data)
+    {
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        boolean solved = proofs[slot] == 0 || disproofs[slot] == 0;
+        if(keys[slot] != key && solved && proofs[slot] + disproofs[slot] != 0 && proof(data) != 0 && disproof(data) != 0)
+            return data;
+
+        keys[slot] = key;
+        proofs[slot] = proof(data);
+        disproofs[slot] = disproof(data);
+        return data;
+    }
+
+    /**
+     * Return the generator of a ply, generators and records are created the first time a ply is reached
+     * @param ply ply
+     * @return generator
+     */
+    private TurnGenerator generator(int ply)
+    {
+        if(generators[ply] == null)
+        {
+            generators[ply] = new TurnGenerator();
+            records[ply] = new UndoRecord[TurnGenerator.MAX_STEPS];
+            for (int i = 0; i < TurnGenerator.MAX_STEPS; i++)
+                records[ply][i] = new UndoRecord();
+        }
+        return generators[ply];
+    }
+
+    /**
+     * Return a per ply buffer with at least count elements
+     * @param buffers buffers of every ply
+     * @param ply ply
+     * @param count needed elements
+     * @return buffer
+     */
+    private static long[] buffer(long[][] buffers, int ply, int count)
+    {
+        if(buffers[ply] == null || buffers[ply].length < count)
+            buffers[ply] = new long[Math.max(count, 64)];
+        return buffers[ply];
+    }
+
+    private static long pack(int proof, int disproof)
+    {
+        return ((long) proof << 32) | disproof;
+    }
+
+    private static int proof(long data)
+    {
+        return (int) (data >>> 32);
+    }
+
+    private static int disproof(long data)
+    {
+        return (int) data;
+    }
+
+    /**
+     * Saturated sum of proof numbers
+     */
+    private static int add(int a, int b)
+    {
+        return (int) Math.min((long) a + b, INFINITY);
+    }
+
+    /**
+     * Saturated difference of proof numbers, infinite values stay infinite
+     */
+    private static int sub(int a, int b)
+    {
+        return a >= INFINITY ? INFINITY : Math.max(a - b, 0);
+    }
+}
@@ -0,0 +1,37 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+
+import java.util.SplittableRandom;
+
+/**
+ * Computer player that plays a random complete turn
+ * It is the baseline of self-play matches and the fastest player to test the engine with many games.
+ * A bot is not thread safe, every thread should use its own bot
+ */
+public class RandomBot implements Bot
+{
+    private final TurnGenerator generator = new TurnGenerator();
+    private final SplittableRandom random;
+
+    /**
+     * Create a bot
+     * @param seed seed of the random turns
+     */
+    public RandomBot(long seed)
+    {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Choose a random turn of the current player
+     * @param game running game
+     * @return encoded turn (see TurnGenerator) or NO_TURN if the player can't complete any turn
+     */
+    @Override
+    public long findBestTurn(Game game)
+    {
+        int count = generator.generate(game);
+        return count == 0 ? NO_TURN : generator.get(random.nextInt(count));
+    }
+}
@@ -0,0 +1,294 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+
+import java.util.SplittableRandom;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+
+/**
+ * Headless simulation of complete games between two bots
+ * Games are created directly on the model (see Perft.newGame) with random worker placement and are played with
+ * makeAction, so no controller, server or message is involved. Games are spread on every core with a parallel
+ * stream: every task creates its undo records once and reuses them for all its games.
+ * Game i uses the pairing i % pairings, so every pairing gets the same number of games.
+ * Every game creates its own bots with seeds drawn from the seed of the game (seed + i), so a game has the same
+ * result whatever thread plays it and whatever games that thread played before
+ * With verify enabled every game is also undone turn by turn at the end and the hash of the starting position
+ * must come back, so long runs also test the engine
+ */
+public class SelfPlay
+{
+    /**
+     * Max number of turns of a game, longer games are a draw
+     */
+    public static final int MAX_GAME_TURNS = 200;
+
+    private final int[][] pairings;
+    private final LongFunction<Bot> firstBot;
+    private final LongFunction<Bot> secondBot;
+    private boolean verify;
+
+    /**
+     * Create a simulation
+     * @param pairings card ids of the first and second player of every pairing (both 0 for games without gods)
+     * @param firstBot factory of the bots of the player that moves first, called with a seed for every game
+     *                 (bots that are AutoCloseable are closed at the end of the game)
+     * @param secondBot factory of the bots of the second player, called with a seed for every game
+     */
+    public SelfPlay(int[][] pairings, LongFunction<Bot> firstBot, LongFunction<Bot> secondBot)
+    {
+        if(pairings == null || pairings.length == 0 || firstBot == null || secondBot == null)
+            throw new IllegalArgumentException("Invalid simulation configuration");
+
+        for (int[] pairing : pairings)
+            if(pairing.length != 2 || (pairing[0] == 0) != (pairing[1] == 0) || (pairing[0] != 0 && pairing[0] == pairing[1]))
+                throw new IllegalArgumentException("Invalid god pairing");
+
+        this.pairings = new int[pairings.length][];
+        for (int i = 0; i < pairings.length; i++)
+            this.pairings[i] = pairings[i].clone();
+        this.firstBot = firstBot;
+        this.secondBot = secondBot;
+    }
+
+    /**
+     * Return every ordered pairing of two different cards of a collection
+     * @param cards card collection
+     * @return pairings, the first card of a pairing is used by the player that moves first
+     */
+    public static int[][] allPairings(CardCollection cards)
+    {
+        int[] ids = cards.getCardIDs();
+        int[][] pairings = new int[ids.length * (ids.length - 1)][];
+        int count = 0;
+        for (int first : ids)
+            for (int second : ids)
+                if(first != second)
+                    pairings[count++] = new int[]{first, second};
+        return pairings;
+    }
+
+    /**
+     * Undo every game at its end and check that the starting position comes back
+     * @param verify true to verify games
+     */
+    public void setVerify(boolean verify)
+    {
+        this.verify = verify;
+    }
+
+    /**
+     * Play games on every core
+     * @param games number of games
+     * @param seed seed of the games (game i uses seed + i for worker placement and bots)
+     * @return results of the games
+     * @throws IllegalStateException if a bot plays an illegal turn or a verified game doesn't undo correctly
+     */
+    public SelfPlayStats run(long games, long seed)
+    {
+        long start = System.nanoTime();
+        SelfPlayStats stats = LongStream.range(0, games).parallel()
+                .collect(Runner::new, (runner, i) -> runner.play(i, seed + i), Runner::merge).stats;
+        stats.setNanos(System.nanoTime() - start);
+        return stats;
+    }
+
+    /**
+     * Play a single game on the calling thread
+     * @param index game index, selects the pairing
+     * @param seed seed of the game (worker placement and bots)
+     * @return stats with only this game
+     */
+    public SelfPlayStats playGame(long index, long seed)
+    {
+        Runner runner = new Runner();
+        runner.play(index, seed);
+        return runner.stats;
+    }
+
+    /**
+     * Close a bot that owns resources (see MonteCarloBot.close)
+     * @param bot bot to close
+     */
+    private static void close(Bot bot)
+    {
+        if(bot instanceof AutoCloseable)
+        {
+            try
+            {
+                ((AutoCloseable) bot).close();
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException("Bot can't be closed", e);
+            }
+        }
+    }
+
+    /**
+     * Engine instances of a task: undo records and the stats of the played games
+     */
+    private class Runner
+    {
+        private final UndoRecord[][] records = new UndoRecord[MAX_GAME_TURNS][];
+        private final long[] played = new long[MAX_GAME_TURNS];
+        private final SelfPlayStats stats = new SelfPlayStats(pairings);
+
+        /**
+         * Play a game with new bots, the bots are closed at the end of the game
+         * @param index game index
+         * @param seed seed of the worker placement and of the bots
+         */
+        void play(long index, long seed)
+        {
+            SplittableRandom random = new SplittableRandom(seed);
+            int pairing = (int) (index % pairings.length);
+            Game game = Perft.newRandomGame(pairings[pairing][0], pairings[pairing][1], random);
+
+            Bot first = firstBot.apply(random.nextLong());
+            try
+            {
+                Bot second = secondBot.apply(random.nextLong());
+                try
+                {
+                    play(index, pairing, game, new Bot[]{first, second});
+                }
+                finally
+                {
+                    close(second);
+                }
+            }
+            finally
+            {
+                close(first);
+            }
+        }
+
+        /**
+         * Play a game until its end
+         * @param index game index
+         * @param pairing pairing index
+         * @param game new game
+         * @param bots bots of the first and of the second player
+         */
+        private void play(long index, int pairing, Game game, Bot[] bots)
+        {
+            long startHash = game.getHash();
+
+            int winner = SelfPlayStats.DRAW;
+            int turns = 0;
+            while (!game.isEnded() && turns < MAX_GAME_TURNS)
+            {
+                Player mover = game.getCurrentPlayer();
+                long turn = bots[mover.getId()].findBestTurn(game);
+                if(turn == Bot.NO_TURN)
+                {
+                    winner = 1 - mover.getId(); // stuck players lose
+                    break;
+                }
+
+                TurnGenerator.play(game, turn, turnRecords(turns));
+                played[turns++] = turn;
+            }
+            if(game.isEnded())
+                winner = game.getWinner().getId();
+
+            if(verify)
+            {
+                for (int t = turns - 1; t >= 0; t--)
+                    TurnGenerator.unplay(game, played[t], records[t]);
+
+                if(game.getHash() != startHash)
+                    throw new IllegalStateException("Game " + index + " can't be undone to its starting position");
+            }
+
+            stats.add(pairing, winner, turns);
+        }
+
+        /**
+         * Return the undo records of a turn
+         * @param turn turn number
+         * @return records of every step
+         */
+        private UndoRecord[] turnRecords(int turn)
+        {
+            if(records[turn] == null)
+            {
+                records[turn] = new UndoRecord[TurnGenerator.MAX_STEPS];
+                for (int i = 0; i < TurnGenerator.MAX_STEPS; i++)
+                    records[turn][i] = new UndoRecord();
+            }
+            return records[turn];
+        }
+
+        /**
+         * Add the games of another task
+         * @param other other task
+         */
+        void merge(Runner other)
+        {
+            stats.merge(other.stats);
+        }
+    }
+
+    /**
+     * Create the factory of a bot from its name
+     * @param name random, greedy (one turn search), alphabeta (two turns search) or montecarlo (1000 playouts)
+     * @return bot factory
+     */
+    private static LongFunction<Bot> bot(String name)
+    {
+        switch (name)
+        {
+            case "random":
+                return RandomBot::new;
+            case "greedy":
+                return seed -> new AlphaBetaBot(60000, 1, new WeightedEvaluator(), new TranspositionTable(4));
+            case "alphabeta":
+                return seed -> new AlphaBetaBot(60000, 2, new WeightedEvaluator(), new TranspositionTable(16));
+            case "montecarlo":
+                return seed -> new MonteCarloBot(60000, 1000, 1, seed);
+            default:
+                throw new IllegalArgumentException("Unknown bot " + name);
+        }
+    }
+
+    /**
+     * Play games between two bots on every core and print the results
+     * @param args games, first bot, second bot (random, greedy, alphabeta, montecarlo),
+     *             pairings ("all", "none" or first-second card ids separated by commas), seed and "verify" to undo every game
+     */
+    public static void main(String[] args)
+    {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+        LongFunction<Bot> first = bot(args.length > 1 ? args[1] : "random");
+        LongFunction<Bot> second = bot(args.length > 2 ? args[2] : "random");
+        String names = args.length > 3 ? args[3] : "all";
+
+        CardCollection cards = new CardCollection();
+        int[][] pairings;
+        if(names.equals("all"))
+        {
+            pairings = allPairings(cards);
+        }
+        else if(names.equals("none"))
+        {
+            pairings = new int[][]{{0, 0}};
+        }
+        else
+        {
+            String[] list = names.split(",");
+            pairings = new int[list.length][];
+            for (int i = 0; i < list.length; i++)
+            {
+                String[] ids = list[i].split("-");
+                pairings[i] = new int[]{Integer.parseInt(ids[0]), Integer.parseInt(ids[1])};
+            }
+        }
+
+        SelfPlay simulation = new SelfPlay(pairings, first, second);
+        simulation.setVerify(args.length > 5 && args[5].equals("verify"));
+        simulation.run(games, args.length > 4 ? Long.parseLong(args[4]) : 1).print(System.out, cards);
+    }
+}
@@ -0,0 +1,237 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+
+import java.io.PrintStream;
+
+/**
+ * Results of the self-play games of SelfPlay, grouped by god pairing
+ * Every pairing counts its games, the wins of the first and of the second player (the player that moves first
+ * is always the first card of the pairing), the games ended by the turn limit and the number of played turns.
+ * Stats of different threads are merged with merge
+ */
+public class SelfPlayStats
+{
+    /**
+     * Winner of a game ended by the turn limit
+     */
+    public static final int DRAW = -1;
+
+    private final int[][] pairings;
+    private final long[] games;
+    private final long[] firstWins;
+    private final long[] secondWins;
+    private final long[] turns;
+    private long nanos;
+
+    /**
+     * Create empty stats
+     * @param pairings card ids of the first and second player of every pairing
+     */
+    public SelfPlayStats(int[][] pairings)
+    {
+        this.pairings = pairings;
+        games = new long[pairings.length];
+        firstWins = new long[pairings.length];
+        secondWins = new long[pairings.length];
+        turns = new long[pairings.length];
+    }
+
+    /**
+     * Count a game
+     * @param pairing pairing index
+     * @param winner 0 if the first player won, 1 if the second player won or DRAW
+     * @param length number of played turns
+     */
+    public void add(int pairing, int winner, int length)
+    {
+        games[pairing]++;
+        turns[pairing] += length;
+        if(winner == 0)
+            firstWins[pairing]++;
+        else if(winner == 1)
+            secondWins[pairing]++;
+    }
+
+    /**
+     * Add the games of other stats with the same pairings
+     * @param other stats to add
+     */
+    public void merge(SelfPlayStats other)
+    {
+        if(other.pairings.length != pairings.length)
+            throw new IllegalArgumentException("Stats have different pairings");
+
+        for (int i = 0; i < pairings.length; i++)
+        {
+            games[i] += other.games[i];
+            firstWins[i] += other.firstWins[i];
+            secondWins[i] += other.secondWins[i];
+            turns[i] += other.turns[i];
+        }
+    }
+
+    /**
+     * Set the time used to play the games
+     * @param nanos elapsed nanoseconds
+     */
+    void setNanos(long nanos)
+    {
+        this.nanos = nanos;
+    }
+
+    /**
+     * Return the number of pairings
+     * @return pairings
+     */
+    public int pairings()
+    {
+        return pairings.length;
+    }
+
+    /**
+     * Return the card ids of a pairing
+     * @param pairing pairing index
+     * @return copy of the card ids of the first and second player
+     */
+    public int[] getPairing(int pairing)
+    {
+        return pairings[pairing].clone();
+    }
+
+    /**
+     * Return the number of games of a pairing
+     * @param pairing pairing index
+     * @return games
+     */
+    public long getGames(int pairing)
+    {
+        return games[pairing];
+    }
+
+    /**
+     * Return the number of games won by the first player of a pairing
+     * @param pairing pairing index
+     * @return wins
+     */
+    public long getFirstWins(int pairing)
+    {
+        return firstWins[pairing];
+    }
+
+    /**
+     * Return the number of games won by the second player of a pairing
+     * @param pairing pairing index
+     * @return wins
+     */
+    public long getSecondWins(int pairing)
+    {
+        return secondWins[pairing];
+    }
+
+    /**
+     * Return the number of games of a pairing ended by the turn limit
+     * @param pairing pairing index
+     * @return draws
+     */
+    public long getDraws(int pairing)
+    {
+        return games[pairing] - firstWins[pairing] - secondWins[pairing];
+    }
+
+    /**
+     * Return the number of games of every pairing
+     * @return games
+     */
+    public long getGames()
+    {
+        return sum(games);
+    }
+
+    /**
+     * Return the average number of turns of a game
+     * @return turns, 0 if there are no games
+     */
+    public double getAverageLength()
+    {
+        long total = getGames();
+        return total == 0 ? 0 : (double) sum(turns) / total;
+    }
+
+    /**
+     * Return the share of decided games won by the player that moves first
+     * @return win rate (0 - 1), 0.5 if no game is decided
+     */
+    public double getFirstPlayerWinRate()
+    {
+        long first = sum(firstWins);
+        long decided = first + sum(secondWins);
+        return decided == 0 ? 0.5 : (double) first / decided;
+    }
+
+    /**
+     * Return the number of games played every second
+     * @return games per second, 0 if the time is unknown
+     */
+    public double getGamesPerSecond()
+    {
+        return nanos == 0 ? 0 : getGames() * 1e9 / nanos;
+    }
+
+    /**
+     * Print the results of every pairing and the totals
+     * @param out output stream
+     * @param cards cards used to print the names of the gods
+     */
+    public void print(PrintStream out, CardCollection cards)
+    {
+        out.printf("%-12s %-12s %10s %8s %8s %8s %8s%n", "first", "second", "games", "first%", "second%", "draws%", "turns");
+        for (int i = 0; i < pairings.length; i++)
+        {
+            if(games[i] == 0)
+                continue;
+
+            out.printf("%-12s %-12s %10d %8.1f %8.1f %8.1f %8.1f%n", name(cards, pairings[i][0]), name(cards, pairings[i][1]),
+                    games[i], 100.0 * firstWins[i] / games[i], 100.0 * secondWins[i] / games[i],
+                    100.0 * getDraws(i) / games[i], (double) turns[i] / games[i]);
+        }
+
+        out.println();
+        out.printf("games: %d, games/s: %.0f, average turns: %.1f, first player wins: %.1f%% of decided games%n",
+                getGames(), getGamesPerSecond(), getAverageLength(), 100 * getFirstPlayerWinRate());
+    }
+
+    /**
+     * Return the sum of a counter of every pairing
+     * @param counter counter
+     * @return sum
+     */
+    private static long sum(long[] counter)
+    {
+        long sum = 0;
+        for (long value : counter)
+            sum += value;
+        return sum;
+    }
+
+    /**
+     * Return the name of a card
+     * @param cards card collection
+     * @param id card id, 0 for no god
+     * @return card name or its id if the card is not in the collection
+     */
+    private static String name(CardCollection cards, int id)
+    {
+        if(id == 0)
+            return "none";
+
+        try
+        {
+            return cards.getCard(id).getName().trim();
+        }
+        catch (CardNotExistsException e)
+        {
+            return String.valueOf(id);
+        }
+    }
+}
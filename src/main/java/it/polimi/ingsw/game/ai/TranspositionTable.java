@@ -0,0 +1,295 @@
+package it.polimi.ingsw.game.ai;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed size table of search results keyed by position hash (see Game.getHash)
+ * Every entry is packed into two longs: the position key xor the entry data and the entry data
+ * (score, depth, bound type, best turn index and search generation), so the table has no entry objects
+ * and its memory is fixed when it is created.
+ * The table is lock-free and can be shared by many search threads: the two longs of an entry are written
+ * without synchronization, so an entry written at the same time by two threads can mix their halves,
+ * but then the xor of the halves doesn't match the key anymore and the entry is read as a miss.
+ * A slot is replaced when the new result is deeper or the old one belongs to a previous search
+ *
+ * Layout of the data (from the lowest bit): 32 bits score, 8 bits depth, 2 bits bound, 16 bits turn index, 6 bits generation
+ */
+public class TranspositionTable
+{
+    /**
+     * Bound of an entry whose score is exact
+     */
+    public static final int EXACT = 1;
+    /**
+     * Bound of an entry whose score is a lower bound (search failed high)
+     */
+    public static final int LOWER = 2;
+    /**
+     * Bound of an entry whose score is an upper bound (search failed low)
+     */
+    public static final int UPPER = 3;
+
+    /**
+     * Turn index of an entry without best turn
+     */
+    public static final int NO_MOVE = 0xFFFF;
+
+    /**
+     * Data returned by probe when the position is not in the table
+     */
+    public static final long MISS = 0;
+
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int MOVE_SHIFT = 42;
+    private static final int GENERATION_SHIFT = 58;
+    private static final int GENERATIONS = 64;
+    private static final int ENTRY_BYTES = 16;
+    private static final int MAX_SIZE_BITS = 28;
+
+    // single long reads and writes are atomic and never cached by the JIT
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] table;
+    private final int mask;
+    private volatile int generation;
+
+    // statistics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * Create an empty table
+     * @param sizeBits log2 of the number of entries (every entry uses 16 bytes)
+     */
+    public TranspositionTable(int sizeBits)
+    {
+        if(sizeBits < 1 || sizeBits > MAX_SIZE_BITS)
+            throw new IllegalArgumentException("Table size must be between 2^1 and 2^" + MAX_SIZE_BITS + " entries");
+
+        table = new long[2 << sizeBits];
+        mask = (1 << sizeBits) - 1;
+        generation = 0;
+    }
+
+    /**
+     * Create the largest empty table that fits in a memory budget
+     * @param bytes memory budget in bytes (at least 32 bytes)
+     * @return new table
+     */
+    public static TranspositionTable withMemory(long bytes)
+    {
+        if(bytes < 2 * ENTRY_BYTES)
+            throw new IllegalArgumentException("Memory budget is too small");
+
+        int sizeBits = 63 - Long.numberOfLeadingZeros(bytes / ENTRY_BYTES);
+        return new TranspositionTable(Math.min(sizeBits, MAX_SIZE_BITS));
+    }
+
+    /**
+     * Return the number of entries of the table
+     * @return entries
+     */
+    public int size()
+    {
+        return mask + 1;
+    }
+
+    /**
+     * Return the memory used by the entries of the table
+     * @return bytes
+     */
+    public long getMemoryBytes()
+    {
+        return (long) size() * ENTRY_BYTES;
+    }
+
+    /**
+     * Find the data of a position
+     * @param key position hash
+     * @return packed data or MISS if the position is not in the table
+     */
+    public long probe(long key)
+    {
+        int slot = slot(key);
+        long check = (long) SLOTS.getOpaque(table, slot);
+        long data = (long) SLOTS.getOpaque(table, slot + 1);
+
+        if(data == MISS)
+        {
+            misses.increment();
+            return MISS;
+        }
+        if((check ^ data) != key)
+        {
+            // another position or an entry written by two threads at the same time
+            collisions.increment();
+            return MISS;
+        }
+
+        hits.increment();
+        return data;
+    }
+
+    /**
+     * Save the result of a search
+     * @param key position hash
+     * @param depth searched depth (0 - 255)
+     * @param bound EXACT, LOWER or UPPER
+     * @param score search score
+     * @param move index of the best turn or NO_MOVE
+     */
+    public void store(long key, int depth, int bound, int score, int move)
+    {
+        long data = pack(depth, bound, score, move);
+        int slot = slot(key);
+        long check = (long) SLOTS.getOpaque(table, slot);
+        long old = (long) SLOTS.getOpaque(table, slot + 1);
+
+        if(old != MISS && (check ^ old) != key && getGeneration(old) == getGeneration(data) && getDepth(old) > depth)
+            return; // keep deeper results of the current search
+
+        SLOTS.setOpaque(table, slot, key ^ data);
+        SLOTS.setOpaque(table, slot + 1, data);
+    }
+
+    /**
+     * Start a new search, entries of previous searches are kept but are the first to be replaced
+     */
+    public void newSearch()
+    {
+        generation = (generation + 1) % GENERATIONS;
+    }
+
+    /**
+     * Remove every entry and reset the statistics
+     * Must not be called while other threads use the table
+     */
+    public void clear()
+    {
+        for (int i = 0; i < table.length; i++)
+            SLOTS.setOpaque(table, i, 0L);
+        generation = 0;
+        resetStats();
+    }
+
+    /**
+     * Return the number of probes that found their position
+     * @return hits
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Return the number of probes of an empty slot
+     * @return misses
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Return the number of probes of a slot used by another position (or by a torn entry)
+     * @return collisions
+     */
+    public long getCollisions()
+    {
+        return collisions.sum();
+    }
+
+    /**
+     * Reset hits, misses and collisions
+     */
+    public void resetStats()
+    {
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+    }
+
+    /**
+     * Return the score of packed data
+     * @param data packed data
+     * @return score
+     */
+    public static int getScore(long data)
+    {
+        return (int) data;
+    }
+
+    /**
+     * Return the depth of packed data
+     * @param data packed data
+     * @return depth
+     */
+    public static int getDepth(long data)
+    {
+        return (int) ((data >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    /**
+     * Return the bound of packed data
+     * @param data packed data
+     * @return EXACT, LOWER or UPPER
+     */
+    public static int getBound(long data)
+    {
+        return (int) ((data >>> BOUND_SHIFT) & 0x3);
+    }
+
+    /**
+     * Return the best turn index of packed data
+     * @param data packed data
+     * @return turn index or NO_MOVE
+     */
+    public static int getMove(long data)
+    {
+        return (int) ((data >>> MOVE_SHIFT) & 0xFFFF);
+    }
+
+    /**
+     * Return the search generation of packed data
+     * @param data packed data
+     * @return generation
+     */
+    private static int getGeneration(long data)
+    {
+        return (int) ((data >>> GENERATION_SHIFT) & (GENERATIONS - 1));
+    }
+
+    /**
+     * Pack an entry, the bound is never 0 so packed data is never MISS
+     * @param depth searched depth
+     * @param bound bound type
+     * @param score score
+     * @param move turn index
+     * @return packed data
+     */
+    private long pack(int depth, int bound, int score, int move)
+    {
+        if(bound < EXACT || bound > UPPER)
+            throw new IllegalArgumentException("Invalid bound");
+
+        return (score & 0xFFFFFFFFL)
+                | ((long) Math.min(Math.max(depth, 0), 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) (move & 0xFFFF) << MOVE_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+    }
+
+    /**
+     * Return the index of the key of the slot of a position
+     * @param key position hash
+     * @return array index
+     */
+    private int slot(long key)
+    {
+        return ((int) (key ^ (key >>> 32)) & mask) << 1;
+    }
+}
@@ -0,0 +1,242 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+
+import java.util.Arrays;
+
+/**
+ * Linear evaluator over a fixed set of board features with tunable weights (see EvaluatorTuner)
+ * Every feature is computed for every player from bitmasks of the map; the features of the evaluated player are added
+ * and the features of its opponents are subtracted, so the score is the weighted sum of the feature differences.
+ * Card features don't look at card ids but at the constraints used by the graph of the card,
+ * so they also apply to every card with the same behaviour
+ */
+public class WeightedEvaluator implements Evaluator
+{
+    /**
+     * Level of every worker
+     */
+    public static final int HEIGHT = 0;
+    /**
+     * Free cells every worker can move to
+     */
+    public static final int MOBILITY = 1;
+    /**
+     * Free cells every worker can move up to
+     */
+    public static final int CLIMB = 2;
+    /**
+     * Workers on level 2 that can move to a level 3 cell
+     */
+    public static final int THREAT = 3;
+    /**
+     * Free level 3 cells near every worker, even if they can't be reached now
+     */
+    public static final int LEVEL3_NEAR = 4;
+    /**
+     * Domes near every worker
+     */
+    public static final int DOMES_NEAR = 5;
+    /**
+     * Workers that can win going down two levels (Pan)
+     */
+    public static final int FALL_WIN = 6;
+    /**
+     * Opponent workers that the lock of the player (Athena) blocks from moving up to a free cell
+     */
+    public static final int MOVE_UP_LOCK = 7;
+    /**
+     * Opponent workers that can be pushed to a free cell (Minotaur)
+     */
+    public static final int PUSH = 8;
+
+    /**
+     * Number of features
+     */
+    public static final int FEATURES = 9;
+
+    private static final int[] DEFAULT_WEIGHTS = {100, 8, 20, 300, 40, -10, 250, 60, 30};
+
+    private static final int WIN_BY_GOING_DOWN = GameConstraints.Constraint.WIN_BY_GOING_DOWN.toInt();
+    private static final int SET_BLOCK_MOVE_UP = GameConstraints.Constraint.SET_BLOCK_MOVE_UP.toInt();
+    private static final int BLOCK_MOVE_UP = GameConstraints.Constraint.BLOCK_MOVE_UP.toInt();
+    private static final int CAN_PUSH = GameConstraints.Constraint.CAN_PUSH_CONSTRAINT.toInt();
+
+    private final int[] weights;
+
+    /**
+     * Create an evaluator with the default weights
+     */
+    public WeightedEvaluator()
+    {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    /**
+     * Create an evaluator
+     * @param weights weight of every feature (see FEATURES)
+     */
+    public WeightedEvaluator(int[] weights)
+    {
+        if(weights == null || weights.length != FEATURES)
+            throw new IllegalArgumentException("Evaluator needs " + FEATURES + " weights");
+
+        this.weights = weights.clone();
+    }
+
+    /**
+     * Return the default weights
+     * @return copy of the default weights
+     */
+    public static int[] getDefaultWeights()
+    {
+        return DEFAULT_WEIGHTS.clone();
+    }
+
+    /**
+     * Return the weights of this evaluator
+     * @return copy of the weights
+     */
+    public int[] getWeights()
+    {
+        return weights.clone();
+    }
+
+    @Override
+    public int evaluate(Game game, Player player)
+    {
+        return extract(game, player, weights, null);
+    }
+
+    /**
+     * Compute the feature differences of a position, the score is the dot product of the features and the weights
+     * @param game running game
+     * @param player player that receives the score
+     * @param out array of at least FEATURES elements filled with the features
+     */
+    public static void features(Game game, Player player, int[] out)
+    {
+        Arrays.fill(out, 0, FEATURES, 0);
+        extract(game, player, DEFAULT_WEIGHTS, out);
+    }
+
+    /**
+     * Compute the score of a position and optionally its features
+     * @param game running game
+     * @param player player that receives the score
+     * @param w weights
+     * @param out features output, null to compute only the score
+     * @return weighted score
+     */
+    private static int extract(Game game, Player player, int[] w, int[] out)
+    {
+        Map m = game.getCurrentMap();
+        boolean locked = (game.getGlobalConstraintMask() & BLOCK_MOVE_UP) != 0;
+        int free = ~(m.getDomeMask() | m.getWorkerMask());
+        int level3 = m.getLevelMask(3);
+        int score = 0;
+
+        // the lock belongs to the player whose card sets it
+        int lockSign = 0;
+        if(locked)
+            for (int i = 0; i < game.playerCount(); i++)
+                if((abilities(game.getPlayer(i)) & SET_BLOCK_MOVE_UP) != 0)
+                    lockSign = game.getPlayer(i) == player ? 1 : -1;
+
+        for (int i = 0; i < game.playerCount(); i++)
+        {
+            Player p = game.getPlayer(i);
+            int sign = p == player ? 1 : -1;
+            int abilities = abilities(p);
+            boolean canClimb = !locked || (abilities & SET_BLOCK_MOVE_UP) != 0;
+            int opponents = m.getWorkerMask() & ~m.getWorkerMask(p);
+
+            for (Worker worker : p.getWorkers())
+            {
+                int cell = Map.cellIndex(worker.getPosition());
+                int level = m.getLevel(cell);
+                int near = Adjacency.neighbourMask(cell);
+
+                if(!canClimb && lockSign != 0 && level < Map.MAX_BUILD_HEIGHT - 1
+                        && (near & free & m.getLevelMask(level + 1)) != 0)
+                    score += add(w, out, MOVE_UP_LOCK, lockSign, 1);
+
+                int reachable = 0;
+                for (int l = 0; l <= Math.min(canClimb ? level + 1 : level, Map.MAX_BUILD_HEIGHT - 1); l++)
+                    reachable |= m.getLevelMask(l);
+                int moves = near & free & reachable;
+
+                score += add(w, out, HEIGHT, sign, level);
+                score += add(w, out, MOBILITY, sign, Integer.bitCount(moves));
+                if(level < Map.MAX_BUILD_HEIGHT - 1)
+                    score += add(w, out, CLIMB, sign, Integer.bitCount(moves & m.getLevelMask(level + 1)));
+                if(level == 2 && (moves & level3) != 0)
+                    score += add(w, out, THREAT, sign, 1);
+                score += add(w, out, LEVEL3_NEAR, sign, Integer.bitCount(near & free & level3));
+                score += add(w, out, DOMES_NEAR, sign, Integer.bitCount(near & m.getDomeMask()));
+
+                if((abilities & WIN_BY_GOING_DOWN) != 0 && level >= 2)
+                {
+                    int low = 0;
+                    for (int l = 0; l <= level - 2; l++)
+                        low |= m.getLevelMask(l);
+                    if((moves & low) != 0)
+                        score += add(w, out, FALL_WIN, sign, 1);
+                }
+
+                if((abilities & CAN_PUSH) != 0)
+                    score += add(w, out, PUSH, sign, pushable(cell, near & opponents & reachable, free));
+            }
+        }
+
+        return score;
+    }
+
+    /**
+     * Add a feature value to the features and return its weighted value
+     * @param w weights
+     * @param out features output or null
+     * @param feature feature index
+     * @param sign 1 for the evaluated player, -1 for its opponents
+     * @param value feature value
+     * @return weighted value
+     */
+    private static int add(int[] w, int[] out, int feature, int sign, int value)
+    {
+        if(out != null)
+            out[feature] += sign * value;
+        return sign * w[feature] * value;
+    }
+
+    /**
+     * Count the workers that can be pushed to a free cell
+     * @param cell cell of the pushing worker
+     * @param targets cells of the opponent workers that can be reached
+     * @param free free cells
+     * @return pushable workers
+     */
+    private static int pushable(int cell, int targets, int free)
+    {
+        int count = 0;
+        while (targets != 0)
+        {
+            int target = Integer.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+
+            int destination = Adjacency.pushDestination(cell, Adjacency.direction(cell, target));
+            if(destination != Adjacency.NO_CELL && (free & (1 << destination)) != 0)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Return the constraints used by the graph of the card of a player
+     * @param p player
+     * @return constraint mask, computed once when the graph is compiled
+     */
+    private static int abilities(Player p)
+    {
+        return p.getGod() == null ? 0 : p.getGod().getGraph().getCompiled().getUsedConstraints();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * This package contains computer players and the search tools they use on the game model
+ */
+package it.polimi.ingsw.game.ai;
@@ -0,0 +1,129 @@
+package it.polimi.ingsw.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActionKernelsTest
+{
+    private static final int BLOCK_MOVE_UP = GameConstraints.Constraint.BLOCK_MOVE_UP.toInt();
+    private static final int SET_BLOCK_MOVE_UP = GameConstraints.Constraint.SET_BLOCK_MOVE_UP.toInt();
+    private static final int CAN_SWAP = GameConstraints.Constraint.CAN_SWAP_CONSTRAINT.toInt();
+    private static final int CAN_PUSH = GameConstraints.Constraint.CAN_PUSH_CONSTRAINT.toInt();
+    private static final int BLOCK_SAME_CELL_MOVE = GameConstraints.Constraint.BLOCK_SAME_CELL_MOVE.toInt();
+    private static final int BLOCK_SAME_CELL_BUILD = GameConstraints.Constraint.BLOCK_SAME_CELL_BUILD.toInt();
+    private static final int BLOCK_DIFF_CELL_BUILD = GameConstraints.Constraint.BLOCK_DIFF_CELL_BUILD.toInt();
+    private static final int BLOCK_DOME_BUILD = GameConstraints.Constraint.BLOCK_DOME_BUILD.toInt();
+    private static final int WIN_BY_GOING_DOWN = GameConstraints.Constraint.WIN_BY_GOING_DOWN.toInt();
+
+    private static int bit(int x, int y)
+    {
+        return 1 << Map.cellIndex(x, y);
+    }
+
+    private static int[] flatLevels()
+    {
+        int[] levels = new int[Map.MAX_BUILD_HEIGHT + 1];
+        levels[0] = (1 << Map.CELLS) - 1;
+        return levels;
+    }
+
+    private static void setLevel(int[] levels, int cell, int level)
+    {
+        for (int l = 0; l < levels.length; l++)
+            levels[l] &= ~(1 << cell);
+        levels[level] |= 1 << cell;
+    }
+
+    @Test
+    void shouldClimbOneLevelOnly()
+    {
+        int[] levels = flatLevels();
+        int from = Map.cellIndex(2, 2);
+        setLevel(levels, Map.cellIndex(2, 3), 1);
+        setLevel(levels, Map.cellIndex(1, 2), 2);
+
+        int mask = ActionKernels.moveMask(from, levels, 0, 0, 0, 0, 0, Adjacency.NO_CELL);
+        assertEquals(Adjacency.neighbourMask(from) & ~bit(1, 2), mask);
+
+        // athena lock blocks the climb, unless the move is the one that sets it
+        mask = ActionKernels.moveMask(from, levels, 0, 0, 0, BLOCK_MOVE_UP, 0, Adjacency.NO_CELL);
+        assertEquals(Adjacency.neighbourMask(from) & ~bit(1, 2) & ~bit(2, 3), mask);
+        mask = ActionKernels.moveMask(from, levels, 0, 0, 0, BLOCK_MOVE_UP, SET_BLOCK_MOVE_UP, Adjacency.NO_CELL);
+        assertEquals(Adjacency.neighbourMask(from) & ~bit(1, 2), mask);
+    }
+
+    @Test
+    void shouldSkipDomesWorkersAndLastCell()
+    {
+        int from = Map.cellIndex(0, 0);
+        int mask = ActionKernels.moveMask(from, flatLevels(), bit(0, 1), bit(1, 0), bit(1, 1), 0, 0, Adjacency.NO_CELL);
+        assertEquals(0, mask);
+
+        mask = ActionKernels.moveMask(from, flatLevels(), 0, 0, 0, 0, BLOCK_SAME_CELL_MOVE, Map.cellIndex(1, 1));
+        assertEquals(bit(0, 1) | bit(1, 0), mask);
+    }
+
+    @Test
+    void shouldSwapAndPushOpponents()
+    {
+        int from = Map.cellIndex(1, 1);
+        int opponents = bit(0, 0) | bit(2, 2);
+
+        assertEquals(0, ActionKernels.moveMask(from, flatLevels(), 0, 0, opponents, 0, 0, Adjacency.NO_CELL) & opponents);
+        assertEquals(opponents, ActionKernels.moveMask(from, flatLevels(), 0, 0, opponents, CAN_SWAP, 0, Adjacency.NO_CELL) & opponents);
+
+        // (0,0) would be pushed outside the map, (2,2) is pushed to (3,3) only if it is free
+        assertEquals(bit(2, 2), ActionKernels.moveMask(from, flatLevels(), 0, 0, opponents, CAN_PUSH, 0, Adjacency.NO_CELL) & opponents);
+        assertEquals(0, ActionKernels.moveMask(from, flatLevels(), bit(3, 3), 0, opponents, CAN_PUSH, 0, Adjacency.NO_CELL) & opponents);
+        assertEquals(0, ActionKernels.moveMask(from, flatLevels(), 0, bit(3, 3), opponents, CAN_PUSH, 0, Adjacency.NO_CELL) & opponents);
+    }
+
+    @Test
+    void shouldBuildAgainWithConstraints()
+    {
+        int[] levels = flatLevels();
+        int from = Map.cellIndex(2, 2);
+        int last = Map.cellIndex(2, 3);
+        setLevel(levels, Map.cellIndex(1, 1), 3);
+
+        int near = Adjacency.neighbourMask(from);
+        assertEquals(near & ~bit(3, 3), ActionKernels.buildMask(from, bit(3, 3), bit(2, 2)));
+        assertEquals(near & ~(1 << last), ActionKernels.buildAgainMask(from, levels, 0, 0, BLOCK_SAME_CELL_BUILD, last));
+        assertEquals(1 << last, ActionKernels.buildAgainMask(from, levels, 0, 0, BLOCK_DIFF_CELL_BUILD, last));
+        assertEquals(0, ActionKernels.buildAgainMask(from, levels, 0, 0, BLOCK_DIFF_CELL_BUILD, Adjacency.NO_CELL));
+        assertEquals(near & ~bit(1, 1), ActionKernels.buildAgainMask(from, levels, 0, 0, BLOCK_DOME_BUILD, last));
+    }
+
+    @Test
+    void shouldDetectWins()
+    {
+        assertTrue(ActionKernels.isWin(2, 3, 0));
+        assertFalse(ActionKernels.isWin(3, 3, 0));
+        assertFalse(ActionKernels.isWin(2, 0, 0));
+        assertTrue(ActionKernels.isWin(2, 0, WIN_BY_GOING_DOWN));
+        assertFalse(ActionKernels.isWin(1, 0, WIN_BY_GOING_DOWN));
+    }
+
+    @Test
+    void shouldMatchMoveActionOnMap()
+    {
+        Map map = new Map();
+        Player p1 = new Player(1, "first");
+        Player p2 = new Player(2, "second");
+        Worker w1 = new Worker(0, p1, Vector2.of(2, 2));
+        Worker w2 = new Worker(0, p2, Vector2.of(2, 3));
+        p1.addWorker(w1);
+        p2.addWorker(w2);
+        map.setWorkers(p1);
+        map.setWorkers(p2);
+        map.build(Vector2.of(1, 1));
+        map.buildDome(Vector2.of(3, 3));
+
+        int own = map.getWorkerMask(p1);
+        int mask = ActionKernels.moveMask(Map.cellIndex(2, 2), map.getLevelMasks(), map.getDomeMask(), own,
+                map.getWorkerMask() & ~own, 0, 0, Adjacency.NO_CELL);
+        assertEquals(new MoveAction().possibleCellsMask(w1, map, new GameConstraints()), mask);
+        assertEquals(0, mask & (bit(2, 3) | bit(3, 3)));
+    }
+}
@@ -0,0 +1,59 @@
+package it.polimi.ingsw.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdjacencyTest
+{
+
+    @Test
+    void shouldHaveThreeNeighboursInCorners()
+    {
+        assertEquals(3, Adjacency.neighbours(Map.cellIndex(0,0)).length);
+        assertEquals(3, Adjacency.neighbours(Map.cellIndex(4,4)).length);
+        assertEquals(3, Adjacency.neighbours(Map.cellIndex(0,4)).length);
+        assertEquals(3, Adjacency.neighbours(Map.cellIndex(4,0)).length);
+    }
+
+    @Test
+    void shouldHaveEightNeighboursInTheMiddle()
+    {
+        int cell = Map.cellIndex(2,2);
+        assertEquals(8, Adjacency.neighbours(cell).length);
+        assertEquals(8, Integer.bitCount(Adjacency.neighbourMask(cell)));
+        assertEquals(0, Adjacency.neighbourMask(cell) & (1 << cell));
+    }
+
+    @Test
+    void shouldMatchDistanceOfVector2()
+    {
+        for (int from = 0; from < Map.CELLS; from++)
+            for (int to = 0; to < Map.CELLS; to++)
+            {
+                boolean adjacent = Adjacency.position(from).distance(Adjacency.position(to)) == 1;
+                assertEquals(adjacent, Adjacency.direction(from, to) != Adjacency.NO_CELL);
+                assertEquals(adjacent, (Adjacency.neighbourMask(from) & (1 << to)) != 0);
+            }
+    }
+
+    @Test
+    void shouldCalculatePushDestination()
+    {
+        int from = Map.cellIndex(1,1);
+        int target = Map.cellIndex(2,2);
+        int dir = Adjacency.direction(from, target);
+
+        assertEquals(Map.cellIndex(3,3), Adjacency.pushDestination(from, dir));
+    }
+
+    @Test
+    void shouldNotPushOutsideMap()
+    {
+        int from = Map.cellIndex(1,3);
+        int target = Map.cellIndex(0,4);
+
+        assertEquals(Adjacency.NO_CELL, Adjacency.pushDestination(from, Adjacency.direction(from, target)));
+    }
+
+}
@@ -0,0 +1,137 @@
+package it.polimi.ingsw.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchEngineTest
+{
+    /**
+     * Check that a board has the same position of a game
+     * @param engine engine with the board
+     * @param board board index
+     * @param game game to compare
+     */
+    static void assertSamePosition(BatchEngine engine, int board, Game game)
+    {
+        Map m = game.getCurrentMap();
+        for (int l = 0; l <= Map.MAX_BUILD_HEIGHT; l++)
+            assertEquals(m.getLevelMask(l), engine.getLevelMask(board, l));
+        assertEquals(m.getDomeMask(), engine.getDomeMask(board));
+        assertEquals(game.getGlobalConstraintMask(), engine.getConstraintMask(board));
+        for (int p = 0; p < game.playerCount(); p++)
+            for (int w = 0; w < Game.WORKERS_PER_PLAYER; w++)
+                assertEquals(Map.cellIndex(game.getPlayer(p).getWorkers().get(w).getPosition()), engine.getWorkerCell(board, p, w));
+    }
+
+    @Test
+    void shouldCountSameTurnsAsGenerator()
+    {
+        TurnGenerator generator = new TurnGenerator();
+        BatchEngine engine = new BatchEngine(16, 1);
+        for (long seed = 0; seed < 300; seed++)
+        {
+            Game game = SymmetryTest.randomGame(seed, Symmetry.IDENTITY);
+            int board = engine.add(game);
+            assertSamePosition(engine, board, game);
+            assertEquals(generator.generate(game), engine.countTurns(board), "seed " + seed);
+        }
+
+        Game noGods = Perft.newGame(0, 0);
+        assertEquals(generator.generate(noGods), engine.countTurns(engine.add(noGods)));
+    }
+
+    @Test
+    void shouldPlayTurnsLikeTheObjectEngine() throws Exception
+    {
+        TurnGenerator generator = new TurnGenerator();
+        for (long seed = 0; seed < 60; seed++)
+        {
+            Game game = SymmetryTest.randomGame(seed, Symmetry.IDENTITY);
+            BatchEngine engine = new BatchEngine(1, seed);
+            int board = engine.add(game);
+
+            while (engine.getWinner(board) == BatchEngine.RUNNING && engine.getTurns(board) < 50)
+            {
+                int count = generator.generate(game);
+                int turns = engine.getTurns(board);
+                engine.step();
+                if(count == 0)
+                {
+                    // stuck player loses without playing
+                    assertEquals(turns, engine.getTurns(board));
+                    assertEquals(1 - game.getPlayers().indexOf(game.getCurrentPlayer()), engine.getWinner(board));
+                    break;
+                }
+
+                long turn = engine.getLastTurn(board);
+                boolean generated = false;
+                for (int i = 0; i < count; i++)
+                    generated |= generator.get(i) == turn;
+                assertTrue(generated, "seed " + seed + " turn " + TurnGenerator.toString(turn));
+
+                for (int step = 0; step < TurnGenerator.getLength(turn); step++)
+                    game.makeAction(TurnGenerator.getWorker(turn), TurnGenerator.getAction(turn, step), Vector2.of(TurnGenerator.getCell(turn, step)));
+
+                assertEquals(turns + 1, engine.getTurns(board));
+                assertSamePosition(engine, board, game);
+                if(game.isEnded())
+                    assertEquals(game.getPlayers().indexOf(game.getWinner()), engine.getWinner(board));
+                else
+                    assertEquals(game.getPlayers().indexOf(game.getCurrentPlayer()), engine.getCurrentPlayer(board));
+            }
+        }
+    }
+
+    @Test
+    void shouldFinishGames()
+    {
+        int[] cards = {0, 1, 2, 3, 4, 5, 6, 8, 9, 10};
+        BatchEngine engine = new BatchEngine(1, 7);
+        for (int first : cards)
+            for (int second : cards)
+                if((first == 0) == (second == 0) && (first == 0 || first != second))
+                    for (int i = 0; i < 4; i++)
+                        engine.add(Perft.newGame(first, second));
+
+        assertEquals(4 * (1 + 9 * 8), engine.size());
+        assertEquals(engine.size(), engine.running());
+
+        int running = engine.run(200);
+        assertEquals(running, engine.running());
+        assertEquals(engine.size(), running + engine.wins(0) + engine.wins(1));
+        assertTrue(running < engine.size() / 10);
+        for (int board = 0; board < engine.size(); board++)
+            assertTrue(engine.getTurns(board) > 0);
+
+        // finished boards are not played again
+        int[] turns = new int[engine.size()];
+        for (int board = 0; board < engine.size(); board++)
+            turns[board] = engine.getWinner(board) == BatchEngine.RUNNING ? -1 : engine.getTurns(board);
+        engine.step();
+        for (int board = 0; board < engine.size(); board++)
+            if(turns[board] >= 0)
+                assertEquals(turns[board], engine.getTurns(board));
+
+        engine.clear();
+        assertEquals(0, engine.size());
+        assertEquals(0, engine.step());
+    }
+
+    @Test
+    void shouldRejectGamesThatCantBeSimulated() throws Exception
+    {
+        BatchEngine engine = new BatchEngine(4, 1);
+        assertThrows(IllegalArgumentException.class, () -> engine.add(new Game()));
+
+        // worker already selected
+        Game game = Perft.newGame(1, 2);
+        TurnGenerator generator = new TurnGenerator();
+        generator.generate(game);
+        long turn = generator.get(0);
+        game.makeAction(TurnGenerator.getWorker(turn), TurnGenerator.getAction(turn, 0), Vector2.of(TurnGenerator.getCell(turn, 0)));
+        assertThrows(IllegalArgumentException.class, () -> engine.add(game));
+        assertEquals(0, engine.size());
+        assertThrows(IllegalArgumentException.class, () -> new BatchEngine(0, 1));
+    }
+}
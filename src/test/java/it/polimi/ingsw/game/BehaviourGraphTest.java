@@ -3,8 +3,6 @@ package it.polimi.ingsw.game;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.ArrayList;
-
 import static org.junit.jupiter.api.Assertions.*;
 
 class BehaviourGraphTest
@@ -32,10 +30,9 @@ class BehaviourGraphTest
             return 309217;
         }
 
-        public ArrayList<Vector2> possibleCells(Worker w, Map m, GameConstraints gc) {
-            var list = new ArrayList<Vector2>();
-            list.add(new Vector2(0,0));
-            return list;
+        @Override
+        public int possibleCellsMask(Worker w, Map m, GameConstraints gc) {
+            return 1 << Map.cellIndex(new Vector2(0,0));
         }
     }
 
@@ -49,14 +46,16 @@ class BehaviourGraphTest
             throw new NotAllowedMoveException();
         }
 
-        public ArrayList<Vector2> possibleCells(Worker w, Map m, GameConstraints gc) {
-            return null;
+        @Override
+        public int possibleCellsMask(Worker w, Map m, GameConstraints gc) {
+            return 0;
         }
     }
 
     //**********************************************************************************************************************************************************************
 
     BehaviourGraph testSeq;
+    GraphCursor cursor;
 
     @BeforeEach
     void init()
@@ -66,22 +65,23 @@ class BehaviourGraphTest
                         .setNext(new TestAction(GameConstraints.Constraint.BLOCK_MOVE_UP))
                         .getRoot()
         );
+        cursor = testSeq.newCursor();
     }
 
     @Test
     void shouldEndAndResetExecution()
     {
-        assertFalse(testSeq.isExecutionEnded());
+        assertFalse(cursor.isExecutionEnded());
 
         try
         {
-            testSeq.selectAction(0);
-            testSeq.selectAction(0);
-            assertTrue(testSeq.isExecutionEnded());
+            cursor.selectAction(0);
+            cursor.selectAction(0);
+            assertTrue(cursor.isExecutionEnded());
 
             //reset
-            testSeq.resetExecutionStatus();
-            assertFalse(testSeq.isExecutionEnded());
+            cursor.resetExecutionStatus();
+            assertFalse(cursor.isExecutionEnded());
 
         }
         catch (Exception e) {
@@ -93,9 +93,9 @@ class BehaviourGraphTest
     @Test
     void shouldThrowWithBrokenSelectionIndex()
     {
-        assertThrows(OutOfGraphException.class, () -> {testSeq.selectAction(-1);});
-        assertThrows(OutOfGraphException.class, () -> {testSeq.selectAction(2);});
-        assertThrows(OutOfGraphException.class, () -> {testSeq.selectAction(18);});
+        assertThrows(OutOfGraphException.class, () -> {cursor.selectAction(-1);});
+        assertThrows(OutOfGraphException.class, () -> {cursor.selectAction(2);});
+        assertThrows(OutOfGraphException.class, () -> {cursor.selectAction(18);});
     }
 
     @Test
@@ -104,17 +104,17 @@ class BehaviourGraphTest
         try
         {
             GameConstraints c = new GameConstraints();
-            testSeq.selectAction(0); // select text action
-            testSeq.runSelectedAction(null, null, null, c);
+            cursor.selectAction(0); // select text action
+            cursor.runSelectedAction(null, null, null, c);
             assertTrue(c.check(GameConstraints.Constraint.BLOCK_MOVE_UP));
             //refer to upper testAction class to understand why this check is made make sure the function is run
 
             c.clear();
-            testSeq.runSelectedAction(null, null, null, c); // double run this should be skipped
+            cursor.runSelectedAction(null, null, null, c); // double run this should be skipped
             assertFalse(c.check(GameConstraints.Constraint.BLOCK_MOVE_UP));
 
-            testSeq.selectAction(0); // move to graph end
-            testSeq.runSelectedAction(null, null, null, c);
+            cursor.selectAction(0); // move to graph end
+            cursor.runSelectedAction(null, null, null, c);
             assertTrue(c.check(GameConstraints.Constraint.BLOCK_MOVE_UP));
 
 
@@ -127,7 +127,7 @@ class BehaviourGraphTest
     @Test
     void shouldAppendSubGraph()
     {
-        testSeq.resetExecutionStatus();
+        cursor.resetExecutionStatus();
         assertEquals(1, testSeq.getNextActionNames().length);
 
         BehaviourNode branch = BehaviourNode.makeRootNode(new TestAction(GameConstraints.Constraint.BLOCK_MOVE_UP))
@@ -148,7 +148,7 @@ class BehaviourGraphTest
         BehaviourGraph g = BehaviourGraph.makeEmptyGraph();
         assertNotEquals(null, g);
         assertEquals(0, g.getNextActionNames().length);
-        assertTrue(g.isExecutionEnded());
+        assertTrue(g.newCursor().isExecutionEnded());
     }
 
 
@@ -162,7 +162,7 @@ class BehaviourGraphTest
     {
         try
         {
-            return g.getCurrentNode().getNextNode(id).getAction().displayName();
+            return g.getRootNode().getNextNode(id).getAction().displayName();
         }
         catch (OutOfGraphException e)
         {
@@ -178,7 +178,7 @@ class BehaviourGraphTest
         // we use directly text action to get a copy of allowed moves because its fixed (see implementation at the beginning)
         TestAction ta = new TestAction();
 
-        var actions = testSeq.getNextActions(w1, null, null);
+        var actions = cursor.getNextActions(w1, null, null);
         assertEquals(1, actions.size());
         assertEquals(getActionName(testSeq,0), actions.get(0).getActionName());
         assertFalse(actions.get(0).isUndo());
@@ -196,7 +196,7 @@ class BehaviourGraphTest
         testSeq.appendSubGraph(BehaviourNode.makeRootNode(new TestAction()))
                 .appendSubGraph(BehaviourNode.makeRootNode(new TestAction())); // 3 branches
 
-        var actions = testSeq.getNextActions(w1, null, null);
+        var actions = cursor.getNextActions(w1, null, null);
         assertEquals(3, actions.size());
 
 
@@ -218,12 +218,13 @@ class BehaviourGraphTest
     {
         BehaviourGraph graph = BehaviourGraph.makeEmptyGraph().appendSubGraph(
                 BehaviourNode.makeRootNode(new TestActionThrow()).setNext(new TestAction()).getRoot());
+        GraphCursor graphCursor = graph.newCursor();
 
-        BehaviourNode prevAction = graph.getCurrentNode();
+        BehaviourNode prevAction = graphCursor.getCurrentNode();
 
         try{
-            graph.selectAction(0);
-            graph.runSelectedAction(null, null, null, null);
+            graphCursor.selectAction(0);
+            graphCursor.runSelectedAction(null, null, null, null);
         }
         catch (OutOfGraphException e)
         {
@@ -234,7 +235,7 @@ class BehaviourGraphTest
             // 100% sure we go here because TestActionThrow always trows this exception
         }
 
-        assertEquals(prevAction, graph.getCurrentNode());
+        assertEquals(prevAction, graphCursor.getCurrentNode());
 
     }
 
@@ -243,13 +244,14 @@ class BehaviourGraphTest
     {
         BehaviourGraph graph = BehaviourGraph.makeEmptyGraph().appendSubGraph(
                 BehaviourNode.makeRootNode(new TestAction()).setNext(new TestAction()).getRoot());
+        GraphCursor graphCursor = graph.newCursor();
         try{
-            graph.selectAction(0);
+            graphCursor.selectAction(0);
             // we check 309217 because run of TestAction returns that fixed and unusual number
-            assertEquals(309217, graph.runSelectedAction(null, null, null, null));
+            assertEquals(309217, graphCursor.runSelectedAction(null, null, null, null));
 
-            graph.selectAction(0);
-            assertEquals(309217, graph.runSelectedAction(null, null, null, null));
+            graphCursor.selectAction(0);
+            assertEquals(309217, graphCursor.runSelectedAction(null, null, null, null));
 
         }
         catch (OutOfGraphException e)
@@ -265,17 +267,58 @@ class BehaviourGraphTest
     @Test
     void shouldNotRunSameNodeTwice() throws OutOfGraphException, NotAllowedMoveException
     {
-        testSeq.selectAction(0);
-        assertTrue(testSeq.runSelectedAction(null,null, null, null ) > 0);
-        assertTrue(testSeq.runSelectedAction(null,null, null, null ) < 0);
+        cursor.selectAction(0);
+        assertTrue(cursor.runSelectedAction(null,null, null, null ) > 0);
+        assertTrue(cursor.runSelectedAction(null,null, null, null ) < 0);
 
     }
 
     @Test
     void shouldStayAtRootOnRollbackAtStart()
     {
-        testSeq.rollback();
-        assertEquals(testSeq.getCurrentNode().getRoot(), testSeq.getCurrentNode());
+        cursor.rollback();
+        assertEquals(cursor.getCurrentNode().getRoot(), cursor.getCurrentNode());
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void shouldShareGraphBetweenCursors() throws OutOfGraphException, NotAllowedMoveException
+    {
+        GraphCursor other = testSeq.newCursor();
+
+        cursor.selectAction(0);
+        cursor.runSelectedAction(null, null, null, null);
+
+        // other cursor is not affected by the first one
+        assertTrue(other.isAtRoot());
+        assertFalse(cursor.isAtRoot());
+        assertEquals(1, cursor.getExecutionDepth());
+        assertEquals(0, other.getExecutionDepth());
+    }
+
+    @Test
+    void shouldNotChangeSealedGraph()
+    {
+        testSeq.seal();
+        assertTrue(testSeq.isSealed());
+        assertThrows(UnsupportedOperationException.class, () -> testSeq.appendSubGraph(BehaviourNode.makeRootNode(new TestAction())));
+        assertEquals(1, testSeq.getNextActionNames().length);
+
+        BehaviourNode first = testSeq.getRootNode().getChildNodes().get(0);
+        BehaviourNode second = first.getChildNodes().get(0);
+        assertTrue(first.isSealed());
+        assertTrue(second.isSealed());
+
+        assertThrows(UnsupportedOperationException.class, () -> first.addBranch(new TestAction()));
+        assertThrows(UnsupportedOperationException.class, () -> first.addBranch(BehaviourNode.makeRootNode(new TestAction())));
+        assertThrows(UnsupportedOperationException.class, () -> first.setNext(new TestAction()));
+        assertThrows(UnsupportedOperationException.class, () -> second.mergeBranches(new TestAction()));
+        assertThrows(UnsupportedOperationException.class, () -> second.setParent(null));
+        assertThrows(UnsupportedOperationException.class, () -> first.getChildNodes().clear());
+        assertThrows(UnsupportedOperationException.class, () -> BehaviourNode.makeRootNode(new TestAction()).setNext(second));
+
+        assertEquals(1, first.getChildNodes().size());
+        assertSame(first, second.getParent());
+        assertEquals(0, second.getNextActionCount());
+    }
+}
@@ -98,5 +98,35 @@ public class CardCollectionTest {
         assertThrows(CardNotExistsException.class, ()-> { coll.getCards(ids); });
     }
 
+    @Test
+    void shouldShareSealedCards() throws CardNotExistsException
+    {
+        CardCollection other = new CardCollection();
+        for (int id : coll.getCardIDs())
+        {
+            assertSame(coll.getCard(id), other.getCard(id));
+            assertTrue(coll.getCard(id).getGraph().isSealed());
+        }
+        assertSame(coll.getNoGodCard(), other.getNoGodCard());
+        assertTrue(coll.getNoGodCard().getGraph().isSealed());
+    }
 
-}
\ No newline at end of file
+    @Test
+    void shouldDeriveNodeKeysFromCardAndNodeIds() throws CardNotExistsException
+    {
+        Card[] cards = coll.getCards(coll.getCardIDs());
+        cards = java.util.Arrays.copyOf(cards, cards.length + 1);
+        cards[cards.length - 1] = coll.getNoGodCard();
+
+        for (Card c : cards)
+        {
+            CompiledGraph graph = c.getGraph().getCompiled();
+            for (int node = 0; node < graph.size(); node++)
+            {
+                assertEquals(Zobrist.nodeKey(c.getId(), node), graph.getKey(node));
+                assertEquals(graph.getKey(node), graph.getNode(node).getKey());
+            }
+        }
+        assertThrows(UnsupportedOperationException.class, () -> coll.getNoGodCard().getGraph().getRootNode().setKey(0));
+    }
+}
@@ -0,0 +1,158 @@
+package it.polimi.ingsw.game;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledGraphTest
+{
+    CardCollection coll;
+    Map map;
+    Player p;
+    Worker w;
+    GameConstraints gc;
+
+    @BeforeEach
+    void init()
+    {
+        coll = new CardCollection();
+        map = new Map();
+        gc = new GameConstraints();
+        p = new Player(1, "first");
+        w = new Worker(0, p, Vector2.of(2, 2));
+        p.addWorker(w);
+        map.setWorkers(p);
+    }
+
+    @Test
+    void shouldCompileCardGraph() throws CardNotExistsException
+    {
+        CompiledGraph demeter = coll.getCard(5).getGraph().getCompiled();
+
+        // root -> move -> build -> (end turn | build again -> end turn)
+        assertEquals(6, demeter.size());
+        assertEquals(CompiledGraph.OP_ROOT, demeter.getOpcode(CompiledGraph.ROOT));
+        assertEquals(1, demeter.getChildCount(CompiledGraph.ROOT));
+
+        int move = demeter.getChild(CompiledGraph.ROOT, 0);
+        assertEquals(CompiledGraph.OP_MOVE, demeter.getOpcode(move));
+
+        int build = demeter.getChild(move, 0);
+        assertEquals(CompiledGraph.OP_BUILD, demeter.getOpcode(build));
+        assertEquals(2, demeter.getChildCount(build));
+
+        int end = demeter.getChild(build, 0);
+        assertEquals(CompiledGraph.OP_END_TURN, demeter.getOpcode(end));
+        assertTrue(demeter.isTerminal(end));
+
+        int buildAgain = demeter.getChild(build, 1);
+        assertEquals(CompiledGraph.OP_BUILD_AGAIN, demeter.getOpcode(buildAgain));
+        assertEquals(GameConstraints.Constraint.BLOCK_SAME_CELL_BUILD.toInt(), demeter.getLocalConstraints(buildAgain));
+
+        assertEquals(CompiledGraph.NO_NODE, demeter.getChild(build, 2));
+        assertEquals(CompiledGraph.NO_NODE, demeter.getChild(build, -1));
+        assertEquals(2, demeter.getMaxChildren());
+        assertEquals(GameConstraints.Constraint.BLOCK_SAME_CELL_BUILD.toInt(), demeter.getUsedConstraints());
+    }
+
+    @Test
+    void shouldShareCompiledSealedGraph() throws CardNotExistsException
+    {
+        BehaviourGraph graph = coll.getCard(1).getGraph();
+        assertSame(graph.getCompiled(), graph.getCompiled());
+        assertSame(graph.getCompiled(), new CardCollection().getCard(1).getGraph().getCompiled());
+    }
+
+    @Test
+    void shouldCompileMergedBranchesOnce()
+    {
+        BehaviourGraph graph = BehaviourGraph.makeEmptyGraph().appendSubGraph(
+                BehaviourNode.makeRootNode(new MoveAction())
+                        .addBranch(new BuildAction())
+                        .addBranch(new BuildDomeAction())
+                        .mergeBranches(new EndTurnAction())
+                        .getRoot()
+        );
+
+        CompiledGraph compiled = graph.getCompiled();
+        assertEquals(5, compiled.size());
+
+        int move = compiled.getChild(CompiledGraph.ROOT, 0);
+        int end1 = compiled.getChild(compiled.getChild(move, 0), 0);
+        int end2 = compiled.getChild(compiled.getChild(move, 1), 0);
+        assertEquals(end1, end2);
+        assertEquals(compiled.getNode(end1).getKey(), compiled.getKey(end1));
+        assertEquals(end1, compiled.getId(compiled.getNode(end1)));
+    }
+
+    @Test
+    void shouldReturnSameMasksAsGraph() throws CardNotExistsException, OutOfGraphException, NotAllowedMoveException
+    {
+        map.build(Vector2.of(2, 3));
+        map.buildDome(Vector2.of(1, 1));
+
+        for (int id : coll.getCardIDs())
+        {
+            BehaviourGraph graph = coll.getCard(id).getGraph();
+            CompiledGraph compiled = graph.getCompiled();
+            GraphCursor cursor = graph.newCursor();
+            int[] masks = new int[compiled.getMaxChildren()];
+
+            int count = compiled.nextActionMasks(CompiledGraph.ROOT, w, map, gc.toInt(), masks);
+            var actions = cursor.getNextActions(w, map, gc);
+
+            int valid = 0;
+            for (int i = 0; i < count; i++)
+            {
+                if(masks[i] != 0)
+                {
+                    assertEquals(actions.get(valid).getAvailableMask(), masks[i]);
+                    valid++;
+                }
+            }
+            assertEquals(actions.size(), valid);
+        }
+    }
+
+    @Test
+    void shouldCompileExtendedActionsAsCustom()
+    {
+        MoveAction stay = new MoveAction()
+        {
+            @Override
+            public int possibleCellsMask(Worker w, Map m, int constraints)
+            {
+                return 1 << Map.cellIndex(w.getPosition());
+            }
+        };
+        BehaviourGraph graph = BehaviourGraph.makeEmptyGraph().appendSubGraph(
+                BehaviourNode.makeRootNode(stay).addBranch(new MoveAction()).getRoot()
+        );
+
+        CompiledGraph compiled = graph.getCompiled();
+        int custom = compiled.getChild(CompiledGraph.ROOT, 0);
+        int move = compiled.getChild(custom, 0);
+        assertEquals(CompiledGraph.OP_CUSTOM, compiled.getOpcode(custom));
+        assertEquals(CompiledGraph.OP_MOVE, compiled.getOpcode(move));
+        assertEquals(1 << Map.cellIndex(2, 2), compiled.possibleCellsMask(custom, w, map, gc.toInt()));
+        assertEquals(new MoveAction().possibleCellsMask(w, map, gc), compiled.possibleCellsMask(move, w, map, gc.toInt()));
+    }
+
+    @Test
+    void shouldRunActionsByNodeId() throws CardNotExistsException, NotAllowedMoveException
+    {
+        CompiledGraph apollo = coll.getCard(1).getGraph().getCompiled();
+
+        int move = apollo.getChild(CompiledGraph.ROOT, 0);
+        assertEquals(0, apollo.run(move, w, Map.cellIndex(2, 3), map, gc));
+        assertEquals(Vector2.of(2, 3), w.getPosition());
+
+        int build = apollo.getChild(move, 0);
+        assertEquals(0, apollo.run(build, w, Map.cellIndex(2, 2), map, gc));
+        assertEquals(1, map.getLevel(Map.cellIndex(2, 2)));
+
+        assertThrows(NotAllowedMoveException.class, () -> apollo.run(build, w, Map.cellIndex(0, 0), map, gc));
+        assertThrows(NotAllowedMoveException.class, () -> apollo.run(CompiledGraph.ROOT, w, 0, map, gc));
+    }
+}
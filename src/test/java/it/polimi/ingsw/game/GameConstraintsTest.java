@@ -137,4 +137,61 @@ class GameConstraintsTest
         assertTrue(c.equals(c2));
         assertFalse(c.equals(c3));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldUpdateHashIncrementally()
+    {
+        GameConstraints gc = new GameConstraints();
+        assertEquals(0, gc.getHash());
+
+        gc.add(GameConstraints.Constraint.BLOCK_MOVE_UP);
+        long blockHash = gc.getHash();
+        assertNotEquals(0, blockHash);
+
+        gc.add(GameConstraints.Constraint.CAN_PUSH_CONSTRAINT);
+        assertNotEquals(blockHash, gc.getHash());
+        assertEquals(gc.getHash(), new GameConstraints(gc).getHash());
+
+        gc.remove(GameConstraints.Constraint.CAN_PUSH_CONSTRAINT);
+        assertEquals(blockHash, gc.getHash());
+
+        gc.clear();
+        assertEquals(0, gc.getHash());
+    }
+
+    @Test
+    void shouldUseOneDifferentBitForEveryConstraint()
+    {
+        int used = 0;
+        for (GameConstraints.Constraint constraint : GameConstraints.Constraint.values())
+        {
+            if(constraint == GameConstraints.Constraint.NONE)
+                continue;
+            assertEquals(1, Integer.bitCount(constraint.toInt()), constraint.name());
+            assertEquals(0, used & constraint.toInt(), constraint.name());
+            used |= constraint.toInt();
+        }
+    }
+
+    @Test
+    void shouldCheckPlainMasks()
+    {
+        c.add(GameConstraints.Constraint.TEST);
+        c.add(GameConstraints.Constraint.BLOCK_MOVE_UP);
+        int mask = c.toInt();
+
+        assertTrue(GameConstraints.check(mask, GameConstraints.Constraint.TEST));
+        assertTrue(GameConstraints.check(mask, GameConstraints.Constraint.BLOCK_MOVE_UP));
+        assertFalse(GameConstraints.check(mask, GameConstraints.Constraint.CAN_PUSH_CONSTRAINT));
+        assertFalse(GameConstraints.check(mask, GameConstraints.Constraint.NONE));
+        assertTrue(GameConstraints.check(0, GameConstraints.Constraint.NONE));
+
+        // TEST must not share the bit of other constraints
+        c.remove(GameConstraints.Constraint.TEST);
+        assertTrue(c.check(GameConstraints.Constraint.BLOCK_MOVE_UP));
+        assertFalse(c.check(GameConstraints.Constraint.TEST));
+
+        assertEquals(0, GameConstraints.toInt(null));
+        assertEquals(c.toInt(), GameConstraints.toInt(c));
+    }
+}
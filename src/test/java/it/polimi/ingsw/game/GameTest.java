@@ -1004,4 +1004,160 @@ class GameTest
         assertEquals(p2, game.getWinner());
     }
 
-}
\ No newline at end of file
+    @Test
+    void shouldChangeHashWhenPositionChanges() throws NotAllowedOperationException
+    {
+        prepareGameForAction();
+
+        long start = game.getHash();
+        assertEquals(start, game.getHash());
+
+        game.executeAction(p1,0, 0, new Vector2(0,1)); // move
+        long afterMove = game.getHash();
+        assertNotEquals(start, afterMove);
+
+        game.executeAction(p1,0, 0, new Vector2(0,0)); // build, turn passes to p2
+        assertNotEquals(afterMove, game.getHash());
+        assertNotEquals(start, game.getHash());
+    }
+
+    @Test
+    void shouldMakeAndUnmakeActions() throws Exception
+    {
+        game.join(p1);
+        game.join(p2);
+        game.start(p1);
+        game.applyGodFilter(p1, new int[]{3,8});
+        game.selectGod(p2, 8); // p2 minotaur, p1 athena
+        game.selectFirstPlayer(p1, p1);
+        game.placeWorkers(p1, new Vector2[]{new Vector2(0,0), new Vector2(4,4)});
+        game.placeWorkers(p2, new Vector2[]{new Vector2(2,2), new Vector2(3,3)});
+        game.getCurrentMap().build(new Vector2(0,1));
+
+        int[][] script = {
+                {0, 0, 0, 1}, // athena moves up
+                {0, 0, 0, 0}, // athena builds
+                {0, 0, 0, 0}, // end turn
+                {0, 0, 1, 1}, // minotaur moves
+                {0, 0, 2, 2}, // minotaur builds
+                {0, 0, 0, 0}, // end turn
+        };
+
+        long[] hashes = new long[script.length + 1];
+        int[][][] maps = new int[script.length + 1][][];
+        UndoRecord[] records = new UndoRecord[script.length];
+
+        for(int i = 0; i < script.length; i++)
+        {
+            hashes[i] = game.getHash();
+            maps[i] = game.getCurrentMap().getMap();
+            records[i] = game.makeAction(script[i][0], script[i][1], new Vector2(script[i][2], script[i][3]));
+            assertEquals(0, records[i].getResult());
+        }
+        hashes[script.length] = game.getHash();
+        maps[script.length] = game.getCurrentMap().getMap();
+
+        assertEquals(p1, game.getCurrentPlayer());
+        assertEquals(new Vector2(1,1), p2.getWorkers().get(0).getPosition());
+
+        for(int i = script.length - 1; i >= 0; i--)
+        {
+            game.unmakeAction(records[i]);
+            assertEquals(hashes[i], game.getHash());
+            assertArrayEquals(maps[i], game.getCurrentMap().getMap());
+        }
+
+        // back to the original position: athena lock removed and worker in place
+        assertEquals(p1, game.getCurrentPlayer());
+        assertEquals(new Vector2(0,0), p1.getWorkers().get(0).getPosition());
+        assertEquals(new Vector2(2,2), p2.getWorkers().get(0).getPosition());
+        assertNull(p1.getWorkers().get(0).getLastLocation());
+
+        // the game can continue normally
+        assertTrue(game.executeAction(p1, 0, 0, new Vector2(0,1)) > 0);
+    }
+
+    @Test
+    void shouldNotChangeStateOnInvalidMakeAction() throws NotAllowedOperationException
+    {
+        prepareGameForAction();
+        long hash = game.getHash();
+
+        assertThrows(NotAllowedMoveException.class, () -> game.makeAction(0, 0, new Vector2(4,4)));
+        assertThrows(OutOfGraphException.class, () -> game.makeAction(0, 5, new Vector2(0,1)));
+
+        assertEquals(hash, game.getHash());
+        assertNull(game.getCurrentTurn().getCursor().getCurrentNode().getAction());
+        assertTrue(game.executeAction(p1,0, 0, new Vector2(0,1)) > 0);
+    }
+
+    @Test
+    void shouldCacheNextActionsUntilStateChanges() throws NotAllowedOperationException
+    {
+        prepareGameForAction();
+
+        var first = game.getNextActions();
+        var second = game.getNextActions();
+        assertEquals(first.size(), second.size());
+        assertSame(first.get(0), second.get(0)); // same cached actions
+
+        // external map change invalidates the cache
+        game.getCurrentMap().buildDome(new Vector2(0,1));
+        var third = game.getNextActions();
+        assertNotSame(first.get(0), third.get(0));
+        assertFalse(third.get(0).getAvailablePositions().contains(new Vector2(0,1)));
+
+        long version = game.getStateVersion();
+        assertTrue(game.executeAction(p1, 0, 0, new Vector2(1,0)) > 0);
+        assertTrue(game.getStateVersion() > version);
+        assertNotSame(third.get(0), game.getNextActions().get(0));
+    }
+
+    @Test
+    void shouldRejectIllegalTargetWithCachedActions() throws NotAllowedOperationException
+    {
+        prepareGameForAction();
+        long version = game.getStateVersion();
+        long hash = game.getHash();
+
+        assertEquals(-1, game.executeAction(p1, 0, 0, new Vector2(3,3))); // too far
+        assertEquals(-1, game.executeAction(p1, 0, 0, new Vector2(1,1))); // my worker
+        assertEquals(-1, game.executeAction(p1, 0, 0, new Vector2(-1,0))); // outside map
+
+        assertEquals(version, game.getStateVersion());
+        assertEquals(hash, game.getHash());
+        assertNull(game.getCurrentTurn().getWorker());
+    }
+
+    @Test
+    void shouldCopyRunningGame() throws NotAllowedOperationException
+    {
+        prepareGameForAction();
+        game.getCurrentMap().build(new Vector2(2,1));
+        Game copy = game.copy();
+
+        assertEquals(game.getHash(), copy.getHash());
+        assertEquals(Game.GameState.GAME, copy.getCurrentState());
+        assertEquals(p1.getId(), copy.getCurrentPlayer().getId());
+        assertNotSame(game.getCurrentPlayer(), copy.getCurrentPlayer());
+        assertNotSame(game.getCurrentMap(), copy.getCurrentMap());
+
+        // copies are independent
+        Player c1 = copy.getCurrentPlayer();
+        assertTrue(copy.executeAction(c1, 0, 0, new Vector2(1,0)) > 0);
+        assertNotEquals(game.getHash(), copy.getHash());
+        assertNull(game.getCurrentTurn().getWorker());
+        assertEquals(1, game.getCurrentMap().getLevel(new Vector2(2,1)));
+        assertEquals(1, copy.getCurrentMap().getLevel(new Vector2(2,1)));
+    }
+
+    @Test
+    void shouldNotCopyGameDuringSetupOrTurn() throws NotAllowedOperationException
+    {
+        assertThrows(IllegalStateException.class, () -> game.copy());
+
+        prepareGameForAction();
+        assertTrue(game.executeAction(p1, 0, 0, new Vector2(1,0)) > 0);
+        assertThrows(IllegalStateException.class, () -> game.copy());
+    }
+}
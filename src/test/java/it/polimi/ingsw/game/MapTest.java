@@ -277,4 +277,108 @@ public class MapTest {
                 assertEquals(map.getLevel(new Vector2(i,j)),newMap.getLevel(new Vector2(i,j)));
 
     }
+
+    @Test
+    void shouldTrackWorkerMoves()
+    {
+        Player p = new Player(1, "FirstPlayer");
+        Worker w1 = new Worker(0, p, new Vector2(0,0));
+        p.addWorker(w1);
+        map.setWorkers(p);
+
+        w1.setPosition(new Vector2(2,3));
+
+        assertTrue(map.isCellEmpty(new Vector2(0,0)));
+        assertNull(map.getWorker(new Vector2(0,0)));
+        assertEquals(w1, map.getWorker(new Vector2(2,3)));
+        assertEquals(1 << Map.cellIndex(2,3), map.getWorkerMask(p));
+    }
+
+    @Test
+    void shouldKeepBothWorkersAfterSwap()
+    {
+        Player p = new Player(1, "FirstPlayer");
+        Worker w1 = new Worker(0, p, new Vector2(0,0));
+        p.addWorker(w1);
+
+        Player p2 = new Player(2,"padoru");
+        Worker w2 = new Worker(0, p2, new Vector2(0,1));
+        p2.addWorker(w2);
+
+        map.setWorkers(p);
+        map.setWorkers(p2);
+
+        Vector2 old = w1.getPosition();
+        w1.setPosition(w2.getPosition());
+        w2.setPosition(old);
+
+        assertEquals(w1, map.getWorker(new Vector2(0,1)));
+        assertEquals(w2, map.getWorker(new Vector2(0,0)));
+        assertEquals(1 << Map.cellIndex(0,1), map.getWorkerMask(p));
+        assertEquals(1 << Map.cellIndex(0,0), map.getWorkerMask(p2));
+        assertEquals(map.getWorkerMask(p) | map.getWorkerMask(p2), map.getWorkerMask());
+    }
+
+    @Test
+    void shouldUpdateLevelMasksOnBuild()
+    {
+        Vector2 pos = new Vector2(1,2);
+        int bit = 1 << Map.cellIndex(1,2);
+
+        map.build(pos);
+        map.build(pos);
+
+        assertEquals(0, map.getLevelMask(0) & bit);
+        assertEquals(0, map.getLevelMask(1) & bit);
+        assertEquals(bit, map.getLevelMask(2) & bit);
+        assertEquals(0, map.getDomeMask());
+        assertEquals(4 + Map.DOME_VALUE, buildDomeAndGetCell(pos));
+    }
+
+    private int buildDomeAndGetCell(Vector2 pos)
+    {
+        map.buildDome(pos);
+        return map.getMap()[pos.getX()][pos.getY()];
+    }
+
+    @Test
+    void shouldHaveSameHashForSamePosition()
+    {
+        Map other = new Map();
+        assertEquals(0, map.getHash());
+
+        map.build(new Vector2(1,1));
+        map.build(new Vector2(1,1));
+        map.buildDome(new Vector2(2,2));
+
+        other.buildDome(new Vector2(2,2));
+        other.build(new Vector2(1,1));
+        assertNotEquals(map.getHash(), other.getHash());
+        other.build(new Vector2(1,1));
+
+        assertEquals(map.getHash(), other.getHash());
+        assertEquals(map.getHash(), new Map(map).getHash());
+    }
+
+    @Test
+    void shouldUpdateHashOnWorkerMoves()
+    {
+        Player p = new Player(1, "FirstPlayer");
+        Worker w1 = new Worker(0, p, new Vector2(0,0));
+        p.addWorker(w1);
+        map.setWorkers(p);
+
+        long start = map.getHash();
+        assertNotEquals(0, start);
+
+        w1.setPosition(new Vector2(2,2));
+        assertNotEquals(start, map.getHash());
+
+        w1.setPosition(new Vector2(0,0));
+        assertEquals(start, map.getHash());
+
+        map.removeWorkers(p);
+        assertEquals(0, map.getHash());
+    }
+
 }
@@ -168,6 +168,16 @@ public class MoveActionTest {
         assertThrows(NotAllowedMoveException.class, () -> { mvb.run(w1, new Vector2(2,2), m, new GameConstraints()); } );
     }
 
+    @Test
+    void shouldReturnAllowedCellsAsMask()
+    {
+        int mask = moveAct.possibleCellsMask(w1p1, m, null);
+        int expected = (1 << Map.cellIndex(0,2)) | (1 << Map.cellIndex(0,4)) | (1 << Map.cellIndex(1,4)) | (1 << Map.cellIndex(2,2));
+
+        assertEquals(expected, mask);
+        assertEquals(Map.cellsOf(mask), moveAct.possibleCells(w1p1, m, null));
+    }
+
     @Test
     void shouldReturnAllowedCellsNoConstraints()
     {
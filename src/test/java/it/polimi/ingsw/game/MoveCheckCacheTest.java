@@ -0,0 +1,38 @@
+package it.polimi.ingsw.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveCheckCacheTest
+{
+    @Test
+    void shouldReturnSavedResults()
+    {
+        MoveCheckCache cache = new MoveCheckCache();
+        assertEquals(-1, cache.get(0));
+        assertEquals(-1, cache.get(42));
+
+        cache.put(0, false);
+        cache.put(42, true);
+        assertEquals(0, cache.get(0));
+        assertEquals(1, cache.get(42));
+    }
+
+    @Test
+    void shouldReplaceEntriesInTheSameSlot()
+    {
+        MoveCheckCache cache = new MoveCheckCache(4);
+        cache.put(1, true);
+        cache.put(5, false); // same slot of 1
+
+        assertEquals(-1, cache.get(1));
+        assertEquals(0, cache.get(5));
+    }
+
+    @Test
+    void shouldRejectWrongSize()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new MoveCheckCache(3));
+    }
+}
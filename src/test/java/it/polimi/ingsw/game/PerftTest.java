@@ -0,0 +1,293 @@
+package it.polimi.ingsw.game;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerftTest
+{
+    // first card, second card, mid game (0 - 1), depth, leaves
+    static final long[][] GOLDEN = {
+            {0, 0, 0, 0, 1},
+            {0, 0, 0, 1, 80},
+            {0, 0, 0, 2, 6176},
+            {0, 0, 0, 3, 426384},
+            {1, 8, 0, 1, 80},
+            {1, 8, 0, 2, 6372},
+            {2, 5, 0, 1, 416},
+            {2, 5, 0, 2, 172560},
+            {3, 9, 0, 1, 80},
+            {3, 9, 0, 2, 6176},
+            {4, 6, 0, 1, 160},
+            {4, 6, 0, 2, 23632},
+            {10, 1, 0, 1, 640},
+            {10, 1, 0, 2, 52104},
+            {8, 3, 0, 1, 80},
+            {8, 3, 0, 2, 6176},
+            {8, 3, 0, 3, 460240},
+            {0, 0, 1, 1, 55},
+            {0, 0, 1, 2, 3116},
+            {1, 8, 1, 1, 55},
+            {1, 8, 1, 2, 3259},
+            {2, 5, 1, 1, 219},
+            {2, 5, 1, 2, 65352},
+            {3, 9, 1, 1, 55},
+            {3, 9, 1, 2, 3054},
+            {4, 6, 1, 1, 108},
+            {4, 6, 1, 2, 11125},
+            {10, 1, 1, 1, 385},
+            {10, 1, 1, 2, 23510},
+            {8, 3, 1, 1, 55},
+            {8, 3, 1, 2, 3116},
+    };
+
+    // pairings checked against the reference counter
+    static final int[][] PAIRINGS = {
+            {0, 0}, {1, 8}, {2, 5}, {3, 9}, {4, 6}, {10, 1}, {8, 3}
+    };
+
+    Perft perft;
+
+    @BeforeEach
+    void setUp()
+    {
+        perft = new Perft();
+    }
+
+    @Test
+    void shouldMatchGoldenCounts()
+    {
+        for (long[] golden : GOLDEN)
+        {
+            Game game = newGame((int) golden[0], (int) golden[1], golden[2] == 1);
+            assertEquals(golden[4], perft.count(game, (int) golden[3]), "pairing " + golden[0] + " - " + golden[1] + " mid game " + golden[2] + " depth " + golden[3]);
+        }
+    }
+
+    @Test
+    void shouldMatchReferenceCounter()
+    {
+        for (int[] pairing : PAIRINGS)
+        {
+            assertEquals(referenceCount(pairing[0], pairing[1], false, new ArrayList<>(), 1), perft.count(newGame(pairing[0], pairing[1], false), 1));
+            assertEquals(referenceCount(pairing[0], pairing[1], true, new ArrayList<>(), 1), perft.count(newGame(pairing[0], pairing[1], true), 1));
+        }
+
+        assertEquals(referenceCount(3, 9, true, new ArrayList<>(), 2), perft.count(newGame(3, 9, true), 2));
+        assertEquals(referenceCount(8, 3, true, new ArrayList<>(), 2), perft.count(newGame(8, 3, true), 2));
+    }
+
+    @Test
+    void shouldLeaveGameUnchanged()
+    {
+        Game game = newGame(2, 5, true);
+        long hash = game.getHash();
+        Player current = game.getCurrentPlayer();
+
+        perft.count(game, 2);
+
+        assertEquals(hash, game.getHash());
+        assertSame(current, game.getCurrentPlayer());
+        assertEquals(Game.GameState.GAME, game.getCurrentState());
+        assertNull(game.getCurrentTurn().getWorker());
+    }
+
+    @Test
+    void shouldCountPlayedTurns()
+    {
+        assertEquals(80, perft.count(newGame(0, 0, false), 1));
+        assertEquals(80, perft.getNodes());
+
+        assertEquals(6176, perft.count(newGame(0, 0, false), 2));
+        assertEquals(80 + 6176, perft.getNodes());
+        assertTrue(perft.getNanos() > 0);
+        assertTrue(perft.getNodesPerSecond() > 0);
+    }
+
+    @Test
+    void shouldDivideByFirstTurn()
+    {
+        Game game = newGame(10, 1, true);
+        java.util.Map<Long, Long> divided = perft.divide(game, 2);
+
+        assertEquals(385, divided.size());
+        assertEquals(23510, divided.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void shouldCountWinsAsLeaves()
+    {
+        // first worker on level 2 can win moving to (0,1) or (2,2): a winning turn has no following turns
+        Game game = newGame(0, 0, true);
+        java.util.Map<Long, Long> divided = perft.divide(game, 3);
+
+        for (java.util.Map.Entry<Long, Long> entry : divided.entrySet())
+        {
+            long turn = entry.getKey();
+            int cell = TurnGenerator.getCell(turn, 0);
+            if(TurnGenerator.getWorker(turn) == 0 && (cell == Map.cellIndex(0, 1) || cell == Map.cellIndex(2, 2)))
+            {
+                assertEquals(1, TurnGenerator.getLength(turn));
+                assertEquals(1, entry.getValue());
+            }
+        }
+    }
+
+    @Test
+    void shouldCreateRandomGames()
+    {
+        for (long seed = 0; seed < 20; seed++)
+        {
+            Game game = Perft.newRandomGame(2, 5, new SplittableRandom(seed));
+            Game same = Perft.newRandomGame(2, 5, new SplittableRandom(seed));
+            assertEquals(game.getHash(), same.getHash());
+
+            int used = 0;
+            for (Player p : game.getPlayers())
+                for (Worker w : p.getWorkers())
+                    used |= 1 << Map.cellIndex(w.getPosition());
+            assertEquals(2 * Game.WORKERS_PER_PLAYER, Integer.bitCount(used));
+            assertEquals(game.getPlayers().get(0), game.getCurrentPlayer());
+        }
+
+        int allowed = (1 << Map.cellIndex(0, 0)) | (1 << Map.cellIndex(2, 2)) | (1 << Map.cellIndex(4, 4));
+        int[] cells = Perft.randomCells(3, allowed, new SplittableRandom(1));
+        int drawn = 0;
+        for (int cell : cells)
+            drawn |= 1 << cell;
+        assertEquals(allowed, drawn);
+        assertThrows(IllegalArgumentException.class, () -> Perft.randomCells(4, allowed, new SplittableRandom(1)));
+        assertThrows(IllegalArgumentException.class, () -> Perft.newGame(0, 0, new int[]{0, 1, 2}));
+    }
+
+    @Test
+    void shouldRejectInvalidArguments()
+    {
+        Game game = newGame(0, 0, false);
+        assertThrows(IllegalArgumentException.class, () -> perft.count(game, -1));
+        assertThrows(IllegalArgumentException.class, () -> perft.count(game, Perft.MAX_DEPTH + 1));
+        assertThrows(IllegalArgumentException.class, () -> perft.divide(game, 0));
+        assertThrows(IllegalArgumentException.class, () -> Perft.newGame(0, 3));
+        assertThrows(IllegalArgumentException.class, () -> Perft.newGame(3, 3));
+        assertThrows(IllegalArgumentException.class, () -> Perft.newGame(3, 42));
+    }
+
+    /**
+     * Create a game in the standard test position, optionally with some buildings
+     * In the mid game position the first worker of the first player is on level 2 near two level 3 cells
+     * @param first first card
+     * @param second second card
+     * @param midGame true to add buildings
+     * @return running game
+     */
+    static Game newGame(int first, int second, boolean midGame)
+    {
+        Game game = Perft.newGame(first, second);
+        if(midGame)
+        {
+            Map m = game.getCurrentMap();
+            build(m, 1, 1, 2);
+            build(m, 0, 1, 3);
+            build(m, 2, 2, 3);
+            build(m, 1, 2, 1);
+            build(m, 3, 2, 1);
+            build(m, 2, 3, 2);
+            m.buildDome(Vector2.of(4, 4));
+        }
+        return game;
+    }
+
+    /**
+     * Build on a cell until it reaches a level
+     * @param m map
+     * @param x row
+     * @param y col
+     * @param level level to reach
+     */
+    static void build(Map m, int x, int y, int level)
+    {
+        for (int i = 0; i < level; i++)
+            m.build(Vector2.of(x, y));
+    }
+
+    /**
+     * Slow counter that replays every sequence from a new game with executeAction,
+     * using only graph nodes and Action.possibleCells to find the next steps
+     * @param first first card
+     * @param second second card
+     * @param midGame true to start from the mid game position
+     * @param steps steps already played (worker, action, x, y)
+     * @param depth turns left to play, including the current one
+     * @return leaves
+     */
+    long referenceCount(int first, int second, boolean midGame, List<int[]> steps, int depth)
+    {
+        Game game = replay(first, second, midGame, steps);
+        assertNotNull(game);
+        if(game.isEnded())
+            return 1;
+
+        Turn turn = game.getCurrentTurn();
+        BehaviourNode node = turn.getCursor().getCurrentNode();
+        int player = game.getCurrentPlayer().getId();
+        long leaves = 0;
+
+        for (Worker w : game.getCurrentPlayer().getWorkers())
+        {
+            if(turn.getWorker() != null && turn.getWorker() != w)
+                continue;
+
+            List<BehaviourNode> children = node.getChildNodes();
+            for (int i = 0; i < children.size(); i++)
+            {
+                for (Vector2 cell : children.get(i).getAction().possibleCells(w, game.getCurrentMap(), game.getGlobalConstraints()))
+                {
+                    List<int[]> next = new ArrayList<>(steps);
+                    next.add(new int[]{w.getId(), i, cell.getX(), cell.getY()});
+
+                    Game nextGame = replay(first, second, midGame, next);
+                    if(nextGame == null)
+                        continue;
+
+                    if(nextGame.isEnded())
+                        leaves++;
+                    else if(nextGame.getCurrentPlayer().getId() != player)
+                        leaves += depth == 1 ? 1 : referenceCount(first, second, midGame, next, depth - 1);
+                    else
+                        leaves += referenceCount(first, second, midGame, next, depth);
+                }
+            }
+        }
+
+        return leaves;
+    }
+
+    /**
+     * Create a new game and play a sequence of steps
+     * @param first first card
+     * @param second second card
+     * @param midGame true to start from the mid game position
+     * @param steps steps to play (worker, action, x, y)
+     * @return game or null if a step failed
+     */
+    Game replay(int first, int second, boolean midGame, List<int[]> steps)
+    {
+        Game game = newGame(first, second, midGame);
+        try
+        {
+            for (int[] step : steps)
+                if(game.executeAction(game.getCurrentPlayer(), step[0], step[1], Vector2.of(step[2], step[3])) <= 0)
+                    return null;
+        }
+        catch (NotAllowedOperationException e)
+        {
+            return null;
+        }
+        return game;
+    }
+}
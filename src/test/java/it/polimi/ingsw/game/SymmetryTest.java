@@ -0,0 +1,192 @@
+package it.polimi.ingsw.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymmetryTest
+{
+    static final int[] CARDS = {1, 2, 3, 4, 5, 6, 8, 9, 10};
+
+    /**
+     * Create a random position and, if transform is not the identity, the same position transformed
+     * @param seed seed of the position
+     * @param transform transform applied to every cell
+     * @return game with the position
+     */
+    static Game randomGame(long seed, int transform)
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        int first = CARDS[random.nextInt(CARDS.length)];
+        int second = CARDS[random.nextInt(CARDS.length)];
+        if(second == first)
+            second = first == 1 ? 2 : 1;
+
+        int[] cells = Perft.randomCells(2 * Game.WORKERS_PER_PLAYER, Perft.ALL_CELLS, random);
+        int used = 0;
+        for (int i = 0; i < cells.length; i++)
+        {
+            used |= 1 << cells[i];
+            cells[i] = Symmetry.transformCell(transform, cells[i]);
+        }
+
+        Game game = Perft.newGame(first, second, cells);
+        for (int cell = 0; cell < Map.CELLS; cell++)
+        {
+            Vector2 position = Vector2.of(Symmetry.transformCell(transform, cell));
+            int level = random.nextInt(4);
+            for (int l = 0; l < level; l++)
+                game.getCurrentMap().build(position);
+            if((used & (1 << cell)) == 0 && random.nextInt(8) == 0)
+                game.getCurrentMap().buildDome(position);
+        }
+        return game;
+    }
+
+    @Test
+    void shouldPrecomputePermutations()
+    {
+        for (int t = 0; t < Symmetry.TRANSFORMS; t++)
+        {
+            int image = 0;
+            for (int cell = 0; cell < Map.CELLS; cell++)
+            {
+                image |= 1 << Symmetry.transformCell(t, cell);
+                assertEquals(cell, Symmetry.transformCell(Symmetry.inverse(t), Symmetry.transformCell(t, cell)));
+
+                // neighbours stay neighbours
+                int near = Symmetry.transformMask(t, Adjacency.neighbourMask(cell));
+                assertEquals(Adjacency.neighbourMask(Symmetry.transformCell(t, cell)), near);
+            }
+            assertEquals((1 << Map.CELLS) - 1, image);
+        }
+
+        assertEquals(Map.cellIndex(2, 2), Symmetry.transformCell(5, Map.cellIndex(2, 2)));
+        assertEquals(Map.cellIndex(0, 4), Symmetry.transformCell(1, Map.cellIndex(0, 0)));
+        assertEquals(Map.cellIndex(4, 4), Symmetry.transformCell(2, Map.cellIndex(0, 0)));
+        assertEquals(Map.cellIndex(0, 4), Symmetry.transformCell(4, Map.cellIndex(0, 0)));
+        assertEquals(3, Symmetry.inverse(1));
+        assertEquals(5, Symmetry.inverse(5));
+    }
+
+    @Test
+    void shouldHashTransformedPositions()
+    {
+        for (long seed = 0; seed < 50; seed++)
+        {
+            Game game = randomGame(seed, Symmetry.IDENTITY);
+            assertEquals(game.getHash(), Symmetry.hash(game, Symmetry.IDENTITY));
+
+            Set<Long> hashes = new HashSet<>();
+            for (int t = 0; t < Symmetry.TRANSFORMS; t++)
+            {
+                Game transformed = randomGame(seed, t);
+                assertEquals(transformed.getHash(), Symmetry.hash(game, t));
+                assertEquals(Symmetry.canonicalHash(game), Symmetry.canonicalHash(transformed));
+                hashes.add(transformed.getHash());
+
+                // canonical transform of every equivalent position leads to the same hash
+                assertEquals(Symmetry.canonicalHash(game), Symmetry.hash(transformed, Symmetry.canonicalTransform(transformed)));
+            }
+            assertTrue(hashes.contains(Symmetry.canonicalHash(game)));
+        }
+    }
+
+    @Test
+    void shouldTranslateTurns()
+    {
+        TurnGenerator generator = new TurnGenerator();
+        for (long seed = 0; seed < 50; seed++)
+        {
+            Game game = randomGame(seed, Symmetry.IDENTITY);
+            Set<Long> turns = new HashSet<>();
+            for (int i = 0, count = generator.generate(game); i < count; i++)
+                turns.add(generator.get(i));
+
+            for (int t = 0; t < Symmetry.TRANSFORMS; t++)
+            {
+                Game transformed = randomGame(seed, t);
+                Set<Long> translated = new HashSet<>();
+                for (int i = 0, count = generator.generate(transformed); i < count; i++)
+                {
+                    long turn = generator.get(i);
+                    long back = Symmetry.transformTurn(transformed, Symmetry.inverse(t), turn);
+                    assertEquals(turn, Symmetry.transformTurn(game, t, back));
+                    translated.add(back);
+                }
+                assertEquals(turns, translated);
+            }
+        }
+    }
+
+    @Test
+    void shouldShareCanonicalTurnsBetweenEquivalentPositions()
+    {
+        TurnGenerator generator = new TurnGenerator();
+        for (long seed = 0; seed < 20; seed++)
+        {
+            Game game = randomGame(seed, Symmetry.IDENTITY);
+            int count = generator.generate(game);
+            long[] turns = new long[count];
+            for (int i = 0; i < count; i++)
+                turns[i] = generator.get(i);
+
+            for (int t = 0; t < Symmetry.TRANSFORMS; t++)
+            {
+                Game transformed = randomGame(seed, t);
+                Set<Long> legal = new HashSet<>();
+                for (int i = 0, n = generator.generate(transformed); i < n; i++)
+                    legal.add(generator.get(i));
+
+                for (long turn : turns)
+                {
+                    long canonical = Symmetry.canonicalTurn(game, turn);
+                    assertEquals(canonical, Symmetry.canonicalTurn(transformed, Symmetry.transformTurn(game, t, turn)));
+
+                    long original = Symmetry.originalTurn(transformed, canonical);
+                    assertTrue(legal.contains(original));
+                    assertEquals(canonical, Symmetry.canonicalTurn(transformed, original));
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldMergeTurnsOfSymmetricPosition()
+    {
+        // half turn swaps the workers of both players
+        Game game = Perft.newGame(0, 0);
+        TurnGenerator generator = new TurnGenerator();
+        int count = generator.generate(game);
+        Set<Long> canonical = new HashSet<>();
+        for (int i = 0; i < count; i++)
+        {
+            long turn = generator.get(i);
+            long mirrored = Symmetry.transformTurn(game, 2, turn);
+            mirrored = (mirrored & ~3L) | (1 - TurnGenerator.getWorker(turn));
+            assertEquals(Symmetry.canonicalTurn(game, turn), Symmetry.canonicalTurn(game, mirrored));
+            canonical.add(Symmetry.canonicalTurn(game, turn));
+        }
+        assertTrue(canonical.size() < count);
+    }
+
+    @Test
+    void shouldFindCanonicalOrientationOfSymmetricPosition()
+    {
+        Game game = Perft.newGame(0, 0, new Vector2[]{Vector2.of(0, 0), Vector2.of(4, 4)}, new Vector2[]{Vector2.of(0, 4), Vector2.of(4, 0)});
+        game.getCurrentMap().build(Vector2.of(2, 2));
+
+        // half turn and diagonal reflections leave the position unchanged, quarter turns swap the players
+        int unchanged = 0;
+        for (int t = 0; t < Symmetry.TRANSFORMS; t++)
+            if(Symmetry.hash(game, t) == game.getHash())
+                unchanged++;
+        assertEquals(4, unchanged);
+        assertEquals(game.getHash(), Symmetry.hash(game, 2));
+        assertEquals(Symmetry.hash(game, Symmetry.canonicalTransform(game)), Symmetry.canonicalHash(game));
+    }
+}
@@ -0,0 +1,205 @@
+package it.polimi.ingsw.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThreatDetectorTest
+{
+    static final int[] CARDS = {1, 2, 3, 4, 5, 6, 8, 9, 10};
+
+    static void build(Game game, int x, int y, int level)
+    {
+        for (int i = 0; i < level; i++)
+            game.getCurrentMap().build(Vector2.of(x, y));
+    }
+
+    /**
+     * Find the wins of the player to move playing every generated turn
+     * @param game running game
+     * @return winning workers in the low bits and winning cells shifted by 4
+     */
+    static long bruteForce(Game game)
+    {
+        Player current = game.getCurrentPlayer();
+        TurnGenerator generator = new TurnGenerator();
+        UndoRecord[] records = new UndoRecord[TurnGenerator.MAX_STEPS];
+        for (int i = 0; i < records.length; i++)
+            records[i] = new UndoRecord();
+
+        long result = 0;
+        int count = generator.generate(game);
+        for (int i = 0; i < count; i++)
+        {
+            long turn = generator.get(i);
+            int length = TurnGenerator.getLength(turn);
+            TurnGenerator.play(game, turn, records);
+
+            if(game.isEnded() && game.getWinner() == current)
+                result |= (1L << TurnGenerator.getWorker(turn)) | (1L << (4 + TurnGenerator.getCell(turn, length - 1)));
+
+            TurnGenerator.unplay(game, turn, records);
+        }
+        return result;
+    }
+
+    @Test
+    void shouldFindClimbWin()
+    {
+        Game game = Perft.newGame(0, 0);
+        build(game, 1, 1, 2);
+        build(game, 0, 1, 3);
+        build(game, 2, 1, 3);
+        Player first = game.getPlayer(0);
+
+        assertTrue(ThreatDetector.hasWin(game, first));
+        assertEquals(1, ThreatDetector.winningWorkers(game, first));
+        assertEquals((1 << Map.cellIndex(0, 1)) | (1 << Map.cellIndex(2, 1)), ThreatDetector.winningCells(game, first));
+        assertEquals(0, ThreatDetector.blockingCells(game, first)); // two cells can't be blocked with one dome
+        assertFalse(ThreatDetector.hasWin(game, game.getPlayer(1)));
+
+        game.getCurrentMap().buildDome(Vector2.of(2, 1));
+        assertEquals(1 << Map.cellIndex(0, 1), ThreatDetector.blockingCells(game, first));
+    }
+
+    @Test
+    void shouldRespectMoveUpLock() throws NotAllowedMoveException, OutOfGraphException
+    {
+        // Athena moves up, then Minotaur (1,3) on level 2 can't climb to (0,4)
+        Game game = Perft.newGame(3, 8);
+        build(game, 0, 1, 1);
+        build(game, 1, 3, 2);
+        build(game, 0, 4, 3);
+        Player minotaur = game.getPlayer(1);
+        assertTrue(ThreatDetector.hasWin(game, minotaur));
+
+        TurnGenerator generator = new TurnGenerator();
+        int count = generator.generate(game);
+        for (int i = 0; i < count; i++)
+        {
+            long turn = generator.get(i);
+            if(TurnGenerator.getWorker(turn) == 0 && TurnGenerator.getCell(turn, 0) == Map.cellIndex(0, 1) && TurnGenerator.getCell(turn, 1) == Map.cellIndex(0, 0))
+            {
+                for (int step = 0; step < TurnGenerator.getLength(turn); step++)
+                    game.makeAction(0, TurnGenerator.getAction(turn, step), Vector2.of(TurnGenerator.getCell(turn, step)));
+                break;
+            }
+        }
+
+        assertEquals(minotaur, game.getCurrentPlayer());
+        assertFalse(ThreatDetector.hasWin(game, minotaur));
+        assertEquals(0, bruteForce(game));
+    }
+
+    @Test
+    void shouldFindPushSwapFallAndDoubleMoveWins()
+    {
+        // Minotaur pushes the worker on the level 3 cell (1,2) to (1,3)
+        Game minotaur = Perft.newGame(8, 3, new Vector2[]{Vector2.of(1, 1), Vector2.of(4, 4)}, new Vector2[]{Vector2.of(1, 2), Vector2.of(4, 0)});
+        build(minotaur, 1, 1, 2);
+        build(minotaur, 1, 2, 3);
+        assertEquals(1 << Map.cellIndex(1, 2), ThreatDetector.winningCells(minotaur, minotaur.getPlayer(0)));
+        minotaur.getCurrentMap().buildDome(Vector2.of(1, 3));
+        assertFalse(ThreatDetector.hasWin(minotaur, minotaur.getPlayer(0)));
+
+        // Apollo swaps with the worker on the level 3 cell
+        Game apollo = Perft.newGame(1, 3, new Vector2[]{Vector2.of(1, 1), Vector2.of(4, 4)}, new Vector2[]{Vector2.of(1, 2), Vector2.of(4, 0)});
+        build(apollo, 1, 1, 2);
+        build(apollo, 1, 2, 3);
+        assertEquals(1 << Map.cellIndex(1, 2), ThreatDetector.winningCells(apollo, apollo.getPlayer(0)));
+        assertFalse(ThreatDetector.hasWin(apollo, apollo.getPlayer(1)));
+
+        // Pan jumps down from level 2
+        Game pan = Perft.newGame(9, 3);
+        build(pan, 3, 3, 2);
+        assertEquals(2, ThreatDetector.winningWorkers(pan, pan.getPlayer(0)));
+        assertEquals(Adjacency.neighbourMask(Map.cellIndex(3, 3)) & ~pan.getCurrentMap().getWorkerMask(), ThreatDetector.winningCells(pan, pan.getPlayer(0)));
+
+        // Artemis moves to level 2 and then to level 3, the path is blocked by its middle cell
+        Game artemis = Perft.newGame(2, 3);
+        build(artemis, 1, 1, 1);
+        build(artemis, 0, 0, 2);
+        build(artemis, 0, 1, 3);
+        build(artemis, 4, 4, 3);
+        int blocking = (1 << Map.cellIndex(0, 0)) | (1 << Map.cellIndex(0, 1));
+        assertEquals(1 << Map.cellIndex(0, 1), ThreatDetector.winningCells(artemis, artemis.getPlayer(0)));
+        assertEquals(blocking, ThreatDetector.blockingCells(artemis, artemis.getPlayer(0)));
+        assertEquals(bruteForce(artemis), ThreatDetector.winningWorkers(artemis, artemis.getPlayer(0)) | ((long) ThreatDetector.winningCells(artemis, artemis.getPlayer(0)) << 4));
+    }
+
+    @Test
+    void shouldMatchPlayedTurnsInRandomGames()
+    {
+        SplittableRandom random = new SplittableRandom(42);
+        TurnGenerator generator = new TurnGenerator();
+        int threats = 0;
+
+        for (int first : CARDS)
+        {
+            for (int second : CARDS)
+            {
+                if(first == second)
+                    continue;
+
+                for (int g = 0; g < 2; g++)
+                {
+                    Game game = Perft.newGame(first, second);
+                    for (int turn = 0; turn < 60 && !game.isEnded(); turn++)
+                    {
+                        Player current = game.getCurrentPlayer();
+                        long expected = bruteForce(game);
+                        long actual = ThreatDetector.winningWorkers(game, current) | ((long) ThreatDetector.winningCells(game, current) << 4);
+                        assertEquals(expected, actual, first + "/" + second + " turn " + turn);
+
+                        if(expected != 0)
+                        {
+                            threats++;
+                            checkBlockingCells(game, current);
+                        }
+
+                        int count = generator.generate(game);
+                        if(count == 0)
+                            break;
+                        long chosen = generator.get(random.nextInt(count));
+                        try
+                        {
+                            for (int step = 0; step < TurnGenerator.getLength(chosen); step++)
+                                game.makeAction(TurnGenerator.getWorker(chosen), TurnGenerator.getAction(chosen, step), Vector2.of(TurnGenerator.getCell(chosen, step)));
+                        }
+                        catch (NotAllowedMoveException | OutOfGraphException e)
+                        {
+                            fail(e);
+                        }
+                    }
+                }
+            }
+        }
+
+        assertTrue(threats > 50, "only " + threats + " threats");
+    }
+
+    /**
+     * A dome on a free blocking cell stops every win, a dome on another free winning cell doesn't
+     * @param game game at the start of a turn
+     * @param current player to move
+     */
+    static void checkBlockingCells(Game game, Player current)
+    {
+        int block = ThreatDetector.blockingCells(game, current);
+        int candidates = ThreatDetector.winningCells(game, current) | block;
+        int free = ~(game.getCurrentMap().getWorkerMask() | game.getCurrentMap().getDomeMask());
+
+        for (int cell = 0; cell < Map.CELLS; cell++)
+        {
+            if((candidates & free & (1 << cell)) == 0)
+                continue;
+
+            Game copy = game.copy();
+            copy.getCurrentMap().buildDome(Adjacency.position(cell));
+            boolean stopped = bruteForce(copy) == 0;
+            assertEquals((block & (1 << cell)) != 0, stopped, "cell " + cell);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package it.polimi.ingsw.game;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TurnGeneratorTest
+{
+    Game game;
+    Player p1, p2;
+    TurnGenerator generator;
+
+    @BeforeEach
+    void setUp()
+    {
+        game = new Game();
+        p1 = new Player(0, "kazuma");
+        p2 = new Player(1, "Raccoon");
+        generator = new TurnGenerator();
+    }
+
+    void prepareNoGodGame() throws NotAllowedOperationException
+    {
+        game.join(p1);
+        game.join(p2);
+        game.placeWorkers(p1, new Vector2[]{new Vector2(0,0), new Vector2(4,4)});
+        game.placeWorkers(p2, new Vector2[]{new Vector2(2,2), new Vector2(3,3)});
+    }
+
+    void prepareGodGame() throws NotAllowedOperationException
+    {
+        game.join(p1);
+        game.join(p2);
+        game.start(p1);
+        game.applyGodFilter(p1, new int[]{3,8});
+        game.selectGod(p2, 8); // p2 minotaur, p1 athena
+        game.selectFirstPlayer(p1, p1);
+        game.placeWorkers(p1, new Vector2[]{new Vector2(0,0), new Vector2(4,4)});
+        game.placeWorkers(p2, new Vector2[]{new Vector2(2,2), new Vector2(3,3)});
+    }
+
+    @Test
+    void shouldEncodeSteps()
+    {
+        long turn = TurnGenerator.appendStep(1, 0, Map.cellIndex(0, 1));
+        turn = TurnGenerator.appendStep(turn, 2, Map.cellIndex(4, 4));
+
+        assertEquals(1, TurnGenerator.getWorker(turn));
+        assertEquals(2, TurnGenerator.getLength(turn));
+        assertEquals(0, TurnGenerator.getAction(turn, 0));
+        assertEquals(Map.cellIndex(0, 1), TurnGenerator.getCell(turn, 0));
+        assertEquals(2, TurnGenerator.getAction(turn, 1));
+        assertEquals(Map.cellIndex(4, 4), TurnGenerator.getCell(turn, 1));
+        assertEquals("W1 0@0,1 2@4,4", TurnGenerator.toString(turn));
+    }
+
+    @Test
+    void shouldGenerateEveryMoveAndBuild() throws NotAllowedOperationException
+    {
+        prepareNoGodGame();
+        long hash = game.getHash();
+
+        // worker (0,0): 3 moves with 5 + 5 + 7 builds, worker (4,4): 2 moves with 4 + 4 builds
+        assertEquals(25, generator.generate(game));
+        assertEquals(25, generator.size());
+        assertEquals(hash, game.getHash());
+        assertNull(game.getCurrentTurn().getWorker());
+
+        Set<Long> unique = new HashSet<>();
+        for (int i = 0; i < generator.size(); i++)
+        {
+            long turn = generator.get(i);
+            assertEquals(2, TurnGenerator.getLength(turn));
+            unique.add(turn);
+        }
+        assertEquals(25, unique.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> generator.get(25));
+    }
+
+    @Test
+    void shouldGenerateTurnsThatCanBePlayed() throws Exception
+    {
+        prepareGodGame();
+        long hash = game.getHash();
+
+        int count = generator.generate(game);
+        assertTrue(count > 0);
+        assertEquals(hash, game.getHash());
+
+        for (int i = 0; i < count; i++)
+        {
+            long turn = generator.get(i);
+            UndoRecord[] records = new UndoRecord[TurnGenerator.getLength(turn)];
+
+            for (int s = 0; s < records.length; s++)
+                records[s] = game.makeAction(TurnGenerator.getWorker(turn), TurnGenerator.getAction(turn, s), Vector2.of(TurnGenerator.getCell(turn, s)));
+
+            // turn completed, minotaur is playing now
+            assertEquals(p2, game.getCurrentPlayer());
+
+            for (int s = records.length - 1; s >= 0; s--)
+                game.unmakeAction(records[s]);
+            assertEquals(hash, game.getHash());
+        }
+    }
+
+    @Test
+    void shouldPlayAndUnplayEncodedTurns() throws Exception
+    {
+        prepareGodGame();
+        long hash = game.getHash();
+        UndoRecord[] records = new UndoRecord[TurnGenerator.MAX_STEPS];
+        for (int i = 0; i < records.length; i++)
+            records[i] = new UndoRecord();
+
+        int count = generator.generate(game);
+        for (int i = 0; i < count; i++)
+        {
+            TurnGenerator.play(game, generator.get(i), records);
+            assertEquals(p2, game.getCurrentPlayer());
+            TurnGenerator.unplay(game, generator.get(i), records);
+            assertEquals(hash, game.getHash());
+        }
+
+        // (3,3) is not next to the worker in (0,0)
+        long wrong = TurnGenerator.appendStep(0, 0, Map.cellIndex(3, 3));
+        assertThrows(IllegalStateException.class, () -> TurnGenerator.play(game, wrong, records));
+        assertEquals(hash, game.getHash());
+    }
+
+    @Test
+    void shouldCompleteTurnOfSelectedWorker() throws Exception
+    {
+        prepareNoGodGame();
+        game.executeAction(p1, 0, 0, new Vector2(1, 1)); // move, build is left
+
+        // builds around (1,1) with (2,2) occupied
+        assertEquals(7, generator.generate(game));
+        for (int i = 0; i < generator.size(); i++)
+        {
+            assertEquals(0, TurnGenerator.getWorker(generator.get(i)));
+            assertEquals(1, TurnGenerator.getLength(generator.get(i)));
+        }
+    }
+
+    @Test
+    void shouldGenerateNothingIfGameIsNotRunning()
+    {
+        game.join(p1);
+        assertEquals(0, generator.generate(game));
+    }
+}
@@ -24,15 +24,11 @@ class TurnTest
 
         //create a map
         map = new Map();
-        Vector2 pos = new Vector2(0, 0);
         //the closed point is 0,0 so are dome (0,1)(1,0)(1,1)
-        map.build(pos);
-        pos.set(0, 1);
-        map.buildDome(pos);
-        pos.set(1, 0);
-        map.buildDome(pos);
-        pos.set(1, 1);
-        map.buildDome(pos);
+        map.build(Vector2.of(0, 0));
+        map.buildDome(Vector2.of(0, 1));
+        map.buildDome(Vector2.of(1, 0));
+        map.buildDome(Vector2.of(1, 1));
 
         //setup players
         p = new Player(1, "first");
@@ -155,7 +151,7 @@ class TurnTest
         assertTrue(w.getPosition().equals(new Vector2(3, 3)));
 
         //check if we went back to root
-        assertTrue(p.getGod().getGraph().isAtRoot());
+        assertTrue(turn.getCursor().isAtRoot());
     }
 
     @Test
@@ -168,7 +164,7 @@ class TurnTest
         turn.runAction(0, new Vector2(3, 2), map, gc); // move
 
         Map oldMap = new Map(map); // save map before build
-        BehaviourNode oldNode = p.getGod().getGraph().getCurrentNode();
+        BehaviourNode oldNode = turn.getCursor().getCurrentNode();
 
         turn.runAction(0, new Vector2(3, 3), map, gc); // build
 
@@ -177,7 +173,7 @@ class TurnTest
         assertEquals(0, turn.runAction(1, new Vector2(3, 3), map, gc)); // run undo (0 is build)
         assertEquals(new Vector2(3, 2), w.getPosition());
         assertTrue(isMapEquals(oldMap, map));
-        assertEquals(oldNode, p.getGod().getGraph().getCurrentNode());
+        assertEquals(oldNode, turn.getCursor().getCurrentNode());
     }
 
 
@@ -267,4 +263,100 @@ class TurnTest
         assertEquals(w2.getPosition(), new Vector2(4,4));
 
     }
+
+    @Test
+    void shouldRollbackWholeTurnFromJournal() throws NotAllowedMoveException, OutOfGraphException
+    {
+        turn = new Turn(p, true);
+        w.setPosition(new Vector2(3, 3)); // move in a free space
+        Map oldMap = new Map(map);
+        long oldHash = map.getHash();
+
+        turn.selectWorker(0);
+        turn.runAction(0, new Vector2(3, 2), map, gc); // move
+        turn.runAction(0, new Vector2(3, 3), map, gc); // build
+        turn.runAction(0, new Vector2(2, 2), map, gc); // build
+        assertEquals(3, turn.getUndoDepth());
+        assertTrue(turn.isEnded());
+
+        assertEquals(3, turn.rollbackTurn(map, gc));
+
+        assertEquals(0, turn.getUndoDepth());
+        assertEquals(new Vector2(3, 3), w.getPosition());
+        assertTrue(isMapEquals(oldMap, map));
+        assertEquals(oldHash, map.getHash());
+        assertTrue(turn.getCursor().isAtRoot());
+        assertNull(turn.getWorker());
+    }
+
+    @Test
+    void shouldRestoreConstraintsOnUndo() throws NotAllowedMoveException, OutOfGraphException
+    {
+        turn = new Turn(p, true);
+        w.setPosition(new Vector2(3, 3)); // move in a free space
+        turn.selectWorker(0);
+        turn.runAction(0, new Vector2(3, 2), map, gc); // move
+
+        gc.add(GameConstraints.Constraint.BLOCK_MOVE_UP);
+        turn.runAction(0, new Vector2(3, 3), map, gc); // build
+        gc.remove(GameConstraints.Constraint.BLOCK_MOVE_UP);
+
+        turn.runAction(1, new Vector2(3, 3), map, gc); // undo build
+        assertTrue(gc.check(GameConstraints.Constraint.BLOCK_MOVE_UP));
+        assertEquals(1, turn.getUndoDepth());
+    }
+
+    @Test
+    void shouldNotJournalActionsIfUndoDisabled() throws NotAllowedMoveException, OutOfGraphException
+    {
+        w.setPosition(new Vector2(3, 3)); // move in a free space
+        turn.selectWorker(0);
+        turn.runAction(0, new Vector2(3, 2), map, gc);
+        assertEquals(0, turn.getUndoDepth());
+    }
+
+    @Test
+    void shouldUpdateCanStillMoveWhenMapChanges()
+    {
+        // w is closed by domes, w2 can move
+        assertTrue(turn.canStillMove(map, gc));
+        assertTrue(turn.canStillMove(map, gc)); // cached
+
+        // close w2 too
+        map.buildDome(Vector2.of(3, 3));
+        map.buildDome(Vector2.of(3, 4));
+        map.buildDome(Vector2.of(4, 3));
+        assertFalse(turn.canStillMove(map, gc));
+
+        // a new turn of the same game reuses the cached result
+        MoveCheckCache cache = new MoveCheckCache();
+        assertFalse(new Turn(p, false, cache).canStillMove(map, gc));
+        assertFalse(new Turn(p, false, cache).canStillMove(map, gc));
+    }
+
+    @Test
+    void shouldNotMoveIfLastActionIsBlocked()
+    {
+        // move is possible but no build is possible after it
+        Player p2 = new Player(2, "second");
+        Worker other = new Worker(0, p2, Vector2.of(2, 2));
+        p2.addWorker(other);
+        p2.setGod(new Card(2, "second", BehaviourGraph.makeEmptyGraph().appendSubGraph(
+                BehaviourNode.makeRootNode(new MoveAction()).setNext(new BuildDomeAction()).setNext(new MoveAgainAction()).getRoot())));
+        map.setWorkers(p2);
+
+        assertTrue(new Turn(p2).canStillMove(map, gc));
+
+        // surround the worker with level 2 cells: build is possible but no move
+        for (int dir = 0; dir < Adjacency.DIRECTIONS; dir++)
+        {
+            Vector2 pos = Adjacency.position(Adjacency.neighbour(Map.cellIndex(2, 2), dir));
+            if(map.isCellEmpty(Map.cellIndex(pos)))
+            {
+                map.build(pos);
+                map.build(pos);
+            }
+        }
+        assertFalse(new Turn(p2).canStillMove(map, gc));
+    }
 }
@@ -57,4 +57,20 @@ class Vector2Test
         assertEquals(5, p1.distance(new Vector2(-5,0)));
     }
 
-}
\ No newline at end of file
+    @Test
+    void shouldInternMapCells()
+    {
+        assertSame(Vector2.of(2,3), Vector2.of(2,3));
+        assertSame(Vector2.of(2,3), Vector2.of(new Vector2(2,3)));
+        assertSame(Vector2.of(2,3), Vector2.of(Map.cellIndex(2,3)));
+        assertEquals(new Vector2(-1,7), Vector2.of(-1,7));
+    }
+
+    @Test
+    void shouldHaveSameHashWhenEquals()
+    {
+        assertEquals(new Vector2(4,1).hashCode(), Vector2.of(4,1).hashCode());
+        assertNotEquals(Vector2.of(1,4).hashCode(), Vector2.of(4,1).hashCode());
+    }
+
+}
@@ -0,0 +1,265 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlphaBetaBotTest
+{
+    static void build(Game game, int x, int y, int level)
+    {
+        for (int i = 0; i < level; i++)
+            game.getCurrentMap().build(Vector2.of(x, y));
+    }
+
+    /**
+     * First player has a worker on level 2 near a level 3 cell
+     * @return game where the first player can win moving to (0,1)
+     */
+    static Game winInOneGame()
+    {
+        Game game = Perft.newGame(0, 0);
+        build(game, 1, 1, 2);
+        build(game, 0, 1, 3);
+        return game;
+    }
+
+    @Test
+    void shouldFindWinInOne()
+    {
+        Game game = winInOneGame();
+        AlphaBetaBot bot = new AlphaBetaBot(1000);
+
+        long turn = bot.findBestTurn(game);
+
+        assertEquals(0, TurnGenerator.getWorker(turn));
+        assertEquals(Map.cellIndex(0, 1), TurnGenerator.getCell(turn, 0));
+        assertEquals(AlphaBetaBot.WIN_SCORE - 1, bot.getLastScore());
+        assertEquals(1, bot.getLastDepth());
+    }
+
+    @Test
+    void shouldBlockOpponentWin() throws NotAllowedOperationException, NotAllowedMoveException, OutOfGraphException
+    {
+        // second player worker (1,3) is on level 2 near the only level 3 cell (1,2)
+        Game game = Perft.newGame(0, 0);
+        build(game, 1, 3, 2);
+        build(game, 1, 2, 3);
+        Player first = game.getCurrentPlayer();
+
+        AlphaBetaBot bot = new AlphaBetaBot(2000, 2, new HeightEvaluator(), new TranspositionTable(16));
+        assertTrue(bot.play(game, first));
+        assertNotEquals(first, game.getCurrentPlayer());
+
+        // no turn of the second player can win now
+        TurnGenerator generator = new TurnGenerator();
+        int count = generator.generate(game);
+        assertTrue(count > 0);
+        for (int i = 0; i < count; i++)
+        {
+            long turn = generator.get(i);
+            UndoRecord record = game.makeAction(TurnGenerator.getWorker(turn), TurnGenerator.getAction(turn, 0), Vector2.of(TurnGenerator.getCell(turn, 0)));
+            assertEquals(0, record.getResult(), TurnGenerator.toString(turn));
+            game.unmakeAction(record);
+        }
+    }
+
+    @Test
+    void shouldLeaveGameUnchanged()
+    {
+        Game game = Perft.newGame(3, 8);
+        build(game, 2, 2, 2);
+        build(game, 1, 2, 1);
+        long hash = game.getHash();
+        Player current = game.getCurrentPlayer();
+
+        AlphaBetaBot bot = new AlphaBetaBot(5000, 3, new HeightEvaluator(), new TranspositionTable(16));
+        long turn = bot.findBestTurn(game);
+
+        assertNotEquals(AlphaBetaBot.NO_TURN, turn);
+        assertEquals(hash, game.getHash());
+        assertSame(current, game.getCurrentPlayer());
+        assertEquals(3, bot.getLastDepth());
+        assertTrue(bot.getLastNodes() > 0);
+    }
+
+    @Test
+    void shouldRespectTimeBudget()
+    {
+        // Demeter against Artemis has many turns, a deep search can't end in time
+        Game game = Perft.newGame(5, 2);
+        AlphaBetaBot bot = new AlphaBetaBot(100);
+
+        long start = System.nanoTime();
+        long turn = bot.findBestTurn(game);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        assertNotEquals(AlphaBetaBot.NO_TURN, turn);
+        assertTrue(elapsed < 100 + 150, "search took " + elapsed + " ms");
+        assertTrue(bot.getLastDepth() < AlphaBetaBot.MAX_DEPTH);
+
+        // returned turn is legal
+        TurnGenerator generator = new TurnGenerator();
+        boolean found = false;
+        for (int i = 0; i < generator.generate(game); i++)
+            found |= generator.get(i) == turn;
+        assertTrue(found);
+    }
+
+    @Test
+    void shouldShareTimeBudgetWithSolver()
+    {
+        // the solver can't prove anything here and would use its whole budget
+        Game game = Perft.newGame(5, 2);
+        AlphaBetaBot bot = new AlphaBetaBot(100, AlphaBetaBot.MAX_DEPTH, new HeightEvaluator(), new TranspositionTable(16));
+        bot.setSolver(new ProofNumberSolver(Long.MAX_VALUE, 10000, 16));
+
+        // the first search of the JVM loads the search classes, time a second one
+        AlphaBetaBot warmUp = new AlphaBetaBot(100, AlphaBetaBot.MAX_DEPTH, new HeightEvaluator(), new TranspositionTable(16));
+        warmUp.setSolver(new ProofNumberSolver(Long.MAX_VALUE, 10000, 16));
+        warmUp.findBestTurn(game);
+
+        long start = System.nanoTime();
+        long turn = bot.findBestTurn(game);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        assertNotEquals(AlphaBetaBot.NO_TURN, turn);
+        assertTrue(elapsed < 100 + 150, "search took " + elapsed + " ms");
+        assertTrue(bot.getLastDepth() >= 1);
+
+        // even a budget too short for anything completes the one turn search
+        AlphaBetaBot fast = new AlphaBetaBot(1, AlphaBetaBot.MAX_DEPTH, new HeightEvaluator(), new TranspositionTable(16));
+        fast.setSolver(new ProofNumberSolver(Long.MAX_VALUE, 10000, 16));
+        assertNotEquals(AlphaBetaBot.NO_TURN, fast.findBestTurn(game));
+        assertTrue(fast.getLastDepth() >= 1);
+    }
+
+    @Test
+    void shouldPlayCompleteGames() throws NotAllowedOperationException
+    {
+        int[][] pairings = {{0, 0}, {3, 9}, {1, 8}, {10, 4}};
+        for (int[] pairing : pairings)
+        {
+            Game game = Perft.newGame(pairing[0], pairing[1]);
+            AlphaBetaBot first = new AlphaBetaBot(20, 2, new HeightEvaluator(), new TranspositionTable(16));
+            AlphaBetaBot second = new AlphaBetaBot(20, 2, new HeightEvaluator(), new TranspositionTable(16));
+            Player p1 = game.getPlayer(0);
+
+            int turns = 0;
+            while (!game.isEnded() && turns < 200)
+            {
+                Player current = game.getCurrentPlayer();
+                AlphaBetaBot bot = current == p1 ? first : second;
+                if(!bot.play(game, current))
+                    break; // stuck player
+                turns++;
+            }
+
+            assertTrue(turns > 0);
+            assertTrue(turns < 200);
+        }
+    }
+
+    @Test
+    void shouldNotPlayOtherPlayersTurn() throws NotAllowedOperationException
+    {
+        Game game = winInOneGame();
+        AlphaBetaBot bot = new AlphaBetaBot(100);
+
+        assertFalse(bot.play(game, game.getPlayer(1)));
+        assertTrue(bot.play(game, game.getPlayer(0)));
+        assertTrue(game.isEnded());
+        assertEquals(game.getPlayer(0), game.getWinner());
+    }
+
+    @Test
+    void shouldContinueAfterStuckOpponentOfThreePlayersGame() throws NotAllowedOperationException
+    {
+        // second player is closed by domes and is removed, then the third player wins moving to (3,2)
+        Game game = new Game();
+        Player[] players = {new Player(0, "first"), new Player(1, "second"), new Player(2, "third")};
+        for (Player p : players)
+            game.join(p);
+        assertTrue(game.placeWorkers(players[0], new Vector2[]{Vector2.of(2, 2), Vector2.of(2, 0)}));
+        assertTrue(game.placeWorkers(players[1], new Vector2[]{Vector2.of(0, 0), Vector2.of(0, 4)}));
+        assertTrue(game.placeWorkers(players[2], new Vector2[]{Vector2.of(4, 2), Vector2.of(4, 4)}));
+        for (Vector2 dome : new Vector2[]{Vector2.of(0, 1), Vector2.of(1, 0), Vector2.of(1, 1), Vector2.of(0, 3), Vector2.of(1, 3), Vector2.of(1, 4)})
+            game.getCurrentMap().buildDome(dome);
+        build(game, 4, 2, 2);
+        build(game, 3, 2, 3);
+        assertEquals(players[0], game.getCurrentPlayer());
+
+        AlphaBetaBot bot = new AlphaBetaBot(10000, 2, new HeightEvaluator(), new TranspositionTable(16));
+        assertTrue(bot.play(game, players[0]));
+
+        // the stuck opponent is not a win, the only safe turn closes (3,2) with a dome
+        assertTrue(bot.getLastScore() < AlphaBetaBot.WIN_SCORE / 2);
+        assertEquals(2, bot.getLastDepth());
+        assertTrue(game.getCurrentMap().isCellDome(Vector2.of(3, 2)));
+        assertEquals(2, game.playerCount()); // the game removed the stuck player
+    }
+
+    @Test
+    void shouldNotShareTableScoresBetweenPairings()
+    {
+        // the first player climbs from level 1 to level 2: with Pan it wins going down on its next turn,
+        // with Demeter it can't, the positions after its turn have the same hash
+        Game pan = Perft.newGame(9, 4);
+        Game demeter = Perft.newGame(5, 4);
+        for (Game game : new Game[]{pan, demeter})
+        {
+            build(game, 1, 1, 1);
+            build(game, 2, 2, 2);
+        }
+
+        AlphaBetaBot shared = new AlphaBetaBot(60000, 3, new HeightEvaluator(), new TranspositionTable(16));
+        shared.findBestTurn(pan);
+        assertTrue(shared.getLastScore() > AlphaBetaBot.WIN_SCORE / 2);
+
+        long turn = shared.findBestTurn(demeter);
+        AlphaBetaBot fresh = new AlphaBetaBot(60000, 3, new HeightEvaluator(), new TranspositionTable(16));
+        assertEquals(fresh.findBestTurn(demeter), turn);
+        assertEquals(fresh.getLastScore(), shared.getLastScore());
+        assertTrue(shared.getLastScore() < AlphaBetaBot.WIN_SCORE / 2);
+    }
+
+    @Test
+    void shouldPlayBookTurn(@TempDir Path dir) throws IOException
+    {
+        Game game = Perft.newGame(0, 0);
+        build(game, 0, 1, 1); // no symmetry, so the book turn is the same encoded turn
+        TurnGenerator generator = new TurnGenerator();
+        int count = generator.generate(game);
+        long last = generator.get(count - 1);
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(1);
+        builder.addTurn(game, last, true);
+        Path file = dir.resolve("test.book");
+        builder.write(file, 1);
+
+        AlphaBetaBot bot = new AlphaBetaBot(1000, 2, new HeightEvaluator(), new TranspositionTable(12));
+        bot.setBook(OpeningBook.open(file));
+        assertEquals(last, bot.findBestTurn(game));
+        assertEquals(0, bot.getLastNodes());
+
+        // positions out of the book are searched
+        build(game, 2, 2, 1);
+        assertNotEquals(Bot.NO_TURN, bot.findBestTurn(game));
+        assertTrue(bot.getLastNodes() > 0);
+    }
+
+    @Test
+    void shouldReturnNoTurnWhenGameIsNotRunning()
+    {
+        Game game = new Game();
+        AlphaBetaBot bot = new AlphaBetaBot(100);
+        assertEquals(AlphaBetaBot.NO_TURN, bot.findBestTurn(game));
+        assertThrows(IllegalArgumentException.class, () -> new AlphaBetaBot(0));
+        assertThrows(IllegalArgumentException.class, () -> new AlphaBetaBot(10, 0, new HeightEvaluator(), new TranspositionTable(4)));
+    }
+}
@@ -0,0 +1,74 @@
+package it.polimi.ingsw.game.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluatorTunerTest
+{
+    @Test
+    void shouldFitWeightsOfSyntheticCorpus()
+    {
+        // players higher than their opponents win, mobility is noise
+        EvaluatorTuner tuner = new EvaluatorTuner();
+        SplittableRandom random = new SplittableRandom(1);
+        int[] sample = new int[WeightedEvaluator.FEATURES];
+        for (int i = 0; i < 20000; i++)
+        {
+            sample[WeightedEvaluator.HEIGHT] = random.nextInt(7) - 3;
+            sample[WeightedEvaluator.MOBILITY] = random.nextInt(17) - 8;
+            double win = 1 / (1 + Math.exp(-sample[WeightedEvaluator.HEIGHT]));
+            tuner.addSample(sample, random.nextDouble() < win ? 1 : 0);
+        }
+
+        int[] start = new int[WeightedEvaluator.FEATURES];
+        int[] weights = tuner.tune(start, 300, 5);
+
+        // a level is worth one logit, that is 1 / SCALE points
+        assertEquals(1 / EvaluatorTuner.SCALE, weights[WeightedEvaluator.HEIGHT], 40);
+        assertEquals(0, weights[WeightedEvaluator.MOBILITY], 10);
+        assertTrue(tuner.error(toDouble(weights)) < tuner.error(toDouble(start)));
+    }
+
+    @Test
+    void shouldGenerateCorpusWithSelfPlay()
+    {
+        EvaluatorTuner first = new EvaluatorTuner();
+        int positions = first.playGame(1);
+        assertTrue(positions > 0);
+        assertEquals(positions, first.size());
+
+        // every game has a result, the error of a zero evaluator is 0.25
+        assertEquals(0.25, first.error(new double[WeightedEvaluator.FEATURES]), 1e-6);
+
+        EvaluatorTuner second = new EvaluatorTuner();
+        int secondPositions = second.playGame(2);
+        second.addAll(first);
+        assertEquals(positions + secondPositions, second.size());
+    }
+
+    @Test
+    void shouldRejectInvalidArguments()
+    {
+        EvaluatorTuner tuner = new EvaluatorTuner();
+        int[] weights = WeightedEvaluator.getDefaultWeights();
+
+        assertThrows(IllegalStateException.class, () -> tuner.tune(weights, 10, 1));
+        assertThrows(IllegalArgumentException.class, () -> tuner.addSample(new int[2], 1));
+        assertThrows(IllegalArgumentException.class, () -> tuner.addSample(weights, 2));
+
+        tuner.addSample(weights, 1);
+        assertThrows(IllegalArgumentException.class, () -> tuner.tune(new int[2], 10, 1));
+        assertThrows(IllegalArgumentException.class, () -> tuner.tune(weights, 10, 0));
+    }
+
+    static double[] toDouble(int[] weights)
+    {
+        double[] result = new double[weights.length];
+        for (int i = 0; i < weights.length; i++)
+            result[i] = weights[i];
+        return result;
+    }
+}
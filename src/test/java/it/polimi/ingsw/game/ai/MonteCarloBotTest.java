@@ -0,0 +1,144 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonteCarloBotTest
+{
+    @Test
+    void shouldFindWinInOne()
+    {
+        Game game = AlphaBetaBotTest.winInOneGame();
+        MonteCarloBot bot = new MonteCarloBot(2000, 400, 2, 1);
+
+        long turn = bot.findBestTurn(game);
+
+        assertEquals(0, TurnGenerator.getWorker(turn));
+        assertEquals(Map.cellIndex(0, 1), TurnGenerator.getCell(turn, 0));
+        assertEquals(1, TurnGenerator.getLength(turn));
+    }
+
+    @Test
+    void shouldLeaveGameUnchanged()
+    {
+        Game game = Perft.newGame(3, 8);
+        AlphaBetaBotTest.build(game, 2, 2, 2);
+        long hash = game.getHash();
+        Player current = game.getCurrentPlayer();
+
+        MonteCarloBot bot = new MonteCarloBot(2000, 100, 2, 7);
+        long turn = bot.findBestTurn(game);
+
+        assertNotEquals(Bot.NO_TURN, turn);
+        assertEquals(hash, game.getHash());
+        assertSame(current, game.getCurrentPlayer());
+        assertNull(game.getWinner());
+    }
+
+    @Test
+    void shouldSplitPlayoutsBetweenThreads()
+    {
+        Game game = Perft.newGame(0, 0);
+        MonteCarloBot bot = new MonteCarloBot(10000, 200, 4, 3);
+
+        long turn = bot.findBestTurn(game);
+
+        assertEquals(4, bot.getThreads());
+        assertEquals(200, bot.getLastPlayouts());
+        assertTrue(bot.getLastPlayoutsPerSecond() > 0);
+
+        // returned turn is legal
+        TurnGenerator generator = new TurnGenerator();
+        boolean found = false;
+        for (int i = 0; i < generator.generate(game); i++)
+            found |= generator.get(i) == turn;
+        assertTrue(found);
+    }
+
+    @Test
+    void shouldRespectTimeBudget()
+    {
+        Game game = Perft.newGame(5, 2);
+        MonteCarloBot bot = new MonteCarloBot(100);
+
+        long start = System.nanoTime();
+        long turn = bot.findBestTurn(game);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        assertNotEquals(Bot.NO_TURN, turn);
+        assertTrue(elapsed < 100 + 150, "search took " + elapsed + " ms");
+        assertTrue(bot.getLastPlayouts() > 0);
+    }
+
+    @Test
+    void shouldPlayCompleteGame() throws NotAllowedOperationException
+    {
+        Game game = Perft.newGame(9, 1);
+        MonteCarloBot bot = new MonteCarloBot(20, 0, 2, 11);
+
+        int turns = 0;
+        while (!game.isEnded() && turns < 200)
+        {
+            if(!bot.play(game, game.getCurrentPlayer()))
+                break; // stuck player
+            turns++;
+        }
+
+        assertTrue(turns > 0);
+        assertTrue(turns < 200);
+    }
+
+    @Test
+    void shouldContinueAfterStuckOpponentOfThreePlayersGame() throws NotAllowedOperationException
+    {
+        // second player is closed by domes and is removed, then the third player wins moving to (3,2)
+        Game game = new Game();
+        Player[] players = {new Player(0, "first"), new Player(1, "second"), new Player(2, "third")};
+        for (Player p : players)
+            game.join(p);
+        assertTrue(game.placeWorkers(players[0], new Vector2[]{Vector2.of(2, 2), Vector2.of(2, 0)}));
+        assertTrue(game.placeWorkers(players[1], new Vector2[]{Vector2.of(0, 0), Vector2.of(0, 4)}));
+        assertTrue(game.placeWorkers(players[2], new Vector2[]{Vector2.of(4, 2), Vector2.of(4, 4)}));
+        for (Vector2 dome : new Vector2[]{Vector2.of(0, 1), Vector2.of(1, 0), Vector2.of(1, 1), Vector2.of(0, 3), Vector2.of(1, 3), Vector2.of(1, 4)})
+            game.getCurrentMap().buildDome(dome);
+        AlphaBetaBotTest.build(game, 4, 2, 2);
+        AlphaBetaBotTest.build(game, 3, 2, 3);
+
+        MonteCarloBot bot = new MonteCarloBot(10000, 4000, 1, 13);
+        assertTrue(bot.play(game, players[0]));
+
+        // playouts go on after the stuck player, the only safe turn closes (3,2) with a dome
+        assertTrue(game.getCurrentMap().isCellDome(Vector2.of(3, 2)));
+        assertEquals(2, game.playerCount());
+    }
+
+    @Test
+    void shouldReturnNoTurnWhenGameIsNotRunning()
+    {
+        MonteCarloBot bot = new MonteCarloBot(100, 0, 1, 0);
+        assertEquals(Bot.NO_TURN, bot.findBestTurn(new Game()));
+        assertThrows(IllegalArgumentException.class, () -> new MonteCarloBot(0));
+        assertThrows(IllegalArgumentException.class, () -> new MonteCarloBot(10, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new MonteCarloBot(10, -1, 1, 0));
+    }
+
+    @Test
+    void shouldStopThreadsWhenClosed()
+    {
+        Game game = AlphaBetaBotTest.winInOneGame();
+        MonteCarloBot bot = new MonteCarloBot(2000, 100, 2, 5);
+        try (bot)
+        {
+            assertNotEquals(Bot.NO_TURN, bot.findBestTurn(game));
+        }
+
+        assertThrows(IllegalStateException.class, () -> bot.findBestTurn(game));
+        bot.close();
+
+        MonteCarloBot single = new MonteCarloBot(100, 10, 1, 0);
+        single.close();
+        assertThrows(IllegalStateException.class, () -> single.findBestTurn(game));
+    }
+}
@@ -0,0 +1,130 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpeningBookBuilderTest
+{
+    /**
+     * Create a game with the workers of Perft.newGame moved by a transform
+     * @param transform transform id
+     * @return new game
+     */
+    static Game transformedGame(int transform)
+    {
+        return Perft.newGame(0, 0, transform(transform, Perft.FIRST_WORKERS), transform(transform, Perft.SECOND_WORKERS));
+    }
+
+    static Vector2[] transform(int transform, Vector2[] positions)
+    {
+        Vector2[] result = new Vector2[positions.length];
+        for (int i = 0; i < positions.length; i++)
+            result[i] = Vector2.of(Symmetry.transformCell(transform, Map.cellIndex(positions[i])));
+        return result;
+    }
+
+    @Test
+    void shouldMergeEquivalentPositions()
+    {
+        OpeningBookBuilder builder = new OpeningBookBuilder(1);
+        TurnGenerator generator = new TurnGenerator();
+
+        Game game = transformedGame(Symmetry.IDENTITY);
+        generator.generate(game);
+        long turn = generator.get(3);
+
+        for (int t = 0; t < Symmetry.TRANSFORMS; t++)
+        {
+            Game transformed = transformedGame(t);
+            builder.addTurn(transformed, Symmetry.transformTurn(game, t, turn), t % 2 == 0);
+        }
+
+        assertEquals(1, builder.positions());
+        assertEquals(1, builder.size());
+
+        generator.generate(game);
+        builder.addTurn(game, generator.get(0) == turn ? generator.get(1) : generator.get(0), false);
+        assertEquals(1, builder.positions());
+        assertEquals(2, builder.size());
+    }
+
+    @Test
+    void shouldPlayDeterministicGames()
+    {
+        OpeningBookBuilder first = new OpeningBookBuilder(4);
+        OpeningBookBuilder second = new OpeningBookBuilder(4);
+        for (long seed = 0; seed < 5; seed++)
+        {
+            assertEquals(4, first.playGame((int) seed, seed));
+            second.playGame((int) seed, seed);
+        }
+
+        assertTrue(first.positions() > 0);
+        assertEquals(first.positions(), second.positions());
+        assertEquals(first.size(), second.size());
+
+        OpeningBookBuilder merged = new OpeningBookBuilder(4);
+        merged.addAll(first);
+        merged.addAll(second);
+        assertEquals(first.positions(), merged.positions());
+        assertEquals(first.size(), merged.size());
+    }
+
+    @Test
+    void shouldSkipRareEntries(@TempDir Path dir) throws IOException
+    {
+        OpeningBookBuilder builder = new OpeningBookBuilder(2);
+        OpeningBookBuilder repeated = new OpeningBookBuilder(2);
+        for (long seed = 0; seed < 5; seed++)
+        {
+            builder.playGame((int) seed, seed);
+            repeated.playGame((int) seed, seed);
+        }
+        assertEquals(builder.size(), builder.write(dir.resolve("all.book"), 1));
+        assertTrue(builder.write(dir.resolve("twice.book"), 2) < builder.size());
+
+        // every game is played twice with the same seed
+        builder.addAll(repeated);
+        assertEquals(builder.size(), builder.write(dir.resolve("twice.book"), 2));
+        assertEquals(0, builder.write(dir.resolve("none.book"), Integer.MAX_VALUE));
+    }
+
+    @Test
+    void shouldReachMinPlaysFromSameStart(@TempDir Path dir) throws IOException
+    {
+        OpeningBookBuilder builder = new OpeningBookBuilder(2, 1);
+        assertEquals(1 + 9 * 8, builder.startingPositions());
+
+        // start 0 is the no gods pairing with the placement of Perft.newGame
+        for (long seed = 0; seed < 6; seed++)
+            builder.playGame(0, seed);
+
+        Path file = dir.resolve("book.book");
+        int written = builder.write(file, 3);
+        assertTrue(written > 0);
+
+        OpeningBook book = OpeningBook.open(file);
+        assertEquals(written, book.size());
+        for (int i = 0; i < book.size(); i++)
+            assertTrue(book.getPlays(i) >= 3);
+        assertTrue(book.find(OpeningBook.key(Perft.newGame(0, 0))) >= 0);
+    }
+
+    @Test
+    void shouldRejectInvalidPlies()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new OpeningBookBuilder(0));
+        assertThrows(IllegalArgumentException.class, () -> new OpeningBookBuilder(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new OpeningBookBuilder(1, OpeningBookBuilder.MAX_PLACEMENTS + 1));
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(1, 2);
+        assertThrows(IllegalArgumentException.class, () -> builder.playGame(builder.startingPositions(), 1));
+        assertThrows(IllegalArgumentException.class, () -> builder.playGame(-1, 1));
+    }
+}
@@ -0,0 +1,177 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpeningBookTest
+{
+    /**
+     * Create a transformed game whose position has no symmetry
+     * @param transform transform id
+     * @return new game
+     */
+    static Game asymmetricGame(int transform)
+    {
+        Game game = OpeningBookBuilderTest.transformedGame(transform);
+        game.getCurrentMap().build(Vector2.of(Symmetry.transformCell(transform, Map.cellIndex(0, 1))));
+        return game;
+    }
+
+    @Test
+    void shouldFindTurnsInEveryOrientation(@TempDir Path dir) throws IOException
+    {
+        OpeningBookBuilder builder = new OpeningBookBuilder(1);
+        TurnGenerator generator = new TurnGenerator();
+        Game game = asymmetricGame(Symmetry.IDENTITY);
+        generator.generate(game);
+        long main = generator.get(5);
+        long other = generator.get(7);
+
+        builder.addTurn(game, main, true);
+        builder.addTurn(game, main, false);
+        builder.addTurn(game, other, true);
+        Path file = dir.resolve("test.book");
+        assertEquals(2, builder.write(file, 1));
+
+        OpeningBook book = OpeningBook.open(file);
+        assertEquals(2, book.size());
+        assertEquals(2, book.count(OpeningBook.key(game)));
+
+        int first = book.find(OpeningBook.key(game));
+        assertEquals(0, first);
+        assertEquals(2, book.getPlays(first));
+        assertEquals(1, book.getWins(first));
+        assertEquals(1, book.getPlays(first + 1));
+        assertEquals(1, book.getWins(first + 1));
+
+        for (int t = 0; t < Symmetry.TRANSFORMS; t++)
+        {
+            Game transformed = asymmetricGame(t);
+            assertEquals(Symmetry.transformTurn(game, t, main), book.bestTurn(transformed));
+        }
+
+        // positions out of the book
+        game.getCurrentMap().build(Vector2.of(0, 1));
+        assertEquals(OpeningBook.NOT_FOUND, book.find(OpeningBook.key(game)));
+        assertEquals(0, book.count(OpeningBook.key(game)));
+        assertEquals(Bot.NO_TURN, book.bestTurn(game));
+    }
+
+    @Test
+    void shouldFindTurnsOfSymmetricPosition(@TempDir Path dir) throws IOException
+    {
+        OpeningBookBuilder builder = new OpeningBookBuilder(1);
+        TurnGenerator generator = new TurnGenerator();
+        Game game = OpeningBookBuilderTest.transformedGame(Symmetry.IDENTITY);
+        int count = generator.generate(game);
+        for (int i = 0; i < count; i++)
+            builder.addTurn(game, generator.get(i), false);
+        Path file = dir.resolve("test.book");
+        builder.write(file, 1);
+
+        // equivalent turns share their entry
+        OpeningBook book = OpeningBook.open(file);
+        assertTrue(book.size() < count);
+        assertEquals(book.size(), book.count(OpeningBook.key(game)));
+        for (int t = 0; t < Symmetry.TRANSFORMS; t++)
+        {
+            Game transformed = OpeningBookBuilderTest.transformedGame(t);
+            long turn = book.bestTurn(transformed);
+            assertEquals(Symmetry.canonicalTurn(transformed, turn), book.getTurn(0));
+        }
+    }
+
+    @Test
+    void shouldSortEntries(@TempDir Path dir) throws IOException
+    {
+        OpeningBookBuilder builder = new OpeningBookBuilder(3);
+        for (long seed = 0; seed < 8; seed++)
+            builder.playGame((int) (seed % 4), seed % 4);
+        Path file = dir.resolve("test.book");
+        int written = builder.write(file, 1);
+
+        OpeningBook book = OpeningBook.open(file);
+        assertEquals(written, book.size());
+        assertEquals(OpeningBook.HEADER_BYTES + (long) written * OpeningBook.ENTRY_BYTES, Files.size(file));
+
+        for (int i = 0; i < book.size(); i++)
+        {
+            assertTrue(book.getPlays(i) >= 2);
+            assertTrue(book.getWins(i) <= book.getPlays(i));
+            if(i > 0)
+            {
+                int order = Long.compareUnsigned(book.getKey(i - 1), book.getKey(i));
+                assertTrue(order < 0 || (order == 0 && book.getPlays(i - 1) >= book.getPlays(i)));
+            }
+            int first = book.find(book.getKey(i));
+            assertTrue(first <= i);
+            assertEquals(book.getKey(i), book.getKey(first));
+            assertTrue(first == 0 || book.getKey(first - 1) != book.getKey(i));
+        }
+    }
+
+    @Test
+    void shouldSeparatePairingsWithSamePlacement(@TempDir Path dir) throws IOException
+    {
+        // same first card, so the positions have the same hash, the second card changes the book key
+        Game apollo = Perft.newGame(5, 1);
+        Game artemis = Perft.newGame(5, 2);
+        assertEquals(Symmetry.canonicalHash(apollo), Symmetry.canonicalHash(artemis));
+        assertNotEquals(OpeningBook.key(apollo), OpeningBook.key(artemis));
+
+        TurnGenerator generator = new TurnGenerator();
+        generator.generate(apollo);
+        OpeningBookBuilder builder = new OpeningBookBuilder(1);
+        builder.addTurn(apollo, generator.get(0), true);
+        Path file = dir.resolve("test.book");
+        builder.write(file, 1);
+
+        OpeningBook book = OpeningBook.open(file);
+        assertEquals(Symmetry.originalTurn(apollo, book.getTurn(0)), book.bestTurn(apollo));
+        assertEquals(Bot.NO_TURN, book.bestTurn(artemis));
+        assertEquals(0, book.count(OpeningBook.key(artemis)));
+    }
+
+    @Test
+    void shouldRejectBooksWithOtherKeys(@TempDir Path dir) throws IOException
+    {
+        OpeningBookBuilder builder = new OpeningBookBuilder(2);
+        builder.playGame(1, 1);
+        Path file = dir.resolve("test.book");
+        builder.write(file, 1);
+        assertNotNull(OpeningBook.open(file));
+
+        // a book written by a build with other keys has another checksum
+        byte[] data = Files.readAllBytes(file);
+        data[OpeningBook.HEADER_BYTES - 1] ^= 1;
+        Files.write(file, data);
+        assertThrows(IOException.class, () -> OpeningBook.open(file));
+    }
+
+    @Test
+    void shouldRejectInvalidFiles(@TempDir Path dir) throws IOException
+    {
+        Path empty = dir.resolve("empty.book");
+        Files.write(empty, new byte[0]);
+        assertThrows(IOException.class, () -> OpeningBook.open(empty));
+
+        Path wrong = dir.resolve("wrong.book");
+        Files.write(wrong, new byte[OpeningBook.HEADER_BYTES + OpeningBook.ENTRY_BYTES]);
+        assertThrows(IOException.class, () -> OpeningBook.open(wrong));
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(2);
+        builder.playGame(1, 1);
+        Path truncated = dir.resolve("truncated.book");
+        builder.write(truncated, 1);
+        byte[] data = Files.readAllBytes(truncated);
+        Files.write(truncated, java.util.Arrays.copyOf(data, data.length - 1));
+        assertThrows(IOException.class, () -> OpeningBook.open(truncated));
+    }
+}
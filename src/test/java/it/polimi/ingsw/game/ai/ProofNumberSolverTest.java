@@ -0,0 +1,136 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProofNumberSolverTest
+{
+    static void domes(Game game, int... cells)
+    {
+        for (int cell : cells)
+            game.getCurrentMap().buildDome(Adjacency.position(cell));
+    }
+
+    @Test
+    void shouldProveWinInOne()
+    {
+        ProofNumberSolver solver = new ProofNumberSolver(10000, 5000, 12);
+        Game game = AlphaBetaBotTest.winInOneGame();
+
+        assertEquals(ProofNumberSolver.WIN, solver.solve(game));
+        assertEquals(Map.cellIndex(0, 1), TurnGenerator.getCell(solver.getWinningTurn(), 0));
+        assertTrue(solver.getLastNodes() > 0);
+    }
+
+    @Test
+    void shouldProveDoubleThreat()
+    {
+        // moving to (0,0) on level 2 threatens (1,0) and (0,1), the opponent can dome only one of them
+        Game game = Perft.newGame(0, 0);
+        AlphaBetaBotTest.build(game, 1, 1, 1);
+        AlphaBetaBotTest.build(game, 0, 0, 2);
+        AlphaBetaBotTest.build(game, 1, 0, 3);
+        AlphaBetaBotTest.build(game, 0, 1, 3);
+        long hash = game.getHash();
+        assertFalse(ThreatDetector.hasWin(game, game.getCurrentPlayer()));
+
+        ProofNumberSolver solver = new ProofNumberSolver(1000000, 10000, 16);
+        assertEquals(ProofNumberSolver.WIN, solver.solve(game));
+
+        long turn = solver.getWinningTurn();
+        assertEquals(0, TurnGenerator.getWorker(turn));
+        assertEquals(Map.cellIndex(0, 0), TurnGenerator.getCell(turn, 0));
+        assertEquals(hash, game.getHash());
+    }
+
+    @Test
+    void shouldLetBotPlayProvenWin()
+    {
+        Game game = Perft.newGame(0, 0);
+        AlphaBetaBotTest.build(game, 1, 1, 1);
+        AlphaBetaBotTest.build(game, 0, 0, 2);
+        AlphaBetaBotTest.build(game, 1, 0, 3);
+        AlphaBetaBotTest.build(game, 0, 1, 3);
+
+        AlphaBetaBot bot = new AlphaBetaBot(1000, 1, new HeightEvaluator(), new TranspositionTable(12));
+        bot.setSolver(new ProofNumberSolver(100000, 1000, 16));
+
+        long turn = bot.findBestTurn(game);
+        assertEquals(Map.cellIndex(0, 0), TurnGenerator.getCell(turn, 0));
+        assertEquals(AlphaBetaBot.WIN_SCORE, bot.getLastScore());
+    }
+
+    @Test
+    void shouldDisproveWhenOpponentHasTwoThreats()
+    {
+        // second player (1,3) on level 2 threatens (0,4) and (2,4)
+        Game game = Perft.newGame(0, 0);
+        AlphaBetaBotTest.build(game, 1, 3, 2);
+        AlphaBetaBotTest.build(game, 0, 4, 3);
+        AlphaBetaBotTest.build(game, 2, 4, 3);
+
+        ProofNumberSolver solver = new ProofNumberSolver(100000, 10000, 12);
+        assertEquals(ProofNumberSolver.NO_WIN, solver.solve(game));
+        assertEquals(Bot.NO_TURN, solver.getWinningTurn());
+    }
+
+    @Test
+    void shouldDisproveStuckPlayer()
+    {
+        Game game = Perft.newGame(0, 0, new Vector2[]{Vector2.of(0, 0), Vector2.of(4, 4)}, new Vector2[]{Vector2.of(2, 0), Vector2.of(2, 4)});
+        domes(game, Map.cellIndex(0, 1), Map.cellIndex(1, 0), Map.cellIndex(1, 1), Map.cellIndex(3, 4), Map.cellIndex(4, 3), Map.cellIndex(3, 3));
+
+        ProofNumberSolver solver = new ProofNumberSolver(1000, 1000, 8);
+        assertEquals(ProofNumberSolver.NO_WIN, solver.solve(game));
+    }
+
+    @Test
+    void shouldRemoveStuckPlayersOfThreePlayersGames() throws NotAllowedOperationException
+    {
+        // second and third players are closed by domes, they lose one after the other
+        Game game = new Game();
+        Player[] players = {new Player(0, "first"), new Player(1, "second"), new Player(2, "third")};
+        for (Player p : players)
+            game.join(p);
+        assertTrue(game.placeWorkers(players[0], new Vector2[]{Vector2.of(2, 1), Vector2.of(2, 3)}));
+        assertTrue(game.placeWorkers(players[1], new Vector2[]{Vector2.of(0, 0), Vector2.of(0, 4)}));
+        assertTrue(game.placeWorkers(players[2], new Vector2[]{Vector2.of(4, 0), Vector2.of(4, 4)}));
+        domes(game, Map.cellIndex(0, 1), Map.cellIndex(1, 0), Map.cellIndex(1, 1), Map.cellIndex(0, 3), Map.cellIndex(1, 3), Map.cellIndex(1, 4),
+                Map.cellIndex(3, 0), Map.cellIndex(3, 1), Map.cellIndex(4, 1), Map.cellIndex(3, 4), Map.cellIndex(3, 3), Map.cellIndex(4, 3));
+        assertEquals(players[0], game.getCurrentPlayer());
+
+        ProofNumberSolver solver = new ProofNumberSolver(100000, 10000, 12);
+        assertEquals(ProofNumberSolver.WIN, solver.solve(game));
+        assertNotEquals(Bot.NO_TURN, solver.getWinningTurn());
+        assertEquals(3, game.playerCount());
+        assertEquals(players[0], game.getCurrentPlayer());
+    }
+
+    @Test
+    void shouldStopAtNodeBudget()
+    {
+        ProofNumberSolver solver = new ProofNumberSolver(200, 10000, 12);
+        assertEquals(ProofNumberSolver.UNKNOWN, solver.solve(Perft.newGame(5, 2)));
+        assertTrue(solver.getLastNodes() <= 200);
+        assertEquals(ProofNumberSolver.UNKNOWN, solver.solve(new Game()));
+    }
+
+    @Test
+    void shouldStopAtCallerDeadline()
+    {
+        ProofNumberSolver solver = new ProofNumberSolver(Long.MAX_VALUE, 10000, 12);
+        long start = System.nanoTime();
+        assertEquals(ProofNumberSolver.UNKNOWN, solver.solve(Perft.newGame(5, 2), start + 20000000));
+        assertTrue(System.nanoTime() - start < 200000000);
+    }
+
+    @Test
+    void shouldRejectInvalidArguments()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new ProofNumberSolver(0, 10, 8));
+        assertThrows(IllegalArgumentException.class, () -> new ProofNumberSolver(10, 0, 8));
+        assertThrows(IllegalArgumentException.class, () -> new ProofNumberSolver(10, 10, 0));
+    }
+}
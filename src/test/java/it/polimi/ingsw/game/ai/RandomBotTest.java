@@ -0,0 +1,47 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomBotTest
+{
+    @Test
+    void shouldPlayGeneratedTurns()
+    {
+        Game game = Perft.newGame(2, 8);
+        TurnGenerator generator = new TurnGenerator();
+        Set<Long> legal = new HashSet<>();
+        for (int i = 0, count = generator.generate(game); i < count; i++)
+            legal.add(generator.get(i));
+
+        RandomBot bot = new RandomBot(1);
+        Set<Long> played = new HashSet<>();
+        for (int i = 0; i < 200; i++)
+        {
+            long turn = bot.findBestTurn(game);
+            assertTrue(legal.contains(turn));
+            played.add(turn);
+        }
+        assertTrue(played.size() > 1);
+
+        // same seed, same turns
+        assertEquals(new RandomBot(7).findBestTurn(game), new RandomBot(7).findBestTurn(game));
+    }
+
+    @Test
+    void shouldReturnNoTurnWhenStuck()
+    {
+        Game game = Perft.newGame(0, 0);
+        for (int cell = 0; cell < Map.CELLS; cell++)
+            if((game.getCurrentMap().getWorkerMask() & (1 << cell)) == 0)
+                game.getCurrentMap().buildDome(Vector2.of(cell));
+
+        assertEquals(Bot.NO_TURN, new RandomBot(1).findBestTurn(game));
+        assertEquals(Bot.NO_TURN, new RandomBot(1).findBestTurn(new Game()));
+    }
+}
@@ -0,0 +1,64 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelfPlayStatsTest
+{
+    @Test
+    void shouldCountGames()
+    {
+        int[][] pairings = {{1, 2}, {2, 1}};
+        SelfPlayStats stats = new SelfPlayStats(pairings);
+        assertEquals(0, stats.getAverageLength());
+        assertEquals(0.5, stats.getFirstPlayerWinRate());
+
+        stats.add(0, 0, 10);
+        stats.add(0, 1, 20);
+        stats.add(1, 0, 30);
+        stats.add(1, SelfPlayStats.DRAW, 200);
+
+        assertEquals(2, stats.pairings());
+        assertArrayEquals(new int[]{2, 1}, stats.getPairing(1));
+        assertEquals(4, stats.getGames());
+        assertEquals(2, stats.getGames(0));
+        assertEquals(1, stats.getFirstWins(0));
+        assertEquals(1, stats.getSecondWins(0));
+        assertEquals(0, stats.getDraws(0));
+        assertEquals(1, stats.getDraws(1));
+        assertEquals(65, stats.getAverageLength());
+        assertEquals(2.0 / 3, stats.getFirstPlayerWinRate(), 1e-9);
+        assertEquals(0, stats.getGamesPerSecond());
+
+        SelfPlayStats other = new SelfPlayStats(pairings);
+        other.add(1, 1, 40);
+        stats.merge(other);
+        assertEquals(5, stats.getGames());
+        assertEquals(1, stats.getSecondWins(1));
+        assertEquals(0.5, stats.getFirstPlayerWinRate(), 1e-9);
+
+        assertThrows(IllegalArgumentException.class, () -> stats.merge(new SelfPlayStats(new int[][]{{1, 2}})));
+    }
+
+    @Test
+    void shouldPrintPairings()
+    {
+        SelfPlayStats stats = new SelfPlayStats(new int[][]{{1, 2}, {3, 4}, {0, 0}});
+        stats.add(0, 0, 10);
+        stats.add(2, 1, 10);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        stats.print(new PrintStream(bytes), new CardCollection());
+        String text = bytes.toString();
+
+        assertTrue(text.contains("Apollo"));
+        assertTrue(text.contains("none"));
+        assertFalse(text.contains("Athena")); // pairings without games are skipped
+        assertTrue(text.contains("games: 2"));
+    }
+}
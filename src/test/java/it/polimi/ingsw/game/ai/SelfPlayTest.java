@@ -0,0 +1,118 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelfPlayTest
+{
+    @Test
+    void shouldPlayEveryPairing()
+    {
+        CardCollection cards = new CardCollection();
+        int[][] pairings = SelfPlay.allPairings(cards);
+        assertEquals(cards.size() * (cards.size() - 1), pairings.length);
+
+        SelfPlay simulation = new SelfPlay(pairings, RandomBot::new, RandomBot::new);
+        simulation.setVerify(true);
+        SelfPlayStats stats = simulation.run(pairings.length * 3L, 1);
+
+        assertEquals(pairings.length * 3L, stats.getGames());
+        for (int i = 0; i < pairings.length; i++)
+        {
+            assertEquals(3, stats.getGames(i));
+            assertArrayEquals(pairings[i], stats.getPairing(i));
+        }
+        assertTrue(stats.getAverageLength() > 1);
+        assertTrue(stats.getAverageLength() < SelfPlay.MAX_GAME_TURNS);
+        assertTrue(stats.getGamesPerSecond() > 0);
+    }
+
+    @Test
+    void shouldFindStrongerBot()
+    {
+        // one turn search always takes a win and blocks most threats
+        int[][] pairings = {{0, 0}};
+        LongFunction<Bot> greedy = seed -> new AlphaBetaBot(10000, 1, new WeightedEvaluator(), new TranspositionTable(4));
+        SelfPlay first = new SelfPlay(pairings, greedy, RandomBot::new);
+        SelfPlay second = new SelfPlay(pairings, RandomBot::new, greedy);
+
+        SelfPlayStats stats = first.run(20, 1);
+        assertTrue(stats.getFirstWins(0) >= 18);
+        assertTrue(stats.getFirstPlayerWinRate() >= 0.9);
+
+        stats = second.run(20, 1);
+        assertTrue(stats.getSecondWins(0) >= 18);
+        assertTrue(stats.getFirstPlayerWinRate() <= 0.1);
+    }
+
+    @Test
+    void shouldPlaySingleGame()
+    {
+        SelfPlay simulation = new SelfPlay(new int[][]{{1, 2}, {2, 1}}, RandomBot::new, RandomBot::new);
+        SelfPlayStats stats = simulation.playGame(1, 5);
+        assertEquals(1, stats.getGames());
+        assertEquals(0, stats.getGames(0));
+        assertEquals(1, stats.getGames(1));
+
+        // same seeds, same game
+        SelfPlayStats again = simulation.playGame(1, 5);
+        assertEquals(stats.getAverageLength(), again.getAverageLength());
+        assertEquals(stats.getFirstWins(1), again.getFirstWins(1));
+    }
+
+    @Test
+    void shouldPlaySameGamesOnAnyThread()
+    {
+        // every game seeds its bots from its own seed, so a parallel run plays the games played one by one
+        int[][] pairings = {{1, 2}, {3, 4}, {0, 0}};
+        SelfPlay simulation = new SelfPlay(pairings, seed -> new MonteCarloBot(10000, 20, 1, seed), RandomBot::new);
+        SelfPlayStats parallel = simulation.run(12, 7);
+
+        SelfPlayStats sequential = new SelfPlayStats(pairings);
+        for (int i = 0; i < 12; i++)
+            sequential.merge(simulation.playGame(i, 7 + i));
+
+        assertEquals(sequential.getAverageLength(), parallel.getAverageLength());
+        for (int i = 0; i < pairings.length; i++)
+        {
+            assertEquals(sequential.getFirstWins(i), parallel.getFirstWins(i));
+            assertEquals(sequential.getSecondWins(i), parallel.getSecondWins(i));
+        }
+    }
+
+    @Test
+    void shouldCloseBotsAtTheEnd()
+    {
+        Queue<MonteCarloBot> bots = new ConcurrentLinkedQueue<>();
+        LongFunction<Bot> factory = seed -> {
+            MonteCarloBot bot = new MonteCarloBot(10000, 4, 2, seed);
+            bots.add(bot);
+            return bot;
+        };
+
+        SelfPlay simulation = new SelfPlay(new int[][]{{0, 0}}, factory, factory);
+        assertEquals(2, simulation.run(2, 1).getGames());
+        simulation.playGame(0, 1);
+
+        // two bots for every game
+        assertEquals(6, bots.size());
+        Game game = Perft.newGame(0, 0);
+        for (MonteCarloBot bot : bots)
+            assertThrows(IllegalStateException.class, () -> bot.findBestTurn(game));
+    }
+
+    @Test
+    void shouldRejectInvalidPairings()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new SelfPlay(new int[0][], RandomBot::new, RandomBot::new));
+        assertThrows(IllegalArgumentException.class, () -> new SelfPlay(new int[][]{{1, 0}}, RandomBot::new, RandomBot::new));
+        assertThrows(IllegalArgumentException.class, () -> new SelfPlay(new int[][]{{3, 3}}, RandomBot::new, RandomBot::new));
+        assertThrows(IllegalArgumentException.class, () -> new SelfPlay(new int[][]{{1, 2}}, null, RandomBot::new));
+    }
+}
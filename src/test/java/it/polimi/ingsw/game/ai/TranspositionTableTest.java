@@ -0,0 +1,161 @@
+package it.polimi.ingsw.game.ai;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranspositionTableTest
+{
+    TranspositionTable table;
+
+    @BeforeEach
+    void setUp()
+    {
+        table = new TranspositionTable(4);
+    }
+
+    @Test
+    void shouldMissEmptyTable()
+    {
+        assertEquals(16, table.size());
+        assertEquals(TranspositionTable.MISS, table.probe(0));
+        assertEquals(TranspositionTable.MISS, table.probe(123456789L));
+    }
+
+    @Test
+    void shouldPackEntries()
+    {
+        table.store(42, 7, TranspositionTable.LOWER, -1234, 17);
+        long data = table.probe(42);
+
+        assertNotEquals(TranspositionTable.MISS, data);
+        assertEquals(7, TranspositionTable.getDepth(data));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.getBound(data));
+        assertEquals(-1234, TranspositionTable.getScore(data));
+        assertEquals(17, TranspositionTable.getMove(data));
+
+        table.store(43, 0, TranspositionTable.EXACT, AlphaBetaBot.WIN_SCORE, TranspositionTable.NO_MOVE);
+        data = table.probe(43);
+        assertEquals(AlphaBetaBot.WIN_SCORE, TranspositionTable.getScore(data));
+        assertEquals(TranspositionTable.NO_MOVE, TranspositionTable.getMove(data));
+    }
+
+    @Test
+    void shouldNotReturnOtherPositions()
+    {
+        table.store(1, 3, TranspositionTable.EXACT, 10, 0);
+        // same slot, different key
+        assertEquals(TranspositionTable.MISS, table.probe(1 + 16));
+    }
+
+    @Test
+    void shouldKeepDeeperEntriesOfCurrentSearch()
+    {
+        table.store(1, 5, TranspositionTable.EXACT, 10, 0);
+        table.store(17, 2, TranspositionTable.EXACT, 20, 0);
+
+        assertNotEquals(TranspositionTable.MISS, table.probe(1));
+        assertEquals(TranspositionTable.MISS, table.probe(17));
+
+        // same position is always updated
+        table.store(1, 2, TranspositionTable.UPPER, 30, 0);
+        assertEquals(30, TranspositionTable.getScore(table.probe(1)));
+    }
+
+    @Test
+    void shouldReplaceEntriesOfOldSearches()
+    {
+        table.store(1, 5, TranspositionTable.EXACT, 10, 0);
+        table.newSearch();
+        table.store(17, 2, TranspositionTable.EXACT, 20, 0);
+
+        assertEquals(TranspositionTable.MISS, table.probe(1));
+        assertEquals(20, TranspositionTable.getScore(table.probe(17)));
+
+        table.clear();
+        assertEquals(TranspositionTable.MISS, table.probe(17));
+    }
+
+    @Test
+    void shouldRejectInvalidArguments()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new TranspositionTable(0));
+        assertThrows(IllegalArgumentException.class, () -> new TranspositionTable(29));
+        assertThrows(IllegalArgumentException.class, () -> table.store(1, 1, 0, 0, 0));
+    }
+
+    @Test
+    void shouldCountHitsMissesAndCollisions()
+    {
+        table.probe(5);
+        table.store(5, 1, TranspositionTable.EXACT, 1, 0);
+        table.probe(5);
+        table.probe(5);
+        table.probe(5 + 16);
+
+        assertEquals(2, table.getHits());
+        assertEquals(1, table.getMisses());
+        assertEquals(1, table.getCollisions());
+
+        table.resetStats();
+        assertEquals(0, table.getHits() + table.getMisses() + table.getCollisions());
+    }
+
+    @Test
+    void shouldFitMemoryBudget()
+    {
+        TranspositionTable small = TranspositionTable.withMemory(1000);
+        assertEquals(32, small.size());
+        assertEquals(512, small.getMemoryBytes());
+
+        assertEquals(1 << 16, TranspositionTable.withMemory(1 << 20).size());
+        assertThrows(IllegalArgumentException.class, () -> TranspositionTable.withMemory(16));
+    }
+
+    @Test
+    void shouldOnlyReturnConsistentEntriesWhenShared() throws InterruptedException
+    {
+        // every thread writes entries whose data depends on the key, any hit must match its key
+        TranspositionTable shared = new TranspositionTable(8);
+        AtomicLong wrong = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++)
+        {
+            SplittableRandom random = new SplittableRandom(t);
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 200000; i++)
+                {
+                    long key = random.nextLong(4096) * 0x9E3779B97F4A7C15L;
+                    if(random.nextBoolean())
+                    {
+                        shared.store(key, (int) (key >>> 60), TranspositionTable.EXACT, (int) key, (int) (key >>> 40) & 0xFFF);
+                    }
+                    else
+                    {
+                        long data = shared.probe(key);
+                        if(data != TranspositionTable.MISS && (TranspositionTable.getScore(data) != (int) key
+                                || TranspositionTable.getDepth(data) != (int) (key >>> 60)
+                                || TranspositionTable.getMove(data) != ((int) (key >>> 40) & 0xFFF)))
+                            wrong.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(0, wrong.get());
+        assertTrue(shared.getHits() > 0);
+        assertTrue(shared.getCollisions() > 0);
+    }
+}
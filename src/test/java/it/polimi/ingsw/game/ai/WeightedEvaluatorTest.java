@@ -0,0 +1,126 @@
+package it.polimi.ingsw.game.ai;
+
+import it.polimi.ingsw.game.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedEvaluatorTest
+{
+    static int[] features(Game game, Player player)
+    {
+        int[] out = new int[WeightedEvaluator.FEATURES];
+        WeightedEvaluator.features(game, player, out);
+        return out;
+    }
+
+    @Test
+    void shouldScoreSymmetricPositionAsEven()
+    {
+        Game game = Perft.newGame(0, 0);
+        WeightedEvaluator evaluator = new WeightedEvaluator();
+
+        assertEquals(0, evaluator.evaluate(game, game.getPlayer(0)));
+        assertArrayEquals(new int[WeightedEvaluator.FEATURES], features(game, game.getPlayer(0)));
+    }
+
+    @Test
+    void shouldScoreHeightsAndThreats()
+    {
+        Game game = AlphaBetaBotTest.winInOneGame();
+        Player first = game.getPlayer(0);
+        WeightedEvaluator evaluator = new WeightedEvaluator();
+
+        int[] f = features(game, first);
+        assertEquals(2, f[WeightedEvaluator.HEIGHT]);
+        assertEquals(1, f[WeightedEvaluator.THREAT]);
+        assertEquals(1, f[WeightedEvaluator.LEVEL3_NEAR]);
+        assertTrue(evaluator.evaluate(game, first) > 0);
+        assertEquals(-evaluator.evaluate(game, first), evaluator.evaluate(game, game.getPlayer(1)));
+
+        // score is the dot product of features and weights
+        int[] weights = evaluator.getWeights();
+        int score = 0;
+        for (int i = 0; i < WeightedEvaluator.FEATURES; i++)
+            score += weights[i] * f[i];
+        assertEquals(score, evaluator.evaluate(game, first));
+    }
+
+    @Test
+    void shouldScoreDomesNearWorkers()
+    {
+        Game game = Perft.newGame(0, 0);
+        game.getCurrentMap().buildDome(Vector2.of(0, 0));
+        game.getCurrentMap().buildDome(Vector2.of(1, 0));
+
+        int[] f = features(game, game.getPlayer(0));
+        assertEquals(2, f[WeightedEvaluator.DOMES_NEAR]);
+        assertEquals(-2, f[WeightedEvaluator.MOBILITY]);
+    }
+
+    @Test
+    void shouldScoreFallWin()
+    {
+        // Pan on level 2 can jump down to level 0
+        Game game = Perft.newGame(9, 8);
+        AlphaBetaBotTest.build(game, 1, 1, 2);
+
+        assertEquals(1, features(game, game.getPlayer(0))[WeightedEvaluator.FALL_WIN]);
+        assertEquals(-1, features(game, game.getPlayer(1))[WeightedEvaluator.FALL_WIN]);
+    }
+
+    @Test
+    void shouldScorePushes()
+    {
+        // Minotaur (1,1) can push (1,2) to (1,3), (3,3) can't push (4,4) outside the map
+        Game game = Perft.newGame(8, 3, new Vector2[]{Vector2.of(1, 1), Vector2.of(3, 3)}, new Vector2[]{Vector2.of(1, 2), Vector2.of(4, 4)});
+        assertEquals(1, features(game, game.getPlayer(0))[WeightedEvaluator.PUSH]);
+
+        game.getCurrentMap().buildDome(Vector2.of(1, 3));
+        assertEquals(0, features(game, game.getPlayer(0))[WeightedEvaluator.PUSH]);
+    }
+
+    @Test
+    void shouldScoreMoveUpLock() throws NotAllowedMoveException, OutOfGraphException
+    {
+        // Athena moves up to (0,1), the opponent can't move up in its turn
+        Game game = Perft.newGame(3, 8);
+        AlphaBetaBotTest.build(game, 0, 1, 1);
+        AlphaBetaBotTest.build(game, 0, 4, 1);
+        AlphaBetaBotTest.build(game, 4, 0, 1);
+        Player athena = game.getPlayer(0);
+        assertEquals(0, features(game, athena)[WeightedEvaluator.MOVE_UP_LOCK]);
+
+        TurnGenerator generator = new TurnGenerator();
+        int count = generator.generate(game);
+        long turn = Bot.NO_TURN;
+        for (int i = 0; i < count; i++)
+        {
+            long t = generator.get(i);
+            if(TurnGenerator.getWorker(t) == 0 && TurnGenerator.getCell(t, 0) == Map.cellIndex(0, 1) && TurnGenerator.getCell(t, 1) == Map.cellIndex(0, 0))
+                turn = t;
+        }
+        assertNotEquals(Bot.NO_TURN, turn);
+
+        for (int step = 0; step < TurnGenerator.getLength(turn); step++)
+            game.makeAction(0, TurnGenerator.getAction(turn, step), Vector2.of(TurnGenerator.getCell(turn, step)));
+
+        int[] f = features(game, athena);
+        // Minotaur (1,3) can't climb to (0,4) and (3,1) can't climb to (4,0) anymore
+        assertEquals(2, f[WeightedEvaluator.MOVE_UP_LOCK]);
+        assertEquals(0, f[WeightedEvaluator.CLIMB]);
+        assertEquals(-2, features(game, game.getPlayer(1))[WeightedEvaluator.MOVE_UP_LOCK]);
+    }
+
+    @Test
+    void shouldRejectInvalidWeights()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new WeightedEvaluator(new int[3]));
+        assertThrows(IllegalArgumentException.class, () -> new WeightedEvaluator(null));
+
+        int[] weights = WeightedEvaluator.getDefaultWeights();
+        WeightedEvaluator evaluator = new WeightedEvaluator(weights);
+        weights[0] = 0;
+        assertNotEquals(0, evaluator.getWeights()[0]);
+    }
+}